@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Keeps track of the dependencies between the objects in the cache of a site: for each store URL (the dependency),
+ * the references (store URLs or other cache key elements) of the cached objects that were built from it (the
+ * dependents). For example, a merged descriptor depends on its targeted candidates, and a page view depends on the
+ * scripts of the page. When a URL changes, all its dependents (transitively) need to be invalidated too.
+ *
+ * <p>Dependencies can be added explicitly, or recorded automatically for the dependents that are being loaded by the
+ * current thread (see {@link #trackDependencies(String, Supplier)} and {@link #recordRead(String)}).</p>
+ *
+ * @since 4.2.0
+ */
+public class CacheDependencyGraph {
+
+    private final Map<String, Set<String>> dependents;
+    private final ThreadLocal<Deque<String>> loadingDependents;
+
+    public CacheDependencyGraph() {
+        dependents = new ConcurrentHashMap<>();
+        loadingDependents = new ThreadLocal<>();
+    }
+
+    /**
+     * Adds a dependency between two cached objects.
+     *
+     * @param dependency    the URL of the dependency
+     * @param dependent     the reference of the dependent object
+     */
+    public void addDependency(String dependency, String dependent) {
+        if (!dependency.equals(dependent)) {
+            dependents.computeIfAbsent(dependency, key -> ConcurrentHashMap.newKeySet()).add(dependent);
+        }
+    }
+
+    /**
+     * Adds several dependencies of a cached object.
+     *
+     * @param dependencies  the URLs of the dependencies
+     * @param dependent     the reference of the dependent object
+     */
+    public void addDependencies(Collection<String> dependencies, String dependent) {
+        for (String dependency : dependencies) {
+            addDependency(dependency, dependent);
+        }
+    }
+
+    /**
+     * Executes the loader of a cached object, recording as its dependencies all the URLs that are passed to
+     * {@link #recordRead(String)} by the current thread while the loader executes.
+     *
+     * @param dependent the reference of the object being loaded
+     * @param loader    the loader of the object
+     * @return the loaded object
+     */
+    public <T> T trackDependencies(String dependent, Supplier<T> loader) {
+        Deque<String> dependents = loadingDependents.get();
+        if (dependents == null) {
+            dependents = new ArrayDeque<>();
+            loadingDependents.set(dependents);
+        }
+
+        dependents.push(dependent);
+        try {
+            return loader.get();
+        } finally {
+            dependents.pop();
+            if (dependents.isEmpty()) {
+                loadingDependents.remove();
+            }
+        }
+    }
+
+    /**
+     * Records that the URL was read while loading the objects that are currently being loaded by the thread (all of
+     * them, since objects being loaded depend on the nested objects they load).
+     *
+     * @param url the URL that was read
+     */
+    public void recordRead(String url) {
+        Deque<String> dependents = loadingDependents.get();
+        if (dependents != null) {
+            for (String dependent : dependents) {
+                addDependency(url, dependent);
+            }
+        }
+    }
+
+    /**
+     * Returns all the dependents (transitively) of the specified URLs, removing them from the graph since they're
+     * about to be invalidated (their dependencies are recorded again when they're loaded again).
+     *
+     * @param urls the URLs that changed
+     * @return the references of the dependents
+     */
+    public Set<String> removeDependents(Collection<String> urls) {
+        Set<String> result = new LinkedHashSet<>();
+        Deque<String> pending = new ArrayDeque<>(urls);
+
+        while (!pending.isEmpty()) {
+            Set<String> urlDependents = dependents.remove(pending.pop());
+            if (urlDependents != null) {
+                for (String dependent : urlDependents) {
+                    if (result.add(dependent)) {
+                        pending.push(dependent);
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the number of URLs that have dependents.
+     */
+    public int size() {
+        return dependents.size();
+    }
+
+    /**
+     * Removes all dependencies (normally when the whole cache is cleared).
+     */
+    public void clear() {
+        dependents.clear();
+    }
+
+}
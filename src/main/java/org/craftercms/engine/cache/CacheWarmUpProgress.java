@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Progress of a full cache warm up of a site. Since the folders are discovered while they're being walked, the
+ * number of discovered items (and therefore the estimated remaining time) grows as the warm up advances.
+ *
+ * @since 4.2.0
+ */
+public class CacheWarmUpProgress {
+
+    private final Instant startDate;
+    private final long startTime;
+    private final LongAdder discoveredItems;
+    private final LongAdder preloadedItems;
+    private volatile long endTime;
+
+    public CacheWarmUpProgress() {
+        startDate = Instant.now();
+        startTime = System.currentTimeMillis();
+        discoveredItems = new LongAdder();
+        preloadedItems = new LongAdder();
+    }
+
+    /**
+     * Returns the date when the warm up started.
+     */
+    public Instant getStartDate() {
+        return startDate;
+    }
+
+    /**
+     * Returns the number of items found so far that need to be preloaded.
+     */
+    public long getDiscoveredItems() {
+        return discoveredItems.sum();
+    }
+
+    /**
+     * Returns the number of items that have already been preloaded.
+     */
+    public long getPreloadedItems() {
+        return preloadedItems.sum();
+    }
+
+    /**
+     * Returns true if the warm up has finished.
+     */
+    public boolean isCompleted() {
+        return endTime > 0;
+    }
+
+    /**
+     * Returns the time in milliseconds since the warm up started, or the total time if it has finished.
+     */
+    public long getElapsedTime() {
+        return (isCompleted()? endTime : System.currentTimeMillis()) - startTime;
+    }
+
+    /**
+     * Returns the estimated time in milliseconds left for the warm up to finish, based on the current rate of
+     * preloaded items, or -1 if it can't be estimated yet.
+     */
+    public long getEstimatedRemainingTime() {
+        if (isCompleted()) {
+            return 0;
+        }
+
+        long preloaded = getPreloadedItems();
+        if (preloaded == 0) {
+            return -1;
+        }
+
+        long remaining = Math.max(getDiscoveredItems() - preloaded, 0);
+
+        return getElapsedTime() * remaining / preloaded;
+    }
+
+    public void addDiscoveredItems(int count) {
+        discoveredItems.add(count);
+    }
+
+    public void addPreloadedItem() {
+        preloadedItems.increment();
+    }
+
+    public void complete() {
+        endTime = System.currentTimeMillis();
+    }
+
+    @Override
+    public String toString() {
+        return "CacheWarmUpProgress{" +
+               "startDate=" + startDate +
+               ", discoveredItems=" + getDiscoveredItems() +
+               ", preloadedItems=" + getPreloadedItems() +
+               ", elapsedTime=" + getElapsedTime() +
+               ", estimatedRemainingTime=" + getEstimatedRemainingTime() +
+               '}';
+    }
+
+}
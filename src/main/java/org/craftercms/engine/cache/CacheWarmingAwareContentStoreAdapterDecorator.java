@@ -20,9 +20,11 @@ import org.craftercms.core.service.*;
 import org.craftercms.core.store.ContentStoreAdapter;
 import org.craftercms.core.util.ContentStoreUtils;
 import org.craftercms.engine.util.store.decorators.ContentStoreAdapterDecorator;
+import org.craftercms.engine.util.store.decorators.DecoratedStoreAdapterContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Supplier;
@@ -154,10 +156,31 @@ public class CacheWarmingAwareContentStoreAdapterDecorator implements ContentSto
     }
 
     protected PreloadedFolder findPreloadedAncestor(List<PreloadedFolder> preloadedFolders, String path) {
-        return preloadedFolders.stream()
-                               .filter(folder -> path.startsWith(folder.getPath()))
-                               .findFirst()
-                               .orElse(null);
+        // Called on every store access, so avoid creating a stream or an iterator
+        for (int i = 0; i < preloadedFolders.size(); i++) {
+            PreloadedFolder folder = preloadedFolders.get(i);
+            if (path.startsWith(folder.getPath())) {
+                return folder;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the folders that have been preloaded in the cache of the context, or an empty list if cache warm up
+     * is not enabled for the context.
+     *
+     * @param context the context
+     */
+    public static List<PreloadedFolder> getPreloadedFolders(Context context) {
+        if (context instanceof PreloadedFoldersAwareContext) {
+            return ((PreloadedFoldersAwareContext) context).getPreloadedFolders();
+        } else if (context instanceof DecoratedStoreAdapterContext) {
+            return getPreloadedFolders(((DecoratedStoreAdapterContext) context).getActualContext());
+        } else {
+            return Collections.emptyList();
+        }
     }
 
 }
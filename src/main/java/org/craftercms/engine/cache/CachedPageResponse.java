@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Rendered output of a page kept in the cache by the {@link PageOutputCache}.
+ *
+ * @since 4.2.0
+ */
+public class CachedPageResponse {
+
+    private final String contentType;
+    private final Map<String, List<String>> headers;
+    private final byte[] body;
+    private final long expirationTime;
+    private final long staleExpirationTime;
+    private final AtomicBoolean revalidating;
+
+    public CachedPageResponse(String contentType, Map<String, List<String>> headers, byte[] body,
+                              long expirationTime, long staleExpirationTime) {
+        this.contentType = contentType;
+        this.headers = headers;
+        this.body = body;
+        this.expirationTime = expirationTime;
+        this.staleExpirationTime = staleExpirationTime;
+        this.revalidating = new AtomicBoolean();
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public Map<String, List<String>> getHeaders() {
+        return headers;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    /**
+     * Returns true if the output hasn't expired yet.
+     */
+    public boolean isFresh(long now) {
+        return now < expirationTime;
+    }
+
+    /**
+     * Returns true if the output has expired but can still be served while it's rendered again.
+     */
+    public boolean isStale(long now) {
+        return now >= expirationTime && now < staleExpirationTime;
+    }
+
+    /**
+     * Returns true if the caller should render the page again, which only happens for the first caller after the
+     * output expired.
+     */
+    public boolean startRevalidation() {
+        return revalidating.compareAndSet(false, true);
+    }
+
+    /**
+     * Allows the page to be rendered again by another caller, when the last render couldn't be cached.
+     */
+    public void cancelRevalidation() {
+        revalidating.set(false);
+    }
+
+}
@@ -17,19 +17,26 @@ package org.craftercms.engine.cache;
 
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.collections4.MapUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.StopWatch;
 import org.craftercms.core.service.ContentStoreService;
 import org.craftercms.core.service.Context;
 import org.craftercms.core.service.Item;
 import org.craftercms.core.util.ContentStoreUtils;
 import org.craftercms.engine.properties.SiteProperties;
+import org.craftercms.engine.service.context.SiteContext;
 import org.craftercms.engine.util.CacheUtils;
 import org.craftercms.engine.util.store.decorators.DecoratedStoreAdapterContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
 /**
  * {@link ContextCacheWarmer} that performs warm up of a list of descriptor and content folders at the
@@ -45,6 +52,8 @@ public class ContentStoreAdapterPreloadedFoldersBasedCacheWarmer implements Cont
     protected boolean warmUpEnabled;
     protected Map<String, Integer> descriptorPreloadFolders;
     protected Map<String, Integer> contentPreloadFolders;
+    protected int parallelism;
+    protected PreloadedFoldersSnapshotStore snapshotStore;
 
     public ContentStoreAdapterPreloadedFoldersBasedCacheWarmer(boolean warmUpEnabled, String[] descriptorPreloadFolders,
                                                                String[] contentPreloadFolders) {
@@ -57,6 +66,26 @@ public class ContentStoreAdapterPreloadedFoldersBasedCacheWarmer implements Cont
         // Sets the list of content folders to preload in the cache. Each folder can have it's depth specified
         // after a colon, like {@code PATH:DEPTH}
         this.contentPreloadFolders = CacheUtils.parsePreloadFoldersList(contentPreloadFolders);
+
+        this.parallelism = 1;
+    }
+
+    /**
+     * Sets the max number of store reads that can be executed in parallel while walking a folder. The walk is done
+     * in a work-stealing pool, so that the threads that finish a small subfolder can help with the bigger ones. If
+     * 1 or less, the folders are walked sequentially by the calling thread.
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Sets the store for the snapshots of the preloaded folders. If set, a snapshot is saved after every warm up,
+     * and on the next full warm up (e.g. after a restart) the folders are not walked again if the site content
+     * hasn't changed, only the paths in the snapshot are loaded.
+     */
+    public void setSnapshotStore(PreloadedFoldersSnapshotStore snapshotStore) {
+        this.snapshotStore = snapshotStore;
     }
 
     /**
@@ -64,6 +93,14 @@ public class ContentStoreAdapterPreloadedFoldersBasedCacheWarmer implements Cont
      */
     @Override
     public void warmUpCache(Context context) {
+        warmUpCache(context, new CacheWarmUpProgress());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void warmUpCache(Context context, CacheWarmUpProgress progress) {
         List<PreloadedFolder> preloadedFolders = new ArrayList<>();
         PreloadedFoldersAwareContext contextWrapper = findPreloadedFoldersAwareContext(context);
 
@@ -71,15 +108,118 @@ public class ContentStoreAdapterPreloadedFoldersBasedCacheWarmer implements Cont
             throw new IllegalStateException("PreloadedFoldersAwareContext expected but not found");
         }
 
-        for (Map.Entry<String, Integer> entry : getContentPreloadFolders().entrySet()) {
-            preloadFolder(contextWrapper, entry.getKey(), entry.getValue(), true, preloadedFolders);
+        SiteContext siteContext = SiteContext.getCurrent();
+        List<PreloadedFolder> snapshotFolders = null;
+        if (snapshotStore != null && siteContext != null) {
+            snapshotFolders = snapshotStore.load(siteContext);
         }
 
-        for (Map.Entry<String, Integer> entry : getDescriptorPreloadFolders().entrySet()) {
-            preloadFolder(contextWrapper, entry.getKey(), entry.getValue(), false, preloadedFolders);
+        ForkJoinPool pool = parallelism > 1? new ForkJoinPool(parallelism) : null;
+        try {
+            for (Map.Entry<String, Integer> entry : getContentPreloadFolders().entrySet()) {
+                preloadFolder(contextWrapper, entry.getKey(), entry.getValue(), true, snapshotFolders,
+                              preloadedFolders, pool, progress);
+            }
+
+            for (Map.Entry<String, Integer> entry : getDescriptorPreloadFolders().entrySet()) {
+                preloadFolder(contextWrapper, entry.getKey(), entry.getValue(), false, snapshotFolders,
+                              preloadedFolders, pool, progress);
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
         }
 
         contextWrapper.setPreloadedFolders(preloadedFolders);
+
+        // Only save a new snapshot if the folders were walked
+        if (snapshotStore != null && siteContext != null && !preloadedFolders.equals(snapshotFolders)) {
+            snapshotStore.save(siteContext, preloadedFolders);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Changed paths that are inside a preloaded folder (and within its depth) are loaded again, and added to or
+     * removed from the folder's preloaded descendants depending on if they still exist.</p>
+     */
+    @Override
+    public void warmUpCache(Context context, Collection<String> changedPaths) {
+        PreloadedFoldersAwareContext contextWrapper = findPreloadedFoldersAwareContext(context);
+
+        if (contextWrapper == null) {
+            throw new IllegalStateException("PreloadedFoldersAwareContext expected but not found");
+        }
+
+        Context actualContext = contextWrapper.getActualContext();
+        Set<String> contentFolders = new HashSet<>();
+        for (String folder : getContentPreloadFolders().keySet()) {
+            contentFolders.add(StringUtils.appendIfMissing(ContentStoreUtils.normalizePath(folder), "/"));
+        }
+
+        // Preloaded folders are read concurrently, so they're replaced instead of modified
+        List<PreloadedFolder> preloadedFolders = new ArrayList<>(contextWrapper.getPreloadedFolders());
+        boolean updated = false;
+
+        for (ListIterator<PreloadedFolder> iter = preloadedFolders.listIterator(); iter.hasNext();) {
+            PreloadedFolder folder = iter.next();
+            boolean contentOnly = contentFolders.contains(folder.getPath());
+            Set<String> descendants = null;
+
+            for (String changedPath : changedPaths) {
+                String path = ContentStoreUtils.normalizePath(changedPath);
+                if (path.startsWith(folder.getPath()) && folder.exists(path) != null) {
+                    if (descendants == null) {
+                        descendants = folder.getDescendants();
+                    }
+
+                    preloadChangedPath(actualContext, folder.getPath(), path, contentOnly, descendants);
+                }
+            }
+
+            if (descendants != null) {
+                iter.set(new PreloadedFolder(folder.getPath(), folder.getDepth(), descendants));
+                updated = true;
+            }
+        }
+
+        if (updated) {
+            contextWrapper.setPreloadedFolders(preloadedFolders);
+
+            SiteContext siteContext = SiteContext.getCurrent();
+            if (snapshotStore != null && siteContext != null) {
+                snapshotStore.save(siteContext, preloadedFolders);
+            }
+        }
+    }
+
+    protected void preloadChangedPath(Context context, String folderPath, String path, boolean contentOnly,
+                                      Set<String> preloadedPaths) {
+        try {
+            Item item = context.getStoreAdapter().findItem(context, null, path, !contentOnly);
+            if (item == null) {
+                logger.debug("Removing deleted path [{}] from preloaded folder [{}]", path, folderPath);
+
+                preloadedPaths.remove(path);
+                preloadedPaths.removeIf(preloadedPath -> preloadedPath.startsWith(path + "/"));
+            } else {
+                logger.debug("Preloading changed path [{}] of preloaded folder [{}]", path, folderPath);
+
+                if (contentOnly && !item.isFolder()) {
+                    context.getStoreAdapter().findContent(context, null, path);
+                }
+
+                preloadedPaths.add(path);
+
+                // Parent folders could also be new
+                for (int idx = path.lastIndexOf('/'); idx >= folderPath.length(); idx = path.lastIndexOf('/', idx - 1)) {
+                    preloadedPaths.add(path.substring(0, idx));
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Error while preloading changed path '{}'", path, e);
+        }
     }
 
     protected PreloadedFoldersAwareContext findPreloadedFoldersAwareContext(Context context) {
@@ -93,7 +233,93 @@ public class ContentStoreAdapterPreloadedFoldersBasedCacheWarmer implements Cont
     }
 
     protected void preloadFolder(PreloadedFoldersAwareContext contextWrapper, String path, int depth,
-                                 boolean contentOnly, List<PreloadedFolder> preloadedFolders) {
+                                 boolean contentOnly, List<PreloadedFolder> snapshotFolders,
+                                 List<PreloadedFolder> preloadedFolders, ForkJoinPool pool,
+                                 CacheWarmUpProgress progress) {
+        PreloadedFolder snapshotFolder = null;
+        if (snapshotFolders != null) {
+            snapshotFolder = findPreloadedFolder(snapshotFolders, ContentStoreUtils.normalizePath(path), depth);
+        }
+
+        if (snapshotFolder != null) {
+            preloadSnapshotFolder(contextWrapper, snapshotFolder, contentOnly, preloadedFolders, pool, progress);
+        } else {
+            preloadFolder(contextWrapper, path, depth, contentOnly, preloadedFolders, pool, progress);
+        }
+    }
+
+    protected PreloadedFolder findPreloadedFolder(List<PreloadedFolder> preloadedFolders, String path, int depth) {
+        String folderPath = StringUtils.appendIfMissing(path, "/");
+        for (PreloadedFolder folder : preloadedFolders) {
+            if (folder.getPath().equals(folderPath) && folder.getDepth() == depth) {
+                return folder;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Loads all the descendants of a folder that were preloaded when the snapshot was taken, without walking the
+     * folder again.
+     */
+    protected void preloadSnapshotFolder(PreloadedFoldersAwareContext contextWrapper, PreloadedFolder folder,
+                                         boolean contentOnly, List<PreloadedFolder> preloadedFolders,
+                                         ForkJoinPool pool, CacheWarmUpProgress progress) {
+        Context actualContext = contextWrapper.getActualContext();
+        List<String> paths = new ArrayList<>(folder.getDescendants());
+        StopWatch stopWatch = new StopWatch();
+
+        logger.info("Starting preload of folder [{}] with depth {} from snapshot", folder.getPath(),
+                    folder.getDepth());
+
+        stopWatch.start();
+
+        progress.addDiscoveredItems(paths.size());
+
+        try {
+            if (pool != null) {
+                pool.invoke(new PreloadPathsTask(SiteContext.getCurrent(), actualContext, paths, 0, paths.size(),
+                                                 contentOnly, progress));
+            } else {
+                for (String path : paths) {
+                    preloadSnapshotPath(actualContext, path, contentOnly);
+                    progress.addPreloadedItem();
+                }
+            }
+
+            preloadedFolders.add(folder);
+        } catch (Exception e) {
+            logger.error("Error while preloading folder [{}] from snapshot", folder.getPath(), e);
+        }
+
+        stopWatch.stop();
+
+        logger.info("Preload of folder [{}] with depth {} from snapshot completed in {} secs", folder.getPath(),
+                    folder.getDepth(), stopWatch.getTime(TimeUnit.SECONDS));
+    }
+
+    protected void preloadSnapshotPath(Context context, String path, boolean contentOnly) {
+        try {
+            logger.debug("Preloading path [{}] from snapshot", path);
+
+            if (contentOnly) {
+                // The snapshot doesn't keep which paths are folders
+                Item item = context.getStoreAdapter().findItem(context, null, path, false);
+                if (item != null && !item.isFolder()) {
+                    context.getStoreAdapter().findContent(context, null, path);
+                }
+            } else {
+                context.getStoreAdapter().findItem(context, null, path, true);
+            }
+        } catch (Exception e) {
+            logger.error("Error while preload path '{}'", path, e);
+        }
+    }
+
+    protected void preloadFolder(PreloadedFoldersAwareContext contextWrapper, String path, int depth,
+                                 boolean contentOnly, List<PreloadedFolder> preloadedFolders, ForkJoinPool pool,
+                                 CacheWarmUpProgress progress) {
         path = ContentStoreUtils.normalizePath(path);
 
         Context actualContext = contextWrapper.getActualContext();
@@ -108,11 +334,22 @@ public class ContentStoreAdapterPreloadedFoldersBasedCacheWarmer implements Cont
             throw new IllegalStateException("Can't preload folder " + path + ": it doesn't exist or is not a folder");
         }
 
-        Set<String> preloadedDescendants = new TreeSet<>();
-
         try {
-            preloadFolderChildren(actualContext, path, depth, contentOnly, preloadedDescendants);
-            preloadedFolders.add(new PreloadedFolder(path, depth, preloadedDescendants));
+            Set<String> preloadedDescendants;
+            if (pool != null) {
+                preloadedDescendants = new ConcurrentSkipListSet<>();
+                pool.invoke(new PreloadFolderChildrenTask(null, SiteContext.getCurrent(), actualContext, path, depth,
+                                                          contentOnly, preloadedDescendants, progress));
+            } else {
+                preloadedDescendants = new TreeSet<>();
+                preloadFolderChildren(actualContext, path, depth, contentOnly, preloadedDescendants, progress);
+            }
+
+            PreloadedFolder preloadedFolder = new PreloadedFolder(path, depth, preloadedDescendants);
+            preloadedFolders.add(preloadedFolder);
+
+            logger.debug("Preloaded folder [{}] has {} descendants indexed in {} bytes", path,
+                         preloadedFolder.getDescendantCount(), preloadedFolder.getHeapSize());
         } catch (Exception e) {
             logger.error("Error while preloading folder [{}]", path, e);
         }
@@ -124,7 +361,27 @@ public class ContentStoreAdapterPreloadedFoldersBasedCacheWarmer implements Cont
     }
 
     protected void preloadFolderChildren(Context context, String path, int depth, boolean contentOnly,
-                                         Set<String> preloadedPaths) {
+                                         Set<String> preloadedPaths, CacheWarmUpProgress progress) {
+        preloadFolderChildren(context, path, depth, contentOnly, preloadedPaths, progress,
+                              (subfolderPath, subfolderDepth) -> preloadFolderChildren(
+                                      context, subfolderPath, subfolderDepth, contentOnly, preloadedPaths, progress));
+    }
+
+    /**
+     * Preloads the children of a folder.
+     *
+     * @param context               the context
+     * @param path                  the path of the folder
+     * @param depth                 the depth to preload
+     * @param contentOnly           true if only content, false otherwise
+     * @param preloadedPaths        collection of preloaded paths
+     * @param progress              the progress of the warm up
+     * @param subfolderPreloader    called with the path and remaining depth of each subfolder, to preload its
+     *                              children
+     */
+    protected void preloadFolderChildren(Context context, String path, int depth, boolean contentOnly,
+                                         Set<String> preloadedPaths, CacheWarmUpProgress progress,
+                                         BiConsumer<String, Integer> subfolderPreloader) {
         if (depth == ContentStoreService.UNLIMITED_TREE_DEPTH || depth >= 1) {
             if (depth >= 1) {
                 depth--;
@@ -132,8 +389,14 @@ public class ContentStoreAdapterPreloadedFoldersBasedCacheWarmer implements Cont
 
             List<Item> children = context.getStoreAdapter().findItems(context, null, path);
             if (CollectionUtils.isNotEmpty(children)) {
+                progress.addDiscoveredItems(children.size());
+
                 for (Item item : children) {
-                    preloadFolderChild(item, context, depth, contentOnly, preloadedPaths);
+                    if (preloadFolderChild(item, context, contentOnly, preloadedPaths)) {
+                        subfolderPreloader.accept(item.getUrl(), depth);
+                    }
+
+                    progress.addPreloadedItem();
                 }
             }
         }
@@ -144,11 +407,11 @@ public class ContentStoreAdapterPreloadedFoldersBasedCacheWarmer implements Cont
      * Catch any exception while perform preload in order to not interrupt the whole process
      * @param child item to perform preload
      * @param context the context
-     * @param depth perform preload a folder with depth
      * @param contentOnly true if only content, false otherwise
      * @param preloadedPaths collection of preloaded paths
+     * @return true if the child is a folder that was preloaded and its own children should be preloaded next
      */
-    private void preloadFolderChild(Item child, Context context, int depth, boolean contentOnly, Set<String> preloadedPaths) {
+    private boolean preloadFolderChild(Item child, Context context, boolean contentOnly, Set<String> preloadedPaths) {
         String childPath = child.getUrl();
         try {
             if (child.isFolder()) {
@@ -159,7 +422,7 @@ public class ContentStoreAdapterPreloadedFoldersBasedCacheWarmer implements Cont
 
                 preloadedPaths.add(childPath);
 
-                preloadFolderChildren(context, childPath, depth, contentOnly, preloadedPaths);
+                return true;
             } else if (contentOnly) {
                 logger.debug("Preloading content [{}]", childPath);
                 context.getStoreAdapter().findContent(context, null, childPath);
@@ -174,6 +437,8 @@ public class ContentStoreAdapterPreloadedFoldersBasedCacheWarmer implements Cont
         } catch (Exception e) {
             logger.error("Error while preload path '{}'", childPath, e);
         }
+
+        return false;
     }
 
     protected Map<String, Integer> getDescriptorPreloadFolders() {
@@ -194,4 +459,110 @@ public class ContentStoreAdapterPreloadedFoldersBasedCacheWarmer implements Cont
         }
     }
 
+    /**
+     * Task that preloads the children of a folder, forking a new task for each subfolder. The tasks never wait for
+     * their subtasks (the last one to finish completes the parent) so no extra threads are spawned by the pool.
+     */
+    protected class PreloadFolderChildrenTask extends CountedCompleter<Void> {
+
+        private final SiteContext siteContext;
+        private final Context context;
+        private final String path;
+        private final int depth;
+        private final boolean contentOnly;
+        private final Set<String> preloadedPaths;
+        private final CacheWarmUpProgress progress;
+
+        public PreloadFolderChildrenTask(CountedCompleter<?> completer, SiteContext siteContext, Context context,
+                                         String path, int depth, boolean contentOnly, Set<String> preloadedPaths,
+                                         CacheWarmUpProgress progress) {
+            super(completer);
+            this.siteContext = siteContext;
+            this.context = context;
+            this.path = path;
+            this.depth = depth;
+            this.contentOnly = contentOnly;
+            this.preloadedPaths = preloadedPaths;
+            this.progress = progress;
+        }
+
+        @Override
+        public void compute() {
+            runWithSiteContext(siteContext, () ->
+                preloadFolderChildren(context, path, depth, contentOnly, preloadedPaths, progress,
+                                      (subfolderPath, subfolderDepth) -> {
+                    addToPendingCount(1);
+                    new PreloadFolderChildrenTask(this, siteContext, context, subfolderPath, subfolderDepth,
+                                                  contentOnly, preloadedPaths, progress).fork();
+                }));
+
+            tryComplete();
+        }
+
+    }
+
+    /**
+     * Task that preloads a range of paths taken from a snapshot, splitting the range in half until it's small
+     * enough.
+     */
+    protected class PreloadPathsTask extends RecursiveAction {
+
+        private static final int MAX_PATHS_PER_TASK = 32;
+
+        private final SiteContext siteContext;
+        private final Context context;
+        private final List<String> paths;
+        private final int start;
+        private final int end;
+        private final boolean contentOnly;
+        private final CacheWarmUpProgress progress;
+
+        public PreloadPathsTask(SiteContext siteContext, Context context, List<String> paths, int start, int end,
+                                boolean contentOnly, CacheWarmUpProgress progress) {
+            this.siteContext = siteContext;
+            this.context = context;
+            this.paths = paths;
+            this.start = start;
+            this.end = end;
+            this.contentOnly = contentOnly;
+            this.progress = progress;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= MAX_PATHS_PER_TASK) {
+                runWithSiteContext(siteContext, () -> {
+                    for (int i = start; i < end; i++) {
+                        preloadSnapshotPath(context, paths.get(i), contentOnly);
+                        progress.addPreloadedItem();
+                    }
+                });
+            } else {
+                int middle = (start + end) >>> 1;
+                invokeAll(new PreloadPathsTask(siteContext, context, paths, start, middle, contentOnly, progress),
+                          new PreloadPathsTask(siteContext, context, paths, middle, end, contentOnly, progress));
+            }
+        }
+
+    }
+
+    /**
+     * Runs the task with the site context as the current one, since the store adapters could need it (e.g. to
+     * resolve targeted content) and the pool threads don't have it.
+     */
+    protected void runWithSiteContext(SiteContext siteContext, Runnable task) {
+        boolean setCurrent = siteContext != null && SiteContext.getCurrent() != siteContext;
+        if (setCurrent) {
+            SiteContext.setCurrent(siteContext);
+        }
+
+        try {
+            task.run();
+        } finally {
+            if (setCurrent) {
+                SiteContext.clear();
+            }
+        }
+    }
+
 }
@@ -16,14 +16,17 @@
 package org.craftercms.engine.cache;
 
 import org.apache.commons.collections4.MapUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.StopWatch;
 import org.craftercms.core.service.ContentStoreService;
 import org.craftercms.core.service.Context;
+import org.craftercms.core.util.ContentStoreUtils;
 import org.craftercms.engine.properties.SiteProperties;
 import org.craftercms.engine.util.CacheUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
@@ -79,6 +82,32 @@ public class ContentStoreServiceTreeBasedContextCacheWarmer implements ContextCa
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void warmUpCache(Context context, Collection<String> changedPaths) {
+        for (Map.Entry<String, Integer> entry : getDescriptorPreloadFolders().entrySet()) {
+            String treeRoot = ContentStoreUtils.normalizePath(entry.getKey());
+            int depth = entry.getValue();
+
+            // The cached tree contains the changed path, so it needs to be loaded again
+            boolean changed = changedPaths.stream()
+                                          .map(ContentStoreUtils::normalizePath)
+                                          .anyMatch(path -> path.equals(treeRoot) ||
+                                                            path.startsWith(StringUtils.appendIfMissing(treeRoot, "/")));
+            if (changed) {
+                logger.debug("Preloading again tree [{}] with depth {}", treeRoot, depth);
+
+                try {
+                    contentStoreService.getTree(context, treeRoot, depth);
+                } catch (Exception e) {
+                    logger.error("Error while preloading tree at [{}]", treeRoot, e);
+                }
+            }
+        }
+    }
+
     protected Map<String, Integer> getDescriptorPreloadFolders() {
         Map<String, Integer> preloadFolders = SiteProperties.getDescriptorPreloadFolders();
         if (MapUtils.isNotEmpty(preloadFolders)) {
@@ -17,6 +17,8 @@ package org.craftercms.engine.cache;
 
 import org.craftercms.core.service.Context;
 
+import java.util.Collection;
+
 /**
  * Helper class that's used to warm up the cache of a context. Normally several of these will be used by the
  * {@link SiteCacheWarmer} to do a full warm up.
@@ -33,4 +35,25 @@ public interface ContextCacheWarmer {
      */
     void warmUpCache(Context context);
 
+    /**
+     * Warm ups the cache associate to the context, updating the progress of the site's warm up. By default the
+     * progress is not updated.
+     *
+     * @param context   the context
+     * @param progress  the progress of the warm up
+     */
+    default void warmUpCache(Context context, CacheWarmUpProgress progress) {
+        warmUpCache(context);
+    }
+
+    /**
+     * Warms up again the changed paths in the cache associated to the context, after their entries have been
+     * evicted. By default nothing is done.
+     *
+     * @param context       the context
+     * @param changedPaths  the paths that were added, updated or deleted
+     */
+    default void warmUpCache(Context context, Collection<String> changedPaths) {
+    }
+
 }
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Count-Min sketch with 4-bit counters, used to estimate how frequently keys are requested (as in TinyLFU). All
+ * counters are halved after a number of increments, so that the frequencies represent recent popularity.
+ *
+ * @since 4.2.0
+ */
+public class FrequencySketch {
+
+    public static final int MAX_FREQUENCY = 15;
+
+    private static final int DEPTH = 4;
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private final AtomicLongArray table;
+    private final int widthMask;
+    private final int sampleSize;
+    private final AtomicInteger additions;
+
+    /**
+     * Creates a new sketch.
+     *
+     * @param expectedKeys the number of keys that are expected to be tracked
+     */
+    public FrequencySketch(int expectedKeys) {
+        int width = Integer.highestOneBit(Math.min(Math.max(expectedKeys, 64), 1 << 24) - 1) << 1;
+
+        // Each long holds 16 counters
+        table = new AtomicLongArray(DEPTH * width / 16);
+        widthMask = width - 1;
+        sampleSize = 10 * width;
+        additions = new AtomicInteger();
+    }
+
+    /**
+     * Returns the estimated frequency of the key.
+     *
+     * @param keyHash the hash of the key
+     */
+    public int frequency(long keyHash) {
+        int frequency = MAX_FREQUENCY;
+        for (int i = 0; i < DEPTH; i++) {
+            int index = indexOf(keyHash, i);
+            frequency = Math.min(frequency, (int) ((table.get(index >>> 4) >>> ((index & 15) << 2)) & 0xfL));
+        }
+
+        return frequency;
+    }
+
+    /**
+     * Increments the frequency of the key, and returns the new estimated frequency.
+     *
+     * @param keyHash the hash of the key
+     */
+    public int increment(long keyHash) {
+        boolean added = false;
+        for (int i = 0; i < DEPTH; i++) {
+            added |= incrementAt(indexOf(keyHash, i));
+        }
+
+        if (added && additions.incrementAndGet() >= sampleSize) {
+            reset();
+        }
+
+        return frequency(keyHash);
+    }
+
+    /**
+     * Halves all the counters.
+     */
+    protected void reset() {
+        additions.set(sampleSize / 2);
+        for (int i = 0; i < table.length(); i++) {
+            table.getAndUpdate(i, value -> (value >>> 1) & RESET_MASK);
+        }
+    }
+
+    private boolean incrementAt(int index) {
+        int slot = index >>> 4;
+        int shift = (index & 15) << 2;
+        long mask = 0xfL << shift;
+
+        while (true) {
+            long value = table.get(slot);
+            if ((value & mask) == mask) {
+                return false;
+            }
+            if (table.compareAndSet(slot, value, value + (1L << shift))) {
+                return true;
+            }
+        }
+    }
+
+    private int indexOf(long keyHash, int row) {
+        long hash = (keyHash + SEEDS[row]) * SEEDS[row];
+        hash ^= hash >>> 32;
+
+        return row * (widthMask + 1) + ((int) hash & widthMask);
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import org.apache.commons.configuration2.HierarchicalConfiguration;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Rule of the site configuration that indicates which pages have their rendered output cached, for how long, and
+ * which request inputs the output varies by. Rules are configured like this:
+ *
+ * <pre>
+ * &lt;pageCache&gt;
+ *   &lt;rule&gt;
+ *     &lt;urlPattern&gt;^/site/website/articles/.*&lt;/urlPattern&gt;
+ *     &lt;contentTypePattern&gt;^/page/article$&lt;/contentTypePattern&gt;
+ *     &lt;ttl&gt;300&lt;/ttl&gt;
+ *     &lt;staleWhileRevalidate&gt;60&lt;/staleWhileRevalidate&gt;
+ *     &lt;varyBy&gt;locale,targetId,param:page&lt;/varyBy&gt;
+ *   &lt;/rule&gt;
+ * &lt;/pageCache&gt;
+ * </pre>
+ *
+ * The URL pattern is matched against the store URL of the page and the content type pattern against its content
+ * type (a missing pattern matches any page). The TTL and the stale-while-revalidate time are in seconds.
+ *
+ * @since 4.2.0
+ */
+public class PageCacheRule {
+
+    public static final String CONFIG_KEY_RULES = "pageCache.rule";
+    public static final String CONFIG_KEY_URL_PATTERN = "urlPattern";
+    public static final String CONFIG_KEY_CONTENT_TYPE_PATTERN = "contentTypePattern";
+    public static final String CONFIG_KEY_TTL = "ttl";
+    public static final String CONFIG_KEY_STALE_WHILE_REVALIDATE = "staleWhileRevalidate";
+    public static final String CONFIG_KEY_VARY_BY = "varyBy";
+
+    public static final long DEFAULT_TTL = 300;
+
+    private final Pattern urlPattern;
+    private final Pattern contentTypePattern;
+    private final long ttl;
+    private final long staleWhileRevalidate;
+    private final List<String> varyBy;
+
+    public PageCacheRule(String urlPattern, String contentTypePattern, long ttl, long staleWhileRevalidate,
+                         List<String> varyBy) {
+        this.urlPattern = StringUtils.isNotEmpty(urlPattern)? Pattern.compile(urlPattern) : null;
+        this.contentTypePattern = StringUtils.isNotEmpty(contentTypePattern)?
+                Pattern.compile(contentTypePattern) : null;
+        this.ttl = TimeUnit.SECONDS.toMillis(ttl);
+        this.staleWhileRevalidate = TimeUnit.SECONDS.toMillis(staleWhileRevalidate);
+        this.varyBy = varyBy;
+    }
+
+    /**
+     * Returns the time in milliseconds the output is fresh.
+     */
+    public long getTtl() {
+        return ttl;
+    }
+
+    /**
+     * Returns the time in milliseconds the output can still be served after it expired, while it's being rendered
+     * again by another request.
+     */
+    public long getStaleWhileRevalidate() {
+        return staleWhileRevalidate;
+    }
+
+    /**
+     * Returns the request inputs the output varies by.
+     */
+    public List<String> getVaryBy() {
+        return varyBy;
+    }
+
+    /**
+     * Returns true if the rule applies to the page.
+     *
+     * @param storeUrl      the store URL of the page
+     * @param contentType   the content type of the page
+     */
+    public boolean matches(String storeUrl, String contentType) {
+        return (urlPattern == null || urlPattern.matcher(storeUrl).matches()) &&
+               (contentTypePattern == null ||
+                (contentType != null && contentTypePattern.matcher(contentType).matches()));
+    }
+
+    @Override
+    public String toString() {
+        return "PageCacheRule{" +
+               "urlPattern=" + urlPattern +
+               ", contentTypePattern=" + contentTypePattern +
+               ", ttl=" + ttl +
+               ", staleWhileRevalidate=" + staleWhileRevalidate +
+               ", varyBy=" + varyBy +
+               '}';
+    }
+
+    /**
+     * Parses the page cache rules of the site configuration.
+     *
+     * @param config the site configuration (can be null)
+     * @return the rules, in the order they need to be evaluated
+     */
+    public static List<PageCacheRule> parseRules(HierarchicalConfiguration<?> config) {
+        if (config == null) {
+            return Collections.emptyList();
+        }
+
+        List<PageCacheRule> rules = new ArrayList<>();
+        for (HierarchicalConfiguration<?> ruleConfig : config.configurationsAt(CONFIG_KEY_RULES)) {
+            List<String> varyBy = new ArrayList<>();
+            for (String inputs : ruleConfig.getList(String.class, CONFIG_KEY_VARY_BY, Collections.emptyList())) {
+                for (String input : StringUtils.split(inputs, ',')) {
+                    varyBy.add(input.trim());
+                }
+            }
+
+            rules.add(new PageCacheRule(ruleConfig.getString(CONFIG_KEY_URL_PATTERN),
+                                        ruleConfig.getString(CONFIG_KEY_CONTENT_TYPE_PATTERN),
+                                        ruleConfig.getLong(CONFIG_KEY_TTL, DEFAULT_TTL),
+                                        ruleConfig.getLong(CONFIG_KEY_STALE_WHILE_REVALIDATE, 0),
+                                        varyBy));
+        }
+
+        return rules;
+    }
+
+}
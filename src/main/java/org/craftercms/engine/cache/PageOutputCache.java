@@ -0,0 +1,360 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.craftercms.core.service.CacheService;
+import org.craftercms.engine.model.SiteItem;
+import org.craftercms.engine.properties.SiteProperties;
+import org.craftercms.engine.service.context.SiteContext;
+import org.craftercms.engine.targeting.TargetIdManager;
+import org.craftercms.engine.util.CacheUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches the rendered output of pages, according to the {@link PageCacheRule}s of the site, so that anonymous
+ * requests of cached pages are served without executing the page scripts or templates.
+ *
+ * <p>Expired output can still be served for the stale-while-revalidate time of the rule: the first request after
+ * the output expires renders the page again while the rest get the stale output. The output is not cached, and the
+ * cache is bypassed, for requests of authenticated users, requests with a session (since the output might depend on
+ * the session state) and requests other than GET and HEAD. The output is not cached either if the response is not a
+ * 200, sets cookies, creates a session, has a {@code Cache-Control} header with {@code private}, {@code no-cache}
+ * or {@code no-store}, or if a script sets the {@link #UNCACHEABLE_ATTRIBUTE} request attribute.</p>
+ *
+ * <p>The entries are invalidated with the rest of the site cache: the key references the page URL, and the
+ * components, scripts and templates read while rendering are recorded in the site's {@link CacheDependencyGraph}.
+ * </p>
+ *
+ * @since 4.2.0
+ */
+public class PageOutputCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(PageOutputCache.class);
+
+    public static final String UNCACHEABLE_ATTRIBUTE = "crafter.pageCache.uncacheable";
+    public static final String CACHE_STATUS_HEADER = "X-Crafter-Page-Cache";
+
+    public static final String CACHE_CONST_KEY_ELEM_PAGE_OUTPUT = "pageOutput";
+
+    public static final String VARY_BY_LOCALE = "locale";
+    public static final String VARY_BY_TARGET_ID = "targetId";
+
+    protected String contentTypeXPathQuery;
+    protected TargetIdManager targetIdManager;
+    protected boolean enabled;
+
+    private final LongAdder hits;
+    private final LongAdder staleHits;
+    private final LongAdder misses;
+    private final LongAdder bypasses;
+
+    public PageOutputCache(String contentTypeXPathQuery, TargetIdManager targetIdManager) {
+        this.contentTypeXPathQuery = contentTypeXPathQuery;
+        this.targetIdManager = targetIdManager;
+        this.enabled = true;
+        this.hits = new LongAdder();
+        this.staleHits = new LongAdder();
+        this.misses = new LongAdder();
+        this.bypasses = new LongAdder();
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getStaleHits() {
+        return staleHits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getBypasses() {
+        return bypasses.sum();
+    }
+
+    /**
+     * Writes the cached output of the page to the response, or renders the page (caching the output if possible).
+     *
+     * @param page      the page
+     * @param request   the current request
+     * @param response  the current response
+     * @param renderer  renders the page to the given response
+     */
+    public void render(SiteItem page, HttpServletRequest request, HttpServletResponse response,
+                       PageRenderer renderer) throws Exception {
+        SiteContext siteContext = SiteContext.getCurrent();
+        PageCacheRule rule = enabled && siteContext != null? getRule(siteContext, page) : null;
+
+        if (rule == null) {
+            renderer.render(response);
+            return;
+        }
+        if (!isCacheableRequest(request)) {
+            bypasses.increment();
+            renderer.render(response);
+            return;
+        }
+
+        CacheService cacheService = siteContext.getCacheTemplate().getCacheService();
+        List<Object> key = getKey(rule, page, request);
+        CachedPageResponse cachedResponse = (CachedPageResponse) cacheService.get(siteContext.getContext(), key);
+        long now = System.currentTimeMillis();
+
+        if (cachedResponse != null) {
+            if (cachedResponse.isFresh(now)) {
+                hits.increment();
+                writeResponse(cachedResponse, "HIT", request, response);
+                return;
+            } else if (cachedResponse.isStale(now) && !cachedResponse.startRevalidation()) {
+                // Another request is already rendering the page again
+                staleHits.increment();
+                writeResponse(cachedResponse, "STALE", request, response);
+                return;
+            }
+        }
+
+        misses.increment();
+
+        ContentCachingResponseWrapper responseWrapper = new ContentCachingResponseWrapper(response);
+        responseWrapper.setHeader(CACHE_STATUS_HEADER, "MISS");
+
+        // Headers set before rendering (e.g. by filters) are set again on every request, so they're not cached
+        Map<String, List<String>> previousHeaders = getHeaders(responseWrapper);
+        boolean cached = false;
+
+        try {
+            renderWithDependencyTracking(siteContext, page, renderer, responseWrapper);
+
+            if (isCacheableResponse(request, responseWrapper)) {
+                cached = cacheResponse(siteContext, rule, key, responseWrapper, previousHeaders, now);
+            }
+        } finally {
+            if (!cached && cachedResponse != null) {
+                cachedResponse.cancelRevalidation();
+            }
+
+            responseWrapper.copyBodyToResponse();
+        }
+    }
+
+    protected PageCacheRule getRule(SiteContext siteContext, SiteItem page) {
+        List<PageCacheRule> rules = siteContext.getPageCacheRules();
+        if (CollectionUtils.isNotEmpty(rules)) {
+            String contentType = page.queryValue(contentTypeXPathQuery);
+            for (PageCacheRule rule : rules) {
+                if (rule.matches(page.getStoreUrl(), contentType)) {
+                    return rule;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    protected boolean isCacheableRequest(HttpServletRequest request) {
+        String method = request.getMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            return false;
+        }
+
+        if (request.getSession(false) != null) {
+            return false;
+        }
+
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+
+        return auth == null || auth instanceof AnonymousAuthenticationToken;
+    }
+
+    protected List<Object> getKey(PageCacheRule rule, SiteItem page, HttpServletRequest request) {
+        List<Object> key = new ArrayList<>();
+        key.add(CACHE_CONST_KEY_ELEM_PAGE_OUTPUT);
+        key.add(page.getStoreUrl());
+
+        for (String input : rule.getVaryBy()) {
+            if (VARY_BY_LOCALE.equals(input)) {
+                key.add(input + "=" + LocaleContextHolder.getLocale());
+            } else if (VARY_BY_TARGET_ID.equals(input)) {
+                if (SiteProperties.isTargetingEnabled()) {
+                    key.add(input + "=" + targetIdManager.getCurrentTargetId());
+                }
+            } else {
+                key.add(input + "=" + CacheUtils.getRequestInput(request, input));
+            }
+        }
+
+        return key;
+    }
+
+    protected void renderWithDependencyTracking(SiteContext siteContext, SiteItem page, PageRenderer renderer,
+                                                HttpServletResponse response) throws Exception {
+        try {
+            siteContext.getCacheDependencyGraph().trackDependencies(page.getStoreUrl(), () -> {
+                try {
+                    renderer.render(response);
+                } catch (Exception e) {
+                    throw new PageRenderingException(e);
+                }
+
+                return null;
+            });
+        } catch (PageRenderingException e) {
+            throw (Exception) e.getCause();
+        }
+    }
+
+    protected boolean isCacheableResponse(HttpServletRequest request, ContentCachingResponseWrapper response) {
+        if (response.getStatus() != HttpServletResponse.SC_OK || response.isCommitted() ||
+            Boolean.TRUE.equals(request.getAttribute(UNCACHEABLE_ATTRIBUTE)) ||
+            !response.getHeaders(HttpHeaders.SET_COOKIE).isEmpty()) {
+            return false;
+        }
+
+        for (String cacheControl : response.getHeaders(HttpHeaders.CACHE_CONTROL)) {
+            if (StringUtils.containsAny(cacheControl.toLowerCase(), "private", "no-cache", "no-store")) {
+                return false;
+            }
+        }
+
+        // The request had no session (see isCacheableRequest), so any session now was created by the rendering
+        return request.getSession(false) == null;
+    }
+
+    protected boolean cacheResponse(SiteContext siteContext, PageCacheRule rule, List<Object> key,
+                                    ContentCachingResponseWrapper response, Map<String, List<String>> previousHeaders,
+                                    long now) {
+        byte[] body = response.getContentAsByteArray();
+        SiteCacheBudget budget = siteContext.getCacheBudget();
+        long keyHash = SiteCacheBudget.hashKey(key.toArray());
+
+        if (budget != null && !budget.admit(keyHash)) {
+            return false;
+        }
+
+        Map<String, List<String>> headers = getHeaders(response);
+        headers.entrySet().removeIf(header -> header.getValue().equals(previousHeaders.get(header.getKey())));
+
+        CachedPageResponse cachedResponse = new CachedPageResponse(response.getContentType(), headers, body,
+                                                                   now + rule.getTtl(),
+                                                                   now + rule.getTtl() +
+                                                                   rule.getStaleWhileRevalidate());
+
+        siteContext.getCacheTemplate().getCacheService().put(siteContext.getContext(), key, cachedResponse);
+
+        if (budget != null) {
+            budget.recordLoad(keyHash, true, body);
+        }
+
+        logger.debug("Output of page {} cached with key {}", key.get(1), key);
+
+        return true;
+    }
+
+    protected Map<String, List<String>> getHeaders(HttpServletResponse response) {
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        for (String name : response.getHeaderNames()) {
+            if (!name.equalsIgnoreCase(HttpHeaders.CONTENT_TYPE) &&
+                !name.equalsIgnoreCase(HttpHeaders.CONTENT_LENGTH) &&
+                !name.equalsIgnoreCase(CACHE_STATUS_HEADER)) {
+                headers.put(name, new ArrayList<>(response.getHeaders(name)));
+            }
+        }
+
+        return headers;
+    }
+
+    protected void writeResponse(CachedPageResponse cachedResponse, String cacheStatus, HttpServletRequest request,
+                                 HttpServletResponse response) throws Exception {
+        response.setStatus(HttpServletResponse.SC_OK);
+        if (cachedResponse.getContentType() != null) {
+            response.setContentType(cachedResponse.getContentType());
+        }
+
+        for (Map.Entry<String, List<String>> header : cachedResponse.getHeaders().entrySet()) {
+            List<String> values = header.getValue();
+            for (int i = 0; i < values.size(); i++) {
+                if (i == 0) {
+                    response.setHeader(header.getKey(), values.get(i));
+                } else {
+                    response.addHeader(header.getKey(), values.get(i));
+                }
+            }
+        }
+
+        response.setHeader(CACHE_STATUS_HEADER, cacheStatus);
+        response.setContentLength(cachedResponse.getBody().length);
+
+        if (!"HEAD".equals(request.getMethod())) {
+            response.getOutputStream().write(cachedResponse.getBody());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PageOutputCache{" +
+               "enabled=" + enabled +
+               ", hits=" + getHits() +
+               ", staleHits=" + getStaleHits() +
+               ", misses=" + getMisses() +
+               ", bypasses=" + getBypasses() +
+               '}';
+    }
+
+    /**
+     * Renders a page to a response.
+     */
+    @FunctionalInterface
+    public interface PageRenderer {
+
+        void render(HttpServletResponse response) throws Exception;
+
+    }
+
+    /**
+     * Used to propagate the exceptions of the page rendering through the dependency tracking.
+     */
+    protected static class PageRenderingException extends RuntimeException {
+
+        public PageRenderingException(Exception cause) {
+            super(cause);
+        }
+
+    }
+
+}
@@ -18,8 +18,11 @@ package org.craftercms.engine.cache;
 import org.apache.commons.lang3.StringUtils;
 import org.craftercms.core.service.ContentStoreService;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * Represents a folder in the content store that has been preloaded in the cache.
@@ -31,12 +34,12 @@ public class PreloadedFolder {
 
     private String path;
     private int depth;
-    private Set<String> descendants;
+    private PreloadedPathIndex descendants;
 
     public PreloadedFolder(String path, int depth, Set<String> descendants) {
         this.path = StringUtils.appendIfMissing(path, "/");
         this.depth = depth;
-        this.descendants = descendants;
+        this.descendants = createIndex(this.path, descendants);
     }
 
     /**
@@ -46,6 +49,40 @@ public class PreloadedFolder {
         return path;
     }
 
+    /**
+     * Returns the depth the folder was preloaded with.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Returns the paths of the preloaded descendants. The descendants are kept in a compact index, so a new set is
+     * created on every call.
+     */
+    public Set<String> getDescendants() {
+        Set<String> paths = new TreeSet<>();
+        for (String relativePath : descendants.toList()) {
+            paths.add(path + relativePath);
+        }
+
+        return paths;
+    }
+
+    /**
+     * Returns the number of preloaded descendants.
+     */
+    public int getDescendantCount() {
+        return descendants.size();
+    }
+
+    /**
+     * Returns an estimate of the heap (in bytes) used to keep the preloaded descendants.
+     */
+    public long getHeapSize() {
+        return descendants.getHeapSize();
+    }
+
     /**
      * Returns:
      *
@@ -54,25 +91,39 @@ public class PreloadedFolder {
      *     <li>True if the descendant is in the list of preloaded descendants</li>
      *     <li>False if the descendant is not in the list of preloaded descendants</li>
      * </ul>
+     *
+     * The descendant is expected to start with the path of this folder.
      */
     public Boolean exists(String descendant) {
-        if (depth == ContentStoreService.UNLIMITED_TREE_DEPTH) {
-            return descendants.contains(descendant);
+        if (!descendant.startsWith(path)) {
+            return false;
+        } else if (depth != ContentStoreService.UNLIMITED_TREE_DEPTH && getDepth(descendant) > depth) {
+            return null;
         } else {
-            int childDepth = getDepth(descendant);
-            if (childDepth > depth) {
-                return null;
-            } else {
-                return descendants.contains(descendant);
+            return descendants.contains(descendant, path.length());
+        }
+    }
+
+    private int getDepth(String descendant) {
+        int depth = 1;
+        // A trailing slash doesn't add a level
+        for (int i = path.length(); i < descendant.length() - 1; i++) {
+            if (descendant.charAt(i) == '/') {
+                depth++;
             }
         }
+
+        return depth;
     }
 
-    private int getDepth(String child) {
-        String afterParentPath = StringUtils.substringAfter(child, path);
-        String[] pathComponents = afterParentPath.split("/");
+    private static PreloadedPathIndex createIndex(String path, Set<String> descendants) {
+        // Keep only the paths relative to the folder, the folder path is the same for all of them
+        List<String> relativePaths = new ArrayList<>(descendants.size());
+        for (String descendant : descendants) {
+            relativePaths.add(StringUtils.removeStart(descendant, path));
+        }
 
-        return pathComponents.length;
+        return PreloadedPathIndex.of(relativePaths);
     }
 
     @Override
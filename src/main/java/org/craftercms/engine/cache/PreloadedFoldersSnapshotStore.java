@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import org.apache.commons.lang3.StringUtils;
+import org.craftercms.engine.service.context.SiteContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Keeps a snapshot in disk of the folders preloaded by the {@link ContentStoreAdapterPreloadedFoldersBasedCacheWarmer}
+ * for each site, so that after a restart the warm up can load the preloaded paths directly, instead of walking the
+ * folders again in the content store. Each snapshot is tagged with the version of the site content (the commit of
+ * the site's Git repository), and it's only used if the version is still the same.
+ *
+ * @since 4.2.0
+ */
+public class PreloadedFoldersSnapshotStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(PreloadedFoldersSnapshotStore.class);
+
+    public static final String SNAPSHOT_FILE_EXTENSION = ".snapshot";
+    public static final String GIT_FOLDER_NAME = ".git";
+    public static final String GIT_HEAD_FILE_NAME = "HEAD";
+    public static final String GIT_PACKED_REFS_FILE_NAME = "packed-refs";
+    public static final String GIT_REF_PREFIX = "ref: ";
+
+    private static final int MAGIC_NUMBER = 0x43504653;
+    private static final int FORMAT_VERSION = 1;
+
+    protected Path snapshotFolder;
+
+    public PreloadedFoldersSnapshotStore(String snapshotFolder) {
+        if (StringUtils.isNotEmpty(snapshotFolder)) {
+            this.snapshotFolder = Paths.get(snapshotFolder);
+        }
+    }
+
+    /**
+     * Returns true if a snapshot folder was configured.
+     */
+    public boolean isEnabled() {
+        return snapshotFolder != null;
+    }
+
+    /**
+     * Returns the preloaded folders of the last snapshot of the site, or null if there's no snapshot or if the
+     * site content has changed since the snapshot was taken (or no snapshot folder was configured).
+     *
+     * @param siteContext the site context
+     */
+    public List<PreloadedFolder> load(SiteContext siteContext) {
+        if (!isEnabled()) {
+            return null;
+        }
+
+        String siteName = siteContext.getSiteName();
+        String version = getContentVersion(siteContext);
+        Path file = getSnapshotFile(siteName);
+
+        if (version == null || !Files.exists(file)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC_NUMBER || buffer.getInt() != FORMAT_VERSION) {
+                logger.info("Ignoring cache warm up snapshot of site '{}' with unknown format", siteName);
+                return null;
+            }
+
+            String snapshotVersion = readString(buffer);
+            if (!version.equals(snapshotVersion)) {
+                logger.info("Ignoring cache warm up snapshot of site '{}': content version {} is different from " +
+                            "snapshot version {}", siteName, version, snapshotVersion);
+                return null;
+            }
+
+            int folderCount = buffer.getInt();
+            List<PreloadedFolder> folders = new ArrayList<>(folderCount);
+
+            for (int i = 0; i < folderCount; i++) {
+                String path = readString(buffer);
+                int depth = buffer.getInt();
+                int descendantCount = buffer.getInt();
+                Set<String> descendants = new HashSet<>(descendantCount);
+
+                for (int j = 0; j < descendantCount; j++) {
+                    descendants.add(readString(buffer));
+                }
+
+                folders.add(new PreloadedFolder(path, depth, descendants));
+            }
+
+            logger.info("Loaded cache warm up snapshot of site '{}' for content version {}", siteName, version);
+
+            return folders;
+        } catch (Exception e) {
+            logger.error("Error while reading cache warm up snapshot of site '{}'", siteName, e);
+
+            return null;
+        }
+    }
+
+    /**
+     * Saves a snapshot of the preloaded folders of the site, tagged with the current version of the site content.
+     * If the version can't be resolved (or no snapshot folder was configured) nothing is saved.
+     *
+     * @param siteContext       the site context
+     * @param preloadedFolders  the preloaded folders
+     */
+    public void save(SiteContext siteContext, List<PreloadedFolder> preloadedFolders) {
+        if (!isEnabled()) {
+            return;
+        }
+
+        String siteName = siteContext.getSiteName();
+        String version = getContentVersion(siteContext);
+
+        if (version == null) {
+            logger.debug("Content version of site '{}' couldn't be resolved, cache warm up snapshot won't be saved",
+                         siteName);
+            return;
+        }
+
+        Path file = getSnapshotFile(siteName);
+        try {
+            Files.createDirectories(snapshotFolder);
+
+            // Write to a temp file first so that a snapshot is never read half written
+            Path tmpFile = Files.createTempFile(snapshotFolder, siteName, SNAPSHOT_FILE_EXTENSION);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+                out.writeInt(MAGIC_NUMBER);
+                out.writeInt(FORMAT_VERSION);
+                writeString(out, version);
+                out.writeInt(preloadedFolders.size());
+
+                for (PreloadedFolder folder : preloadedFolders) {
+                    Set<String> descendants = folder.getDescendants();
+
+                    writeString(out, folder.getPath());
+                    out.writeInt(folder.getDepth());
+                    out.writeInt(descendants.size());
+
+                    for (String descendant : descendants) {
+                        writeString(out, descendant);
+                    }
+                }
+            }
+
+            Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            logger.debug("Saved cache warm up snapshot of site '{}' for content version {}", siteName, version);
+        } catch (Exception e) {
+            logger.error("Error while saving cache warm up snapshot of site '{}'", siteName, e);
+        }
+    }
+
+    /**
+     * Returns the current version of the site content: the commit the site's Git repository is at, or null if the
+     * root folder of the site is not a local Git repository.
+     *
+     * @param siteContext the site context
+     */
+    protected String getContentVersion(SiteContext siteContext) {
+        String rootFolderPath = siteContext.getRootFolderPath();
+        if (StringUtils.isEmpty(rootFolderPath)) {
+            return null;
+        }
+
+        try {
+            Path rootFolder = rootFolderPath.contains(":")? Paths.get(new URI(rootFolderPath)) :
+                                                            Paths.get(rootFolderPath);
+            Path gitFolder = rootFolder.resolve(GIT_FOLDER_NAME);
+            if (!Files.isDirectory(gitFolder)) {
+                return null;
+            }
+
+            String head = readFile(gitFolder.resolve(GIT_HEAD_FILE_NAME));
+            if (!head.startsWith(GIT_REF_PREFIX)) {
+                // Detached HEAD
+                return head;
+            }
+
+            String ref = head.substring(GIT_REF_PREFIX.length());
+            Path refFile = gitFolder.resolve(ref);
+            if (Files.exists(refFile)) {
+                return readFile(refFile);
+            }
+
+            Path packedRefsFile = gitFolder.resolve(GIT_PACKED_REFS_FILE_NAME);
+            if (Files.exists(packedRefsFile)) {
+                for (String line : Files.readAllLines(packedRefsFile, StandardCharsets.UTF_8)) {
+                    if (line.endsWith(" " + ref)) {
+                        return StringUtils.substringBefore(line, " ");
+                    }
+                }
+            }
+        } catch (Exception e) {
+            logger.debug("Unable to resolve content version of site '{}'", siteContext.getSiteName(), e);
+        }
+
+        return null;
+    }
+
+    protected Path getSnapshotFile(String siteName) {
+        return snapshotFolder.resolve(siteName + SNAPSHOT_FILE_EXTENSION);
+    }
+
+    private String readFile(Path file) throws IOException {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim();
+    }
+
+    private void writeString(DataOutputStream out, String str) throws IOException {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Immutable, memory compact set of paths, used to keep the preloaded descendants of a {@link PreloadedFolder}.
+ * The paths are sorted and front-coded in blocks: the first path of each block is kept entirely and the rest only
+ * keep the suffix that's different from the previous path. Lookups do a binary search over the first paths of the
+ * blocks and then scan a single block, without creating any objects.
+ *
+ * @since 4.2.0
+ */
+public class PreloadedPathIndex {
+
+    public static final int DEFAULT_BLOCK_SIZE = 16;
+
+    private static final PreloadedPathIndex EMPTY = new PreloadedPathIndex(new ArrayList<>(), DEFAULT_BLOCK_SIZE);
+
+    private final int size;
+    private final int blockSize;
+    /**
+     * The chars of all the path suffixes, one after the other
+     */
+    private final char[] chars;
+    /**
+     * The start of each path suffix in {@link #chars} (plus the end of the last one)
+     */
+    private final int[] offsets;
+    /**
+     * The length of the prefix each path shares with the previous one (always 0 for the first path of a block)
+     */
+    private final int[] sharedLengths;
+
+    private PreloadedPathIndex(List<String> sortedPaths, int blockSize) {
+        this.size = sortedPaths.size();
+        this.blockSize = blockSize;
+        this.offsets = new int[size + 1];
+        this.sharedLengths = new int[size];
+
+        int totalLength = 0;
+        for (int i = 0; i < size; i++) {
+            String path = sortedPaths.get(i);
+            if (i % blockSize != 0) {
+                sharedLengths[i] = getSharedLength(sortedPaths.get(i - 1), path);
+            }
+
+            totalLength += path.length() - sharedLengths[i];
+        }
+
+        this.chars = new char[totalLength];
+
+        int offset = 0;
+        for (int i = 0; i < size; i++) {
+            String path = sortedPaths.get(i);
+            offsets[i] = offset;
+            path.getChars(sharedLengths[i], path.length(), chars, offset);
+            offset += path.length() - sharedLengths[i];
+        }
+
+        offsets[size] = offset;
+    }
+
+    /**
+     * Creates a new index with the specified paths.
+     *
+     * @param paths the paths to index (duplicates are ignored)
+     */
+    public static PreloadedPathIndex of(Collection<String> paths) {
+        if (paths.isEmpty()) {
+            return EMPTY;
+        }
+
+        String[] sortedPaths = paths.toArray(new String[0]);
+        Arrays.sort(sortedPaths);
+
+        List<String> uniquePaths = new ArrayList<>(sortedPaths.length);
+        for (String path : sortedPaths) {
+            if (uniquePaths.isEmpty() || !uniquePaths.get(uniquePaths.size() - 1).equals(path)) {
+                uniquePaths.add(path);
+            }
+        }
+
+        return new PreloadedPathIndex(uniquePaths, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Returns the number of paths in the index.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true if the index contains the path.
+     *
+     * @param path the path
+     */
+    public boolean contains(String path) {
+        return contains(path, 0);
+    }
+
+    /**
+     * Returns true if the index contains the substring of the path that starts at the specified index. Used to
+     * avoid creating the substring when the paths in the index are relative to a folder.
+     *
+     * @param path          the path
+     * @param beginIndex    the index where the path to look for starts
+     */
+    public boolean contains(String path, int beginIndex) {
+        if (size == 0) {
+            return false;
+        }
+
+        // Binary search for the last block that starts with a path less or equal than the path
+        int low = 0;
+        int high = (size - 1) / blockSize;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            int cmp = compareSuffix(mid * blockSize, 0, path, beginIndex);
+            if (cmp == 0) {
+                return true;
+            } else if (cmp < 0) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        int first = low * blockSize;
+        int last = Math.min(first + blockSize, size);
+
+        // Number of chars of the path that match the current entry of the block
+        int matched = getMatchedLength(first, 0, path, beginIndex);
+        int pathLength = path.length() - beginIndex;
+        if (matched == pathLength && matched == getLength(first)) {
+            return true;
+        }
+        if (compareAt(first, 0, matched, path, beginIndex) > 0) {
+            return false;
+        }
+
+        for (int i = first + 1; i < last; i++) {
+            int shared = sharedLengths[i];
+            if (shared > matched) {
+                // The entry keeps the char that made the previous entry less than the path
+                continue;
+            } else if (shared < matched) {
+                // The entry changes a char the previous entry had in common with the path, so it's greater
+                return false;
+            }
+
+            matched = getMatchedLength(i, shared, path, beginIndex);
+            int length = shared + offsets[i + 1] - offsets[i];
+            if (matched == pathLength && matched == length) {
+                return true;
+            }
+            if (compareAt(i, shared, matched, path, beginIndex) > 0) {
+                return false;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns all the paths in the index, in order (this creates a new string per path).
+     */
+    public List<String> toList() {
+        List<String> paths = new ArrayList<>(size);
+        StringBuilder path = new StringBuilder();
+
+        for (int i = 0; i < size; i++) {
+            path.setLength(sharedLengths[i]);
+            path.append(chars, offsets[i], offsets[i + 1] - offsets[i]);
+            paths.add(path.toString());
+        }
+
+        return paths;
+    }
+
+    /**
+     * Returns an estimate of the heap used by the index, in bytes.
+     */
+    public long getHeapSize() {
+        // Object header and fields, plus the array headers and contents
+        return 32 + 3 * 16 + 2L * chars.length + 4L * offsets.length + 4L * sharedLengths.length;
+    }
+
+    /**
+     * Compares the first path of a block (or any path with no shared prefix) with the path.
+     */
+    private int compareSuffix(int entry, int shared, String path, int beginIndex) {
+        int matched = getMatchedLength(entry, shared, path, beginIndex);
+        int pathLength = path.length() - beginIndex;
+        if (matched == pathLength && matched == getLength(entry)) {
+            return 0;
+        } else {
+            return compareAt(entry, shared, matched, path, beginIndex);
+        }
+    }
+
+    /**
+     * Returns the number of chars the entry has in common with the path, starting the comparison at the shared
+     * length (the chars before are assumed to be equal).
+     */
+    private int getMatchedLength(int entry, int shared, String path, int beginIndex) {
+        int start = offsets[entry];
+        int end = offsets[entry + 1];
+        int pathLength = path.length() - beginIndex;
+        int matched = shared;
+
+        for (int i = start; i < end && matched < pathLength; i++, matched++) {
+            if (chars[i] != path.charAt(beginIndex + matched)) {
+                break;
+            }
+        }
+
+        return matched;
+    }
+
+    /**
+     * Compares the entry with the path at the first char that's different (or by length if one is a prefix of the
+     * other).
+     */
+    private int compareAt(int entry, int shared, int matched, String path, int beginIndex) {
+        int entryLength = shared + offsets[entry + 1] - offsets[entry];
+        int pathLength = path.length() - beginIndex;
+
+        if (matched < entryLength && matched < pathLength) {
+            return chars[offsets[entry] + matched - shared] - path.charAt(beginIndex + matched);
+        } else {
+            return entryLength - pathLength;
+        }
+    }
+
+    /**
+     * Returns the length of an entry that doesn't share a prefix with the previous one.
+     */
+    private int getLength(int entry) {
+        return offsets[entry + 1] - offsets[entry];
+    }
+
+    private static int getSharedLength(String s1, String s2) {
+        int max = Math.min(s1.length(), s2.length());
+        int i = 0;
+        while (i < max && s1.charAt(i) == s2.charAt(i)) {
+            i++;
+        }
+
+        return i;
+    }
+
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import org.craftercms.commons.lang.Callback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Makes sure that only one thread at a time executes the load of a key: threads that need the same key while it's
+ * being loaded wait for the result (or the error) of the thread that's loading it instead of loading it again.
+ * If the load takes longer than the max wait time the waiting threads load the key themselves, so that a stuck
+ * load (or two loads that depend on each other) can't block them forever.
+ *
+ * @since 4.2.0
+ */
+public class SingleFlightLoader {
+
+    private static final Logger logger = LoggerFactory.getLogger(SingleFlightLoader.class);
+
+    public static final long DEFAULT_MAX_WAIT = 30000;
+
+    private final ConcurrentMap<Object, Flight<?>> flights;
+    private final long maxWait;
+
+    private final LongAdder loads;
+    private final LongAdder coalescedWaits;
+    private final LongAdder coalescedWaitTime;
+    private final LongAdder timedOutWaits;
+
+    public SingleFlightLoader() {
+        this(DEFAULT_MAX_WAIT);
+    }
+
+    /**
+     * Creates a new loader.
+     *
+     * @param maxWait the max time in milliseconds a thread waits for the load of another thread
+     */
+    public SingleFlightLoader(long maxWait) {
+        this.flights = new ConcurrentHashMap<>();
+        this.maxWait = maxWait;
+        this.loads = new LongAdder();
+        this.coalescedWaits = new LongAdder();
+        this.coalescedWaitTime = new LongAdder();
+        this.timedOutWaits = new LongAdder();
+    }
+
+    public long getMaxWait() {
+        return maxWait;
+    }
+
+    /**
+     * Returns the number of loads that were actually executed.
+     */
+    public long getLoads() {
+        return loads.sum();
+    }
+
+    /**
+     * Returns the number of times a thread waited for the load of another thread instead of executing it.
+     */
+    public long getCoalescedWaits() {
+        return coalescedWaits.sum();
+    }
+
+    /**
+     * Returns the total time in milliseconds threads have waited for the loads of other threads.
+     */
+    public long getCoalescedWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(coalescedWaitTime.sum());
+    }
+
+    /**
+     * Returns the number of times a thread stopped waiting for the load of another thread and executed it itself.
+     */
+    public long getTimedOutWaits() {
+        return timedOutWaits.sum();
+    }
+
+    /**
+     * Returns the number of loads currently in progress.
+     */
+    public int getInFlightLoads() {
+        return flights.size();
+    }
+
+    /**
+     * Executes the loader, or waits for the result of the loader being executed by another thread for the same key.
+     *
+     * @param key       the key of the load (should implement {@code equals} and {@code hashCode})
+     * @param loader    the loader
+     * @return the loaded value
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T load(Object key, Callback<T> loader) {
+        Flight<T> flight = new Flight<>();
+        Flight<?> currentFlight = flights.putIfAbsent(key, flight);
+
+        if (currentFlight == null) {
+            loads.increment();
+            try {
+                T result = loader.execute();
+                flight.result.complete(result);
+
+                return result;
+            } catch (RuntimeException | Error e) {
+                flight.result.completeExceptionally(e);
+                throw e;
+            } finally {
+                flights.remove(key, flight);
+            }
+        } else if (currentFlight.owner == Thread.currentThread()) {
+            // Recursive load of the same key, waiting would block the thread forever
+            return loader.execute();
+        } else {
+            return await((Flight<T>) currentFlight, key, loader);
+        }
+    }
+
+    protected <T> T await(Flight<T> flight, Object key, Callback<T> loader) {
+        long start = System.nanoTime();
+        coalescedWaits.increment();
+
+        try {
+            return flight.result.get(maxWait, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new IllegalStateException(cause);
+            }
+        } catch (TimeoutException e) {
+            timedOutWaits.increment();
+
+            logger.debug("Load of {} didn't finish after {} ms, loading it in the current thread", key, maxWait);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            coalescedWaitTime.add(System.nanoTime() - start);
+        }
+
+        return loader.execute();
+    }
+
+    @Override
+    public String toString() {
+        return "SingleFlightLoader{" +
+               "maxWait=" + maxWait +
+               ", loads=" + getLoads() +
+               ", coalescedWaits=" + getCoalescedWaits() +
+               ", coalescedWaitTime=" + getCoalescedWaitTime() +
+               ", timedOutWaits=" + getTimedOutWaits() +
+               ", inFlightLoads=" + getInFlightLoads() +
+               '}';
+    }
+
+    protected static class Flight<T> {
+
+        private final Thread owner;
+        private final CompletableFuture<T> result;
+
+        public Flight() {
+            this.owner = Thread.currentThread();
+            this.result = new CompletableFuture<>();
+        }
+
+    }
+
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.craftercms.commons.lang.Callback;
+import org.craftercms.core.service.CacheService;
+import org.craftercms.core.service.CachingOptions;
+import org.craftercms.core.service.Context;
+import org.craftercms.core.util.cache.CacheTemplate;
+import org.craftercms.engine.service.context.SiteContext;
+
+import java.util.Arrays;
+
+/**
+ * {@link CacheTemplate} decorator that applies the {@link SiteCacheBudget} of the current site to the entries of
+ * the site's context: it records the hits and misses, decides if loaded entries should be cached and starts an
+ * eviction when the site goes over budget. Admission only applies to loaded entries: entries already in the cache
+ * are always served from it. Entries of other contexts, or requested when there's no current site,
+ * are handled directly by the actual template. If a {@link SingleFlightLoader} is set, concurrent misses of the same
+ * entry are coalesced into a single load.
+ *
+ * @since 4.2.0
+ */
+public class SiteAwareCacheTemplate implements CacheTemplate {
+
+    protected CacheTemplate actualCacheTemplate;
+    protected SingleFlightLoader singleFlightLoader;
+
+    public SiteAwareCacheTemplate(CacheTemplate actualCacheTemplate) {
+        this.actualCacheTemplate = actualCacheTemplate;
+    }
+
+    public SingleFlightLoader getSingleFlightLoader() {
+        return singleFlightLoader;
+    }
+
+    public void setSingleFlightLoader(SingleFlightLoader singleFlightLoader) {
+        this.singleFlightLoader = singleFlightLoader;
+    }
+
+    @Override
+    public CacheService getCacheService() {
+        return actualCacheTemplate.getCacheService();
+    }
+
+    @Override
+    public <T> T getObject(Context context, Callback<T> callback, Object... keyElements) {
+        return getObject(context, null, callback, keyElements);
+    }
+
+    @Override
+    public <T> T getObject(Context context, CachingOptions cachingOptions, Callback<T> callback,
+                           Object... keyElements) {
+        SiteContext siteContext = getSiteContext(context);
+        if (siteContext == null) {
+            return doGetObject(context, cachingOptions, coalesce(context, callback, keyElements), keyElements);
+        }
+
+        SiteCacheBudget budget = siteContext.getCacheBudget();
+        long keyHash = SiteCacheBudget.hashKey(keyElements);
+        AdmissionCallback<T> admissionCallback = new AdmissionCallback<>(callback, budget, keyHash);
+
+        T result;
+        try {
+            result = doGetObject(context, cachingOptions, coalesce(context, admissionCallback, keyElements),
+                                 keyElements);
+        } catch (RuntimeException e) {
+            // The loaded value was rejected, so it's returned without being put in the cache
+            result = getRejectedValue(e);
+        }
+
+        if (admissionCallback.loaded) {
+            budget.recordLoad(keyHash, admissionCallback.admitted, result);
+
+            if (budget.startEviction()) {
+                siteContext.startCacheEviction();
+            }
+        } else {
+            budget.recordHit(keyHash);
+        }
+
+        return result;
+    }
+
+    protected <T> T doGetObject(Context context, CachingOptions cachingOptions, Callback<T> callback,
+                                Object... keyElements) {
+        if (cachingOptions != null) {
+            return actualCacheTemplate.getObject(context, cachingOptions, callback, keyElements);
+        } else {
+            return actualCacheTemplate.getObject(context, callback, keyElements);
+        }
+    }
+
+    /**
+     * Returns a callback that executes the load of the entry through the {@link SingleFlightLoader}, if there's
+     * one. The callback is wrapped before the load tracking so that only the thread that actually loads the entry
+     * records the load.
+     */
+    protected <T> Callback<T> coalesce(Context context, Callback<T> callback, Object... keyElements) {
+        if (singleFlightLoader != null) {
+            return () -> singleFlightLoader.load(Arrays.asList(ArrayUtils.insert(0, keyElements, context.getId())),
+                                                 callback);
+        } else {
+            return callback;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    protected <T> T getRejectedValue(RuntimeException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof NotAdmittedException) {
+                return (T) ((NotAdmittedException) cause).value;
+            }
+        }
+
+        throw e;
+    }
+
+    /**
+     * Returns the current site context if the context belongs to it and the site has a cache budget.
+     */
+    protected SiteContext getSiteContext(Context context) {
+        SiteContext siteContext = SiteContext.getCurrent();
+        if (siteContext != null && siteContext.getCacheBudget() != null && siteContext.getContext() != null &&
+            siteContext.getContext().getId().equals(context.getId())) {
+            return siteContext;
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Callback that records if the actual callback was executed, which means the entry wasn't in the cache, and that
+     * asks the budget if the loaded value can be cached. Rejected values are returned through a
+     * {@link NotAdmittedException}, so that the actual template doesn't put them in the cache.
+     */
+    protected static class AdmissionCallback<T> implements Callback<T> {
+
+        private final Callback<T> actualCallback;
+        private final SiteCacheBudget budget;
+        private final long keyHash;
+        private volatile boolean loaded;
+        private volatile boolean admitted;
+
+        public AdmissionCallback(Callback<T> actualCallback, SiteCacheBudget budget, long keyHash) {
+            this.actualCallback = actualCallback;
+            this.budget = budget;
+            this.keyHash = keyHash;
+        }
+
+        @Override
+        public T execute() {
+            loaded = true;
+
+            T value = actualCallback.execute();
+
+            admitted = budget.admit(keyHash);
+            if (!admitted) {
+                throw new NotAdmittedException(value);
+            }
+
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return actualCallback.toString();
+        }
+
+    }
+
+    /**
+     * Carries a loaded value that shouldn't be cached out of the actual template.
+     */
+    protected static class NotAdmittedException extends RuntimeException {
+
+        private final transient Object value;
+
+        public NotAdmittedException(Object value) {
+            super("Entry not admitted in the cache", null, false, false);
+            this.value = value;
+        }
+
+    }
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import org.craftercms.core.util.cache.CacheTemplate;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+/**
+ * Bean post processor that decorates the {@link CacheTemplate} defined by Crafter Core with a
+ * {@link SiteAwareCacheTemplate}, so that every component that uses it (including the content store adapters and
+ * services of Core) applies the cache budgets of the sites and coalesces concurrent loads of the same entry.
+ *
+ * @since 4.2.0
+ */
+public class SiteAwareCacheTemplatePostProcessor implements BeanPostProcessor {
+
+    protected String cacheTemplateBeanName;
+    protected boolean singleFlightEnabled;
+    protected long singleFlightMaxWait;
+
+    public SiteAwareCacheTemplatePostProcessor(String cacheTemplateBeanName) {
+        this.cacheTemplateBeanName = cacheTemplateBeanName;
+        this.singleFlightEnabled = true;
+        this.singleFlightMaxWait = SingleFlightLoader.DEFAULT_MAX_WAIT;
+    }
+
+    public void setSingleFlightEnabled(boolean singleFlightEnabled) {
+        this.singleFlightEnabled = singleFlightEnabled;
+    }
+
+    public void setSingleFlightMaxWait(long singleFlightMaxWait) {
+        this.singleFlightMaxWait = singleFlightMaxWait;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        if (beanName.equals(cacheTemplateBeanName) && bean instanceof CacheTemplate &&
+            !(bean instanceof SiteAwareCacheTemplate)) {
+            SiteAwareCacheTemplate cacheTemplate = new SiteAwareCacheTemplate((CacheTemplate) bean);
+            if (singleFlightEnabled) {
+                cacheTemplate.setSingleFlightLoader(new SingleFlightLoader(singleFlightMaxWait));
+            }
+
+            return cacheTemplate;
+        } else {
+            return bean;
+        }
+    }
+
+}
@@ -0,0 +1,494 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import org.craftercms.core.service.CacheService;
+import org.craftercms.core.service.Content;
+import org.craftercms.core.service.Context;
+import org.craftercms.core.service.Item;
+import org.dom4j.Attribute;
+import org.dom4j.Branch;
+import org.dom4j.CharacterData;
+import org.dom4j.Element;
+import org.dom4j.Node;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Memory budget and statistics of the cache of a single site. All the sites share the same {@link CacheService},
+ * so the budget keeps a big site from evicting the hot entries of the rest:
+ *
+ * <ul>
+ *     <li>The weight of the loaded entries is estimated (DOM size of descriptors, length of content, etc).</li>
+ *     <li>While the site is under budget every entry is admitted. When the budget is reached, only entries that
+ *     are requested frequently (according to a {@link FrequencySketch}) are admitted, so one-off requests (like
+ *     crawler hits) don't replace the hot entries. Entries that aren't admitted are loaded but not cached.</li>
+ *     <li>If the site goes over budget, the least frequently requested entries are evicted until the site is
+ *     under budget again.</li>
+ * </ul>
+ *
+ * A max weight of 0 or less means the site has no budget, and only the statistics are kept.
+ *
+ * @since 4.2.0
+ */
+public class SiteCacheBudget {
+
+    private static final Logger logger = LoggerFactory.getLogger(SiteCacheBudget.class);
+
+    public static final int DEFAULT_ADMISSION_FREQUENCY = 2;
+    public static final long DEFAULT_ENTRY_WEIGHT = 64;
+    /**
+     * The fraction of the max weight the site is taken to when entries are evicted
+     */
+    public static final double EVICTION_TARGET = 0.9;
+    /**
+     * The min time between evictions, since they require listing all the keys of the site
+     */
+    public static final long MIN_EVICTION_INTERVAL = 10000;
+
+    private static final long AVERAGE_ENTRY_WEIGHT = 4096;
+    private static final int MAX_SIZED_ELEMENTS = 1000;
+
+    private final long maxWeight;
+    private final int admissionFrequency;
+    private final FrequencySketch sketch;
+    private final int admittedKeysLength;
+    /**
+     * Bloom filter of the keys that have been admitted, so that they're still looked up in the cache even if
+     * they're not frequent anymore. It ages with the sketch: when the sketch halves its counters the filter becomes
+     * the previous generation and a new one is started, so keys that are not admitted again during the next
+     * period are forgotten and the filter never saturates.
+     */
+    private volatile AtomicLongArray admittedKeys;
+    private volatile AtomicLongArray previousAdmittedKeys;
+    private final AtomicLong weight;
+    private final AtomicLong entries;
+    private final AtomicBoolean evicting;
+    private volatile long lastEvictionTime;
+
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder admissions;
+    private final LongAdder rejections;
+    private final LongAdder evictions;
+
+    public SiteCacheBudget(long maxWeight, int admissionFrequency) {
+        this.maxWeight = maxWeight;
+        this.admissionFrequency = admissionFrequency;
+
+        if (maxWeight > 0) {
+            int expectedEntries = (int) Math.min(maxWeight / AVERAGE_ENTRY_WEIGHT, 1 << 24);
+            sketch = new FrequencySketch(expectedEntries) {
+
+                @Override
+                protected void reset() {
+                    super.reset();
+                    ageAdmittedKeys();
+                }
+
+            };
+            admittedKeysLength = Math.max(Integer.highestOneBit(Math.max(expectedEntries, 64)) / 4, 16);
+            admittedKeys = new AtomicLongArray(admittedKeysLength);
+            previousAdmittedKeys = new AtomicLongArray(admittedKeysLength);
+        } else {
+            sketch = null;
+            admittedKeysLength = 0;
+        }
+
+        weight = new AtomicLong();
+        entries = new AtomicLong();
+        evicting = new AtomicBoolean();
+        hits = new LongAdder();
+        misses = new LongAdder();
+        admissions = new LongAdder();
+        rejections = new LongAdder();
+        evictions = new LongAdder();
+    }
+
+    /**
+     * Returns the max weight (in bytes) of the entries of the site, or 0 or less if there's no limit.
+     */
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * Returns the estimated weight (in bytes) of the entries of the site.
+     */
+    public long getWeight() {
+        return weight.get();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public double getHitRatio() {
+        long hits = getHits();
+        long requests = hits + getMisses();
+
+        return requests > 0? (double) hits / requests : 0;
+    }
+
+    public long getAdmissions() {
+        return admissions.sum();
+    }
+
+    public long getRejections() {
+        return rejections.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the sketch with the key frequencies of the site, or null if the site has no max weight.
+     */
+    FrequencySketch getSketch() {
+        return sketch;
+    }
+
+    /**
+     * Returns true if the site has a max weight.
+     */
+    public boolean isLimited() {
+        return maxWeight > 0;
+    }
+
+    /**
+     * Returns true if the site has gone over its max weight.
+     */
+    public boolean isOverBudget() {
+        return isLimited() && weight.get() > maxWeight;
+    }
+
+    /**
+     * Records a request of a key that wasn't in the cache and returns true if the loaded entry should be cached.
+     *
+     * @param keyHash the hash of the key
+     */
+    public boolean admit(long keyHash) {
+        if (!isLimited()) {
+            return true;
+        }
+
+        int frequency = sketch.increment(keyHash);
+        if (weight.get() < maxWeight || frequency >= admissionFrequency || isAdmitted(keyHash)) {
+            return true;
+        }
+
+        rejections.increment();
+
+        return false;
+    }
+
+    /**
+     * Records a request that was resolved from the cache. The access counts for the frequency of the key, like the
+     * ones checked with {@link #admit(long)}.
+     *
+     * @param keyHash the hash of the key
+     */
+    public void recordHit(long keyHash) {
+        hits.increment();
+
+        if (isLimited()) {
+            sketch.increment(keyHash);
+        }
+    }
+
+    /**
+     * Records a request that required the entry to be loaded.
+     *
+     * @param keyHash   the hash of the key
+     * @param admitted  if the entry was cached after being loaded
+     * @param value     the loaded value
+     */
+    public void recordLoad(long keyHash, boolean admitted, Object value) {
+        misses.increment();
+
+        if (admitted) {
+            admissions.increment();
+            weight.addAndGet(estimateWeight(value));
+            entries.incrementAndGet();
+
+            if (isLimited()) {
+                markAdmitted(keyHash);
+            }
+        }
+    }
+
+    /**
+     * Resets the weight of the site, called when the cache of the site is cleared. The statistics and the key
+     * frequencies are kept.
+     */
+    public void reset() {
+        weight.set(0);
+        entries.set(0);
+
+        if (isLimited()) {
+            synchronized (this) {
+                admittedKeys = new AtomicLongArray(admittedKeysLength);
+                previousAdmittedKeys = new AtomicLongArray(admittedKeysLength);
+            }
+        }
+    }
+
+    /**
+     * Returns true (and marks the eviction as started) if entries need to be evicted and there's no other eviction
+     * in progress or that finished recently.
+     */
+    public boolean startEviction() {
+        return isOverBudget() &&
+               System.currentTimeMillis() - lastEvictionTime >= MIN_EVICTION_INTERVAL &&
+               evicting.compareAndSet(false, true);
+    }
+
+    /**
+     * Evicts entries of the site until it's under budget again. The actual number of entries is taken from the
+     * cache to account for the entries evicted by the cache itself, and the weight is adjusted to it using the
+     * average weight of the loaded entries. The cache doesn't expose the access order of the entries, so the
+     * entries with the lowest estimated frequency in the sketch are evicted first (ties are broken by the order
+     * they're listed).
+     *
+     * @param cacheService  the cache service
+     * @param context       the context of the site
+     */
+    public void evict(CacheService cacheService, Context context) {
+        try {
+            List<Object> keys = new ArrayList<>(cacheService.getKeys(context));
+            long loadedEntries = Math.max(entries.get(), 1);
+            long averageWeight = Math.max(weight.get() / loadedEntries, 1);
+            long currentWeight = averageWeight * keys.size();
+
+            weight.set(currentWeight);
+            entries.set(keys.size());
+
+            long targetWeight = (long) (maxWeight * EVICTION_TARGET);
+            long evicted = 0;
+
+            // Frequencies are at most 15, so each candidate is sorted as (frequency << 32 | index)
+            long[] candidates = new long[keys.size()];
+            int candidateCount = 0;
+            for (int i = 0; i < keys.size(); i++) {
+                Object key = keys.get(i);
+                if (key != null && !PreloadedFoldersAwareContext.PRELOADED_FOLDERS_CACHE_KEY.equals(key)) {
+                    candidates[candidateCount++] = ((long) sketch.frequency(hashCacheKey(key)) << 32) | i;
+                }
+            }
+
+            Arrays.sort(candidates, 0, candidateCount);
+
+            for (int i = 0; i < candidateCount && currentWeight > targetWeight; i++) {
+                Object key = keys.get((int) candidates[i]);
+                if (cacheService.remove(context, key)) {
+                    currentWeight -= averageWeight;
+                    evicted++;
+                }
+            }
+
+            weight.addAndGet(-evicted * averageWeight);
+            entries.addAndGet(-evicted);
+            evictions.add(evicted);
+
+            logger.debug("Evicted {} entries of context {} to keep it under its max weight of {} bytes", evicted,
+                         context, maxWeight);
+        } finally {
+            lastEvictionTime = System.currentTimeMillis();
+            evicting.set(false);
+        }
+    }
+
+    /**
+     * Returns a hash of the elements of a cache key. The hash is the same one {@link #hashCacheKey(Object)} returns
+     * for the key the cache lists for the elements (like {@code [element1, element2]}), so that listed keys can be
+     * matched with their frequencies.
+     *
+     * @param keyElements the key elements
+     */
+    public static long hashKey(Object... keyElements) {
+        // Same as Arrays.deepToString(keyElements).hashCode(), without building the string
+        int hash = '[';
+        for (int i = 0; i < keyElements.length; i++) {
+            if (i > 0) {
+                hash = 31 * (31 * hash + ',') + ' ';
+            }
+
+            Object element = keyElements[i];
+            String str = element instanceof Object[]? Arrays.deepToString((Object[]) element) : String.valueOf(element);
+            for (int j = 0; j < str.length(); j++) {
+                hash = 31 * hash + str.charAt(j);
+            }
+        }
+
+        return spread(31 * hash + ']');
+    }
+
+    /**
+     * Returns the hash of a key listed by the cache, which is the same {@link #hashKey(Object...)} returns for the
+     * elements of the key.
+     *
+     * @param key the cache key (a string, list or array of the key elements)
+     */
+    public static long hashCacheKey(Object key) {
+        if (key instanceof Object[]) {
+            return hashKey((Object[]) key);
+        } else {
+            return spread(String.valueOf(key).hashCode());
+        }
+    }
+
+    private static long spread(int hash) {
+        long spread = hash * 0x9e3779b97f4a7c15L;
+
+        return spread ^ (spread >>> 29);
+    }
+
+    /**
+     * Returns an estimate of the heap used by a cached value, in bytes.
+     *
+     * @param value the value
+     */
+    public static long estimateWeight(Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof byte[]) {
+            return 16 + ((byte[]) value).length;
+        } else if (value instanceof CharSequence) {
+            return 40 + 2L * ((CharSequence) value).length();
+        } else if (value instanceof Content) {
+            return DEFAULT_ENTRY_WEIGHT + Math.max(((Content) value).getLength(), 0);
+        } else if (value instanceof Item) {
+            Item item = (Item) value;
+            long weight = 2 * DEFAULT_ENTRY_WEIGHT + estimateWeight(item.getUrl());
+            if (item.getDescriptorDom() != null) {
+                weight += estimateWeight(item.getDescriptorDom());
+            }
+
+            return weight;
+        } else if (value instanceof Node) {
+            return estimateNodeWeight((Node) value);
+        } else if (value instanceof Collection) {
+            return estimateElementsWeight((Collection<?>) value);
+        } else if (value instanceof Map) {
+            return estimateElementsWeight(((Map<?, ?>) value).values()) + 32L * ((Map<?, ?>) value).size();
+        } else {
+            return DEFAULT_ENTRY_WEIGHT;
+        }
+    }
+
+    private static long estimateElementsWeight(Collection<?> elements) {
+        long weight = 32;
+        int sized = 0;
+
+        for (Object element : elements) {
+            if (sized == MAX_SIZED_ELEMENTS) {
+                // Extrapolate for big collections
+                return weight * elements.size() / sized;
+            }
+
+            weight += 16 + estimateWeight(element);
+            sized++;
+        }
+
+        return weight;
+    }
+
+    private static long estimateNodeWeight(Node node) {
+        long weight = DEFAULT_ENTRY_WEIGHT;
+
+        if (node instanceof CharacterData) {
+            weight += 2L * node.getText().length();
+        } else if (node instanceof Element) {
+            Element element = (Element) node;
+            weight += 2L * element.getName().length();
+
+            for (int i = 0; i < element.attributeCount(); i++) {
+                Attribute attribute = element.attribute(i);
+                weight += DEFAULT_ENTRY_WEIGHT + 2L * (attribute.getName().length() + attribute.getValue().length());
+            }
+        }
+
+        if (node instanceof Branch) {
+            Branch branch = (Branch) node;
+            for (int i = 0; i < branch.nodeCount(); i++) {
+                weight += estimateNodeWeight(branch.node(i));
+            }
+        }
+
+        return weight;
+    }
+
+    private boolean isAdmitted(long keyHash) {
+        return isAdmitted(admittedKeys, keyHash) || isAdmitted(previousAdmittedKeys, keyHash);
+    }
+
+    private boolean isAdmitted(AtomicLongArray filter, long keyHash) {
+        return getBit(filter, keyHash) && getBit(filter, Long.rotateLeft(keyHash, 32));
+    }
+
+    private void markAdmitted(long keyHash) {
+        AtomicLongArray filter = admittedKeys;
+        setBit(filter, keyHash);
+        setBit(filter, Long.rotateLeft(keyHash, 32));
+    }
+
+    private synchronized void ageAdmittedKeys() {
+        previousAdmittedKeys = admittedKeys;
+        admittedKeys = new AtomicLongArray(admittedKeysLength);
+    }
+
+    private boolean getBit(AtomicLongArray filter, long hash) {
+        int bit = (int) (hash & ((long) filter.length() * 64 - 1));
+
+        return (filter.get(bit >>> 6) & (1L << bit)) != 0;
+    }
+
+    private void setBit(AtomicLongArray filter, long hash) {
+        int bit = (int) (hash & ((long) filter.length() * 64 - 1));
+        long mask = 1L << bit;
+
+        filter.getAndUpdate(bit >>> 6, value -> value | mask);
+    }
+
+    @Override
+    public String toString() {
+        return "SiteCacheBudget{" +
+               "maxWeight=" + maxWeight +
+               ", weight=" + getWeight() +
+               ", hits=" + getHits() +
+               ", misses=" + getMisses() +
+               ", admissions=" + getAdmissions() +
+               ", rejections=" + getRejections() +
+               ", evictions=" + getEvictions() +
+               '}';
+    }
+
+}
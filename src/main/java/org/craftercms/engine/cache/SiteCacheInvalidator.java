@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import org.craftercms.engine.service.context.SiteContext;
+
+import java.util.Collection;
+
+/**
+ * Helper class that's used to invalidate only the entries of the cache of a site context that are affected by a
+ * set of changed paths (e.g. after a publish), instead of clearing or switching the whole cache.
+ *
+ * @since 4.2.0
+ */
+public interface SiteCacheInvalidator {
+
+    /**
+     * Evicts from the cache of the specified site context the entries that reference any of the changed paths or
+     * any of their ancestor folders.
+     *
+     * @param siteContext  the site context
+     * @param changedPaths the paths that were added, updated or deleted
+     * @return true if the cache was invalidated, false if the changes can't be handled incrementally and the whole
+     * cache should be cleared instead
+     */
+    boolean invalidateCache(SiteContext siteContext, Collection<String> changedPaths);
+
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.time.StopWatch;
+import org.craftercms.core.service.CacheService;
+import org.craftercms.core.service.Context;
+import org.craftercms.core.util.ContentStoreUtils;
+import org.craftercms.engine.service.context.SiteContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Default implementation of {@link SiteCacheInvalidator}. Since cache keys are built from the URLs/paths of the
+ * items they hold (e.g. {@code findFile} and {@code getChildren} entries of the store adapters, items, page views,
+ * scripts and templates), the keys of the site's cache are scanned and evicted when they reference a changed path or
+ * one of its ancestor folders (which covers children lists and trees that contain the changed path). The objects that
+ * depend on the changed paths according to the site's {@link CacheDependencyGraph} (e.g. merged descriptors of
+ * targeted content or page views that use the changed scripts) are invalidated too.
+ *
+ * <p>If there are too many changed paths, or any of them matches one of the full clear patterns (like site
+ * configuration files, which are used by entries that don't reference them in their keys), the invalidation is
+ * rejected so that the whole cache is cleared instead.</p>
+ *
+ * @since 4.2.0
+ */
+public class SiteCacheInvalidatorImpl implements SiteCacheInvalidator {
+
+    private static final Logger logger = LoggerFactory.getLogger(SiteCacheInvalidatorImpl.class);
+
+    public static final int DEFAULT_MAX_PATHS = 1000;
+
+    protected CacheService cacheService;
+    protected int maxPaths;
+    protected Pattern[] fullClearPatterns;
+
+    public SiteCacheInvalidatorImpl(CacheService cacheService) {
+        this.cacheService = cacheService;
+        this.maxPaths = DEFAULT_MAX_PATHS;
+        this.fullClearPatterns = new Pattern[0];
+    }
+
+    /**
+     * Sets the max number of changed paths that can be invalidated incrementally. If more paths changed, the whole
+     * cache is cleared instead.
+     */
+    public void setMaxPaths(int maxPaths) {
+        this.maxPaths = maxPaths;
+    }
+
+    /**
+     * Sets the regexes of the paths that, when changed, require the whole cache to be cleared.
+     */
+    public void setFullClearPatterns(String[] fullClearPatterns) {
+        this.fullClearPatterns = Arrays.stream(fullClearPatterns)
+                                       .map(Pattern::compile)
+                                       .toArray(Pattern[]::new);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean invalidateCache(SiteContext siteContext, Collection<String> changedPaths) {
+        String siteName = siteContext.getSiteName();
+
+        if (CollectionUtils.isEmpty(changedPaths)) {
+            logger.debug("No changed paths for site '{}', nothing to invalidate", siteName);
+            return true;
+        }
+        if (changedPaths.size() > maxPaths) {
+            logger.info("{} paths changed for site '{}' (max is {}), the whole cache needs to be cleared",
+                        changedPaths.size(), siteName, maxPaths);
+            return false;
+        }
+
+        Set<String> normalizedPaths = new HashSet<>(changedPaths.size());
+        for (String path : changedPaths) {
+            String normalizedPath = ContentStoreUtils.normalizePath(path);
+            if (requiresFullClear(normalizedPath)) {
+                logger.info("Path '{}' changed for site '{}', the whole cache needs to be cleared", normalizedPath,
+                            siteName);
+                return false;
+            }
+
+            normalizedPaths.add(normalizedPath);
+        }
+
+        Set<String> affectedPaths = new HashSet<>(normalizedPaths);
+        affectedPaths.addAll(siteContext.getCacheDependencyGraph().removeDependents(normalizedPaths));
+
+        Set<String> referencedPaths = getReferencedPaths(affectedPaths);
+        Context context = siteContext.getContext();
+        StopWatch stopWatch = new StopWatch();
+        int evicted = 0;
+
+        stopWatch.start();
+
+        // Copy the keys since the cache is modified while iterating
+        for (Object key : new ArrayList<>(cacheService.getKeys(context))) {
+            if (key != null && referencesAny(key.toString(), referencedPaths)) {
+                logger.debug("Evicting cache entry '{}' of site '{}'", key, siteName);
+
+                cacheService.remove(context, key);
+                evicted++;
+            }
+        }
+
+        stopWatch.stop();
+
+        logger.info("Cache of site '{}' invalidated for {} changed paths ({} including dependents): {} entries " +
+                    "evicted in {} ms", siteName, normalizedPaths.size(), affectedPaths.size(), evicted,
+                    stopWatch.getTime());
+
+        return true;
+    }
+
+    protected boolean requiresFullClear(String path) {
+        for (Pattern pattern : fullClearPatterns) {
+            if (pattern.matcher(path).matches()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the affected paths plus all their ancestor folders, since folder items, children lists and trees
+     * change when any of their descendants change. Dependents that are not paths (like constant cache key
+     * elements) are returned as is.
+     */
+    protected Set<String> getReferencedPaths(Set<String> affectedPaths) {
+        Set<String> referencedPaths = new HashSet<>(affectedPaths);
+        for (String path : affectedPaths) {
+            if (!path.startsWith("/")) {
+                continue;
+            }
+
+            for (int idx = path.lastIndexOf('/'); idx > 0; idx = path.lastIndexOf('/', idx - 1)) {
+                if (!referencedPaths.add(path.substring(0, idx))) {
+                    // The rest of the ancestors have already been added
+                    break;
+                }
+            }
+        }
+
+        referencedPaths.add("/");
+
+        return referencedPaths;
+    }
+
+    /**
+     * Returns true if the key references any of the paths, either as an absolute path (like store paths) or as a
+     * relative path (like FreeMarker template names or S3 keys). The reference needs to be exact: a key that
+     * references {@code /site/website/about/index.xml} doesn't reference {@code /site/website/about}. The key is
+     * split only once in its path elements, which are looked up in the paths, so the cost of the check doesn't
+     * depend on the number of paths.
+     */
+    protected boolean referencesAny(String key, Set<String> paths) {
+        int length = key.length();
+        int start = 0;
+
+        while (start < length) {
+            if (isPathChar(key.charAt(start))) {
+                int end = start + 1;
+                while (end < length && isPathChar(key.charAt(end))) {
+                    end++;
+                }
+
+                if (isReferenced(key.substring(start, end), paths)) {
+                    return true;
+                }
+
+                start = end;
+            } else {
+                start++;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns true if the path element of a key is one of the paths, or if the element or any of its sub-paths
+     * (the parts that start after a slash) is one of the paths relative to the root.
+     */
+    protected boolean isReferenced(String element, Set<String> paths) {
+        // A trailing slash is also accepted as the end of a folder path
+        if (element.length() > 1 && element.charAt(element.length() - 1) == '/') {
+            element = element.substring(0, element.length() - 1);
+        }
+
+        if (paths.contains(element) || (element.charAt(0) != '/' && paths.contains("/" + element))) {
+            return true;
+        }
+
+        for (int idx = element.indexOf('/', 1); idx > 0 && idx < element.length() - 1;
+             idx = element.indexOf('/', idx + 1)) {
+            String subPath = element.substring(idx);
+            if (paths.contains(subPath) || paths.contains(subPath.substring(1))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean isPathChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '.' || c == '_' || c == '-' || c == '/';
+    }
+
+}
@@ -17,6 +17,8 @@ package org.craftercms.engine.cache;
 
 import org.craftercms.engine.service.context.SiteContext;
 
+import java.util.Collection;
+
 /**
  * Helper class that's used to warm up the cache of a site context.
  *
@@ -34,4 +36,13 @@ public interface SiteCacheWarmer {
      */
     void warmUpCache(SiteContext siteContext, boolean switchCache);
 
+    /**
+     * Warms up again only the changed paths in the current cache of the specified site context, after their entries
+     * have been evicted by a {@link SiteCacheInvalidator}.
+     *
+     * @param siteContext   the site context
+     * @param changedPaths  the paths that were added, updated or deleted
+     */
+    void warmUpCache(SiteContext siteContext, Collection<String> changedPaths);
+
 }
@@ -23,6 +23,7 @@ import org.craftercms.engine.service.context.SiteContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
@@ -68,7 +69,7 @@ public class SiteCacheWarmerImpl implements SiteCacheWarmer {
 
                 stopWatch.start();
 
-                doCacheWarmUp(tmpContext);
+                doCacheWarmUp(siteContext, tmpContext);
                 if (siteContext.isValid()) {
                     // Switch cache versions
                     currentContext.setCacheVersion(newCacheVersion);
@@ -94,7 +95,7 @@ public class SiteCacheWarmerImpl implements SiteCacheWarmer {
 
             stopWatch.start();
 
-            doCacheWarmUp(siteContext.getContext());
+            doCacheWarmUp(siteContext, siteContext.getContext());
 
             stopWatch.stop();
 
@@ -103,10 +104,47 @@ public class SiteCacheWarmerImpl implements SiteCacheWarmer {
         }
     }
 
-    private void doCacheWarmUp(Context cacheContext) {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void warmUpCache(SiteContext siteContext, Collection<String> changedPaths) {
+        String siteName = siteContext.getSiteName();
+        StopWatch stopWatch = new StopWatch();
+
+        logger.info("Starting warm up of {} changed paths for cache of site '{}'", changedPaths.size(), siteName);
+
+        stopWatch.start();
+
         for (ContextCacheWarmer cacheWarmer : contextCacheWarmers) {
-            cacheWarmer.warmUpCache(cacheContext);
+            try {
+                cacheWarmer.warmUpCache(siteContext.getContext(), changedPaths);
+            } catch (Exception e) {
+                logger.error("Warm up of changed paths failed for cache of site '{}'", siteName, e);
+            }
+        }
+
+        stopWatch.stop();
+
+        logger.info("Warm up of changed paths for cache of site '{}' completed in {} ms", siteName,
+                    stopWatch.getTime());
+    }
+
+    private void doCacheWarmUp(SiteContext siteContext, Context cacheContext) {
+        CacheWarmUpProgress progress = new CacheWarmUpProgress();
+        siteContext.setCacheWarmUpProgress(progress);
+
+        // The warmers are still executed in order since the later ones normally reuse what the previous ones
+        // loaded. Each one can execute its own work in parallel
+        try {
+            for (ContextCacheWarmer cacheWarmer : contextCacheWarmers) {
+                cacheWarmer.warmUpCache(cacheContext, progress);
+            }
+        } finally {
+            progress.complete();
         }
+
+        logger.debug("Cache warm up progress for site '{}': {}", siteContext.getSiteName(), progress);
     }
 
 }
@@ -18,7 +18,6 @@ package org.craftercms.engine.controller.rest;
 import jakarta.servlet.ServletContext;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
@@ -29,11 +28,13 @@ import org.craftercms.commons.validation.ValidationException;
 import org.craftercms.commons.validation.ValidationRuntimeException;
 import org.craftercms.core.service.ContentStoreService;
 import org.craftercms.core.util.ExceptionUtils;
+import org.craftercms.engine.exception.ConcurrencyLimitExceededException;
 import org.craftercms.engine.exception.HttpStatusCodeAwareException;
 import org.craftercms.engine.exception.HttpStatusCodeException;
 import org.craftercms.engine.exception.ScriptNotFoundException;
 import org.craftercms.engine.plugin.PluginService;
 import org.craftercms.engine.scripting.ScriptFactory;
+import org.craftercms.engine.scripting.ScriptUrlRouteTable.RouteMatch;
 import org.craftercms.engine.scripting.ScriptUrlTemplateScanner;
 import org.craftercms.engine.service.context.SiteContext;
 import org.craftercms.engine.util.GroovyScriptUtils;
@@ -44,10 +45,8 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.context.ServletContextAware;
 import org.springframework.web.servlet.HandlerMapping;
-import org.springframework.web.util.UriTemplate;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import static java.lang.String.format;
@@ -149,18 +148,11 @@ public class RestScriptsController implements ServletContextAware {
                                                 Map<String, Object> variables) {
         ContentStoreService storeService = siteContext.getStoreService();
         if (!storeService.exists(siteContext.getContext(), scriptUrl) && urlTemplateScanner != null) {
-            List<UriTemplate> urlTemplates = urlTemplateScanner.scan(siteContext);
-            if (CollectionUtils.isNotEmpty(urlTemplates)) {
-                for (UriTemplate template : urlTemplates) {
-                    if (template.matches(scriptUrl)) {
-                        Map<String, String> pathVars = template.match(scriptUrl);
-                        String actualScriptUrl = template.toString();
+            RouteMatch match = urlTemplateScanner.getRouteTable(siteContext).match(scriptUrl);
+            if (match != null) {
+                variables.put(GroovyScriptUtils.VARIABLE_PATH_VARS, match.getPathVariables());
 
-                        variables.put(GroovyScriptUtils.VARIABLE_PATH_VARS, pathVars);
-
-                        return actualScriptUrl;
-                    }
-                }
+                return match.getScriptUrl();
             }
         }
 
@@ -188,6 +180,11 @@ public class RestScriptsController implements ServletContextAware {
         } catch (ScriptNotFoundException e) {
             logger.error(format("Script not found at '%s'", scriptUrl));
             throw new HttpStatusCodeException(HttpStatus.SC_NOT_FOUND, e);
+        } catch (ConcurrencyLimitExceededException e) {
+            logger.warn(format("REST script at '%s' rejected: %s", scriptUrl, e.getMessage()));
+            response.setStatus(e.getStatusCode());
+
+            return singletonMap(errorMessageModelAttributeName, e.getMessage());
         } catch (Exception e) {
             logger.error(format("Error executing REST script at '%s'", scriptUrl), e);
 
@@ -24,6 +24,12 @@ import org.craftercms.commons.exceptions.InvalidManagementTokenException;
 import org.craftercms.core.cache.CacheStatistics;
 import org.craftercms.core.controller.rest.CrafterRestController;
 import org.craftercms.core.controller.rest.RestControllerBase;
+import org.craftercms.core.util.cache.CacheTemplate;
+import org.craftercms.engine.cache.CacheWarmUpProgress;
+import org.craftercms.engine.cache.CacheWarmingAwareContentStoreAdapterDecorator;
+import org.craftercms.engine.cache.PreloadedFolder;
+import org.craftercms.engine.cache.SiteAwareCacheTemplate;
+import org.craftercms.engine.cache.SiteCacheBudget;
 import org.craftercms.engine.event.SiteContextCreatedEvent;
 import org.craftercms.engine.event.SiteEvent;
 import org.craftercms.engine.service.context.SiteContext;
@@ -32,6 +38,9 @@ import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 
 import java.beans.ConstructorProperties;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import static java.lang.String.format;
@@ -49,7 +58,12 @@ public class SiteCacheRestController extends RestControllerBase {
 
     public static final String URL_ROOT = "/site/cache";
     public static final String URL_CLEAR = "/clear";
+    public static final String URL_INVALIDATE = "/invalidate";
     public static final String URL_STATS = "/statistics";
+    public static final String URL_SITE_STATS = "/site_statistics";
+    public static final String URL_LOAD_STATS = "/load_statistics";
+    public static final String URL_WARM_UP_PROGRESS = "/warm_up_progress";
+    public static final String URL_PRELOADED_FOLDERS = "/preloaded_folders";
 
     private final String configuredToken;
 
@@ -78,6 +92,27 @@ public class SiteCacheRestController extends RestControllerBase {
         return createResponseMessage(msg);
     }
 
+    @RequestMapping(value = URL_INVALIDATE, method = RequestMethod.POST)
+    public Map<String, Object> invalidate(HttpServletRequest request, @RequestParam String token,
+                                          @RequestParam List<String> paths) throws InvalidManagementTokenException {
+        validateToken(token);
+        SiteContext siteContext = SiteContext.getCurrent();
+        String siteName = siteContext.getSiteName();
+        String msg;
+
+        // Don't invalidate cache if the context was just created in this request
+        if (SiteEvent.getLatestRequestEvent(SiteContextCreatedEvent.class, request) != null) {
+            return createResponseMessage(format("Site context for '%s' created during the request. Cache invalidation not necessary", siteName));
+        } else {
+            siteContext.startCacheInvalidation(paths);
+            msg = format("Cache invalidation of %d paths for site '%s' started", paths.size(), siteName);
+        }
+
+        logger.debug(msg);
+
+        return createResponseMessage(msg);
+    }
+
     @RequestMapping(value = URL_STATS, method = RequestMethod.GET)
     public CacheStatistics getStatistics(@RequestParam String token) throws InvalidManagementTokenException {
         validateToken(token);
@@ -86,6 +121,72 @@ public class SiteCacheRestController extends RestControllerBase {
         return siteContext.getCacheTemplate().getCacheService().getStatistics(siteContext.getContext());
     }
 
+    @RequestMapping(value = URL_SITE_STATS, method = RequestMethod.GET)
+    public Object getSiteStatistics(@RequestParam String token) throws InvalidManagementTokenException {
+        validateToken(token);
+
+        SiteContext siteContext = SiteContext.getCurrent();
+        SiteCacheBudget budget = siteContext.getCacheBudget();
+        if (budget != null) {
+            return budget;
+        } else {
+            return createResponseMessage(format("Cache of site '%s' is not tracked", siteContext.getSiteName()));
+        }
+    }
+
+    @RequestMapping(value = URL_LOAD_STATS, method = RequestMethod.GET)
+    public Object getLoadStatistics(@RequestParam String token) throws InvalidManagementTokenException {
+        validateToken(token);
+
+        CacheTemplate cacheTemplate = SiteContext.getCurrent().getCacheTemplate();
+        if (cacheTemplate instanceof SiteAwareCacheTemplate &&
+            ((SiteAwareCacheTemplate) cacheTemplate).getSingleFlightLoader() != null) {
+            return ((SiteAwareCacheTemplate) cacheTemplate).getSingleFlightLoader();
+        } else {
+            return createResponseMessage("Single-flight cache loads are disabled");
+        }
+    }
+
+    @RequestMapping(value = URL_WARM_UP_PROGRESS, method = RequestMethod.GET)
+    public Object getWarmUpProgress(@RequestParam String token) throws InvalidManagementTokenException {
+        validateToken(token);
+
+        SiteContext siteContext = SiteContext.getCurrent();
+        CacheWarmUpProgress progress = siteContext.getCacheWarmUpProgress();
+        if (progress != null) {
+            return progress;
+        } else {
+            return createResponseMessage(format("Cache of site '%s' hasn't been warmed up", siteContext.getSiteName()));
+        }
+    }
+
+    @RequestMapping(value = URL_PRELOADED_FOLDERS, method = RequestMethod.GET)
+    public Map<String, Object> getPreloadedFolders(@RequestParam String token) throws InvalidManagementTokenException {
+        validateToken(token);
+
+        SiteContext siteContext = SiteContext.getCurrent();
+        List<Map<String, Object>> folders = new ArrayList<>();
+        long totalHeapSize = 0;
+
+        for (PreloadedFolder folder :
+                CacheWarmingAwareContentStoreAdapterDecorator.getPreloadedFolders(siteContext.getContext())) {
+            Map<String, Object> folderInfo = new LinkedHashMap<>();
+            folderInfo.put("path", folder.getPath());
+            folderInfo.put("depth", folder.getDepth());
+            folderInfo.put("descendants", folder.getDescendantCount());
+            folderInfo.put("heapSize", folder.getHeapSize());
+
+            folders.add(folderInfo);
+            totalHeapSize += folder.getHeapSize();
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("folders", folders);
+        result.put("totalHeapSize", totalHeapSize);
+
+        return result;
+    }
+
     protected final void validateToken(final String requestToken) throws InvalidManagementTokenException {
         if (!StringUtils.equals(requestToken, configuredToken)) {
             throw new InvalidManagementTokenException("Management authorization failed, invalid token.");
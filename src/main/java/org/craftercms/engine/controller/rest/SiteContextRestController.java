@@ -25,6 +25,9 @@ import org.craftercms.engine.event.SiteContextCreatedEvent;
 import org.craftercms.engine.event.SiteEvent;
 import org.craftercms.engine.service.context.SiteContext;
 import org.craftercms.engine.service.context.SiteContextManager;
+import org.craftercms.engine.service.context.SiteContextStartupTimings;
+import org.craftercms.engine.util.concurrent.SiteConcurrencyLimits;
+import org.craftercms.engine.websocket.WebSocketProxyStats;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -32,6 +35,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 import java.beans.ConstructorProperties;
 import java.util.Collections;
 import java.util.Map;
+import java.util.TreeMap;
 
 import static java.lang.String.format;
 
@@ -51,6 +55,11 @@ public class SiteContextRestController extends RestControllerBase {
     public static final String URL_REBUILD_ALL = "/rebuild_all";
     public static final String URL_GRAPHQL = "/graphql";
     public static final String URL_STATUS = "/status";
+    public static final String URL_STARTUP_TIMINGS = "/startup_timings";
+    public static final String URL_STARTUP_TIMINGS_ALL = "/startup_timings_all";
+    public static final String URL_WEBSOCKET_STATS = "/websocket_statistics";
+    public static final String URL_CONCURRENCY_STATS = "/concurrency_statistics";
+    public static final String URL_CONCURRENCY_STATS_ALL = "/concurrency_statistics_all";
 
     public static final String MODEL_ATTR_ID = "id";
     public static final String MODEL_ATTR_STATUS = "status";
@@ -136,6 +145,55 @@ public class SiteContextRestController extends RestControllerBase {
         return createSingletonModifiableMap(MODEL_ATTR_STATUS, SiteContext.getCurrent().getState());
     }
 
+    @GetMapping(URL_STARTUP_TIMINGS)
+    public SiteContextStartupTimings getStartupTimings(@RequestParam String token)
+            throws InvalidManagementTokenException {
+        validateToken(token);
+
+        return SiteContext.getCurrent().getStartupTimings();
+    }
+
+    @GetMapping(URL_STARTUP_TIMINGS_ALL)
+    public Map<String, SiteContextStartupTimings> getAllStartupTimings(@RequestParam String token)
+            throws InvalidManagementTokenException {
+        validateToken(token);
+
+        Map<String, SiteContextStartupTimings> timings = new TreeMap<>();
+        for (SiteContext siteContext : contextManager.listContexts()) {
+            timings.put(siteContext.getSiteName(), siteContext.getStartupTimings());
+        }
+
+        return timings;
+    }
+
+    @GetMapping(URL_WEBSOCKET_STATS)
+    public WebSocketProxyStats getWebSocketStats(@RequestParam String token) throws InvalidManagementTokenException {
+        validateToken(token);
+
+        return SiteContext.getCurrent().getWebSocketProxyStats();
+    }
+
+    @GetMapping(URL_CONCURRENCY_STATS)
+    public SiteConcurrencyLimits getConcurrencyStats(@RequestParam String token)
+            throws InvalidManagementTokenException {
+        validateToken(token);
+
+        return SiteContext.getCurrent().getConcurrencyLimits();
+    }
+
+    @GetMapping(URL_CONCURRENCY_STATS_ALL)
+    public Map<String, SiteConcurrencyLimits> getAllConcurrencyStats(@RequestParam String token)
+            throws InvalidManagementTokenException {
+        validateToken(token);
+
+        Map<String, SiteConcurrencyLimits> stats = new TreeMap<>();
+        for (SiteContext siteContext : contextManager.listContexts()) {
+            stats.put(siteContext.getSiteName(), siteContext.getConcurrencyLimits());
+        }
+
+        return stats;
+    }
+
     protected final void validateToken(final String requestToken) throws InvalidManagementTokenException {
         if (!StringUtils.equals(requestToken, configuredToken)) {
             throw new InvalidManagementTokenException("Management authorization failed, invalid token.");
@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.exception;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Thrown when the max number of concurrent executions of a type of work of a site has been reached. Results in a
+ * 503 response when thrown while handling a request.
+ *
+ * @since 4.2.0
+ * @see org.craftercms.engine.util.concurrent.SiteBulkhead
+ */
+public class ConcurrencyLimitExceededException extends HttpStatusCodeException {
+
+    public ConcurrencyLimitExceededException(String message) {
+        super(HttpStatus.SERVICE_UNAVAILABLE, message);
+    }
+
+}
@@ -24,6 +24,10 @@ import org.craftercms.core.exception.CrafterException;
  */
 public class SiteContextInitializationException extends CrafterException {
 
+    public SiteContextInitializationException(String message) {
+        super(message);
+    }
+
     public SiteContextInitializationException(String message, Throwable cause) {
         super(message, cause);
     }
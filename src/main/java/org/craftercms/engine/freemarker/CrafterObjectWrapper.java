@@ -19,7 +19,9 @@ import freemarker.template.Configuration;
 import freemarker.template.DefaultObjectWrapper;
 import freemarker.template.TemplateModel;
 import freemarker.template.TemplateModelException;
+import org.craftercms.commons.converters.Converter;
 import org.craftercms.engine.properties.SiteProperties;
+import org.craftercms.engine.service.context.SiteContext;
 import org.craftercms.engine.util.ContentModelUtils;
 import org.dom4j.Element;
 import org.dom4j.Node;
@@ -29,6 +31,8 @@ import org.jenkinsci.plugins.scriptsecurity.sandbox.whitelists.StaticWhitelist;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Extends {@link freemarker.template.DefaultObjectWrapper} to wrap Dom4j {@code Node}s. If it's an {@code Element},
@@ -40,15 +44,27 @@ public class CrafterObjectWrapper extends DefaultObjectWrapper {
 
     protected final boolean enableSandbox;
 
+    /**
+     * The field conversion settings of the last site context the wrapper was used with (each site has its own
+     * FreeMarker configuration, so it's normally resolved only once)
+     */
+    protected volatile FieldConversion fieldConversion;
+
+    /**
+     * The sandbox blacklist decisions already made, by method
+     */
+    protected final Map<Method, Boolean> blockedMethods;
+
     public CrafterObjectWrapper(boolean enableSandbox) {
         super(Configuration.VERSION_2_3_30);
         this.enableSandbox = enableSandbox;
+        this.blockedMethods = new ConcurrentHashMap<>();
     }
 
     @Override
     public TemplateModel wrap(Object obj) throws TemplateModelException {
-        if (obj instanceof Element && !SiteProperties.isDisableFullModelTypeConversion()) {
-            Object result = ContentModelUtils.convertField((Element)obj);
+        if (obj instanceof Element && getFieldConversion().isEnabled()) {
+            Object result = getFieldConversion().convert((Element)obj);
             if (result instanceof Node) {
                 return new Dom4jNodeModel((Node)obj, this);
             } else {
@@ -63,21 +79,57 @@ public class CrafterObjectWrapper extends DefaultObjectWrapper {
 
     @Override
     protected TemplateModel invokeMethod(Object object, Method method, Object[] args) throws InvocationTargetException, IllegalAccessException, TemplateModelException {
-        if (enableSandbox) {
-            boolean blocked;
+        if (enableSandbox && blockedMethods.computeIfAbsent(method, CrafterObjectWrapper::isBlacklisted)) {
+            return null;
+        }
 
-            if (Modifier.isStatic(method.getModifiers())) {
-                blocked = StaticWhitelist.isPermanentlyBlacklistedStaticMethod(method);
-            } else {
-                blocked = StaticWhitelist.isPermanentlyBlacklistedMethod(method);
-            }
+        return super.invokeMethod(object, method, args);
+    }
 
-            if (blocked) {
-                return null;
-            }
+    protected FieldConversion getFieldConversion() {
+        SiteContext siteContext = SiteContext.getCurrent();
+        FieldConversion conversion = fieldConversion;
+        if (conversion == null || conversion.siteContext != siteContext) {
+            conversion = new FieldConversion(siteContext, ContentModelUtils.getFieldConverter(siteContext),
+                                             SiteProperties.isDisableFullModelTypeConversion());
+            fieldConversion = conversion;
+        }
+
+        return conversion;
+    }
+
+    protected static boolean isBlacklisted(Method method) {
+        if (Modifier.isStatic(method.getModifiers())) {
+            return StaticWhitelist.isPermanentlyBlacklistedStaticMethod(method);
+        } else {
+            return StaticWhitelist.isPermanentlyBlacklistedMethod(method);
+        }
+    }
+
+    /**
+     * Field converter and full model type conversion flag resolved for a site context.
+     */
+    protected static final class FieldConversion {
+
+        private final SiteContext siteContext;
+        private final Converter<Element, Object> converter;
+        private final boolean fullModelTypeConversionDisabled;
+
+        private FieldConversion(SiteContext siteContext, Converter<Element, Object> converter,
+                                boolean fullModelTypeConversionDisabled) {
+            this.siteContext = siteContext;
+            this.converter = converter;
+            this.fullModelTypeConversionDisabled = fullModelTypeConversionDisabled;
+        }
+
+        public boolean isEnabled() {
+            return !fullModelTypeConversionDisabled;
+        }
+
+        public Object convert(Element field) {
+            return converter != null ? converter.convert(field) : field;
         }
 
-        return super.invokeMethod(object, method, args);
     }
 
 }
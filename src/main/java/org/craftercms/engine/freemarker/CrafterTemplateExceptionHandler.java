@@ -35,6 +35,7 @@ import org.craftercms.commons.http.RequestContext;
 public class CrafterTemplateExceptionHandler implements TemplateExceptionHandler {
 
     public static final String FREEMARKER_CURRENT_ERROR_ID_ATTRIBUTE = "freemarkerCurrentErrorId";
+    public static final String FREEMARKER_HANDLED_ERRORS_ATTRIBUTE = "freemarkerHandledErrors";
 
     public static final String ERROR_FORMAT =
         "<script type='text/javascript'>" +
@@ -67,6 +68,8 @@ public class CrafterTemplateExceptionHandler implements TemplateExceptionHandler
 
     @Override
     public void handleTemplateException(TemplateException te, Environment env, Writer out) throws TemplateException {
+        countHandledError();
+
         if (displayTemplateExceptionsInView) {
             String error = ERROR_FORMAT.replace("{errorId}", createErrorId());
             error = error.replace("{error}", getExceptionStackTrace(te));
@@ -79,6 +82,28 @@ public class CrafterTemplateExceptionHandler implements TemplateExceptionHandler
         }
     }
 
+    /**
+     * Returns the number of template errors handled during the current request, so that the output of templates
+     * that failed is not cached.
+     */
+    public static int getHandledErrorCount() {
+        RequestContext context = RequestContext.getCurrent();
+        if (context != null) {
+            Integer count = (Integer) context.getRequest().getAttribute(FREEMARKER_HANDLED_ERRORS_ATTRIBUTE);
+
+            return count != null? count : 0;
+        } else {
+            return 0;
+        }
+    }
+
+    protected void countHandledError() {
+        RequestContext context = RequestContext.getCurrent();
+        if (context != null) {
+            context.getRequest().setAttribute(FREEMARKER_HANDLED_ERRORS_ATTRIBUTE, getHandledErrorCount() + 1);
+        }
+    }
+
     protected String getExceptionStackTrace(TemplateException te) {
         StringWriter sw = new StringWriter();
         PrintWriter pw = new PrintWriter(sw);
@@ -16,12 +16,16 @@
 package org.craftercms.engine.freemarker;
 
 import java.io.IOException;
+import java.io.StringWriter;
 import java.io.Writer;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import jakarta.servlet.ServletContext;
+import jakarta.servlet.http.HttpServletRequest;
 
 import freemarker.core.Environment;
 import freemarker.template.SimpleHash;
@@ -38,12 +42,16 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.craftercms.commons.http.RequestContext;
+import org.craftercms.core.util.ContentStoreUtils;
 import org.craftercms.engine.model.SiteItem;
+import org.craftercms.engine.properties.SiteProperties;
 import org.craftercms.engine.scripting.Script;
 import org.craftercms.engine.scripting.ScriptFactory;
 import org.craftercms.engine.scripting.SiteItemScriptResolver;
 import org.craftercms.engine.service.SiteItemService;
 import org.craftercms.engine.service.context.SiteContext;
+import org.craftercms.engine.targeting.TargetIdManager;
+import org.craftercms.engine.util.CacheUtils;
 import org.craftercms.engine.util.GroovyScriptUtils;
 import org.craftercms.engine.view.CrafterPageView;
 import org.dom4j.Element;
@@ -53,6 +61,13 @@ import org.springframework.beans.factory.ObjectFactory;
  * Custom directive to render a component by processing the template defined in the component element's template name
  * sub-element.
  *
+ * <p>If the {@code cache} param is true the rendered markup of the component is cached, keyed by the component, its
+ * template, the locale, the current target ID, the simple values of the additional model and the request inputs
+ * listed in the {@code cacheVaryBy} param ({@code param:NAME}, {@code header:NAME}, {@code cookie:NAME} or
+ * {@code attribute:NAME}). Since the scripts of the component are not executed when the markup is taken from the
+ * cache, only components whose scripts don't have side effects should be cached. The markup is invalidated when the
+ * component, its template, its scripts or any of its nested components change.</p>
+ *
  * @author Alfonso Vásquez
  */
 public class RenderComponentDirective implements TemplateDirectiveModel {
@@ -67,6 +82,11 @@ public class RenderComponentDirective implements TemplateDirectiveModel {
     public static final String COMPONENT_PARAM_NAME = "component";
     public static final String COMPONENT_PATH_PARAM_NAME = "componentPath";
     public static final String ADDITIONAL_MODEL_PARAM_NAME = "additionalModel";
+    public static final String CACHE_PARAM_NAME = "cache";
+    public static final String CACHE_VARY_BY_PARAM_NAME = "cacheVaryBy";
+
+    public static final String CACHE_CONST_KEY_ELEM_FRAGMENT = "componentFragment";
+    public static final String OBJECT_ID_XPATH_QUERY = "objectId";
 
     protected ServletContext servletContext;
     protected SiteItemService siteItemService;
@@ -77,6 +97,8 @@ public class RenderComponentDirective implements TemplateDirectiveModel {
     protected String includeElementName;
     protected String componentElementName;
     protected SiteItemScriptResolver scriptResolver;
+    protected boolean fragmentCacheEnabled;
+    protected TargetIdManager targetIdManager;
 
     public RenderComponentDirective(ServletContext servletContext, SiteItemService siteItemService,
                                     ObjectFactory<SimpleHash> modelFactory, String templateXPathQuery,
@@ -94,12 +116,25 @@ public class RenderComponentDirective implements TemplateDirectiveModel {
         this.scriptResolver = scriptResolver;
     }
 
+    /**
+     * Sets if the markup of the components rendered with the {@code cache} param should be cached.
+     */
+    public void setFragmentCacheEnabled(boolean fragmentCacheEnabled) {
+        this.fragmentCacheEnabled = fragmentCacheEnabled;
+    }
+
+    public void setTargetIdManager(TargetIdManager targetIdManager) {
+        this.targetIdManager = targetIdManager;
+    }
+
     @SuppressWarnings("unchecked")
     public void execute(Environment env, Map params, TemplateModel[] loopVars, TemplateDirectiveBody body) throws TemplateException {
         TemplateModel componentParentParam = (TemplateModel) params.get(COMPONENT_PARENT_PARAM_NAME);
         TemplateModel componentParam = (TemplateModel) params.get(COMPONENT_PARAM_NAME);
         TemplateModel componentPathParam = (TemplateModel) params.get(COMPONENT_PATH_PARAM_NAME);
         TemplateModel additionalModelParam = (TemplateModel) params.get(ADDITIONAL_MODEL_PARAM_NAME);
+        TemplateModel cacheParam = (TemplateModel) params.get(CACHE_PARAM_NAME);
+        TemplateModel cacheVaryByParam = (TemplateModel) params.get(CACHE_VARY_BY_PARAM_NAME);
         Map<String, Object> additionalModel = null;
         SiteItem component;
 
@@ -116,14 +151,143 @@ public class RenderComponentDirective implements TemplateDirectiveModel {
             additionalModel = unwrap(ADDITIONAL_MODEL_PARAM_NAME, additionalModelParam, Map.class, env);
         }
 
+        SiteContext siteContext = SiteContext.getCurrent();
+        if (siteContext != null) {
+            // Cached fragments that are being rendered depend on their nested components
+            siteContext.getCacheDependencyGraph().recordRead(component.getStoreUrl());
+        }
+
+        Writer output = env.getOut();
+
+        if (fragmentCacheEnabled && siteContext != null && isTrue(cacheParam, env)) {
+            List<Object> keyElements = getFragmentKeyElements(component, additionalModel, cacheVaryByParam, env);
+            if (keyElements != null) {
+                String fragment = getFragment(siteContext, component, additionalModel, keyElements, env);
+                try {
+                    output.write(fragment);
+                } catch (IOException e) {
+                    throw new TemplateException("I/O exception while writing the component fragment", e, env);
+                }
+
+                return;
+            }
+        }
+
+        renderComponent(component, additionalModel, output, env);
+    }
+
+    protected void renderComponent(SiteItem component, Map<String, Object> additionalModel, Writer output,
+                                   Environment env) throws TemplateException {
         Map<String, Object> templateModel = executeScripts(component, additionalModel, env);
         SimpleHash model = getFullModel(component, templateModel, additionalModel);
         Template template = getTemplate(component, env);
-        Writer output = env.getOut();
 
         processComponentTemplate(template, model, output, env);
     }
 
+    /**
+     * Returns the rendered markup of the component from the cache, rendering it if it's not there. The nested
+     * components, scripts and template read while rendering it are recorded as dependencies of the component.
+     */
+    protected String getFragment(SiteContext siteContext, SiteItem component, Map<String, Object> additionalModel,
+                                 List<Object> keyElements, Environment env) throws TemplateException {
+        try {
+            return siteContext.getCacheTemplate().getObject(siteContext.getContext(), () ->
+                siteContext.getCacheDependencyGraph().trackDependencies(component.getStoreUrl(), () -> {
+                    StringWriter fragment = new StringWriter();
+                    int handledErrors = CrafterTemplateExceptionHandler.getHandledErrorCount();
+
+                    try {
+                        renderComponent(component, additionalModel, fragment, env);
+                    } catch (TemplateException e) {
+                        throw new FragmentRenderingException(e);
+                    }
+
+                    if (CrafterTemplateExceptionHandler.getHandledErrorCount() != handledErrors) {
+                        // The template failed, so the fragment is returned without caching it
+                        throw new FragmentRenderingException(fragment.toString());
+                    }
+
+                    return fragment.toString();
+                }), keyElements.toArray());
+        } catch (FragmentRenderingException e) {
+            if (e.getFragment() != null) {
+                return e.getFragment();
+            } else {
+                throw (TemplateException) e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Returns the elements of the cache key of the component fragment, or null if the fragment can't be cached
+     * because the additional model contains values other than strings, numbers or booleans.
+     */
+    protected List<Object> getFragmentKeyElements(SiteItem component, Map<String, Object> additionalModel,
+                                                  TemplateModel cacheVaryByParam, Environment env)
+        throws TemplateException {
+        List<Object> keyElements = new ArrayList<>();
+        keyElements.add(CACHE_CONST_KEY_ELEM_FRAGMENT);
+        keyElements.add(component.getStoreUrl());
+        keyElements.add(component.queryValue(OBJECT_ID_XPATH_QUERY));
+        keyElements.add(getComponentTemplateName(component, env));
+        keyElements.add(env.getLocale());
+
+        if (targetIdManager != null && SiteProperties.isTargetingEnabled()) {
+            keyElements.add(targetIdManager.getCurrentTargetId());
+        }
+
+        if (MapUtils.isNotEmpty(additionalModel)) {
+            for (Object value : additionalModel.values()) {
+                if (value != null && !(value instanceof String) && !(value instanceof Number) &&
+                    !(value instanceof Boolean)) {
+                    logger.debug("The additional model of component " + component.getStoreUrl() + " can't be " +
+                                 "part of a cache key, the component will be rendered without caching");
+                    return null;
+                }
+            }
+
+            keyElements.add(new TreeMap<>(additionalModel));
+        }
+
+        if (cacheVaryByParam != null) {
+            List<?> varyBy = unwrap(CACHE_VARY_BY_PARAM_NAME, cacheVaryByParam, List.class, env);
+            RequestContext context = RequestContext.getCurrent();
+
+            if (context == null) {
+                throw new IllegalStateException("No current request context found");
+            }
+
+            for (Object input : varyBy) {
+                keyElements.add(input + "=" + getRequestInput(context.getRequest(), String.valueOf(input), env));
+            }
+        }
+
+        return keyElements;
+    }
+
+    protected String getRequestInput(HttpServletRequest request, String input, Environment env)
+        throws TemplateException {
+        try {
+            return CacheUtils.getRequestInput(request, input);
+        } catch (IllegalArgumentException e) {
+            throw new TemplateException("Invalid param '" + CACHE_VARY_BY_PARAM_NAME + "'", e, env);
+        }
+    }
+
+    protected boolean isTrue(TemplateModel param, Environment env) throws TemplateException {
+        if (param != null) {
+            Object value = DeepUnwrap.unwrap(param);
+            if (value instanceof Boolean) {
+                return (Boolean) value;
+            } else {
+                return Boolean.parseBoolean(String.valueOf(value));
+            }
+        } else {
+            return false;
+        }
+    }
+
     protected SiteItem getComponentFromNode(TemplateModel parentParam, TemplateModel componentParam, Environment env)
         throws TemplateException {
         SiteItem parentItem = unwrap(COMPONENT_PARENT_PARAM_NAME, parentParam, SiteItem.class, env);
@@ -204,6 +368,8 @@ public class RenderComponentDirective implements TemplateDirectiveModel {
                 }
 
                 for (String scriptUrl : scriptUrls) {
+                    siteContext.getCacheDependencyGraph().recordRead(scriptUrl);
+
                     Script script;
                     try {
                         script = scriptFactory.getScript(scriptUrl);
@@ -256,8 +422,15 @@ public class RenderComponentDirective implements TemplateDirectiveModel {
     }
 
     protected Template getTemplate(SiteItem component, Environment env) throws TemplateException {
+        String templateName = getComponentTemplateName(component, env);
+        SiteContext siteContext = SiteContext.getCurrent();
+
+        if (siteContext != null) {
+            siteContext.getCacheDependencyGraph().recordRead(ContentStoreUtils.normalizePath(templateName));
+        }
+
         try {
-            return env.getTemplateForInclusion(getComponentTemplateName(component, env), null, true);
+            return env.getTemplateForInclusion(templateName, null, true);
         } catch (IOException e) {
             throw new TemplateException("Unable to retrieve component template", e, env);
         }
@@ -310,4 +483,28 @@ public class RenderComponentDirective implements TemplateDirectiveModel {
         }
     }
 
+    /**
+     * Used to propagate a {@link TemplateException}, or a fragment that shouldn't be cached, through the cache
+     * loader.
+     */
+    protected static class FragmentRenderingException extends RuntimeException {
+
+        private final String fragment;
+
+        public FragmentRenderingException(TemplateException cause) {
+            super(cause);
+            this.fragment = null;
+        }
+
+        public FragmentRenderingException(String fragment) {
+            super("Component fragment rendered with errors", null, false, false);
+            this.fragment = fragment;
+        }
+
+        public String getFragment() {
+            return fragment;
+        }
+
+    }
+
 }
@@ -193,7 +193,8 @@ public class GraphQLFactoryImpl implements GraphQLFactory, ServletContextAware {
 
         // Add the data fetcher for the new fields
         DataFetcher asyncFetcher = async(dataFetcher,
-            new SiteAwareThreadPoolExecutor(siteContext, jobThreadPoolExecutor));
+            new SiteAwareThreadPoolExecutor(siteContext, jobThreadPoolExecutor,
+                                            siteContext.getConcurrencyLimits().getGraphQL()));
         codeRegistry.dataFetcher(coordinates(rootQueryTypeName, FIELD_NAME_CONTENT_ITEMS), asyncFetcher);
         codeRegistry.dataFetcher(coordinates(rootQueryTypeName, FIELD_NAME_PAGES), asyncFetcher);
         codeRegistry.dataFetcher(coordinates(rootQueryTypeName, FIELD_NAME_COMPONENTS), asyncFetcher);
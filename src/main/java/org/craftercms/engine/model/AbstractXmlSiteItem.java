@@ -20,7 +20,8 @@ import java.util.List;
 import java.util.Map;
 
 import org.craftercms.commons.converters.Converter;
-import org.craftercms.core.util.XmlUtils;
+import org.craftercms.engine.util.ChildElementIndex;
+import org.craftercms.engine.util.XPathUtils;
 import org.dom4j.Element;
 
 /**
@@ -32,6 +33,7 @@ import org.dom4j.Element;
 public abstract class AbstractXmlSiteItem implements SiteItem {
 
     protected Converter<Element, Object> modelFieldConverter;
+    protected volatile ChildElementIndex rootIndex;
 
     public AbstractXmlSiteItem(Converter<Element, Object> modelFieldConverter) {
         this.modelFieldConverter = modelFieldConverter;
@@ -41,8 +43,15 @@ public abstract class AbstractXmlSiteItem implements SiteItem {
 
     @Override
     public Object get(String xpathExpression) {
-        if (getRootElement() != null) {
-            Object result = XmlUtils.selectObject(getRootElement(), xpathExpression);
+        Element rootElement = getRootElement();
+        if (rootElement != null) {
+            Object result;
+            if (ChildElementIndex.isElementName(xpathExpression)) {
+                result = getRootIndex(rootElement).select(xpathExpression);
+            } else {
+                result = XPathUtils.selectObject(rootElement, xpathExpression);
+            }
+
             if (result instanceof Element) {
                 return modelFieldConverter.convert((Element) result);
             } else {
@@ -53,10 +62,20 @@ public abstract class AbstractXmlSiteItem implements SiteItem {
         }
     }
 
+    protected ChildElementIndex getRootIndex(Element rootElement) {
+        ChildElementIndex index = rootIndex;
+        if (index == null || index.getElement() != rootElement) {
+            index = new ChildElementIndex(rootElement);
+            rootIndex = index;
+        }
+
+        return index;
+    }
+
     @Override
     public String queryValue(String xpathExpression) {
         if (getRootElement() != null) {
-            return XmlUtils.selectSingleNodeValue(getRootElement(), xpathExpression);
+            return XPathUtils.selectSingleNodeValue(getRootElement(), xpathExpression);
         } else {
             return null;
         }
@@ -65,7 +84,7 @@ public abstract class AbstractXmlSiteItem implements SiteItem {
     @Override
     public List<String> queryValues(String xpathExpression) {
         if (getRootElement() != null) {
-            return XmlUtils.selectNodeValues(getRootElement(), xpathExpression);
+            return XPathUtils.selectNodeValues(getRootElement(), xpathExpression);
         } else {
             return null;
         }
@@ -74,7 +93,7 @@ public abstract class AbstractXmlSiteItem implements SiteItem {
     @Override
     public String queryValue(String xpathExpression, Map<String, String> namespaceUris) {
         if (getRootElement() != null) {
-            return XmlUtils.selectSingleNodeValue(getRootElement(), xpathExpression, namespaceUris);
+            return XPathUtils.selectSingleNodeValue(getRootElement(), xpathExpression, namespaceUris);
         } else {
             return null;
         }
@@ -83,7 +102,7 @@ public abstract class AbstractXmlSiteItem implements SiteItem {
     @Override
     public List<String> queryValues(String xpathExpression, Map<String, String> namespaceUris) {
         if (getRootElement() != null) {
-            return XmlUtils.selectNodeValues(getRootElement(), xpathExpression, namespaceUris);
+            return XPathUtils.selectNodeValues(getRootElement(), xpathExpression, namespaceUris);
         } else {
             return null;
         }
@@ -27,7 +27,8 @@ import freemarker.template.TemplateModelException;
 import freemarker.template.TemplateNodeModel;
 import freemarker.template.TemplateScalarModel;
 import freemarker.template.TemplateSequenceModel;
-import org.craftercms.core.util.XmlUtils;
+import org.craftercms.engine.util.ChildElementIndex;
+import org.craftercms.engine.util.XPathUtils;
 import org.dom4j.Attribute;
 import org.dom4j.Branch;
 import org.dom4j.Element;
@@ -42,6 +43,7 @@ public class Dom4jNodeModel implements TemplateNodeModel, TemplateSequenceModel,
 
     private Node node;
     private ObjectWrapper wrapper;
+    private ChildElementIndex childIndex;
 
     public Dom4jNodeModel(Node node, ObjectWrapper wrapper) {
         this.node = node;
@@ -60,7 +62,17 @@ public class Dom4jNodeModel implements TemplateNodeModel, TemplateSequenceModel,
 
     @Override
     public TemplateModel get(String key) throws TemplateModelException {
-        Object result = XmlUtils.selectObject(node, key);
+        Object result;
+        if (node instanceof Element && ChildElementIndex.isElementName(key)) {
+            // Fast path for plain child names (the most common case), that doesn't need an XPath evaluation
+            if (childIndex == null) {
+                childIndex = new ChildElementIndex((Element) node);
+            }
+            result = childIndex.select(key);
+        } else {
+            result = XPathUtils.selectObject(node, key);
+        }
+
         if (result != null) {
             return wrapper.wrap(result);
         } else {
@@ -16,6 +16,7 @@
 package org.craftercms.engine.plugin.impl;
 
 import org.apache.commons.configuration2.Configuration;
+import org.apache.commons.configuration2.ConfigurationUtils;
 import org.apache.commons.configuration2.HierarchicalConfiguration;
 import org.apache.commons.configuration2.XMLConfiguration;
 import org.apache.commons.io.FilenameUtils;
@@ -25,6 +26,7 @@ import org.craftercms.commons.config.ConfigurationException;
 import org.craftercms.commons.config.EncryptionAwareConfigurationReader;
 import org.craftercms.core.service.ContentStoreService;
 import org.craftercms.core.service.Context;
+import org.craftercms.core.util.cache.CacheTemplate;
 import org.craftercms.engine.plugin.PluginService;
 import org.craftercms.engine.service.context.SiteContext;
 import org.slf4j.Logger;
@@ -45,7 +47,8 @@ import static org.apache.commons.lang3.StringUtils.isEmpty;
 import static org.apache.commons.lang3.StringUtils.isNotEmpty;
 
 /**
- * Default implementation for {@link PluginService}
+ * Default implementation for {@link PluginService}. The plugin ID resolved for each URL and the parsed plugin
+ * configurations are kept in the site cache, so they're invalidated when the plugin configuration files change.
  *
  * @author joseross
  * @since 4.0.0
@@ -60,6 +63,10 @@ public class PluginServiceImpl implements PluginService {
 
     public static final String PLUGIN_ID_PLACEHOLDER = "pluginId";
 
+    public static final String CACHE_CONST_KEY_ELEM_PLUGIN_PATH = "pluginPath";
+
+    public static final String CACHE_CONST_KEY_ELEM_PLUGIN_CONFIG = "pluginConfig";
+
     protected Pattern pattern = Pattern.compile(".*plugins/(.+)");
 
     protected ContentStoreService contentStoreService;
@@ -79,9 +86,23 @@ public class PluginServiceImpl implements PluginService {
 
     @Override
     public HierarchicalConfiguration<?> getPluginConfig(String pluginId) {
-        Context context = getCurrentContext();
         String pluginPath = pluginId.replaceAll("\\.", File.separator);
-        return loadPluginConfiguration(context, getPluginConfigPath(pluginPath));
+        return getPluginConfiguration(getPluginConfigPath(pluginPath));
+    }
+
+    /**
+     * Returns a copy of the cached plugin configuration, so changes made by a caller (like a script) don't leak into
+     * the configuration used by other callers.
+     */
+    protected HierarchicalConfiguration<?> getPluginConfiguration(String configPath) {
+        SiteContext siteContext = getCurrentSiteContext();
+        Context context = siteContext.getContext();
+        CacheTemplate cacheTemplate = siteContext.getCacheTemplate();
+        HierarchicalConfiguration<?> config = cacheTemplate.getObject(context, () ->
+            loadPluginConfiguration(context, configPath), configPath, CACHE_CONST_KEY_ELEM_PLUGIN_CONFIG);
+
+        // Cloned instead of using the copy constructor to keep the interpolator with the lookup variables
+        return (HierarchicalConfiguration<?>) ConfigurationUtils.cloneConfiguration(config);
     }
 
     protected HierarchicalConfiguration<?> loadPluginConfiguration(Context context, String pluginPath) {
@@ -100,7 +121,6 @@ public class PluginServiceImpl implements PluginService {
     }
 
     public void addPluginVariables(String url, BiConsumer<String, Object> setter) {
-        Context context = getCurrentContext();
         Matcher matcher = pattern.matcher(url);
 
         if (!matcher.matches()) {
@@ -108,25 +128,41 @@ public class PluginServiceImpl implements PluginService {
             return;
         }
 
-        // Iterate over all possible ids
-        String parentUrl = matcher.group(1);
-        boolean pluginFound = false;
-        while (!pluginFound && isNotEmpty(parentUrl)) {
-            parentUrl = FilenameUtils.getPathNoEndSeparator(parentUrl);
-            pluginFound = pluginConfigExists(parentUrl);
-        }
-
-        if (isEmpty(parentUrl)) {
+        String pluginPath = getPluginPath(url, matcher.group(1));
+        if (isEmpty(pluginPath)) {
             return;
         }
 
-        String pluginId = getPluginId(parentUrl);
-        Configuration pluginConfig = loadPluginConfiguration(context, getPluginConfigPath(parentUrl));
+        String pluginId = getPluginId(pluginPath);
+        Configuration pluginConfig = getPluginConfiguration(getPluginConfigPath(pluginPath));
 
         setter.accept(PLUGIN_ID_KEY, pluginId);
         setter.accept(PLUGIN_CONFIG_KEY, pluginConfig);
     }
 
+    /**
+     * Returns the path of the plugin the URL belongs to (or an empty string if it doesn't belong to any plugin).
+     * The config files checked are recorded as dependencies of the URL, so the cached path is invalidated when
+     * any of them is added or removed.
+     */
+    protected String getPluginPath(String url, String pluginUrl) {
+        SiteContext siteContext = getCurrentSiteContext();
+
+        return siteContext.getCacheTemplate().getObject(siteContext.getContext(), () ->
+            siteContext.getCacheDependencyGraph().trackDependencies(url, () -> {
+                // Iterate over all possible ids
+                String parentUrl = pluginUrl;
+                boolean pluginFound = false;
+                while (!pluginFound && isNotEmpty(parentUrl)) {
+                    parentUrl = FilenameUtils.getPathNoEndSeparator(parentUrl);
+                    siteContext.getCacheDependencyGraph().recordRead(getPluginConfigPath(parentUrl));
+                    pluginFound = pluginConfigExists(parentUrl);
+                }
+
+                return parentUrl;
+            }), url, CACHE_CONST_KEY_ELEM_PLUGIN_PATH);
+    }
+
     protected boolean pluginConfigExists(String path) {
         Context context = getCurrentContext();
         return contentStoreService.exists(context, getPluginConfigPath(path));
@@ -141,9 +177,12 @@ public class PluginServiceImpl implements PluginService {
     }
 
     protected Context getCurrentContext() {
+        return getCurrentSiteContext().getContext();
+    }
+
+    protected SiteContext getCurrentSiteContext() {
         return Optional.ofNullable(SiteContext.getCurrent())
-                .orElseThrow(IllegalStateException::new)
-                .getContext();
+                .orElseThrow(IllegalStateException::new);
     }
 
 }
@@ -0,0 +1,283 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.scripting;
+
+import org.springframework.web.util.UriTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Route table of the script URL templates (like {@code /scripts/rest/user/{username}.get.groovy}) built from the
+ * result of a {@link ScriptUrlTemplateScanner} scan. The templates are stored in a trie by their leading literal
+ * segments, so a lookup only evaluates the templates whose literal prefix matches the URL, starting with the longest
+ * prefix (literal segments have precedence over variables). Each candidate is evaluated with a single regex match
+ * that also extracts the path variables. URLs that don't match any template are remembered (up to a max number), so
+ * they're not evaluated again while the table is cached.
+ *
+ * @since 4.2.0
+ */
+public class ScriptUrlRouteTable {
+
+    public static final int DEFAULT_MAX_NEGATIVE_LOOKUPS = 1000;
+
+    private static final String PATH_SEPARATOR = "/";
+
+    private final List<UriTemplate> templates;
+    private final Node root;
+    private final Set<String> negativeLookups;
+    private final int maxNegativeLookups;
+
+    public ScriptUrlRouteTable(List<UriTemplate> templates) {
+        this(templates, DEFAULT_MAX_NEGATIVE_LOOKUPS);
+    }
+
+    public ScriptUrlRouteTable(List<UriTemplate> templates, int maxNegativeLookups) {
+        this.templates = Collections.unmodifiableList(new ArrayList<>(templates));
+        this.root = new Node();
+        this.negativeLookups = ConcurrentHashMap.newKeySet();
+        this.maxNegativeLookups = maxNegativeLookups;
+
+        for (UriTemplate template : templates) {
+            addRoute(new Route(template.toString()));
+        }
+
+        root.sortRoutes();
+    }
+
+    /**
+     * Returns the URL templates of the table.
+     */
+    public List<UriTemplate> getTemplates() {
+        return templates;
+    }
+
+    /**
+     * Returns the number of URLs currently remembered as not matching any template.
+     */
+    public int getNegativeLookupCount() {
+        return negativeLookups.size();
+    }
+
+    /**
+     * Finds the template that matches the script URL.
+     *
+     * @param scriptUrl the URL of the script
+     * @return the match, with the URL of the actual script and the path variables, or null if no template matches
+     */
+    public RouteMatch match(String scriptUrl) {
+        if (negativeLookups.contains(scriptUrl)) {
+            return null;
+        }
+
+        // Collect the nodes of the literal segments of the URL, to evaluate them from the deepest one
+        List<Node> nodes = new ArrayList<>();
+        Node node = root;
+        int start = 0;
+
+        while (node != null) {
+            nodes.add(node);
+
+            while (start < scriptUrl.length() && scriptUrl.charAt(start) == '/') {
+                start++;
+            }
+            if (start >= scriptUrl.length() || node.children.isEmpty()) {
+                break;
+            }
+
+            int end = scriptUrl.indexOf('/', start);
+            if (end < 0) {
+                end = scriptUrl.length();
+            }
+
+            node = node.children.get(scriptUrl.substring(start, end));
+            start = end;
+        }
+
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            for (Route route : nodes.get(i).routes) {
+                Map<String, String> pathVars = route.match(scriptUrl);
+                if (pathVars != null) {
+                    return new RouteMatch(route.template, pathVars);
+                }
+            }
+        }
+
+        if (negativeLookups.size() >= maxNegativeLookups) {
+            negativeLookups.clear();
+        }
+        negativeLookups.add(scriptUrl);
+
+        return null;
+    }
+
+    private void addRoute(Route route) {
+        Node node = root;
+        for (String segment : route.template.split(PATH_SEPARATOR)) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            if (segment.indexOf('{') >= 0) {
+                break;
+            }
+
+            node = node.children.computeIfAbsent(segment, key -> new Node());
+        }
+
+        node.routes.add(route);
+    }
+
+    /**
+     * Result of a successful lookup.
+     */
+    public static class RouteMatch {
+
+        private final String scriptUrl;
+        private final Map<String, String> pathVariables;
+
+        public RouteMatch(String scriptUrl, Map<String, String> pathVariables) {
+            this.scriptUrl = scriptUrl;
+            this.pathVariables = pathVariables;
+        }
+
+        /**
+         * Returns the URL of the actual script (the template).
+         */
+        public String getScriptUrl() {
+            return scriptUrl;
+        }
+
+        /**
+         * Returns the values of the template variables.
+         */
+        public Map<String, String> getPathVariables() {
+            return pathVariables;
+        }
+
+    }
+
+    private static class Node {
+
+        final Map<String, Node> children = new HashMap<>();
+        final List<Route> routes = new ArrayList<>(1);
+
+        void sortRoutes() {
+            // Between templates with the same literal prefix, the ones with less variables and more literal
+            // characters are more specific
+            routes.sort(Comparator.comparingInt((Route route) -> route.variableNames.size())
+                                  .thenComparing(Comparator.comparingInt((Route route) -> route.literalLength)
+                                                           .reversed()));
+            for (Node child : children.values()) {
+                child.sortRoutes();
+            }
+        }
+
+    }
+
+    /**
+     * A compiled template. The template is parsed the same way as {@link UriTemplate} does, to build a single regex
+     * that both matches the URL and captures the variables.
+     */
+    private static class Route {
+
+        final String template;
+        final Pattern pattern;
+        final List<String> variableNames;
+        final int literalLength;
+
+        Route(String template) {
+            StringBuilder regex = new StringBuilder();
+            StringBuilder builder = new StringBuilder();
+            List<String> names = new ArrayList<>();
+            int literals = 0;
+            int level = 0;
+
+            for (int i = 0; i < template.length(); i++) {
+                char c = template.charAt(i);
+                if (c == '{') {
+                    level++;
+                    if (level == 1) {
+                        // start of URI variable
+                        literals += builder.length();
+                        regex.append(quote(builder));
+                        builder = new StringBuilder();
+                        continue;
+                    }
+                } else if (c == '}') {
+                    level--;
+                    if (level == 0) {
+                        // end of URI variable
+                        String variable = builder.toString();
+                        int idx = variable.indexOf(':');
+                        if (idx == -1) {
+                            regex.append("([^/]*)");
+                            names.add(variable);
+                        } else {
+                            if (idx + 1 == variable.length()) {
+                                throw new IllegalArgumentException(
+                                    "No custom regular expression specified after ':' in \"" + variable + "\"");
+                            }
+                            regex.append('(').append(variable.substring(idx + 1)).append(')');
+                            names.add(variable.substring(0, idx));
+                        }
+                        builder = new StringBuilder();
+                        continue;
+                    }
+                }
+                builder.append(c);
+            }
+
+            if (builder.length() > 0) {
+                literals += builder.length();
+                regex.append(quote(builder));
+            }
+
+            this.template = template;
+            this.pattern = Pattern.compile(regex.toString());
+            this.variableNames = names;
+            this.literalLength = literals;
+        }
+
+        Map<String, String> match(String url) {
+            Matcher matcher = pattern.matcher(url);
+            if (!matcher.matches()) {
+                return null;
+            }
+
+            Map<String, String> pathVars = new LinkedHashMap<>(variableNames.size());
+            for (int i = 1; i <= matcher.groupCount() && i <= variableNames.size(); i++) {
+                pathVars.put(variableNames.get(i - 1), matcher.group(i));
+            }
+
+            return pathVars;
+        }
+
+        private static String quote(StringBuilder builder) {
+            return builder.length() > 0? Pattern.quote(builder.toString()) : "";
+        }
+
+    }
+
+}
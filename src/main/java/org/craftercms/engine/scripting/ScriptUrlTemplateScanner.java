@@ -37,4 +37,15 @@ public interface ScriptUrlTemplateScanner {
      */
     List<UriTemplate> scan(SiteContext siteContext);
 
+    /**
+     * Returns the route table of the script URL templates of the site context.
+     *
+     * @param siteContext the site context to scan
+     *
+     * @return the route table of the URL templates
+     */
+    default ScriptUrlRouteTable getRouteTable(SiteContext siteContext) {
+        return new ScriptUrlRouteTable(scan(siteContext));
+    }
+
 }
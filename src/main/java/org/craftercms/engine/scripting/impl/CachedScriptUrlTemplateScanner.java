@@ -18,6 +18,7 @@ package org.craftercms.engine.scripting.impl;
 
 import org.craftercms.core.util.cache.CacheTemplate;
 import org.craftercms.engine.event.SiteContextInitializedEvent;
+import org.craftercms.engine.scripting.ScriptUrlRouteTable;
 import org.craftercms.engine.scripting.ScriptUrlTemplateScanner;
 import org.craftercms.engine.service.context.SiteContext;
 import org.springframework.context.ApplicationListener;
@@ -26,8 +27,9 @@ import org.springframework.web.util.UriTemplate;
 import java.util.List;
 
 /**
- * {@link ScriptUrlTemplateScanner} decorator that caches the result of an actual scan, and also pre-caches
- * the URL templates on site context creation.
+ * {@link ScriptUrlTemplateScanner} decorator that caches the route table built from the result of an actual scan,
+ * and also pre-caches it on site context creation. The cache key references the REST scripts folder, so the table
+ * is evicted when any script under it changes.
  *
  * @author avasquez
  */
@@ -47,13 +49,19 @@ public class CachedScriptUrlTemplateScanner implements ScriptUrlTemplateScanner,
     @Override
     public void onApplicationEvent(SiteContextInitializedEvent event) {
         // Pre-cache the url templates after a site context is initialized.
-        scan(event.getSiteContext());
+        getRouteTable(event.getSiteContext());
     }
 
     @Override
     public List<UriTemplate> scan(final SiteContext siteContext) {
+        return getRouteTable(siteContext).getTemplates();
+    }
+
+    @Override
+    public ScriptUrlRouteTable getRouteTable(final SiteContext siteContext) {
         return cacheTemplate.getObject(
-                siteContext.getContext(), () -> actualScanner.scan(siteContext), URL_TEMPLATES_CACHE_KEY_ELEM);
+                siteContext.getContext(), () -> new ScriptUrlRouteTable(actualScanner.scan(siteContext)),
+                siteContext.getRestScriptsPath(), URL_TEMPLATES_CACHE_KEY_ELEM);
     }
 
 }
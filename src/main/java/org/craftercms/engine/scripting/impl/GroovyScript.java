@@ -25,6 +25,7 @@ import org.codehaus.groovy.runtime.InvokerHelper;
 import org.craftercms.core.util.cache.impl.AbstractCachingAwareObject;
 import org.craftercms.engine.exception.ScriptException;
 import org.craftercms.engine.scripting.Script;
+import org.craftercms.engine.service.context.SiteContext;
 import org.slf4j.MDC;
 
 /**
@@ -62,6 +63,18 @@ public class GroovyScript extends AbstractCachingAwareObject implements Script {
             allVariables.putAll(variables);
         }
 
+        // Scripts are limited by the site concurrency limits, so a saturated site gets rejected right away instead of
+        // taking all the request threads. Page and REST script requests already hold the permit (taken by the
+        // ScriptsConcurrencyLimitInterceptor), so only scripts executed outside of them take one here
+        SiteContext siteContext = SiteContext.getCurrent();
+        if (siteContext != null) {
+            return siteContext.getConcurrencyLimits().getScripts().call(() -> run(allVariables));
+        } else {
+            return run(allVariables);
+        }
+    }
+
+    protected Object run(Map<String, Object> allVariables) throws ScriptException {
         MDC.put(SCRIPT_URL_MDC_KEY, scriptUrl);
 
         try  {
@@ -19,13 +19,22 @@ package org.craftercms.engine.scripting.impl;
 import groovy.util.GroovyScriptEngine;
 import groovy.util.ResourceConnector;
 import groovy.util.ResourceException;
+import org.apache.commons.io.IOUtils;
+import org.codehaus.groovy.control.CompilerConfiguration;
 import org.craftercms.engine.exception.ScriptException;
 import org.craftercms.engine.exception.ScriptNotFoundException;
 import org.craftercms.engine.scripting.Script;
 import org.craftercms.engine.scripting.ScriptFactory;
 import org.craftercms.engine.service.context.SiteContext;
+import org.craftercms.engine.util.groovy.GroovyBytecodeCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLConnection;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import static org.craftercms.engine.util.GroovyScriptUtils.getCompilerConfiguration;
@@ -38,6 +47,8 @@ import static org.craftercms.engine.util.GroovyScriptUtils.getCompilerConfigurat
  */
 public class GroovyScriptFactory implements ScriptFactory {
 
+    private static final Logger logger = LoggerFactory.getLogger(GroovyScriptFactory.class);
+
     public static final String CACHE_CONST_KEY_ELEM_SCRIPT = "groovyScript";
 
     public static final String GROOVY_FILE_EXTENSION = "groovy";
@@ -45,6 +56,10 @@ public class GroovyScriptFactory implements ScriptFactory {
     protected SiteContext siteContext;
     protected GroovyScriptEngine scriptEngine;
     protected Map<String, Object> globalVariables;
+    protected ResourceConnector resourceConnector;
+    protected GroovyBytecodeCache bytecodeCache;
+    protected GroovyBytecodeCache.Recorder recorder;
+    protected String compilerFingerprint;
 
     public GroovyScriptFactory(SiteContext siteContext, ResourceConnector resourceConnector,
                                Map<String, Object> globalVariables, boolean enableScriptSandbox) {
@@ -52,15 +67,43 @@ public class GroovyScriptFactory implements ScriptFactory {
         this.scriptEngine = new GroovyScriptEngine(resourceConnector);
         this.scriptEngine.setConfig(getCompilerConfiguration(enableScriptSandbox));
         this.globalVariables = globalVariables;
+        this.resourceConnector = resourceConnector;
     }
 
     public GroovyScriptFactory(SiteContext siteContext, ResourceConnector resourceConnector,
                                ClassLoader parentClassLoader, Map<String, Object> globalVariables,
                                boolean enableScriptSandbox) {
+        this(siteContext, resourceConnector, parentClassLoader, globalVariables, enableScriptSandbox, null, null);
+    }
+
+    public GroovyScriptFactory(SiteContext siteContext, ResourceConnector resourceConnector,
+                               ClassLoader parentClassLoader, Map<String, Object> globalVariables,
+                               boolean enableScriptSandbox, GroovyBytecodeCache bytecodeCache,
+                               String compilerFingerprint) {
+        CompilerConfiguration config = getCompilerConfiguration(enableScriptSandbox);
+
         this.siteContext = siteContext;
-        this.scriptEngine = new GroovyScriptEngine(resourceConnector, parentClassLoader);
-        this.scriptEngine.setConfig(getCompilerConfiguration(enableScriptSandbox));
         this.globalVariables = globalVariables;
+        this.resourceConnector = resourceConnector;
+
+        if (bytecodeCache != null && bytecodeCache.isEnabled()) {
+            GroovyBytecodeCache.Recorder recorder = bytecodeCache.createRecorder();
+            config.setBytecodePostprocessor(recorder);
+
+            this.bytecodeCache = bytecodeCache;
+            this.recorder = recorder;
+            this.compilerFingerprint = compilerFingerprint;
+            // The sources read by the script engine are the dependencies of the script being compiled
+            this.resourceConnector = name -> {
+                URLConnection connection = resourceConnector.getResourceConnection(name);
+                recorder.recordSource(name);
+
+                return connection;
+            };
+        }
+
+        this.scriptEngine = new GroovyScriptEngine(this.resourceConnector, parentClassLoader);
+        this.scriptEngine.setConfig(config);
     }
 
     @Override
@@ -70,18 +113,103 @@ public class GroovyScriptFactory implements ScriptFactory {
 
     @Override
     public Script getScript(String url) throws ScriptException {
-        return siteContext.getCacheTemplate().getObject(siteContext.getContext(), () -> {
+        // The files read by the script engine while loading the script (the script itself and the scripts it
+        // depends on) are recorded as dependencies of the script
+        return siteContext.getCacheTemplate().getObject(siteContext.getContext(), () ->
+            siteContext.getCacheDependencyGraph().trackDependencies(url, () -> {
+                try {
+                    return new GroovyScript(url, loadScriptClass(url), globalVariables);
+                } catch (Exception e) {
+                    Throwable cause = e.getCause();
+                    if (e instanceof ResourceException && cause instanceof FileNotFoundException) {
+                        throw new ScriptNotFoundException(cause.getMessage(), cause);
+                    } else {
+                        throw new ScriptException(e.getMessage(), e);
+                    }
+                }
+            }), url, CACHE_CONST_KEY_ELEM_SCRIPT);
+    }
+
+    /**
+     * Loads the class of the script, using the compiled class in the {@link GroovyBytecodeCache} if there's one
+     * and neither the script nor the scripts it depends on have changed.
+     */
+    protected Class<?> loadScriptClass(String url) throws Exception {
+        if (bytecodeCache == null) {
+            return scriptEngine.loadScriptByName(url);
+        }
+
+        String key = bytecodeCache.getKey(url, readSource(url), compilerFingerprint);
+        GroovyBytecodeCache.CompiledUnit unit = bytecodeCache.load(key);
+        if (unit != null && dependenciesUnchanged(unit)) {
             try {
-                return new GroovyScript(url,scriptEngine.loadScriptByName(url), globalVariables);
-            } catch (Exception e) {
-                Throwable cause = e.getCause();
-                if (e instanceof ResourceException && cause instanceof FileNotFoundException) {
-                    throw new ScriptNotFoundException(cause.getMessage(), cause);
-                } else {
-                    throw new ScriptException(e.getMessage(), e);
+                Map<String, Class<?>> classes = bytecodeCache.defineClasses(unit,
+                                                                            scriptEngine.getGroovyClassLoader());
+                return classes.get(unit.getMainClassName());
+            } catch (LinkageError | IllegalStateException e) {
+                logger.warn("Unable to define the cached classes of script " + url + ", it will be compiled again", e);
+
+                bytecodeCache.delete(key);
+            }
+        }
+
+        GroovyBytecodeCache.Recording recording = recorder.start();
+        Class<?> scriptClass;
+        try {
+            scriptClass = scriptEngine.loadScriptByName(url);
+        } finally {
+            recorder.stop();
+        }
+
+        // If nothing was recorded the class was already compiled by the script engine
+        if (recording.getClasses().containsKey(scriptClass.getName())) {
+            storeCompiledUnit(key, url, scriptClass, recording);
+        }
+
+        return scriptClass;
+    }
+
+    protected void storeCompiledUnit(String key, String url, Class<?> scriptClass,
+                                     GroovyBytecodeCache.Recording recording) {
+        Map<String, String> dependencies = new LinkedHashMap<>();
+        try {
+            for (String source : recording.getSources()) {
+                if (!source.equals(url)) {
+                    dependencies.put(source, bytecodeCache.hash(readSource(source)));
                 }
             }
-        }, url, CACHE_CONST_KEY_ELEM_SCRIPT);
+        } catch (ResourceException | IOException e) {
+            logger.debug("Unable to read the dependencies of script " + url + ", it won't be cached on disk", e);
+            return;
+        }
+
+        bytecodeCache.store(key, new GroovyBytecodeCache.CompiledUnit(scriptClass.getName(), recording.getClasses(),
+                                                                      dependencies));
+    }
+
+    protected boolean dependenciesUnchanged(GroovyBytecodeCache.CompiledUnit unit) {
+        for (Map.Entry<String, String> dependency : unit.getDependencies().entrySet()) {
+            try {
+                if (!dependency.getValue().equals(bytecodeCache.hash(readSource(dependency.getKey())))) {
+                    return false;
+                }
+            } catch (ResourceException | IOException e) {
+                // The dependency doesn't exist anymore
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Reads the source through the resource connector, so that it's also recorded as a dependency of the script in
+     * the site cache.
+     */
+    protected byte[] readSource(String url) throws ResourceException, IOException {
+        try (InputStream in = resourceConnector.getResourceConnection(url).getInputStream()) {
+            return IOUtils.toByteArray(in);
+        }
     }
 
 }
@@ -24,13 +24,13 @@ import org.craftercms.commons.http.HttpUtils;
 import org.craftercms.commons.lang.Callback;
 import org.craftercms.core.service.ContentStoreService;
 import org.craftercms.core.util.cache.CacheTemplate;
-import org.craftercms.core.util.cache.impl.CachingAwareList;
 import org.craftercms.engine.exception.ConfigurationException;
 import org.craftercms.engine.plugin.PluginService;
 import org.craftercms.engine.scripting.Script;
 import org.craftercms.engine.scripting.ScriptFactory;
 import org.craftercms.engine.service.context.SiteContext;
 import org.craftercms.engine.util.ConfigUtils;
+import org.craftercms.engine.util.PathPatternTrie;
 import org.springframework.security.web.util.matcher.*;
 import org.springframework.util.AntPathMatcher;
 import org.springframework.util.PathMatcher;
@@ -40,7 +40,11 @@ import jakarta.servlet.http.HttpServletRequest;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -57,10 +61,13 @@ public class ScriptFilter implements Filter {
 
     public static final String FILTER_MAPPINGS_CACHE_KEY = "filterMappings";
 
+    public static final int DEFAULT_MAX_CACHED_CHAINS = 1000;
+
     private ServletContext servletContext;
     private CacheTemplate cacheTemplate;
     protected PathMatcher pathMatcher;
     protected boolean disableVariableRestrictions;
+    protected int maxCachedChains;
 
     protected PluginService pluginService;
 
@@ -69,6 +76,7 @@ public class ScriptFilter implements Filter {
     public ScriptFilter(CacheTemplate cacheTemplate) {
         pathMatcher = new AntPathMatcher();
         excludedUrlsMatcher = new NegatedRequestMatcher(AnyRequestMatcher.INSTANCE);
+        maxCachedChains = DEFAULT_MAX_CACHED_CHAINS;
         this.cacheTemplate = cacheTemplate;
     }
 
@@ -80,6 +88,14 @@ public class ScriptFilter implements Filter {
         this.disableVariableRestrictions = disableVariableRestrictions;
     }
 
+    /**
+     * Sets the max number of request URIs whose filter scripts are remembered per site (once reached, the
+     * remembered URIs are cleared).
+     */
+    public void setMaxCachedChains(int maxCachedChains) {
+        this.maxCachedChains = maxCachedChains;
+    }
+
     public void setPluginService(PluginService pluginService) {
         this.pluginService = pluginService;
     }
@@ -107,16 +123,10 @@ public class ScriptFilter implements Filter {
     }
 
     protected FilterChain getScriptFilterChain(HttpServletRequest httpRequest, FilterChain chain) {
-        List<FilterMapping> filterMappings = getFilterMappings();
-        if (CollectionUtils.isNotEmpty(filterMappings)) {
+        FilterMappings filterMappings = getFilterMappings();
+        if (filterMappings != null && !filterMappings.isEmpty()) {
             String requestUri = HttpUtils.getRequestUriWithoutContextPath(httpRequest);
-            List<Script> scripts = new ArrayList<>();
-
-            for (FilterMapping mapping : filterMappings) {
-                if (!excludeFilter(requestUri, mapping.excludes) && includeFilter(requestUri, mapping.includes)) {
-                    scripts.add(mapping.script);
-                }
-            }
+            List<Script> scripts = filterMappings.getScripts(requestUri);
 
             if (CollectionUtils.isNotEmpty(scripts)) {
                 chain = new ScriptFilterChainImpl(scripts.iterator(),
@@ -133,15 +143,15 @@ public class ScriptFilter implements Filter {
     }
 
     @SuppressWarnings("unchecked")
-    protected List<FilterMapping> getFilterMappings() {
+    protected FilterMappings getFilterMappings() {
         final SiteContext siteContext = SiteContext.getCurrent();
         if (siteContext != null) {
-            Callback<List<FilterMapping>> callback = new Callback<>() {
+            Callback<FilterMappings> callback = new Callback<>() {
 
                 @Override
-                public List<FilterMapping> execute() {
+                public FilterMappings execute() {
                     HierarchicalConfiguration config = ConfigUtils.getCurrentConfig();
-                    CachingAwareList<FilterMapping> mappings = new CachingAwareList<>();
+                    List<FilterMapping> mappings = new ArrayList<>();
 
                     if (config != null) {
                         List<HierarchicalConfiguration> filtersConfig = config.configurationsAt(FILTER_KEY);
@@ -165,12 +175,16 @@ public class ScriptFilter implements Filter {
                                     mapping.excludes = excludes;
 
                                     mappings.add(mapping);
+
+                                    // The mappings hold the scripts, so they need to be invalidated when they change
+                                    siteContext.getCacheDependencyGraph().addDependency(scriptUrl,
+                                                                                        FILTER_MAPPINGS_CACHE_KEY);
                                 }
                             }
                         }
                     }
 
-                    return mappings;
+                    return new FilterMappings(mappings, pathMatcher, maxCachedChains);
                 }
 
             };
@@ -181,35 +195,89 @@ public class ScriptFilter implements Filter {
         }
     }
 
-    protected boolean excludeFilter(String requestUri, String[] excludes) {
-        if (ArrayUtils.isNotEmpty(excludes)) {
-            for (String uriPattern : excludes) {
-                if (pathMatcher.match(uriPattern, requestUri)) {
-                    return true;
+    protected static class FilterMapping {
+
+        private Script script;
+        private String[] includes;
+        private String[] excludes;
+
+    }
+
+    /**
+     * The filter mappings of a site, compiled into {@link PathPatternTrie}s of the include and exclude patterns so
+     * that the scripts of a request are resolved without matching every pattern. The scripts resolved for each
+     * request URI are also remembered, up to a max number of URIs.
+     */
+    protected static class FilterMappings {
+
+        private final List<FilterMapping> mappings;
+        private final PathPatternTrie<Integer> includes;
+        private final PathPatternTrie<Integer> excludes;
+        private final Map<String, List<Script>> chains;
+        private final int maxChains;
+
+        public FilterMappings(List<FilterMapping> mappings, PathMatcher pathMatcher, int maxChains) {
+            this.mappings = mappings;
+            this.includes = new PathPatternTrie<>(pathMatcher);
+            this.excludes = new PathPatternTrie<>(pathMatcher);
+            this.chains = new ConcurrentHashMap<>();
+            this.maxChains = maxChains;
+
+            for (int i = 0; i < mappings.size(); i++) {
+                FilterMapping mapping = mappings.get(i);
+                for (String include : mapping.includes) {
+                    includes.add(include, i);
+                }
+                if (ArrayUtils.isNotEmpty(mapping.excludes)) {
+                    for (String exclude : mapping.excludes) {
+                        excludes.add(exclude, i);
+                    }
                 }
             }
         }
 
-        return false;
-    }
+        public boolean isEmpty() {
+            return mappings.isEmpty();
+        }
+
+        /**
+         * Returns the scripts of the filters that apply to the request URI, in the order they were configured.
+         */
+        public List<Script> getScripts(String requestUri) {
+            List<Script> scripts = chains.get(requestUri);
+            if (scripts == null) {
+                scripts = resolveScripts(requestUri);
 
-    protected boolean includeFilter(String requestUri, String[] includes) {
-        if (ArrayUtils.isNotEmpty(includes)) {
-            for (String uriPattern : includes) {
-                if (pathMatcher.match(uriPattern, requestUri)) {
-                    return true;
+                if (chains.size() >= maxChains) {
+                    chains.clear();
                 }
+                chains.put(requestUri, scripts);
             }
+
+            return scripts;
         }
 
-        return false;
-    }
+        private List<Script> resolveScripts(String requestUri) {
+            List<Integer> included = includes.match(requestUri);
+            if (included.isEmpty()) {
+                return Collections.emptyList();
+            }
 
-    protected static class FilterMapping {
+            BitSet matching = new BitSet(mappings.size());
+            for (Integer idx : included) {
+                matching.set(idx);
+            }
+            for (Integer idx : excludes.match(requestUri)) {
+                matching.clear(idx);
+            }
 
-        private Script script;
-        private String[] includes;
-        private String[] excludes;
+            List<Script> scripts = new ArrayList<>(matching.cardinality());
+            for (int idx = matching.nextSetBit(0); idx >= 0; idx = matching.nextSetBit(idx + 1)) {
+                scripts.add(mappings.get(idx).script);
+            }
+
+            return Collections.unmodifiableList(scripts);
+        }
 
     }
 
@@ -21,6 +21,7 @@ import java.util.Map;
 
 import jakarta.servlet.ServletContext;
 
+import org.craftercms.engine.exception.ConcurrencyLimitExceededException;
 import org.craftercms.engine.scripting.ScriptFactory;
 import org.craftercms.engine.service.context.SiteContext;
 import org.craftercms.engine.util.GroovyScriptUtils;
@@ -58,7 +59,10 @@ public class ScriptJob implements Job {
             Map<String, Object> variables = new HashMap<>();
             GroovyScriptUtils.addJobScriptVariables(variables, servletContext);
 
-            scriptFactory.getScript(scriptUrl).execute(variables);
+            siteContext.getConcurrencyLimits().getJobs().call(() ->
+                    scriptFactory.getScript(scriptUrl).execute(variables));
+        } catch (ConcurrencyLimitExceededException e) {
+            throw new JobExecutionException("Script job at " + scriptUrl + " skipped: " + e.getMessage(), e);
         } catch (Exception e) {
             throw new JobExecutionException("Error executing script job at " + scriptUrl, e);
         } finally {
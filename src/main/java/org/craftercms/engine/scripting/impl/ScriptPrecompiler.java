@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.scripting.impl;
+
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.time.StopWatch;
+import org.craftercms.core.service.ContentStoreService;
+import org.craftercms.core.service.Context;
+import org.craftercms.core.service.Item;
+import org.craftercms.engine.scripting.ScriptFactory;
+import org.craftercms.engine.service.context.SiteContext;
+import org.craftercms.engine.util.concurrent.SiteAwareRunnable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+/**
+ * Compiles all the scripts and Groovy classes of a site ahead of time, when the site context is initialized, so that
+ * the first requests after a deploy or a context rebuild don't have to wait for the compilation. Compiled scripts
+ * are added to the site cache just like when they're compiled on demand, and compile errors are logged right away.
+ *
+ * @since 4.2.0
+ */
+public class ScriptPrecompiler {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScriptPrecompiler.class);
+
+    public static final String GROOVY_CLASS_FILE_EXTENSION = ".groovy";
+
+    protected boolean enabled;
+    protected String scriptsFolder;
+    protected String classesFolder;
+    protected int parallelism;
+
+    public ScriptPrecompiler(boolean enabled, String scriptsFolder, String classesFolder) {
+        this.enabled = enabled;
+        this.scriptsFolder = scriptsFolder;
+        this.classesFolder = StringUtils.appendIfMissing(classesFolder, "/");
+        this.parallelism = 1;
+    }
+
+    /**
+     * Sets the max number of scripts that can be compiled in parallel. If 1 or less, the scripts are compiled
+     * sequentially by the calling thread.
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Compiles the Groovy classes and then the scripts of the site.
+     *
+     * @param siteContext the site context
+     * @return the compile errors by script or class URL
+     */
+    public Map<String, Throwable> precompile(SiteContext siteContext) {
+        ScriptFactory scriptFactory = siteContext.getScriptFactory();
+        if (!enabled || scriptFactory == null) {
+            return Collections.emptyMap();
+        }
+
+        String siteName = siteContext.getSiteName();
+        List<String> scriptUrls = new ArrayList<>();
+        List<String> classUrls = new ArrayList<>();
+
+        logger.info("Starting script precompilation for site '{}'", siteName);
+
+        StopWatch stopWatch = new StopWatch();
+        stopWatch.start();
+
+        String scriptFileExtension = scriptFactory.getScriptFileExtension();
+        findScripts(siteContext.getContext(), siteContext.getStoreService(), scriptFileExtension, scriptsFolder,
+                    scriptUrls, classUrls);
+        if (!classesFolder.startsWith(StringUtils.appendIfMissing(scriptsFolder, "/"))) {
+            findScripts(siteContext.getContext(), siteContext.getStoreService(), scriptFileExtension,
+                        classesFolder, scriptUrls, classUrls);
+        }
+
+        Map<String, Throwable> errors = new ConcurrentHashMap<>();
+        ForkJoinPool pool = parallelism > 1? new ForkJoinPool(parallelism) : null;
+        try {
+            // Classes are compiled first since the scripts depend on them
+            compileAll(siteContext, pool, classUrls, errors, url -> compileClass(siteContext, url));
+            compileAll(siteContext, pool, scriptUrls, errors, scriptFactory::getScript);
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+
+        stopWatch.stop();
+
+        if (errors.isEmpty()) {
+            logger.info("Precompiled {} scripts and {} classes for site '{}' in {} ms", scriptUrls.size(),
+                        classUrls.size(), siteName, stopWatch.getTime());
+        } else {
+            logger.error("Precompiled {} scripts and {} classes for site '{}' in {} ms, {} failed to compile: {}",
+                         scriptUrls.size(), classUrls.size(), siteName, stopWatch.getTime(), errors.size(),
+                         new TreeMap<>(errors).keySet());
+        }
+
+        return errors;
+    }
+
+    protected void compileAll(SiteContext siteContext, ForkJoinPool pool, List<String> urls,
+                              Map<String, Throwable> errors, Consumer<String> compiler) {
+        Consumer<String> task = url -> new SiteAwareRunnable(siteContext, () -> {
+            try {
+                compiler.accept(url);
+            } catch (Exception | LinkageError e) {
+                logger.error("Error compiling " + url + " of site '" + siteContext.getSiteName() + "'", e);
+
+                errors.put(url, e);
+            }
+        }).run();
+
+        if (pool != null) {
+            try {
+                pool.submit(() -> urls.parallelStream().forEach(task)).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                logger.error("Error while precompiling scripts of site '" + siteContext.getSiteName() + "'", e);
+            }
+        } else {
+            urls.forEach(task);
+        }
+    }
+
+    protected void compileClass(SiteContext siteContext, String url) {
+        String className = StringUtils.removeEnd(StringUtils.removeStart(url, classesFolder),
+                                                 GROOVY_CLASS_FILE_EXTENSION).replace('/', '.');
+        try {
+            siteContext.getClassLoader().loadClass(className);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Class " + className + " not found", e);
+        }
+    }
+
+    protected void findScripts(Context context, ContentStoreService storeService, String scriptFileExtension,
+                               String folder, List<String> scriptUrls, List<String> classUrls) {
+        List<Item> items = storeService.findChildren(context, null, folder, null, null);
+
+        if (CollectionUtils.isNotEmpty(items)) {
+            for (Item item : items) {
+                if (item.isFolder()) {
+                    findScripts(context, storeService, scriptFileExtension, item.getUrl(), scriptUrls, classUrls);
+                } else if (item.getUrl().startsWith(classesFolder)) {
+                    if (item.getName().endsWith(GROOVY_CLASS_FILE_EXTENSION)) {
+                        classUrls.add(item.getUrl());
+                    }
+                } else if (item.getName().endsWith(scriptFileExtension)) {
+                    scriptUrls.add(item.getUrl());
+                }
+            }
+        }
+    }
+
+}
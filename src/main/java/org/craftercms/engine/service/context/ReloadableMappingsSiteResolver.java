@@ -25,6 +25,8 @@ import org.springframework.beans.factory.InitializingBean;
 import jakarta.servlet.http.HttpServletRequest;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * {@link org.craftercms.engine.service.context.SiteResolver} that resolves the current site name from a mapping
@@ -41,7 +43,17 @@ public class ReloadableMappingsSiteResolver implements SiteListResolver, SiteRes
     protected Resource mappingsFile;
     protected SiteContextManager siteContextManager;
 
-    protected volatile Properties mappings;
+    /**
+     * Lock used instead of {@code synchronized} so that virtual threads are not pinned while the mappings are
+     * reloaded.
+     */
+    protected final Lock reloadLock = new ReentrantLock();
+
+    /**
+     * Unmodifiable mappings, replaced on reload. A plain map (instead of {@link Properties}, which is a synchronized
+     * {@link Hashtable}) avoids locking on every request.
+     */
+    protected volatile Map<String, String> mappings;
 
     public ReloadableMappingsSiteResolver(Resource mappingsFile, SiteContextManager siteContextManager) {
         this.mappingsFile = mappingsFile;
@@ -52,30 +64,29 @@ public class ReloadableMappingsSiteResolver implements SiteListResolver, SiteRes
         loadMappings();
     }
 
-    public synchronized void reloadMappings() throws CrafterException {
-        loadMappings();
+    public void reloadMappings() throws CrafterException {
+        reloadLock.lock();
+        try {
+            loadMappings();
 
-        siteContextManager.syncContexts();
+            siteContextManager.syncContexts();
+        } finally {
+            reloadLock.unlock();
+        }
     }
 
     @Override
     public Collection<String> getSiteList() {
-        Collection<Object> siteNames = mappings.values();
-        Set<String> result = new LinkedHashSet<>(siteNames.size());
-
-        for (Object siteName : siteNames) {
-            result.add(siteName.toString());
-        }
-
-        return result;
+        return new LinkedHashSet<>(mappings.values());
     }
 
     @Override
     public String getSiteName(HttpServletRequest request) {
         String domainName = request.getServerName();
 
-        if (mappings.containsKey(domainName)) {
-            return (String)mappings.get(domainName);
+        String siteName = mappings.get(domainName);
+        if (siteName != null) {
+            return siteName;
         } else {
             if (logger.isDebugEnabled()) {
                 logger.warn("No site mapping found for domain name " + domainName);
@@ -94,18 +105,18 @@ public class ReloadableMappingsSiteResolver implements SiteListResolver, SiteRes
             throw new CrafterException("Unable to load domain name to site name mappings from " + mappingsFile, e);
         }
 
-        Properties newMappings = new Properties();
+        Map<String, String> newMappings = new LinkedHashMap<>(tmpMappings.size());
 
         for (Map.Entry<Object, Object> entry : tmpMappings.entrySet()) {
             String trimmedKey = entry.getKey().toString().trim();
             String trimmedVal = entry.getValue().toString().trim();
 
-            newMappings.setProperty(trimmedKey, trimmedVal);
+            newMappings.put(trimmedKey, trimmedVal);
         }
 
         logger.info("Domain name to site name mappings loaded from " + mappingsFile);
 
-        mappings = newMappings;
+        mappings = Collections.unmodifiableMap(newMappings);
     }
 
 }
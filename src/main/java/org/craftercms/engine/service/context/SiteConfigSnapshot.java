@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.service.context;
+
+import org.apache.commons.configuration2.HierarchicalConfiguration;
+
+import java.util.Map;
+
+/**
+ * Already parsed site configuration that's kept by the {@link SiteContextFactory} between context activations,
+ * together with the last modified dates of the candidate configuration files so that it can be discarded when any
+ * of the files has changed.
+ *
+ * @since 4.2.0
+ */
+@SuppressWarnings("rawtypes")
+public class SiteConfigSnapshot {
+
+    private final HierarchicalConfiguration config;
+    private final Map<String, Long> lastModifiedDates;
+
+    public SiteConfigSnapshot(HierarchicalConfiguration config, Map<String, Long> lastModifiedDates) {
+        this.config = config;
+        this.lastModifiedDates = lastModifiedDates;
+    }
+
+    /**
+     * Returns the parsed configuration (can be null if none of the configuration files existed).
+     */
+    public HierarchicalConfiguration getConfig() {
+        return config;
+    }
+
+    /**
+     * Returns true if the last modified dates of the configuration files are still the same as when the snapshot
+     * was taken.
+     *
+     * @param currentLastModifiedDates the current last modified dates of the configuration files
+     */
+    public boolean isValid(Map<String, Long> currentLastModifiedDates) {
+        return lastModifiedDates.equals(currentLastModifiedDates);
+    }
+
+}
@@ -17,6 +17,7 @@ package org.craftercms.engine.service.context;
 
 import graphql.GraphQL;
 import org.apache.commons.configuration2.HierarchicalConfiguration;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.StopWatch;
 import org.craftercms.commons.http.RequestContext;
 import org.craftercms.commons.lang.Callback;
@@ -25,13 +26,22 @@ import org.craftercms.core.service.ContentStoreService;
 import org.craftercms.core.service.Context;
 import org.craftercms.core.url.UrlTransformationEngine;
 import org.craftercms.core.util.cache.CacheTemplate;
+import org.craftercms.engine.cache.CacheDependencyGraph;
+import org.craftercms.engine.cache.CacheWarmUpProgress;
+import org.craftercms.engine.cache.PageCacheRule;
+import org.craftercms.engine.cache.SiteCacheBudget;
+import org.craftercms.engine.cache.SiteCacheInvalidator;
 import org.craftercms.engine.cache.SiteCacheWarmer;
 import org.craftercms.engine.event.*;
 import org.craftercms.engine.exception.GraphQLBuildException;
 import org.craftercms.engine.exception.SiteContextInitializationException;
 import org.craftercms.engine.graphql.GraphQLFactory;
 import org.craftercms.engine.scripting.ScriptFactory;
+import org.craftercms.engine.scripting.impl.ScriptPrecompiler;
+import org.craftercms.engine.util.concurrent.SiteAwareRunnable;
+import org.craftercms.engine.util.concurrent.SiteConcurrencyLimits;
 import org.craftercms.engine.util.GroovyScriptUtils;
+import org.craftercms.engine.websocket.WebSocketProxyStats;
 import org.jenkinsci.plugins.scriptsecurity.sandbox.groovy.SandboxInterceptor;
 import org.quartz.Scheduler;
 import org.quartz.SchedulerException;
@@ -46,7 +56,9 @@ import org.tuckey.web.filters.urlrewrite.UrlRewriter;
 
 import jakarta.servlet.ServletContext;
 import java.net.URLClassLoader;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.*;
@@ -83,6 +95,7 @@ public class SiteContext {
     protected String siteName;
     protected Context context;
     protected boolean fallback;
+    protected String rootFolderPath;
     protected String staticAssetsPath;
     protected String templatesPath;
     protected String[] allowedTemplatePaths;
@@ -100,15 +113,26 @@ public class SiteContext {
     protected Scheduler scheduler;
     protected GraphQLFactory graphQLFactory;
     protected SiteCacheWarmer cacheWarmer;
+    protected ScriptPrecompiler scriptPrecompiler;
+    protected SiteCacheInvalidator cacheInvalidator;
+    protected CacheDependencyGraph cacheDependencyGraph;
+    protected volatile CacheWarmUpProgress cacheWarmUpProgress;
+    protected SiteCacheBudget cacheBudget;
+    protected List<PageCacheRule> pageCacheRules;
     protected HierarchicalConfiguration proxyConfig;
+    protected WebSocketProxyStats webSocketProxyStats;
+    protected SiteConcurrencyLimits concurrencyLimits;
     protected HierarchicalConfiguration translationConfig;
     protected LocaleResolver localeResolver;
 
     protected long initTimeout;
     protected CountDownLatch initializationLatch;
     protected ExecutorService maintenanceTaskExecutor;
+    protected Executor startupExecutor;
+    protected SiteContextStartupTimings startupTimings;
     protected GraphQL graphQL;
     protected State state;
+    protected volatile long lastAccessTime;
 
     private ServletContext servletContext;
 
@@ -164,6 +188,8 @@ public class SiteContext {
 
             threadLocal.set(siteContext);
 
+            siteContext.lastAccessTime = System.currentTimeMillis();
+
             MDC.put(SITE_NAME_MDC_KEY, siteContext.getSiteName());
         } catch (RuntimeException | Error e) {
             siteContext.accessLock.unlock();
@@ -205,6 +231,11 @@ public class SiteContext {
         maintenanceTaskExecutor = Executors.newSingleThreadExecutor();
         state = State.INITIALIZING;
         initializationLatch = new CountDownLatch(1);
+        startupTimings = new SiteContextStartupTimings();
+        lastAccessTime = System.currentTimeMillis();
+        cacheDependencyGraph = new CacheDependencyGraph();
+        webSocketProxyStats = new WebSocketProxyStats();
+        concurrencyLimits = SiteConcurrencyLimits.unlimited();
     }
 
     public ContentStoreService getStoreService() {
@@ -247,6 +278,17 @@ public class SiteContext {
         this.fallback = fallback;
     }
 
+    /**
+     * Returns the root folder path of the site's content store, with all macros resolved.
+     */
+    public String getRootFolderPath() {
+        return rootFolderPath;
+    }
+
+    public void setRootFolderPath(String rootFolderPath) {
+        this.rootFolderPath = rootFolderPath;
+    }
+
     public String getStaticAssetsPath() {
         return staticAssetsPath;
     }
@@ -371,6 +413,34 @@ public class SiteContext {
         this.scheduler = scheduler;
     }
 
+    /**
+     * Starts the scheduler of the site jobs (if there's one). Jobs don't fire until the context has been registered,
+     * so that a context being rebuilt in the background doesn't run them at the same time as the current one.
+     */
+    public void startScheduler() {
+        if (scheduler != null) {
+            try {
+                scheduler.start();
+            } catch (SchedulerException e) {
+                logger.error("Unable to start the job scheduler of context {}", this, e);
+            }
+        }
+    }
+
+    /**
+     * Temporarily stops the scheduler of the site jobs (if there's one) from firing, for example when the context
+     * has been replaced but is still finishing its in-flight requests.
+     */
+    public void standbyScheduler() {
+        if (scheduler != null) {
+            try {
+                scheduler.standby();
+            } catch (SchedulerException e) {
+                logger.error("Unable to put the job scheduler of context {} in standby", this, e);
+            }
+        }
+    }
+
     public GraphQLFactory getGraphQLFactory() {
         return graphQLFactory;
     }
@@ -379,6 +449,73 @@ public class SiteContext {
         this.graphQLFactory = graphQLFactory;
     }
 
+    public SiteCacheInvalidator getCacheInvalidator() {
+        return cacheInvalidator;
+    }
+
+    public void setCacheInvalidator(SiteCacheInvalidator cacheInvalidator) {
+        this.cacheInvalidator = cacheInvalidator;
+    }
+
+    /**
+     * Returns the dependencies between the objects in the site cache, used to invalidate the objects that depend on
+     * changed paths.
+     */
+    public CacheDependencyGraph getCacheDependencyGraph() {
+        return cacheDependencyGraph;
+    }
+
+    /**
+     * Returns the metrics of the WebSocket connections proxied for the site.
+     */
+    public WebSocketProxyStats getWebSocketProxyStats() {
+        return webSocketProxyStats;
+    }
+
+    /**
+     * Returns the limits of concurrent script, GraphQL and job executions of the site, together with their metrics.
+     */
+    public SiteConcurrencyLimits getConcurrencyLimits() {
+        return concurrencyLimits;
+    }
+
+    public void setConcurrencyLimits(SiteConcurrencyLimits concurrencyLimits) {
+        this.concurrencyLimits = concurrencyLimits;
+    }
+
+    /**
+     * Returns the memory budget and statistics of the site cache, or null if the site cache is not tracked.
+     */
+    public SiteCacheBudget getCacheBudget() {
+        return cacheBudget;
+    }
+
+    public void setCacheBudget(SiteCacheBudget cacheBudget) {
+        this.cacheBudget = cacheBudget;
+    }
+
+    /**
+     * Returns the rules of the pages whose rendered output is cached.
+     */
+    public List<PageCacheRule> getPageCacheRules() {
+        return pageCacheRules;
+    }
+
+    public void setPageCacheRules(List<PageCacheRule> pageCacheRules) {
+        this.pageCacheRules = pageCacheRules;
+    }
+
+    /**
+     * Returns the progress of the latest full cache warm up, or null if the cache hasn't been warmed up.
+     */
+    public CacheWarmUpProgress getCacheWarmUpProgress() {
+        return cacheWarmUpProgress;
+    }
+
+    public void setCacheWarmUpProgress(CacheWarmUpProgress cacheWarmUpProgress) {
+        this.cacheWarmUpProgress = cacheWarmUpProgress;
+    }
+
     public SiteCacheWarmer getCacheWarmer() {
         return cacheWarmer;
     }
@@ -387,6 +524,14 @@ public class SiteContext {
         this.cacheWarmer = cacheWarmer;
     }
 
+    public ScriptPrecompiler getScriptPrecompiler() {
+        return scriptPrecompiler;
+    }
+
+    public void setScriptPrecompiler(ScriptPrecompiler scriptPrecompiler) {
+        this.scriptPrecompiler = scriptPrecompiler;
+    }
+
     public void setInitTimeout(final long initTimeout) {
         this.initTimeout = initTimeout;
     }
@@ -395,6 +540,30 @@ public class SiteContext {
         this.shutdownTimeout = shutdownTimeout;
     }
 
+    /**
+     * Sets the executor used to run the independent phases of the initialization in parallel. If not set, the
+     * phases are executed sequentially.
+     */
+    public void setStartupExecutor(Executor startupExecutor) {
+        this.startupExecutor = startupExecutor;
+    }
+
+    public SiteContextStartupTimings getStartupTimings() {
+        return startupTimings;
+    }
+
+    public void setStartupTimings(SiteContextStartupTimings startupTimings) {
+        this.startupTimings = startupTimings;
+    }
+
+    /**
+     * Returns the last time (in milliseconds) the context was set as the current context of a thread, or the
+     * time it was created if it hasn't been used yet.
+     */
+    public long getLastAccessTime() {
+        return lastAccessTime;
+    }
+
     public GraphQL getGraphQL() {
         return graphQL;
     }
@@ -456,12 +625,29 @@ public class SiteContext {
                     logger.info("<Initializing context site: " + siteName + ">");
                     logger.info("--------------------------------------------------");
 
-                    if (cacheWarmer != null) {
-                        cacheWarmer.warmUpCache(this, false);
-                    }
-
-                    buildGraphQLSchema();
-                    executeInitScript();
+                    long start = System.currentTimeMillis();
+
+                    // The cache warm up, the GraphQL schema build and the script precompilation are independent,
+                    // so they can run in parallel
+                    CompletableFuture<Void> cacheWarmUp =
+                            startInitPhase(SiteContextStartupTimings.PHASE_CACHE_WARM_UP, () -> {
+                                if (cacheWarmer != null) {
+                                    cacheWarmer.warmUpCache(this, false);
+                                }
+                            });
+                    CompletableFuture<Void> graphQLSchemaBuild =
+                            startInitPhase(SiteContextStartupTimings.PHASE_GRAPHQL_SCHEMA, this::buildGraphQLSchema);
+                    CompletableFuture<Void> scriptPrecompile =
+                            startInitPhase(SiteContextStartupTimings.PHASE_SCRIPT_PRECOMPILE, () -> {
+                                if (scriptPrecompiler != null) {
+                                    scriptPrecompiler.precompile(this);
+                                }
+                            });
+
+                    CompletableFuture.allOf(cacheWarmUp, graphQLSchemaBuild, scriptPrecompile).join();
+
+                    startupTimings.time(SiteContextStartupTimings.PHASE_INIT_SCRIPT, this::executeInitScript);
+                    startupTimings.record(SiteContextStartupTimings.PHASE_INIT, System.currentTimeMillis() - start);
 
                     state = State.READY;
 
@@ -496,6 +682,20 @@ public class SiteContext {
         }
     }
 
+    protected CompletableFuture<Void> startInitPhase(String phase, Runnable task) {
+        Runnable timedTask = () -> startupTimings.time(phase, task);
+        if (startupExecutor != null) {
+            return CompletableFuture.runAsync(new SiteAwareRunnable(this, timedTask), startupExecutor);
+        } else {
+            try {
+                timedTask.run();
+                return CompletableFuture.completedFuture(null);
+            } catch (Exception e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+    }
+
     public void startCacheClear() {
         startCacheClear(null);
     }
@@ -514,6 +714,35 @@ public class SiteContext {
         });
     }
 
+    /**
+     * Starts the eviction of entries of the site cache until it's under its memory budget again.
+     */
+    public void startCacheEviction() {
+        try {
+            maintenanceTaskExecutor.execute(() -> cacheBudget.evict(cacheTemplate.getCacheService(), context));
+        } catch (RejectedExecutionException e) {
+            logger.debug("Cache eviction for site '{}' rejected, the context is being destroyed", siteName);
+        }
+    }
+
+    public void startCacheInvalidation(Collection<String> changedPaths) {
+        startCacheInvalidation(changedPaths, null);
+    }
+
+    public void startCacheInvalidation(Collection<String> changedPaths, Runnable callback) {
+        maintenanceTaskExecutor.execute(() -> {
+            SiteContext.setCurrent(this);
+            try {
+                cacheInvalidate(changedPaths);
+                if (callback != null) {
+                    callback.run();
+                }
+            } finally {
+                SiteContext.clear();
+            }
+        });
+    }
+
     public void startGraphQLSchemaBuild() throws GraphQLBuildException {
         startGraphQLSchemaBuild(null);
     }
@@ -591,6 +820,11 @@ public class SiteContext {
     }
 
     protected void cacheClear() {
+        cacheDependencyGraph.clear();
+        if (cacheBudget != null) {
+            cacheBudget.reset();
+        }
+
         // If there's a cache warmer, do a content cache switch instead of aclear
         if (cacheWarmer != null) {
             cacheWarmer.warmUpCache(this, true);
@@ -605,6 +839,32 @@ public class SiteContext {
         publishEvent(new CacheClearedEvent(this));
     }
 
+    /**
+     * Evicts from the cache only the entries affected by the changed paths, and warms them up again if there's a
+     * cache warmer. If the changes can't be handled incrementally, the whole cache is cleared.
+     *
+     * @param changedPaths the paths that were added, updated or deleted
+     */
+    protected void cacheInvalidate(Collection<String> changedPaths) {
+        if (cacheInvalidator == null || !cacheInvalidator.invalidateCache(this, changedPaths)) {
+            cacheClear();
+            return;
+        }
+
+        // Templates are also kept in Freemarker's own cache, which is cleared only if any of them changed (the
+        // unchanged templates are still in the site cache)
+        String templatesFolder = StringUtils.appendIfMissing(templatesPath, "/");
+        if (changedPaths.stream().anyMatch(path -> StringUtils.startsWith(path, templatesFolder))) {
+            freeMarkerConfig.getConfiguration().clearTemplateCache();
+        }
+
+        if (cacheWarmer != null) {
+            cacheWarmer.warmUpCache(this, changedPaths);
+        }
+
+        publishEvent(new CacheClearedEvent(this));
+    }
+
     protected void buildGraphQLSchema() {
         logger.info("Starting GraphQL schema build for site '{}'", siteName);
 
@@ -29,6 +29,9 @@ import org.craftercms.core.service.ContentStoreService;
 import org.craftercms.core.service.Context;
 import org.craftercms.core.url.UrlTransformationEngine;
 import org.craftercms.core.util.cache.CacheTemplate;
+import org.craftercms.engine.cache.PageCacheRule;
+import org.craftercms.engine.cache.SiteCacheBudget;
+import org.craftercms.engine.cache.SiteCacheInvalidator;
 import org.craftercms.engine.cache.SiteCacheWarmer;
 import org.craftercms.engine.exception.SiteContextCreationException;
 import org.craftercms.engine.graphql.GraphQLFactory;
@@ -36,11 +39,16 @@ import org.craftercms.engine.macro.MacroResolver;
 import org.craftercms.engine.scripting.ScriptFactory;
 import org.craftercms.engine.scripting.ScriptJobResolver;
 import org.craftercms.engine.scripting.impl.GroovyScriptFactory;
+import org.craftercms.engine.scripting.impl.ScriptPrecompiler;
 import org.craftercms.engine.util.SchedulingUtils;
 import org.craftercms.engine.util.config.SiteAwarePublishingTargetResolver;
+import org.craftercms.engine.util.concurrent.SiteBulkhead;
+import org.craftercms.engine.util.concurrent.SiteConcurrencyLimits;
+import org.craftercms.engine.util.groovy.CachingGroovyClassLoader;
 import org.craftercms.engine.util.groovy.ContentStoreGroovyResourceLoader;
 import org.craftercms.engine.util.groovy.ContentStoreResourceConnector;
 import org.craftercms.engine.util.groovy.Dom4jExtension;
+import org.craftercms.engine.util.groovy.GroovyBytecodeCache;
 import org.craftercms.engine.util.quartz.JobContext;
 import org.craftercms.engine.util.spring.ContentStoreResourceLoader;
 import org.craftercms.engine.util.spring.servlet.i18n.ChainLocaleResolver;
@@ -59,6 +67,7 @@ import org.springframework.context.support.GenericApplicationContext;
 import org.springframework.core.env.MutablePropertySources;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.ResourceLoader;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.context.ServletContextAware;
 import org.springframework.web.servlet.LocaleResolver;
 import org.springframework.web.servlet.view.freemarker.FreeMarkerConfig;
@@ -74,7 +83,11 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URLClassLoader;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 import static java.util.Collections.singletonList;
@@ -101,6 +114,14 @@ public class SiteContextFactory implements ApplicationContextAware, ServletConte
     public static final long DEFAULT_SHUTDOWN_TIMEOUT = 5;
     public static final String DEFAULT_PUBLISHING_TARGET_MACRO_NAME = "publishingTarget";
     public static final String CONFIG_KEY_ALLOWED_TEMPLATE_PATHS = "templates.allowed";
+    public static final String CONFIG_KEY_CACHE_MAX_MEMORY = "cache.maxMemory";
+    public static final String CONFIG_KEY_CONCURRENCY_MAX_CONCURRENT = "concurrency.%s.maxConcurrent";
+    public static final String CONFIG_KEY_CONCURRENCY_MAX_QUEUED = "concurrency.%s.maxQueued";
+    public static final String CONFIG_KEY_CONCURRENCY_MAX_WAIT = "concurrency.%s.maxWait";
+
+    public static final String SITE_CONFIG_SNAPSHOT_NAME = "site";
+    public static final String PROXY_CONFIG_SNAPSHOT_NAME = "proxy";
+    public static final String TRANSLATION_CONFIG_SNAPSHOT_NAME = "translation";
 
     private static final Log logger = LogFactory.getLog(SiteContextFactory.class);
 
@@ -135,6 +156,9 @@ public class SiteContextFactory implements ApplicationContextAware, ServletConte
     protected GraphQLFactory graphQLFactory;
     protected boolean cacheWarmUpEnabled;
     protected SiteCacheWarmer cacheWarmer;
+    protected SiteCacheInvalidator cacheInvalidator;
+    protected ScriptPrecompiler scriptPrecompiler;
+    protected GroovyBytecodeCache bytecodeCache;
     protected long initTimeout;
     protected EncryptionAwareConfigurationReader configurationReader;
     protected boolean disableVariableRestrictions;
@@ -148,6 +172,16 @@ public class SiteContextFactory implements ApplicationContextAware, ServletConte
     protected boolean enableExpressions;
     protected boolean enableTranslation;
     protected List<String> whitelistGetEnvRegex;
+    protected Executor startupExecutor;
+    protected boolean configSnapshotsEnabled;
+    protected Map<String, Map<String, SiteConfigSnapshot>> configSnapshots;
+    protected String cacheMaxMemory;
+    protected int cacheAdmissionFrequency;
+    protected int scriptsMaxConcurrent;
+    protected int graphQLMaxConcurrent;
+    protected int jobsMaxConcurrent;
+    protected int concurrencyMaxQueued;
+    protected long concurrencyMaxWait;
 
     public SiteContextFactory(String storeType, String rootFolderPath, String staticAssetsPath, String templatesPath,
                               String initScriptPath, String restScriptsPath, final String controllerScriptsPath,
@@ -167,6 +201,9 @@ public class SiteContextFactory implements ApplicationContextAware, ServletConte
         defaultPublicBeans = new String[0];
         shutdownTimeout = DEFAULT_SHUTDOWN_TIMEOUT;
         publishingTargetMacroName = DEFAULT_PUBLISHING_TARGET_MACRO_NAME;
+        configSnapshots = new ConcurrentHashMap<>();
+        cacheMaxMemory = "0";
+        cacheAdmissionFrequency = SiteCacheBudget.DEFAULT_ADMISSION_FREQUENCY;
 
         this.storeType = storeType;
         this.rootFolderPath = rootFolderPath;
@@ -264,6 +301,106 @@ public class SiteContextFactory implements ApplicationContextAware, ServletConte
         this.enableTranslation = enableTranslation;
     }
 
+    /**
+     * Sets the executor used to run the independent phases of the creation and initialization of a context in
+     * parallel. If not set, the phases are executed sequentially in the calling thread.
+     */
+    public void setStartupExecutor(Executor startupExecutor) {
+        this.startupExecutor = startupExecutor;
+    }
+
+    public void setCacheInvalidator(SiteCacheInvalidator cacheInvalidator) {
+        this.cacheInvalidator = cacheInvalidator;
+    }
+
+    /**
+     * Sets the precompiler used to compile the scripts of each site when its context is initialized.
+     */
+    public void setScriptPrecompiler(ScriptPrecompiler scriptPrecompiler) {
+        this.scriptPrecompiler = scriptPrecompiler;
+    }
+
+    /**
+     * Sets the on-disk cache of compiled Groovy classes, used by the class loader and script factory of each site.
+     */
+    public void setBytecodeCache(GroovyBytecodeCache bytecodeCache) {
+        this.bytecodeCache = bytecodeCache;
+    }
+
+    /**
+     * Sets the default max memory (like {@code 256MB}) the cache entries of each site can use. Sites can override
+     * it in their configuration. 0 means no limit.
+     */
+    public void setCacheMaxMemory(String cacheMaxMemory) {
+        this.cacheMaxMemory = cacheMaxMemory;
+    }
+
+    /**
+     * Sets the min number of recent requests an entry needs to be cached once its site has reached the max memory.
+     */
+    public void setCacheAdmissionFrequency(int cacheAdmissionFrequency) {
+        this.cacheAdmissionFrequency = cacheAdmissionFrequency;
+    }
+
+    /**
+     * Sets the default max number of scripts each site can execute concurrently while handling requests. Sites can
+     * override it in their configuration. 0 means no limit.
+     */
+    public void setScriptsMaxConcurrent(int scriptsMaxConcurrent) {
+        this.scriptsMaxConcurrent = scriptsMaxConcurrent;
+    }
+
+    /**
+     * Sets the default max number of GraphQL async fetches each site can execute concurrently. Sites can override it
+     * in their configuration. 0 means no limit.
+     */
+    public void setGraphQLMaxConcurrent(int graphQLMaxConcurrent) {
+        this.graphQLMaxConcurrent = graphQLMaxConcurrent;
+    }
+
+    /**
+     * Sets the default max number of script jobs each site can execute concurrently. Sites can override it in their
+     * configuration. 0 means no limit.
+     */
+    public void setJobsMaxConcurrent(int jobsMaxConcurrent) {
+        this.jobsMaxConcurrent = jobsMaxConcurrent;
+    }
+
+    /**
+     * Sets the default max number of executions that can wait for a permit once a site concurrency limit has been
+     * reached. Sites can override it in their configuration.
+     */
+    public void setConcurrencyMaxQueued(int concurrencyMaxQueued) {
+        this.concurrencyMaxQueued = concurrencyMaxQueued;
+    }
+
+    /**
+     * Sets the default max time in milliseconds an execution can wait for a permit once a site concurrency limit has
+     * been reached. Sites can override it in their configuration.
+     */
+    public void setConcurrencyMaxWait(long concurrencyMaxWait) {
+        this.concurrencyMaxWait = concurrencyMaxWait;
+    }
+
+    /**
+     * Sets if the parsed site configurations should be kept between context creations, so that they don't need to be
+     * read and parsed again if the configuration files haven't changed (useful when contexts are activated on demand
+     * and evicted when idle).
+     */
+    public void setConfigSnapshotsEnabled(boolean configSnapshotsEnabled) {
+        this.configSnapshotsEnabled = configSnapshotsEnabled;
+    }
+
+    /**
+     * Discards any configuration snapshot kept for the specified site, forcing the configuration to be read again
+     * the next time a context is created for the site.
+     *
+     * @param siteName the site name
+     */
+    public void discardConfigSnapshots(String siteName) {
+        configSnapshots.remove(siteName);
+    }
+
     @Override
     public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
         this.globalApplicationContext = applicationContext;
@@ -282,16 +419,24 @@ public class SiteContextFactory implements ApplicationContextAware, ServletConte
         Map<String, String> configVariables = new HashMap<>();
         configVariables.put(SITE_NAME_CONFIG_VARIABLE, siteName);
         configVariables.put(SITE_ID_CONFIG_VARIABLE, siteName);
-        Context context = storeService.getContext(UUID.randomUUID().toString(), storeType, resolvedRootFolderPath,
-                                                  mergingOn, cacheOn, maxAllowedItemsInCache, ignoreHiddenFiles, configVariables);
+
+        SiteContextStartupTimings timings = new SiteContextStartupTimings();
+        long start = System.currentTimeMillis();
+
+        Context context = timings.time(SiteContextStartupTimings.PHASE_STORE_CONTEXT, () ->
+                storeService.getContext(UUID.randomUUID().toString(), storeType, resolvedRootFolderPath, mergingOn,
+                                        cacheOn, maxAllowedItemsInCache, ignoreHiddenFiles, configVariables));
 
         try {
             SiteContext siteContext = new SiteContext();
+            siteContext.setStartupTimings(timings);
+            siteContext.setStartupExecutor(startupExecutor);
             siteContext.setInitTimeout(initTimeout);
             siteContext.setStoreService(storeService);
             siteContext.setCacheTemplate(cacheTemplate);
             siteContext.setSiteName(siteName);
             siteContext.setContext(context);
+            siteContext.setRootFolderPath(resolvedRootFolderPath);
             siteContext.setStaticAssetsPath(staticAssetsPath);
             siteContext.setTemplatesPath(templatesPath);
             siteContext.setInitScriptPath(initScriptPath);
@@ -310,6 +455,9 @@ public class SiteContextFactory implements ApplicationContextAware, ServletConte
                 siteContext.setCacheWarmer(cacheWarmer);
             }
 
+            siteContext.setCacheInvalidator(cacheInvalidator);
+            siteContext.setScriptPrecompiler(scriptPrecompiler);
+
             String[] resolvedConfigPaths = new String[configPaths.length];
             for (int i = 0; i < configPaths.length; i++) {
                 resolvedConfigPaths[i] = macroResolver.resolveMacros(configPaths[i], macroValues);
@@ -334,33 +482,75 @@ public class SiteContextFactory implements ApplicationContextAware, ServletConte
                     .collect(toList());
 
             ResourceLoader resourceLoader = new ContentStoreResourceLoader(siteContext);
-            HierarchicalConfiguration<?> config = getConfig(siteContext, resolvedConfigPaths, resourceLoader);
+            HierarchicalConfiguration<?> config = timings.time(SiteContextStartupTimings.PHASE_CONFIG, () ->
+                    getConfig(siteContext, resolvedConfigPaths, resourceLoader));
 
-            configureScriptSandbox(siteContext, resourceLoader);
-            URLClassLoader classLoader = getClassLoader(siteContext);
+            timings.time(SiteContextStartupTimings.PHASE_SCRIPT_SANDBOX, () ->
+                    configureScriptSandbox(siteContext, resourceLoader));
+            URLClassLoader classLoader = timings.time(SiteContextStartupTimings.PHASE_CLASS_LOADER, () ->
+                    getClassLoader(siteContext));
             ScriptFactory scriptFactory = getScriptFactory(siteContext, classLoader);
-            ConfigurableApplicationContext appContext = getApplicationContext(siteContext, classLoader, config,
-                                                                              resolvedAppContextPaths, resourceLoader);
-            UrlRewriter urlRewriter = getUrlRewriter(siteContext, resolvedUrlRewriteConfPaths, resourceLoader);
-            HierarchicalConfiguration proxyConfig = getProxyConfig(siteContext, resolvedProxyConfPaths, resourceLoader);
-            HierarchicalConfiguration translationConfig =
-                    getTranslationConfig(siteContext, resolvedTranslationConfPaths, resourceLoader);
 
             siteContext.setScriptFactory(scriptFactory);
             siteContext.setConfig(config);
+            if (cacheOn) {
+                siteContext.setCacheBudget(createCacheBudget(siteName, config));
+            }
             siteContext.setGlobalApplicationContext(globalApplicationContext);
-            siteContext.setApplicationContext(appContext);
             siteContext.setClassLoader(classLoader);
-            siteContext.setUrlRewriter(urlRewriter);
-            siteContext.setProxyConfig(proxyConfig);
-            siteContext.setTranslationConfig(translationConfig);
-            siteContext.setLocaleResolver(buildLocaleResolver(translationConfig));
+            siteContext.setConcurrencyLimits(createConcurrencyLimits(config));
             if (config != null) {
                 siteContext.setAllowedTemplatePaths(config.getStringArray(CONFIG_KEY_ALLOWED_TEMPLATE_PATHS));
             }
+            if (cacheOn) {
+                siteContext.setPageCacheRules(getPageCacheRules(siteName, config));
+            }
 
-            Scheduler scheduler = scheduleJobs(siteContext);
-            siteContext.setScheduler(scheduler);
+            // The following phases only depend on the config & class loader, so they can be executed in parallel
+            CompletableFuture<ConfigurableApplicationContext> appContextFuture =
+                    startPhase(timings, SiteContextStartupTimings.PHASE_APPLICATION_CONTEXT, () ->
+                            getApplicationContext(siteContext, classLoader, config, resolvedAppContextPaths,
+                                                  resourceLoader));
+            CompletableFuture<UrlRewriter> urlRewriterFuture =
+                    startPhase(timings, SiteContextStartupTimings.PHASE_URL_REWRITE, () ->
+                            getUrlRewriter(siteContext, resolvedUrlRewriteConfPaths, resourceLoader));
+            CompletableFuture<HierarchicalConfiguration> proxyConfigFuture =
+                    startPhase(timings, SiteContextStartupTimings.PHASE_PROXY_CONFIG, () ->
+                            getProxyConfig(siteContext, resolvedProxyConfPaths, resourceLoader));
+            CompletableFuture<HierarchicalConfiguration> translationConfigFuture =
+                    startPhase(timings, SiteContextStartupTimings.PHASE_TRANSLATION_CONFIG, () ->
+                            getTranslationConfig(siteContext, resolvedTranslationConfPaths, resourceLoader));
+            CompletableFuture<List<JobContext>> jobContextsFuture =
+                    startPhase(timings, SiteContextStartupTimings.PHASE_JOB_SCHEDULING, () ->
+                            resolveJobs(siteContext));
+
+            try {
+                ConfigurableApplicationContext appContext = joinPhase(appContextFuture);
+                siteContext.setApplicationContext(appContext);
+                siteContext.setUrlRewriter(joinPhase(urlRewriterFuture));
+                siteContext.setProxyConfig(joinPhase(proxyConfigFuture));
+
+                HierarchicalConfiguration translationConfig = joinPhase(translationConfigFuture);
+                siteContext.setTranslationConfig(translationConfig);
+                siteContext.setLocaleResolver(buildLocaleResolver(translationConfig));
+
+                // Start the jobs only after everything else is ready, since the scripts might need any of the above
+                siteContext.setScheduler(scheduleJobs(siteContext, joinPhase(jobContextsFuture)));
+            } catch (Exception e) {
+                // Wait for all phases to finish, so that the resources they create can be released
+                CompletableFuture.allOf(appContextFuture, urlRewriterFuture, proxyConfigFuture,
+                                        translationConfigFuture, jobContextsFuture)
+                                 .exceptionally(t -> null)
+                                 .join();
+
+                if (!appContextFuture.isCompletedExceptionally() && appContextFuture.getNow(null) != null) {
+                    appContextFuture.getNow(null).close();
+                }
+
+                throw e;
+            }
+
+            timings.record(SiteContextStartupTimings.PHASE_CREATE, System.currentTimeMillis() - start);
 
             return siteContext;
         } catch (Exception e) {
@@ -392,8 +582,64 @@ public class SiteContextFactory implements ApplicationContextAware, ServletConte
         return new File(new URI(resolvedRootFolderPath)).getAbsolutePath();
     }
 
+    protected SiteCacheBudget createCacheBudget(String siteName, HierarchicalConfiguration<?> config) {
+        String maxMemory = cacheMaxMemory;
+        if (config != null) {
+            maxMemory = config.getString(CONFIG_KEY_CACHE_MAX_MEMORY, cacheMaxMemory);
+        }
+
+        long maxWeight;
+        try {
+            maxWeight = DataSize.parse(maxMemory).toBytes();
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid cache max memory '" + maxMemory + "' for site '" + siteName + "', using default '" +
+                         cacheMaxMemory + "'", e);
+
+            maxWeight = DataSize.parse(cacheMaxMemory).toBytes();
+        }
+
+        return new SiteCacheBudget(maxWeight, cacheAdmissionFrequency);
+    }
+
+    protected SiteConcurrencyLimits createConcurrencyLimits(HierarchicalConfiguration<?> config) {
+        return new SiteConcurrencyLimits(
+                createBulkhead(SiteConcurrencyLimits.SCRIPTS, scriptsMaxConcurrent, config),
+                createBulkhead(SiteConcurrencyLimits.GRAPHQL, graphQLMaxConcurrent, config),
+                createBulkhead(SiteConcurrencyLimits.JOBS, jobsMaxConcurrent, config));
+    }
+
+    protected SiteBulkhead createBulkhead(String name, int defaultMaxConcurrent, HierarchicalConfiguration<?> config) {
+        int maxConcurrent = defaultMaxConcurrent;
+        int maxQueued = concurrencyMaxQueued;
+        long maxWait = concurrencyMaxWait;
+        if (config != null) {
+            maxConcurrent = config.getInt(String.format(CONFIG_KEY_CONCURRENCY_MAX_CONCURRENT, name), maxConcurrent);
+            maxQueued = config.getInt(String.format(CONFIG_KEY_CONCURRENCY_MAX_QUEUED, name), maxQueued);
+            maxWait = config.getLong(String.format(CONFIG_KEY_CONCURRENCY_MAX_WAIT, name), maxWait);
+        }
+
+        return new SiteBulkhead(name, maxConcurrent, maxQueued, maxWait);
+    }
+
+    protected List<PageCacheRule> getPageCacheRules(String siteName, HierarchicalConfiguration<?> config) {
+        try {
+            return PageCacheRule.parseRules(config);
+        } catch (Exception e) {
+            logger.error("Invalid page cache rules for site '" + siteName + "', the output of pages won't be cached",
+                         e);
+
+            return Collections.emptyList();
+        }
+    }
+
     protected HierarchicalConfiguration getConfig(SiteContext siteContext, String[] configPaths,
                                                   ResourceLoader resourceLoader) {
+        return getConfigFromSnapshot(siteContext, SITE_CONFIG_SNAPSHOT_NAME, Arrays.asList(configPaths),
+                                     resourceLoader, () -> readConfig(siteContext, configPaths, resourceLoader));
+    }
+
+    protected HierarchicalConfiguration readConfig(SiteContext siteContext, String[] configPaths,
+                                                   ResourceLoader resourceLoader) {
         String siteName = siteContext.getSiteName();
 
         logger.info("--------------------------------------------------");
@@ -440,8 +686,17 @@ public class SiteContextFactory implements ApplicationContextAware, ServletConte
     }
 
     protected URLClassLoader getClassLoader(SiteContext siteContext) {
-        GroovyClassLoader classLoader =
-                new GroovyClassLoader(getClass().getClassLoader(), getCompilerConfiguration(enableScriptSandbox));
+        GroovyClassLoader classLoader;
+        if (bytecodeCache != null && bytecodeCache.isEnabled()) {
+            String compilerFingerprint = bytecodeCache.getCompilerFingerprint(siteContext, groovyClassesPath,
+                                                                              enableScriptSandbox);
+            classLoader = new CachingGroovyClassLoader(getClass().getClassLoader(),
+                                                       getCompilerConfiguration(enableScriptSandbox), bytecodeCache,
+                                                       compilerFingerprint);
+        } else {
+            classLoader = new GroovyClassLoader(getClass().getClassLoader(),
+                                                getCompilerConfiguration(enableScriptSandbox));
+        }
         ContentStoreGroovyResourceLoader resourceLoader = new ContentStoreGroovyResourceLoader(siteContext,
                                                                                                groovyClassesPath);
 
@@ -566,6 +821,12 @@ public class SiteContextFactory implements ApplicationContextAware, ServletConte
 
     protected HierarchicalConfiguration getProxyConfig(SiteContext siteContext, List<String> configPaths,
                                                        ResourceLoader resourceLoader) {
+        return getConfigFromSnapshot(siteContext, PROXY_CONFIG_SNAPSHOT_NAME, configPaths, resourceLoader,
+                                     () -> readProxyConfig(siteContext, configPaths, resourceLoader));
+    }
+
+    protected HierarchicalConfiguration readProxyConfig(SiteContext siteContext, List<String> configPaths,
+                                                        ResourceLoader resourceLoader) {
         String siteName = siteContext.getSiteName();
 
         logger.info("-------------------------------------------------------");
@@ -591,7 +852,13 @@ public class SiteContextFactory implements ApplicationContextAware, ServletConte
     }
 
     protected HierarchicalConfiguration getTranslationConfig(SiteContext siteContext, List<String> configPaths,
-                                                       ResourceLoader resourceLoader) {
+                                                             ResourceLoader resourceLoader) {
+        return getConfigFromSnapshot(siteContext, TRANSLATION_CONFIG_SNAPSHOT_NAME, configPaths, resourceLoader,
+                                     () -> readTranslationConfig(siteContext, configPaths, resourceLoader));
+    }
+
+    protected HierarchicalConfiguration readTranslationConfig(SiteContext siteContext, List<String> configPaths,
+                                                              ResourceLoader resourceLoader) {
         String siteName = siteContext.getSiteName();
 
         logger.info("-------------------------------------------------------");
@@ -617,6 +884,55 @@ public class SiteContextFactory implements ApplicationContextAware, ServletConte
         }
     }
 
+    /**
+     * Returns the configuration kept in the snapshot with the given name, if snapshots are enabled and none of the
+     * configuration files have changed since the snapshot was taken. Else the configuration is loaded and a new
+     * snapshot is taken.
+     */
+    protected HierarchicalConfiguration getConfigFromSnapshot(SiteContext siteContext, String snapshotName,
+                                                              List<String> configPaths, ResourceLoader resourceLoader,
+                                                              Supplier<HierarchicalConfiguration> loader) {
+        if (!configSnapshotsEnabled) {
+            return loader.get();
+        }
+
+        String siteName = siteContext.getSiteName();
+        Map<String, Long> lastModifiedDates = getLastModifiedDates(configPaths, resourceLoader);
+        Map<String, SiteConfigSnapshot> siteSnapshots =
+                configSnapshots.computeIfAbsent(siteName, key -> new ConcurrentHashMap<>());
+
+        SiteConfigSnapshot snapshot = siteSnapshots.get(snapshotName);
+        if (snapshot != null && snapshot.isValid(lastModifiedDates)) {
+            logger.debug("Using " + snapshotName + " configuration snapshot for site '" + siteName + "'");
+
+            return snapshot.getConfig();
+        }
+
+        HierarchicalConfiguration config = loader.get();
+        siteSnapshots.put(snapshotName, new SiteConfigSnapshot(config, lastModifiedDates));
+
+        return config;
+    }
+
+    protected Map<String, Long> getLastModifiedDates(List<String> paths, ResourceLoader resourceLoader) {
+        Map<String, Long> lastModifiedDates = new HashMap<>(paths.size());
+        for (String path : paths) {
+            long lastModified = -1;
+            try {
+                Resource resource = resourceLoader.getResource(path);
+                if (resource.exists()) {
+                    lastModified = resource.lastModified();
+                }
+            } catch (IOException e) {
+                // Handled as if the file doesn't exist
+            }
+
+            lastModifiedDates.put(path, lastModified);
+        }
+
+        return lastModifiedDates;
+    }
+
     protected LocaleResolver buildLocaleResolver(HierarchicalConfiguration<?> configuration) {
         if (enableTranslation && configuration != null && configuration.containsKey(CONFIG_KEY_DEFAULT_LOCALE)) {
             return new ChainLocaleResolver(globalApplicationContext, configuration);
@@ -625,27 +941,78 @@ public class SiteContextFactory implements ApplicationContextAware, ServletConte
     }
 
     protected ScriptFactory getScriptFactory(SiteContext siteContext, URLClassLoader classLoader) {
+        if (classLoader instanceof CachingGroovyClassLoader) {
+            // Scripts are compiled against the Groovy classes, so they share the same compiler fingerprint
+            return new GroovyScriptFactory(siteContext, new ContentStoreResourceConnector(siteContext), classLoader,
+                                           groovyGlobalVars, enableScriptSandbox, bytecodeCache,
+                                           ((CachingGroovyClassLoader) classLoader).getCompilerFingerprint());
+        }
+
         return new GroovyScriptFactory(siteContext, new ContentStoreResourceConnector(siteContext), classLoader,
                                        groovyGlobalVars, enableScriptSandbox);
     }
 
+    /**
+     * Executes the given phase of the context creation through the startup executor (if there's one), recording
+     * its time.
+     */
+    protected <T> CompletableFuture<T> startPhase(SiteContextStartupTimings timings, String phase, Supplier<T> task) {
+        if (startupExecutor != null) {
+            return CompletableFuture.supplyAsync(() -> timings.time(phase, task), startupExecutor);
+        } else {
+            try {
+                return CompletableFuture.completedFuture(timings.time(phase, task));
+            } catch (Exception e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+    }
+
+    /**
+     * Waits for the given phase to finish, re-throwing the original exception if it failed.
+     */
+    protected <T> T joinPhase(CompletableFuture<T> phase) {
+        try {
+            return phase.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else {
+                throw e;
+            }
+        }
+    }
+
     protected Scheduler scheduleJobs(SiteContext siteContext) {
-        String siteName = siteContext.getSiteName();
+        return scheduleJobs(siteContext, resolveJobs(siteContext));
+    }
 
-        logger.info("--------------------------------------------------");
-        logger.info("<Scheduling job scripts for site: " + siteName + ">");
-        logger.info("--------------------------------------------------");
+    protected List<JobContext> resolveJobs(SiteContext siteContext) {
+        String siteName = siteContext.getSiteName();
+        List<JobContext> allJobContexts = new ArrayList<>();
 
         try {
-            List<JobContext> allJobContexts = new ArrayList<>();
-
             for (ScriptJobResolver jobResolver : jobResolvers) {
                 List<JobContext> jobContexts = jobResolver.resolveJobs(siteContext);
                 if (CollectionUtils.isNotEmpty(jobContexts)) {
                     allJobContexts.addAll(jobContexts);
                 }
             }
+        } catch (Exception e) {
+            logger.error("Unable to resolve jobs for site '" + siteName + "'", e);
+        }
+
+        return allJobContexts;
+    }
 
+    protected Scheduler scheduleJobs(SiteContext siteContext, List<JobContext> allJobContexts) {
+        String siteName = siteContext.getSiteName();
+
+        logger.info("--------------------------------------------------");
+        logger.info("<Scheduling job scripts for site: " + siteName + ">");
+        logger.info("--------------------------------------------------");
+
+        try {
             if (CollectionUtils.isNotEmpty(allJobContexts)) {
                 Scheduler scheduler = SchedulingUtils.createScheduler(
                         String.format("%s_%s_scheduler", siteName, siteContext.getContext().getId()),
@@ -657,8 +1024,7 @@ public class SiteContextFactory implements ApplicationContextAware, ServletConte
                     logger.info("Scheduled job: " + jobContext + " for site '" + siteName + "'");
                 }
 
-                scheduler.start();
-
+                // The scheduler is started by the SiteContextManager once the context is registered
                 return scheduler;
             }
         } catch (Exception e) {
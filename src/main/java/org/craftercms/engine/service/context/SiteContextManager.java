@@ -25,9 +25,11 @@ import org.craftercms.commons.entitlements.model.EntitlementType;
 import org.craftercms.commons.entitlements.validator.EntitlementValidator;
 import org.craftercms.commons.validation.annotations.param.ValidSiteId;
 import org.craftercms.engine.event.SiteContextPurgedEvent;
+import org.craftercms.engine.exception.SiteContextInitializationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
@@ -53,12 +55,13 @@ import static java.lang.String.format;
  * @author Alfonso Vásquez
  */
 @Validated
-public class SiteContextManager implements ApplicationContextAware, DisposableBean {
+public class SiteContextManager implements ApplicationContextAware, InitializingBean, DisposableBean {
 
     private static final Logger logger = LoggerFactory.getLogger(SiteContextManager.class);
 
     protected ApplicationContext applicationContext;
     protected KeyBasedLockFactory<ReentrantLock> siteLockFactory;
+    protected KeyBasedLockFactory<ReentrantLock> rebuildLockFactory;
     protected Map<String, SiteContext> contextRegistry;
     protected SiteContextFactory contextFactory;
     protected SiteContextFactory fallbackContextFactory;
@@ -128,6 +131,52 @@ public class SiteContextManager implements ApplicationContextAware, DisposableBe
      */
     protected boolean modePreview;
 
+    /**
+     * true if contexts should be rebuilt in the background (shadow context) and then swapped with the current one,
+     * false if the current context should be replaced while holding the site lock
+     */
+    protected boolean shadowRebuildEnabled;
+
+    /**
+     * Max number of contexts that can be created and initialized at the same time when creating all contexts
+     * concurrently (0 or less means the number of available processors)
+     */
+    protected int bootstrapConcurrency;
+
+    /**
+     * true if contexts should only be created when they're first requested (instead of on startup), and evicted
+     * after they have been idle or when the active context budget is exceeded
+     */
+    protected boolean lazyActivationEnabled;
+
+    /**
+     * Max number of active contexts when lazy activation is enabled (0 or less means no limit). When the limit is
+     * exceeded the least recently used contexts are evicted
+     */
+    protected int maxActiveContexts;
+
+    /**
+     * Max ratio (0 to 1) of the max heap that can be used before the least recently used context is evicted, when
+     * lazy activation is enabled (0 or less disables the check)
+     */
+    protected double maxHeapUsage;
+
+    /**
+     * Time in milliseconds after which a context that hasn't been accessed is evicted, when lazy activation is
+     * enabled (0 or less means contexts are never evicted because of being idle)
+     */
+    protected long contextIdleTimeout;
+
+    /**
+     * Interval in milliseconds between the checks for contexts to evict
+     */
+    protected long evictionInterval;
+
+    /**
+     * Executor that runs the context eviction checks
+     */
+    protected ScheduledExecutorService evictionExecutor;
+
     public SiteContextManager(SiteContextFactory contextFactory, SiteContextFactory fallbackContextFactory,
                               final SiteListResolver siteListResolver, boolean waitForContextInit,
                               Executor jobThreadPoolExecutor, final String defaultSiteName, final int contextBuildRetryMaxCount,
@@ -135,6 +184,7 @@ public class SiteContextManager implements ApplicationContextAware, DisposableBe
                               final boolean modePreview, final String[] watcherPaths, final String[] watcherIgnorePaths,
                               final int watcherCounterLimit, final int watcherIntervalPeriod) {
         siteLockFactory = new WeakKeyBasedReentrantLockFactory();
+        rebuildLockFactory = new WeakKeyBasedReentrantLockFactory();
         contextRegistry = new ConcurrentHashMap<>();
         directoryWatcherRegistry = new ConcurrentHashMap<>();
         directoryWatcherLastProcessedHash = new HashMap<>();
@@ -167,7 +217,55 @@ public class SiteContextManager implements ApplicationContextAware, DisposableBe
         this.entitlementValidator = entitlementValidator;
     }
 
+    public void setShadowRebuildEnabled(boolean shadowRebuildEnabled) {
+        this.shadowRebuildEnabled = shadowRebuildEnabled;
+    }
+
+    public void setBootstrapConcurrency(int bootstrapConcurrency) {
+        this.bootstrapConcurrency = bootstrapConcurrency;
+    }
+
+    public void setLazyActivationEnabled(boolean lazyActivationEnabled) {
+        this.lazyActivationEnabled = lazyActivationEnabled;
+    }
+
+    public void setMaxActiveContexts(int maxActiveContexts) {
+        this.maxActiveContexts = maxActiveContexts;
+    }
+
+    public void setMaxHeapUsage(double maxHeapUsage) {
+        this.maxHeapUsage = maxHeapUsage;
+    }
+
+    public void setContextIdleTimeout(long contextIdleTimeout) {
+        this.contextIdleTimeout = contextIdleTimeout;
+    }
+
+    public void setEvictionInterval(long evictionInterval) {
+        this.evictionInterval = evictionInterval;
+    }
+
+    public boolean isLazyActivationEnabled() {
+        return lazyActivationEnabled;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (lazyActivationEnabled && evictionInterval > 0) {
+            logger.info("Lazy site context activation enabled (max active contexts: {}, max heap usage: {}, " +
+                        "idle timeout: {} ms)", maxActiveContexts, maxHeapUsage, contextIdleTimeout);
+
+            evictionExecutor = Executors.newSingleThreadScheduledExecutor();
+            evictionExecutor.scheduleWithFixedDelay(this::evictContexts, evictionInterval, evictionInterval,
+                                                    TimeUnit.MILLISECONDS);
+        }
+    }
+
     public void destroy() {
+        if (evictionExecutor != null) {
+            evictionExecutor.shutdownNow();
+        }
+
         destroyAllContexts();
     }
 
@@ -181,6 +279,11 @@ public class SiteContextManager implements ApplicationContextAware, DisposableBe
      * @param concurrent if the context creation should be done concurrently
      */
     public void createContexts(boolean concurrent) {
+        if (lazyActivationEnabled) {
+            logger.info("Lazy site context activation enabled, site contexts will be created on first request");
+            return;
+        }
+
         Collection<String> siteNames = siteListResolver.getSiteList();
 
         logger.info("==================================================");
@@ -189,18 +292,33 @@ public class SiteContextManager implements ApplicationContextAware, DisposableBe
 
         if (CollectionUtils.isNotEmpty(siteNames)) {
             if (concurrent) {
+                int concurrency = bootstrapConcurrency > 0? bootstrapConcurrency :
+                                  Runtime.getRuntime().availableProcessors();
+                Semaphore permits = new Semaphore(concurrency);
                 CompletionService<SiteContext> cs = new ExecutorCompletionService<>(jobThreadPoolExecutor);
-                for (String siteName : siteNames) {
-                    cs.submit(() -> getContextWithRetries(siteName));
-                }
+                int submitted = 0;
 
-                for (int i = 0; i < siteNames.size(); i++) {
-                    try {
+                logger.info("Creating {} site contexts, {} at a time", siteNames.size(), concurrency);
+
+                try {
+                    for (String siteName : siteNames) {
+                        permits.acquire();
+                        cs.submit(() -> {
+                            try {
+                                return getInitializedContextWithRetries(siteName);
+                            } finally {
+                                permits.release();
+                            }
+                        });
+                        submitted++;
+                    }
+
+                    for (int i = 0; i < submitted; i++) {
                         cs.take();
-                    } catch (InterruptedException e) {
-                        logger.error("Stopping creation of site contexts, thread interrupted", e);
-                        return;
                     }
+                } catch (InterruptedException e) {
+                    logger.error("Stopping creation of site contexts, thread interrupted", e);
+                    return;
                 }
             } else {
                 for (String siteName : siteNames) {
@@ -377,6 +495,11 @@ public class SiteContextManager implements ApplicationContextAware, DisposableBe
             }
         });
 
+        if (lazyActivationEnabled) {
+            // contexts for new sites will be created on first request
+            return;
+        }
+
         // create the contexts for new sites
         siteNames.forEach(siteName -> {
             try {
@@ -462,6 +585,11 @@ public class SiteContextManager implements ApplicationContextAware, DisposableBe
 
                     siteContext = createContext(siteName, fallback);
 
+                    if (evictionExecutor != null && maxActiveContexts > 0 &&
+                        contextRegistry.size() > maxActiveContexts) {
+                        evictionExecutor.execute(this::evictContexts);
+                    }
+
                     if (modePreview) {
                         // files watch register
                         registerPreviewWatcher(siteName);
@@ -555,6 +683,31 @@ public class SiteContextManager implements ApplicationContextAware, DisposableBe
         return null;
     }
 
+    /**
+     * Same as {@link #getContextWithRetries(String)}, but also waits till the context is initialized (in case
+     * it's being initialized in the background), so that the time of the initialization is also taken into account
+     * when limiting the number of contexts being created concurrently.
+     *
+     * @param siteName the site name of the context
+     * @return the site context
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    protected SiteContext getInitializedContextWithRetries(String siteName) throws InterruptedException {
+        SiteContext siteContext = getContextWithRetries(siteName);
+        if (siteContext != null) {
+            try {
+                // Waits for the initialization (up to the init timeout)
+                siteContext.isValid();
+
+                logger.info("Startup timings for site '{}': {}", siteName, siteContext.getStartupTimings());
+            } catch (Exception e) {
+                logger.error("Error while waiting for the initialization of site context '{}'", siteName, e);
+            }
+        }
+
+        return siteContext;
+    }
+
     /**
      * Determine if a site has valid context
      * @param siteId the site id
@@ -584,25 +737,15 @@ public class SiteContextManager implements ApplicationContextAware, DisposableBe
         Lock siteLock = siteLockFactory.getLock(siteName);
         siteLock.lock();
         try {
-            if (directoryWatcherRegistry.get(siteName) != null) {
-                try {
-                    DirectoryWatcher watcher = directoryWatcherRegistry.remove(siteName);
-                    watcher.close();
-                } catch (IOException e) {
-                    logger.warn("Error while removing directory watcher register for site '{}'", siteName, e);
-                }
-            }
-
-            if (directoryWatcherExecutor.get(siteName) != null) {
-                ScheduledExecutorService executor = directoryWatcherExecutor.remove(siteName);
-                executor.shutdown();
-            }
+            removePreviewWatcher(siteName);
 
             siteContext = contextRegistry.remove(siteName);
         } finally {
             siteLock.unlock();
         }
 
+        discardConfigSnapshots(siteName);
+
         if (siteContext != null) {
             logger.info("==================================================");
             logger.info("<Destroying site context: '{}'>", siteName);
@@ -620,6 +763,124 @@ public class SiteContextManager implements ApplicationContextAware, DisposableBe
         }
     }
 
+    /**
+     * Closes the preview directory watcher and rebuild task of the specified site, if any. Should be called while
+     * holding the site lock.
+     *
+     * @param siteName the site name
+     */
+    protected void removePreviewWatcher(String siteName) {
+        if (directoryWatcherRegistry.get(siteName) != null) {
+            try {
+                DirectoryWatcher watcher = directoryWatcherRegistry.remove(siteName);
+                watcher.close();
+            } catch (IOException e) {
+                logger.warn("Error while removing directory watcher register for site '{}'", siteName, e);
+            }
+        }
+
+        if (directoryWatcherExecutor.get(siteName) != null) {
+            ScheduledExecutorService executor = directoryWatcherExecutor.remove(siteName);
+            executor.shutdown();
+        }
+    }
+
+    protected void discardConfigSnapshots(String siteName) {
+        contextFactory.discardConfigSnapshots(siteName);
+        if (fallbackContextFactory != null) {
+            fallbackContextFactory.discardConfigSnapshots(siteName);
+        }
+    }
+
+    /**
+     * Evicts the contexts that have been idle for more than the idle timeout, plus the least recently used contexts
+     * while the max number of active contexts or the max heap usage is exceeded. Fallback contexts, contexts that
+     * are still initializing and contexts with scheduled jobs are never evicted.
+     */
+    protected void evictContexts() {
+        try {
+            List<SiteContext> candidates = contextRegistry.values().stream()
+                                                          .filter(this::isEvictable)
+                                                          .sorted(Comparator.comparingLong(SiteContext::getLastAccessTime))
+                                                          .collect(Collectors.toList());
+            if (candidates.isEmpty()) {
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+            int overflow = maxActiveContexts > 0? contextRegistry.size() - maxActiveContexts : 0;
+            // Memory is only released after GC, so only one context is evicted per check because of heap usage
+            boolean heapUsageExceeded = isHeapUsageExceeded();
+
+            for (SiteContext siteContext : candidates) {
+                boolean idle = contextIdleTimeout > 0 && now - siteContext.getLastAccessTime() >= contextIdleTimeout;
+                if (!idle && overflow <= 0 && !heapUsageExceeded) {
+                    // Candidates are sorted by last access, so the rest are more recently used
+                    break;
+                }
+
+                if (evictContext(siteContext)) {
+                    overflow--;
+                    heapUsageExceeded = false;
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Error while evicting site contexts", e);
+        }
+    }
+
+    protected boolean isEvictable(SiteContext siteContext) {
+        return !siteContext.isFallback() &&
+               siteContext.getState() == SiteContext.State.READY &&
+               siteContext.getScheduler() == null;
+    }
+
+    protected boolean isHeapUsageExceeded() {
+        if (maxHeapUsage <= 0) {
+            return false;
+        }
+
+        Runtime runtime = Runtime.getRuntime();
+        long usedMemory = runtime.totalMemory() - runtime.freeMemory();
+
+        return usedMemory > runtime.maxMemory() * maxHeapUsage;
+    }
+
+    /**
+     * Removes the context from the registry and destroys it, unless it has been accessed or replaced in the meantime.
+     * Unlike {@link #destroyContext(String)}, the context is not purged, so the site configuration snapshots are kept
+     * and the context is created again on the next request for the site.
+     *
+     * @param siteContext the context to evict
+     * @return true if the context was evicted
+     */
+    protected boolean evictContext(SiteContext siteContext) {
+        String siteName = siteContext.getSiteName();
+        long lastAccessTime = siteContext.getLastAccessTime();
+
+        Lock siteLock = siteLockFactory.getLock(siteName);
+        siteLock.lock();
+        try {
+            if (contextRegistry.get(siteName) != siteContext || siteContext.getLastAccessTime() != lastAccessTime) {
+                return false;
+            }
+
+            removePreviewWatcher(siteName);
+
+            contextRegistry.remove(siteName);
+        } finally {
+            siteLock.unlock();
+        }
+
+        logger.info("Evicting site context '{}' (last accessed {} ms ago)", siteName,
+                    System.currentTimeMillis() - lastAccessTime);
+
+        // Waits till the requests using the context are finished
+        destroyContext(siteContext);
+
+        return true;
+    }
+
     protected void destroyContexts(Collection<String> siteNames) {
         logger.info("==================================================");
         logger.info("<DESTROYING SITE CONTEXTS>");
@@ -641,6 +902,27 @@ public class SiteContextManager implements ApplicationContextAware, DisposableBe
     }
 
     protected SiteContext createContext(String siteName, boolean fallback) {
+        SiteContext siteContext = buildContext(siteName, fallback);
+
+        siteContext.init(waitForContextInit);
+
+        contextRegistry.put(siteName, siteContext);
+
+        siteContext.startScheduler();
+
+        logger.info("Site context created: '{}'", siteContext);
+
+        return siteContext;
+    }
+
+    /**
+     * Creates a new (not yet initialized nor registered) context for the specified site
+     *
+     * @param siteName the site name of the context
+     * @param fallback if the new context should be a fallback context
+     * @return the new context
+     */
+    protected SiteContext buildContext(String siteName, boolean fallback) {
         SiteContext siteContext;
 
         if (fallback) {
@@ -650,16 +932,17 @@ public class SiteContextManager implements ApplicationContextAware, DisposableBe
             siteContext = contextFactory.createContext(siteName);
         }
 
-        siteContext.init(waitForContextInit);
-
-        contextRegistry.put(siteName, siteContext);
-
-        logger.info("Site context created: '{}'", siteContext);
-
         return siteContext;
     }
 
     protected SiteContext rebuildContext(String siteName, boolean fallback) {
+        // A rebuild means the configuration could have changed
+        discardConfigSnapshots(siteName);
+
+        if (shadowRebuildEnabled && contextRegistry.containsKey(siteName)) {
+            return shadowRebuildContext(siteName, fallback);
+        }
+
         Lock siteLock = siteLockFactory.getLock(siteName);
         siteLock.lock();
         try {
@@ -670,7 +953,9 @@ public class SiteContextManager implements ApplicationContextAware, DisposableBe
             SiteContext oldSiteContext = contextRegistry.get(siteName);
             SiteContext newContext = createContext(siteName, fallback);
 
-            oldSiteContext.destroy();
+            if (oldSiteContext != null) {
+                oldSiteContext.destroy();
+            }
 
             logger.info("==================================================");
             logger.info("</Rebuilding site context: '{}'>", siteName);
@@ -682,6 +967,84 @@ public class SiteContextManager implements ApplicationContextAware, DisposableBe
         }
     }
 
+    /**
+     * Rebuilds the context without blocking requests: a new (shadow) context is created and fully initialized
+     * (including cache warm up) while the current context keeps serving requests. Only after the new context is
+     * ready it's swapped in the registry, and the old context is destroyed once its in-flight requests are done.
+     * If the new context fails to initialize, the current context is kept.
+     *
+     * @param siteName the site name of the context
+     * @param fallback if the new context should be a fallback context
+     * @return the new context
+     */
+    protected SiteContext shadowRebuildContext(String siteName, boolean fallback) {
+        // Only one rebuild per site at a time, but without holding the site lock used by request threads
+        Lock rebuildLock = rebuildLockFactory.getLock(siteName);
+        rebuildLock.lock();
+        try {
+            logger.info("==================================================");
+            logger.info("<Rebuilding shadow site context: '{}'>", siteName);
+            logger.info("==================================================");
+
+            // The new context is only swapped with this one, if it's still registered when the new one is ready
+            SiteContext oldSiteContext = contextRegistry.get(siteName);
+            SiteContext newContext = buildContext(siteName, fallback);
+            try {
+                newContext.init(true);
+            } catch (Exception e) {
+                logger.error("Error initializing shadow context for site '{}', the current context will be kept",
+                             siteName, e);
+
+                newContext.destroy();
+
+                throw e;
+            }
+
+            if (newContext.getState() != SiteContext.State.READY) {
+                newContext.destroy();
+
+                throw new SiteContextInitializationException("Shadow context for site '" + siteName +
+                                                             "' is not ready, the current context will be kept");
+            }
+
+            boolean swapped;
+            Lock siteLock = siteLockFactory.getLock(siteName);
+            siteLock.lock();
+            try {
+                swapped = oldSiteContext != null && contextRegistry.replace(siteName, oldSiteContext, newContext);
+            } finally {
+                siteLock.unlock();
+            }
+
+            if (!swapped) {
+                // The context was destroyed or replaced while the new one was being initialized
+                newContext.destroy();
+
+                throw new SiteContextInitializationException("Context for site '" + siteName + "' was removed " +
+                                                             "or replaced during the shadow rebuild, the new " +
+                                                             "context has been discarded");
+            }
+
+            // The old context keeps serving its in-flight requests, but its jobs shouldn't fire anymore
+            oldSiteContext.standbyScheduler();
+            newContext.startScheduler();
+
+            logger.info("Site context swapped: '{}'", newContext);
+
+            // Destroy waits till all requests holding the old context are finished (or the shutdown timeout is
+            // reached), new requests are already being served by the new context
+            destroyContext(oldSiteContext);
+
+            logger.info("==================================================");
+            logger.info("</Rebuilding shadow site context: '{}'>", siteName);
+            logger.info("==================================================");
+
+            return newContext;
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
     protected void destroyContext(SiteContext siteContext) {
         siteContext.destroy();
 
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.service.context;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the time (in milliseconds) spent in each of the phases of the creation and initialization of a
+ * {@link SiteContext}. Phases can be timed concurrently.
+ *
+ * @since 4.2.0
+ */
+public class SiteContextStartupTimings {
+
+    public static final String PHASE_STORE_CONTEXT = "storeContext";
+    public static final String PHASE_CONFIG = "config";
+    public static final String PHASE_SCRIPT_SANDBOX = "scriptSandbox";
+    public static final String PHASE_CLASS_LOADER = "classLoader";
+    public static final String PHASE_APPLICATION_CONTEXT = "applicationContext";
+    public static final String PHASE_URL_REWRITE = "urlRewrite";
+    public static final String PHASE_PROXY_CONFIG = "proxyConfig";
+    public static final String PHASE_TRANSLATION_CONFIG = "translationConfig";
+    public static final String PHASE_JOB_SCHEDULING = "jobScheduling";
+    public static final String PHASE_CREATE = "create";
+    public static final String PHASE_CACHE_WARM_UP = "cacheWarmUp";
+    public static final String PHASE_GRAPHQL_SCHEMA = "graphQLSchema";
+    public static final String PHASE_SCRIPT_PRECOMPILE = "scriptPrecompile";
+    public static final String PHASE_INIT_SCRIPT = "initScript";
+    public static final String PHASE_INIT = "init";
+
+    private final Instant startDate;
+    private final Map<String, Long> phases;
+
+    public SiteContextStartupTimings() {
+        startDate = Instant.now();
+        phases = new LinkedHashMap<>();
+    }
+
+    /**
+     * Returns the date when the creation of the context started.
+     */
+    public Instant getStartDate() {
+        return startDate;
+    }
+
+    /**
+     * Returns the time in milliseconds of each phase, in the order they finished.
+     */
+    public Map<String, Long> getPhases() {
+        synchronized (phases) {
+            return new LinkedHashMap<>(phases);
+        }
+    }
+
+    /**
+     * Records the time of the specified phase.
+     *
+     * @param phase     the phase name
+     * @param millis    the time of the phase in milliseconds
+     */
+    public void record(String phase, long millis) {
+        synchronized (phases) {
+            phases.put(phase, millis);
+        }
+    }
+
+    /**
+     * Executes the task and records the time it took as the time of the specified phase (even if it fails).
+     *
+     * @param phase the phase name
+     * @param task  the task to execute
+     * @return the result of the task
+     */
+    public <T> T time(String phase, Supplier<T> task) {
+        long start = System.currentTimeMillis();
+        try {
+            return task.get();
+        } finally {
+            record(phase, System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Executes the task and records the time it took as the time of the specified phase (even if it fails).
+     *
+     * @param phase the phase name
+     * @param task  the task to execute
+     */
+    public void time(String phase, Runnable task) {
+        time(phase, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    @Override
+    public String toString() {
+        return "SiteContextStartupTimings{" +
+               "startDate=" + startDate +
+               ", phases=" + getPhases() +
+               '}';
+    }
+
+}
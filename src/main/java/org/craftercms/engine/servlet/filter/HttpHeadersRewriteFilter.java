@@ -17,16 +17,14 @@ package org.craftercms.engine.servlet.filter;
 
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.configuration2.HierarchicalConfiguration;
+import org.apache.commons.lang3.StringUtils;
 import org.craftercms.commons.http.HttpUtils;
 import org.craftercms.core.util.cache.CacheTemplate;
-import org.craftercms.core.util.cache.impl.CachingAwareList;
 import org.craftercms.engine.service.context.SiteContext;
 import org.craftercms.engine.util.ConfigUtils;
-import org.craftercms.commons.lang.Callback;
+import org.craftercms.engine.util.PathPatternTrie;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.util.AntPathMatcher;
-import org.springframework.util.PathMatcher;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import jakarta.servlet.FilterChain;
@@ -53,12 +51,10 @@ public class HttpHeadersRewriteFilter extends OncePerRequestFilter {
     private static final String HEADER_MAPPINGS_CACHE_KEY = "headerMappings";
 
     private CacheTemplate cacheTemplate;
-    private PathMatcher pathMatcher;
 
     @ConstructorProperties({"cacheTemplate"})
     public HttpHeadersRewriteFilter(CacheTemplate cacheTemplate) {
         this.cacheTemplate = cacheTemplate;
-        this.pathMatcher = new AntPathMatcher();
     }
 
     @Override
@@ -88,56 +84,63 @@ public class HttpHeadersRewriteFilter extends OncePerRequestFilter {
         }
     }
 
-    @SuppressWarnings("unchecked")
     protected List<HeaderMapping> getHeaderMappings(String requestUri) {
         final SiteContext siteContext = SiteContext.getCurrent();
         if (siteContext == null) {
             return null;
         }
 
-        Callback<List<HeaderMapping>> callback = new Callback<>() {
+        // The mappings are compiled once per site config (which clears the whole cache when changed), instead of
+        // being cached per request URI
+        PathPatternTrie<HeaderMapping> mappings = cacheTemplate.getObject(siteContext.getContext(),
+                                                                          this::compileHeaderMappings,
+                                                                          HEADER_MAPPINGS_CACHE_KEY);
 
-            @Override
-            public List<HeaderMapping> execute() {
-                HierarchicalConfiguration config = ConfigUtils.getCurrentConfig();
-                CachingAwareList<HeaderMapping> mappings = new CachingAwareList<>();
-                if (config == null) {
-                    return mappings;
-                }
+        return mappings.match(requestUri);
+    }
 
-                List<HierarchicalConfiguration> mappingsConfig = config.configurationsAt(CONFIG_KEY_MAPPINGS);
-                if (CollectionUtils.isEmpty(mappingsConfig)) {
-                    return mappings;
-                }
+    @SuppressWarnings("unchecked")
+    protected PathPatternTrie<HeaderMapping> compileHeaderMappings() {
+        PathPatternTrie<HeaderMapping> mappings = new PathPatternTrie<>();
+        HierarchicalConfiguration config = ConfigUtils.getCurrentConfig();
+        if (config == null) {
+            return mappings;
+        }
 
-                for (HierarchicalConfiguration mappingConfig : mappingsConfig) {
-                    String urlPattern = mappingConfig.getString(CONFIG_KEY_PATTERNS);
-                    if (pathMatcher.match(urlPattern, requestUri)) {
-                        logger.debug("Found matching url pattern '{}' for request '{}'", urlPattern, requestUri);
-                        List<HierarchicalConfiguration> headersConfig = mappingConfig.configurationsAt(CONFIG_KEY_HEADERS);
-                        if (CollectionUtils.isNotEmpty(headersConfig)) {
-                            Map<String, String> headers = new HashMap<>();
-                            for (HierarchicalConfiguration headerConfig : headersConfig) {
-                                String name = headerConfig.getString(CONFIG_KEY_HEADER_NAME);
-                                String value = headerConfig.getString(CONFIG_KEY_HEADER_VALUE);
-                                headers.put(name, value);
-                            }
-
-                            if (!headers.isEmpty()) {
-                                HeaderMapping mapping = new HeaderMapping();
-                                mapping.urlPattern = urlPattern;
-                                mapping.headers = headers;
-                                mappings.add(mapping);
-                            }
-                        }
-                    }
+        List<HierarchicalConfiguration> mappingsConfig = config.configurationsAt(CONFIG_KEY_MAPPINGS);
+        if (CollectionUtils.isEmpty(mappingsConfig)) {
+            return mappings;
+        }
+
+        for (HierarchicalConfiguration mappingConfig : mappingsConfig) {
+            String urlPattern = mappingConfig.getString(CONFIG_KEY_PATTERNS);
+            if (StringUtils.isEmpty(urlPattern)) {
+                logger.warn("Header mapping without '{}' found in the site config, it will be ignored",
+                            CONFIG_KEY_PATTERNS);
+                continue;
+            }
+
+            List<HierarchicalConfiguration> headersConfig = mappingConfig.configurationsAt(CONFIG_KEY_HEADERS);
+            if (CollectionUtils.isNotEmpty(headersConfig)) {
+                Map<String, String> headers = new HashMap<>();
+                for (HierarchicalConfiguration headerConfig : headersConfig) {
+                    String name = headerConfig.getString(CONFIG_KEY_HEADER_NAME);
+                    String value = headerConfig.getString(CONFIG_KEY_HEADER_VALUE);
+                    headers.put(name, value);
                 }
 
-                return mappings;
+                if (!headers.isEmpty()) {
+                    HeaderMapping mapping = new HeaderMapping();
+                    mapping.urlPattern = urlPattern;
+                    mapping.headers = headers;
+                    mappings.add(urlPattern, mapping);
+                }
             }
-        };
+        }
+
+        logger.debug("Compiled {} header mappings", mappings.size());
 
-        return cacheTemplate.getObject(siteContext.getContext(), callback, requestUri, HEADER_MAPPINGS_CACHE_KEY);
+        return mappings;
     }
 
     protected static class HeaderMapping {
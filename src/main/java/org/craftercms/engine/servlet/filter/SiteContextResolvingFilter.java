@@ -73,6 +73,16 @@ public class SiteContextResolvingFilter implements Filter {
             return;
         }
         SiteContext.setCurrent(siteContext);
+        // The context could have been swapped and destroyed by a rebuild while waiting for the access lock
+        if (siteContext.getState() == SiteContext.State.DESTROYED) {
+            SiteContext.clear();
+
+            siteContext = getContext((HttpServletRequest) request, (HttpServletResponse) response);
+            if (siteContext == null) {
+                return;
+            }
+            SiteContext.setCurrent(siteContext);
+        }
         try {
             chain.doFilter(request, response);
         } finally {
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.servlet.interceptor;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.craftercms.engine.service.context.SiteContext;
+import org.craftercms.engine.util.concurrent.SiteBulkhead;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import java.beans.ConstructorProperties;
+import java.util.List;
+
+/**
+ * Handler interceptor that takes a permit of the scripts {@link SiteBulkhead} of the current site once per request,
+ * before the handler is called, and keeps it until the request completes. All the scripts executed by the request
+ * (controller, page, component and REST scripts) run under that permit, so a saturated site gets a 503 response
+ * right away instead of failing halfway through the rendering of a page.
+ *
+ * <p>Only the handlers of the configured types are limited, so that static assets, error pages and the management
+ * APIs keep working when a site is saturated.</p>
+ *
+ * @since 4.2.0
+ */
+public class ScriptsConcurrencyLimitInterceptor implements AsyncHandlerInterceptor {
+
+    public static final String BULKHEAD_ATTRIBUTE = ScriptsConcurrencyLimitInterceptor.class.getName() + ".bulkhead";
+
+    protected List<Class<?>> handlerTypes;
+
+    @ConstructorProperties({"handlerTypes"})
+    public ScriptsConcurrencyLimitInterceptor(final List<Class<?>> handlerTypes) {
+        this.handlerTypes = handlerTypes;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        SiteContext siteContext = SiteContext.getCurrent();
+        if (siteContext != null && request.getDispatcherType() != DispatcherType.ERROR && isLimited(handler)) {
+            SiteBulkhead bulkhead = siteContext.getConcurrencyLimits().getScripts();
+            // If the permit is already held (like when a filter script forwards the request) nothing is released
+            // at the end
+            if (bulkhead.enter()) {
+                request.setAttribute(BULKHEAD_ATTRIBUTE, bulkhead);
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        // The async part of the request runs in another thread, which takes its own permit when dispatched back
+        exit(request);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        exit(request);
+    }
+
+    protected void exit(HttpServletRequest request) {
+        SiteBulkhead bulkhead = (SiteBulkhead) request.getAttribute(BULKHEAD_ATTRIBUTE);
+        if (bulkhead != null) {
+            request.removeAttribute(BULKHEAD_ATTRIBUTE);
+            bulkhead.exit();
+        }
+    }
+
+    protected boolean isLimited(Object handler) {
+        Class<?> handlerType = handler instanceof HandlerMethod? ((HandlerMethod) handler).getBeanType() :
+                                                                  handler.getClass();
+
+        return handlerTypes.stream().anyMatch(type -> type.isAssignableFrom(handlerType));
+    }
+
+}
@@ -29,6 +29,7 @@ import org.craftercms.core.xml.mergers.DescriptorMergeStrategy;
 import org.craftercms.core.xml.mergers.DescriptorMergeStrategyResolver;
 import org.craftercms.core.xml.mergers.MergeableDescriptor;
 import org.craftercms.core.xml.mergers.impl.strategies.InheritLevelsMergeStrategy;
+import org.craftercms.engine.service.context.SiteContext;
 import org.craftercms.engine.targeting.CandidateTargetedUrlsResolver;
 import org.dom4j.Document;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -114,9 +115,27 @@ public class TargetedContentDescriptorMergeStrategy extends InheritLevelsMergeSt
                                                                      mainDescriptorDom, mainDescriptorOptional);
         results.addAll(descriptors);
 
+        addCacheDependencies(mainDescriptorUrl, candidateUrls, results);
+
         return new ArrayList<>(results);
     }
 
+    /**
+     * Records that the merged descriptor depends on all the candidate URLs (even the ones that don't exist yet, since
+     * they would be merged once they're created) and on the merged descriptors, so that it's invalidated when any of
+     * them changes.
+     */
+    protected void addCacheDependencies(String mainDescriptorUrl, List<String> candidateUrls,
+                                        Set<MergeableDescriptor> descriptors) {
+        SiteContext siteContext = SiteContext.getCurrent();
+        if (siteContext != null) {
+            siteContext.getCacheDependencyGraph().addDependencies(candidateUrls, mainDescriptorUrl);
+            for (MergeableDescriptor descriptor : descriptors) {
+                siteContext.getCacheDependencyGraph().addDependency(descriptor.getUrl(), mainDescriptorUrl);
+            }
+        }
+    }
+
     protected Document getDescriptorDom(Context context, CachingOptions cachingOptions, String url) {
         Item item = context.getStoreAdapter().findItem(context, cachingOptions, url, true);
         if (item != null) {
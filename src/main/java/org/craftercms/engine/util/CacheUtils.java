@@ -16,6 +16,9 @@ import org.craftercms.core.service.ContentStoreService;
  * You should have received a copy of the GNU General Public License
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+
 import java.util.HashMap;
 import java.util.Map;
 
@@ -27,6 +30,11 @@ import java.util.Map;
  */
 public class CacheUtils {
 
+    public static final String VARY_BY_PARAM_PREFIX = "param:";
+    public static final String VARY_BY_HEADER_PREFIX = "header:";
+    public static final String VARY_BY_COOKIE_PREFIX = "cookie:";
+    public static final String VARY_BY_ATTRIBUTE_PREFIX = "attribute:";
+
     /**
      * Parses a list of preloaded folder paths and their depths, in the following format: {PATH}:{DEPTH}
      *
@@ -48,4 +56,42 @@ public class CacheUtils {
         return preloadFoldersMappings;
     }
 
+    /**
+     * Returns the value of a request input that cached output varies by, in the following format:
+     * {@code param:NAME}, {@code header:NAME}, {@code cookie:NAME} or {@code attribute:NAME}.
+     *
+     * @param request   the current request
+     * @param input     the request input
+     * @return the value of the input, or null if the request doesn't have it
+     * @throws IllegalArgumentException if the input is not supported
+     */
+    public static String getRequestInput(HttpServletRequest request, String input) {
+        if (input.startsWith(VARY_BY_PARAM_PREFIX)) {
+            String[] values = request.getParameterValues(input.substring(VARY_BY_PARAM_PREFIX.length()));
+
+            return values != null? String.join(",", values) : null;
+        } else if (input.startsWith(VARY_BY_HEADER_PREFIX)) {
+            return request.getHeader(input.substring(VARY_BY_HEADER_PREFIX.length()));
+        } else if (input.startsWith(VARY_BY_COOKIE_PREFIX)) {
+            String name = input.substring(VARY_BY_COOKIE_PREFIX.length());
+            Cookie[] cookies = request.getCookies();
+
+            if (cookies != null) {
+                for (Cookie cookie : cookies) {
+                    if (cookie.getName().equals(name)) {
+                        return cookie.getValue();
+                    }
+                }
+            }
+
+            return null;
+        } else if (input.startsWith(VARY_BY_ATTRIBUTE_PREFIX)) {
+            Object value = request.getAttribute(input.substring(VARY_BY_ATTRIBUTE_PREFIX.length()));
+
+            return value != null? value.toString() : null;
+        } else {
+            throw new IllegalArgumentException("Unsupported request input '" + input + "'");
+        }
+    }
+
 }
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.util;
+
+import org.apache.commons.lang3.StringUtils;
+import org.dom4j.Element;
+import org.dom4j.Node;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the child elements of an element by name, built the first time it's used. Most of the lookups done by
+ * templates and scripts are of single child elements (like {@code contentModel.title_s}), which can be resolved
+ * through the index instead of evaluating an XPath expression.
+ *
+ * <p>The results are the same as the ones of the equivalent XPath (see {@link XPathUtils#selectObject(Node, String)}):
+ * only elements without namespace match, a single element is returned as is, several elements are returned as a list
+ * in document order, and no elements as null.</p>
+ *
+ * @since 4.2.0
+ */
+public class ChildElementIndex {
+
+    protected final Element element;
+    protected volatile Map<String, Object> children;
+
+    public ChildElementIndex(Element element) {
+        this.element = element;
+    }
+
+    /**
+     * Returns the element indexed.
+     */
+    public Element getElement() {
+        return element;
+    }
+
+    /**
+     * Returns the child element(s) with the specified name: null if there are none, the element if there's one, or
+     * a list if there are several.
+     *
+     * @param name the name of the child elements
+     */
+    public Object select(String name) {
+        Map<String, Object> children = this.children;
+        if (children == null) {
+            // Building it more than once in case of concurrent access is harmless
+            children = buildIndex(element);
+            this.children = children;
+        }
+
+        return copyResult(children.get(name));
+    }
+
+    /**
+     * Returns true if the key is a plain element name (like {@code title_s}), which selects the child elements with
+     * that name, instead of an XPath expression.
+     *
+     * @param key the key to check
+     */
+    public static boolean isElementName(String key) {
+        if (StringUtils.isEmpty(key)) {
+            return false;
+        }
+
+        char first = key.charAt(0);
+        if (!Character.isLetter(first) && first != '_') {
+            return false;
+        }
+
+        for (int i = 1; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '-') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the child element(s) with the specified name without building an index, for elements that are
+     * queried only once.
+     *
+     * @param element   the parent element
+     * @param name      the name of the child elements
+     */
+    public static Object selectChildren(Element element, String name) {
+        Element single = null;
+        List<Element> multiple = null;
+
+        for (int i = 0, size = element.nodeCount(); i < size; i++) {
+            Node node = element.node(i);
+            if (node instanceof Element && matches((Element) node, name)) {
+                if (single == null) {
+                    single = (Element) node;
+                } else {
+                    if (multiple == null) {
+                        multiple = new ArrayList<>();
+                        multiple.add(single);
+                    }
+                    multiple.add((Element) node);
+                }
+            }
+        }
+
+        return multiple != null ? multiple : single;
+    }
+
+    protected static Map<String, Object> buildIndex(Element element) {
+        Map<String, Object> children = new HashMap<>();
+
+        for (int i = 0, size = element.nodeCount(); i < size; i++) {
+            Node node = element.node(i);
+            if (node instanceof Element && StringUtils.isEmpty(((Element) node).getNamespaceURI())) {
+                children.merge(node.getName(), node, ChildElementIndex::addChild);
+            }
+        }
+
+        return Collections.unmodifiableMap(children);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected static Object addChild(Object current, Object child) {
+        List<Object> list;
+        if (current instanceof List) {
+            list = (List<Object>) current;
+        } else {
+            list = new ArrayList<>();
+            list.add(current);
+        }
+
+        list.add(child);
+
+        return list;
+    }
+
+    protected static Object copyResult(Object result) {
+        // Lists are copied since callers could modify them
+        if (result instanceof List) {
+            return new ArrayList<>((List<?>) result);
+        } else {
+            return result;
+        }
+    }
+
+    protected static boolean matches(Element element, String name) {
+        return name.equals(element.getName()) && StringUtils.isEmpty(element.getNamespaceURI());
+    }
+
+}
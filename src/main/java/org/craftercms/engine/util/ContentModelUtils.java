@@ -24,24 +24,59 @@ public class ContentModelUtils {
 
     public static final String FIELD_CONVERTER_BEAN_NAME = "crafter.contentModelFieldConverter";
 
+    /**
+     * The field converter resolved from the last application context, so that the bean doesn't need to be looked up
+     * on every conversion (all sites share the same global application context)
+     */
+    private static volatile ResolvedConverter resolvedConverter;
+
     private ContentModelUtils() {
 
     }
 
-    @SuppressWarnings("unchecked")
     public static final Object convertField(Element field) {
-        SiteContext siteContext = SiteContext.getCurrent();
+        Converter<Element, Object> converter = getFieldConverter(SiteContext.getCurrent());
+        if (converter != null) {
+            return converter.convert(field);
+        }
+
+        return field;
+    }
+
+    /**
+     * Returns the content model field converter of the site context, or null if there's none.
+     *
+     * @param siteContext the site context (can be null)
+     */
+    @SuppressWarnings("unchecked")
+    public static Converter<Element, Object> getFieldConverter(SiteContext siteContext) {
         if (siteContext != null) {
             ApplicationContext appContext = siteContext.getGlobalApplicationContext();
             if (appContext != null) {
-                Converter<Element, Object> converter = appContext.getBean(FIELD_CONVERTER_BEAN_NAME, Converter.class);
-                if (converter != null) {
-                    return converter.convert(field);
+                ResolvedConverter resolved = resolvedConverter;
+                if (resolved == null || resolved.appContext != appContext) {
+                    resolved = new ResolvedConverter(appContext,
+                                                     appContext.getBean(FIELD_CONVERTER_BEAN_NAME, Converter.class));
+                    resolvedConverter = resolved;
                 }
+
+                return resolved.converter;
             }
         }
 
-        return field;
+        return null;
+    }
+
+    private static final class ResolvedConverter {
+
+        private final ApplicationContext appContext;
+        private final Converter<Element, Object> converter;
+
+        private ResolvedConverter(ApplicationContext appContext, Converter<Element, Object> converter) {
+            this.appContext = appContext;
+            this.converter = converter;
+        }
+
     }
 
 }
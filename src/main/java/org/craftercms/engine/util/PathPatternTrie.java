@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.util;
+
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.PathMatcher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of Ant-style path patterns that finds all the patterns that match a path without evaluating every pattern.
+ * The patterns are stored in a trie by their leading literal segments (the segments before the first one with
+ * wildcards), so a lookup walks the segments of the path once and only evaluates the patterns whose literal prefix
+ * is a prefix of the path. Patterns whose last segment has a literal extension (like {@code *.css}, even after a
+ * {@code **} segment) are also indexed by that extension, so they're only evaluated for paths with the same
+ * extension. The candidates are
+ * confirmed with the {@link PathMatcher} (an {@link AntPathMatcher} by default), so the semantics are exactly the
+ * same as matching every pattern.
+ *
+ * <p>Lookups are thread safe, as long as all the patterns are added before the instance is shared.</p>
+ *
+ * @param <T> the type of the values associated to the patterns
+ * @since 4.2.0
+ */
+public class PathPatternTrie<T> {
+
+    private static final String PATH_SEPARATOR = "/";
+
+    private final PathMatcher pathMatcher;
+    private final Node<T> root;
+    private int size;
+
+    public PathPatternTrie() {
+        this(new AntPathMatcher());
+    }
+
+    public PathPatternTrie(PathMatcher pathMatcher) {
+        this.pathMatcher = pathMatcher;
+        this.root = new Node<>();
+    }
+
+    /**
+     * Adds a pattern to the index.
+     *
+     * @param pattern   the Ant-style path pattern
+     * @param value     the value associated to the pattern
+     */
+    public void add(String pattern, T value) {
+        Entry<T> entry = new Entry<>(size++, pattern, value);
+        Node<T> node = root;
+        String[] segments = pattern.split(PATH_SEPARATOR);
+        boolean wildcard = false;
+
+        for (String segment : segments) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            if (isWildcardSegment(segment)) {
+                wildcard = true;
+                break;
+            }
+
+            node = node.children.computeIfAbsent(segment, key -> new Node<>());
+        }
+
+        // The last segment of the pattern always matches the last segment of the path, so if it has a literal
+        // extension the pattern can only match paths with that extension, even with wildcards before it (like in
+        // /static-assets/**/*.css). Literal patterns don't need it since they're already at their own node.
+        String extension = null;
+        if (wildcard && segments.length > 0 && !pattern.endsWith(PATH_SEPARATOR)) {
+            extension = getLiteralExtension(segments[segments.length - 1]);
+        }
+
+        if (extension != null) {
+            node.extensionEntries.computeIfAbsent(extension, key -> new ArrayList<>(1)).add(entry);
+        } else {
+            node.entries.add(entry);
+        }
+    }
+
+    /**
+     * Returns the number of patterns in the index.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the values of all the patterns that match the path, in the order the patterns were added.
+     *
+     * @param path the path to match
+     * @return the values of the matching patterns, or an empty list if none matches
+     */
+    public List<T> match(String path) {
+        List<Entry<T>> matches = null;
+        Node<T> node = root;
+        String extension = getExtension(path);
+        int start = 0;
+
+        while (node != null) {
+            matches = addMatches(node.entries, path, matches);
+            if (extension != null && !node.extensionEntries.isEmpty()) {
+                matches = addMatches(node.extensionEntries.get(extension), path, matches);
+            }
+
+            // Find the next non-empty segment of the path
+            while (start < path.length() && path.charAt(start) == '/') {
+                start++;
+            }
+            if (start >= path.length() || node.children.isEmpty()) {
+                break;
+            }
+
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = path.length();
+            }
+
+            node = node.children.get(path.substring(start, end));
+            start = end;
+        }
+
+        if (matches == null) {
+            return Collections.emptyList();
+        }
+
+        // Entries are found by depth, not in the order they were added
+        matches.sort((e1, e2) -> Integer.compare(e1.index, e2.index));
+
+        List<T> values = new ArrayList<>(matches.size());
+        for (Entry<T> match : matches) {
+            values.add(match.value);
+        }
+
+        return values;
+    }
+
+    private List<Entry<T>> addMatches(List<Entry<T>> entries, String path, List<Entry<T>> matches) {
+        if (entries == null) {
+            return matches;
+        }
+
+        for (Entry<T> entry : entries) {
+            if (pathMatcher.match(entry.pattern, path)) {
+                if (matches == null) {
+                    matches = new ArrayList<>(2);
+                }
+                matches.add(entry);
+            }
+        }
+
+        return matches;
+    }
+
+    private boolean isWildcardSegment(String segment) {
+        return segment.indexOf('*') >= 0 || segment.indexOf('?') >= 0 || segment.indexOf('{') >= 0;
+    }
+
+    /**
+     * Returns the extension of the pattern segment, if the extension doesn't have any wildcard.
+     */
+    private String getLiteralExtension(String segment) {
+        int idx = segment.lastIndexOf('.');
+        if (idx < 0 || idx == segment.length() - 1) {
+            return null;
+        }
+
+        String extension = segment.substring(idx + 1);
+        if (isWildcardSegment(extension) || extension.indexOf('}') >= 0) {
+            return null;
+        }
+
+        return extension;
+    }
+
+    /**
+     * Returns the extension of the last segment of the path, or null if it doesn't have one (or if the path ends
+     * with a separator, which a pattern with an extension never matches).
+     */
+    private String getExtension(String path) {
+        int idx = path.lastIndexOf('.');
+        if (idx < 0 || idx < path.lastIndexOf('/')) {
+            return null;
+        }
+
+        return path.substring(idx + 1);
+    }
+
+    private static class Node<T> {
+
+        final Map<String, Node<T>> children = new HashMap<>();
+        final List<Entry<T>> entries = new ArrayList<>(1);
+        final Map<String, List<Entry<T>>> extensionEntries = new HashMap<>();
+
+    }
+
+    private static class Entry<T> {
+
+        final int index;
+        final String pattern;
+        final T value;
+
+        Entry(int index, String pattern, T value) {
+            this.index = index;
+            this.pattern = pattern;
+            this.value = value;
+        }
+
+    }
+
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.util;
+
+import org.apache.commons.collections.MapUtils;
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
+import org.dom4j.Node;
+import org.dom4j.XPath;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * XPath utility methods equivalent to the ones of {@link org.craftercms.core.util.XmlUtils}, but that reuse the
+ * compiled {@link XPath}s instead of parsing the expressions on every call (templates and scripts evaluate the same
+ * expressions, like {@code contentModel.title_s}, for every item they render).
+ *
+ * <p>Plain element names (like {@code title_s}) evaluated against an element are resolved by looking at the child
+ * elements directly, without any XPath (see {@link ChildElementIndex}).</p>
+ *
+ * <p>Compiled XPaths are shared between threads, so they're always created with a fixed namespace context (an
+ * XPath without one takes the namespaces of the node it's evaluated against, which changes its state on each
+ * evaluation). That's why expressions with namespace prefixes are only cached when the namespace URIs are
+ * specified.</p>
+ *
+ * @since 4.2.0
+ */
+public class XPathUtils {
+
+    public static final int MAX_CACHED_XPATHS = 10000;
+
+    private static final Map<Object, XPath> xpathCache = new ConcurrentHashMap<>();
+
+    private XPathUtils() {
+    }
+
+    /**
+     * Executes the XPath query against the node and returns the result: a single object when there's only one, a
+     * list when there are several or null when there are none.
+     *
+     * @param node          the node to evaluate the query against
+     * @param xpathQuery    the XPath query
+     */
+    public static Object selectObject(Node node, String xpathQuery) {
+        if (node instanceof Element && ChildElementIndex.isElementName(xpathQuery)) {
+            return ChildElementIndex.selectChildren((Element) node, xpathQuery);
+        }
+
+        Object result = getXPath(xpathQuery, null).evaluate(node);
+        if (result instanceof Collection && ((Collection<?>) result).isEmpty()) {
+            return null;
+        } else {
+            return result;
+        }
+    }
+
+    /**
+     * Executes the XPath query against the node and returns the text of the first resulting node (or null if no
+     * node was found).
+     *
+     * @param node          the node to evaluate the query against
+     * @param xpathQuery    the XPath query
+     */
+    public static String selectSingleNodeValue(Node node, String xpathQuery) {
+        if (node instanceof Element && ChildElementIndex.isElementName(xpathQuery)) {
+            Object result = ChildElementIndex.selectChildren((Element) node, xpathQuery);
+            if (result instanceof List) {
+                return ((Element) ((List<?>) result).get(0)).getText();
+            } else if (result != null) {
+                return ((Element) result).getText();
+            } else {
+                return null;
+            }
+        }
+
+        return selectSingleNodeValue(node, xpathQuery, null);
+    }
+
+    /**
+     * Executes the XPath query against the node and returns the text of the first resulting node (or null if no
+     * node was found).
+     *
+     * @param node          the node to evaluate the query against
+     * @param xpathQuery    the XPath query
+     * @param namespaceUris the namespace URIs by prefix used in the query
+     */
+    public static String selectSingleNodeValue(Node node, String xpathQuery, Map<String, String> namespaceUris) {
+        Node result = getXPath(xpathQuery, namespaceUris).selectSingleNode(node);
+        if (result != null) {
+            return result.getText();
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Executes the XPath query against the node and returns the text of the resulting nodes.
+     *
+     * @param node          the node to evaluate the query against
+     * @param xpathQuery    the XPath query
+     */
+    public static List<String> selectNodeValues(Node node, String xpathQuery) {
+        return selectNodeValues(node, xpathQuery, null);
+    }
+
+    /**
+     * Executes the XPath query against the node and returns the text of the resulting nodes.
+     *
+     * @param node          the node to evaluate the query against
+     * @param xpathQuery    the XPath query
+     * @param namespaceUris the namespace URIs by prefix used in the query
+     */
+    public static List<String> selectNodeValues(Node node, String xpathQuery, Map<String, String> namespaceUris) {
+        List<Node> results = getXPath(xpathQuery, namespaceUris).selectNodes(node);
+        List<String> values = new ArrayList<>(results.size());
+
+        for (Node result : results) {
+            values.add(result.getText());
+        }
+
+        return values;
+    }
+
+    /**
+     * Returns the compiled XPath of the query, from the cache if possible.
+     *
+     * @param xpathQuery    the XPath query
+     * @param namespaceUris the namespace URIs by prefix used in the query (optional)
+     */
+    public static XPath getXPath(String xpathQuery, Map<String, String> namespaceUris) {
+        if (MapUtils.isEmpty(namespaceUris)) {
+            if (xpathQuery.indexOf(':') >= 0) {
+                // Could have prefixes, so it needs the namespaces of the node and can't be shared
+                return DocumentHelper.createXPath(xpathQuery);
+            }
+
+            return getCachedXPath(xpathQuery, xpathQuery, Collections.emptyMap());
+        } else {
+            return getCachedXPath(Arrays.asList(xpathQuery, namespaceUris), xpathQuery, namespaceUris);
+        }
+    }
+
+    private static XPath getCachedXPath(Object key, String xpathQuery, Map<String, String> namespaceUris) {
+        XPath xpath = xpathCache.get(key);
+        if (xpath == null) {
+            if (xpathCache.size() >= MAX_CACHED_XPATHS) {
+                // Expressions are usually hardcoded in templates and scripts, so this only happens if they're built
+                // dynamically
+                xpathCache.clear();
+            }
+
+            xpath = DocumentHelper.createXPath(xpathQuery);
+            xpath.setNamespaceURIs(namespaceUris);
+
+            if (!namespaceUris.isEmpty()) {
+                // Copy the namespaces so that the key doesn't change if the caller modifies the map
+                key = Arrays.asList(xpathQuery, new HashMap<>(namespaceUris));
+            }
+
+            xpathCache.put(key, xpath);
+        }
+
+        return xpath;
+    }
+
+}
@@ -13,13 +13,18 @@
  * You should have received a copy of the GNU General Public License
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
-
 package org.craftercms.engine.util.concurrent;
 
+import java.util.Map;
+
+import org.craftercms.commons.http.RequestContext;
 import org.craftercms.engine.service.context.SiteContext;
+import org.slf4j.MDC;
 
 /**
- * Utility class that wraps a {@link Runnable} object to support {@link SiteContext} in reusable threads
+ * Utility class that wraps a {@link Runnable} object to support {@link SiteContext} in reusable threads. The
+ * {@link RequestContext} and the logging MDC of the thread that creates the runnable are also propagated, so work
+ * done on behalf of a request (like in virtual threads) sees the same context as the request thread.
  *
  * @author joseross
  * @since 3.1
@@ -28,19 +33,50 @@ public class SiteAwareRunnable implements Runnable {
 
     protected SiteContext siteContext;
     protected Runnable wrappedRunnable;
+    protected RequestContext requestContext;
+    protected Map<String, String> mdcContext;
 
     public SiteAwareRunnable(final SiteContext siteContext, final Runnable wrappedRunnable) {
         this.siteContext = siteContext;
         this.wrappedRunnable = wrappedRunnable;
+        this.requestContext = RequestContext.getCurrent();
+        this.mdcContext = MDC.getCopyOfContextMap();
     }
 
     @Override
     public void run() {
+        // The runnable could be executed in the calling thread, so the previous context needs to be restored
+        SiteContext previousSiteContext = SiteContext.getCurrent();
+        RequestContext previousRequestContext = RequestContext.getCurrent();
+        Map<String, String> previousMdcContext = MDC.getCopyOfContextMap();
+
+        setMdcContext(mdcContext);
+        if (requestContext != null) {
+            RequestContext.setCurrent(requestContext);
+        }
         SiteContext.setCurrent(siteContext);
         try {
             wrappedRunnable.run();
         } finally {
-            SiteContext.clear();
+            if (previousSiteContext != null) {
+                SiteContext.setCurrent(previousSiteContext);
+            } else {
+                SiteContext.clear();
+            }
+            if (previousRequestContext != null) {
+                RequestContext.setCurrent(previousRequestContext);
+            } else {
+                RequestContext.clear();
+            }
+            setMdcContext(previousMdcContext);
+        }
+    }
+
+    protected void setMdcContext(Map<String, String> context) {
+        if (context != null) {
+            MDC.setContextMap(context);
+        } else {
+            MDC.clear();
         }
     }
 
@@ -17,7 +17,9 @@
 package org.craftercms.engine.util.concurrent;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
+import org.craftercms.engine.exception.ConcurrencyLimitExceededException;
 import org.craftercms.engine.service.context.SiteContext;
 import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
 
@@ -39,14 +41,46 @@ public class SiteAwareThreadPoolExecutor implements Executor {
      */
     protected Executor wrappedExecutor;
 
+    /**
+     * The {@link SiteBulkhead} that limits the concurrent tasks of the site (optional)
+     */
+    protected SiteBulkhead bulkhead;
+
     public SiteAwareThreadPoolExecutor(final SiteContext siteContext, final Executor wrappedExecutor) {
+        this(siteContext, wrappedExecutor, null);
+    }
+
+    public SiteAwareThreadPoolExecutor(final SiteContext siteContext, final Executor wrappedExecutor,
+                                       final SiteBulkhead bulkhead) {
         this.siteContext = siteContext;
         this.wrappedExecutor = wrappedExecutor;
+        this.bulkhead = bulkhead;
     }
 
     @Override
     public void execute(final Runnable command) {
-        wrappedExecutor.execute(new DelegatingSecurityContextRunnable(new SiteAwareRunnable(siteContext, command)));
+        if (bulkhead == null) {
+            wrappedExecutor.execute(new DelegatingSecurityContextRunnable(new SiteAwareRunnable(siteContext, command)));
+            return;
+        }
+
+        // The permit is taken before submitting the task, so tasks of a saturated site are rejected right away
+        // instead of taking threads from the shared pool
+        try {
+            bulkhead.acquire();
+        } catch (ConcurrencyLimitExceededException e) {
+            throw new RejectedExecutionException(e.getMessage(), e);
+        }
+
+        Runnable limitedCommand = () -> bulkhead.runAcquired(command);
+
+        try {
+            wrappedExecutor.execute(
+                    new DelegatingSecurityContextRunnable(new SiteAwareRunnable(siteContext, limitedCommand)));
+        } catch (RuntimeException e) {
+            bulkhead.release();
+            throw e;
+        }
     }
 
 }
@@ -0,0 +1,292 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.util.concurrent;
+
+import org.craftercms.engine.exception.ConcurrencyLimitExceededException;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Limits the number of concurrent executions of a type of work (like scripts or GraphQL fetches) of a site, so that
+ * a saturated site can't take all the threads of the node. When all permits are taken, up to {@code maxQueued}
+ * executions wait up to {@code maxWait} milliseconds for a permit, and the rest are rejected right away with a
+ * {@link ConcurrencyLimitExceededException}.
+ *
+ * <p>A thread holds at most one permit of each bulkhead: executions nested in another one of the same bulkhead (like
+ * the scripts of the components of a page, or the scripts called by a job) run under the permit already held, while
+ * executions of a different bulkhead (like the scripts called by a GraphQL fetcher, or the scripts of another site)
+ * still need their own. Requests take the permit once with {@link #enter()} before the handler is called, so they
+ * can't be rejected once the response has started.</p>
+ *
+ * @since 4.2.0
+ */
+public class SiteBulkhead {
+
+    protected final String name;
+    protected final int maxConcurrent;
+    protected final int maxQueued;
+    protected final long maxWait;
+    protected final Semaphore permits;
+
+    protected final AtomicInteger active;
+    protected final AtomicInteger queued;
+    protected final LongAdder accepted;
+    protected final LongAdder rejected;
+
+    /**
+     * Flag set while the current thread holds a permit of this bulkhead.
+     */
+    protected final ThreadLocal<Boolean> held;
+
+    /**
+     * Creates a new bulkhead.
+     *
+     * @param name          the name of the bulkhead, used in the error messages
+     * @param maxConcurrent the max number of concurrent executions, 0 or less means no limit
+     * @param maxQueued     the max number of executions that can wait for a permit
+     * @param maxWait       the max time in milliseconds an execution can wait for a permit
+     */
+    public SiteBulkhead(String name, int maxConcurrent, int maxQueued, long maxWait) {
+        this.name = name;
+        this.maxConcurrent = Math.max(maxConcurrent, 0);
+        this.maxQueued = Math.max(maxQueued, 0);
+        this.maxWait = Math.max(maxWait, 0);
+        this.permits = this.maxConcurrent > 0 ? new Semaphore(this.maxConcurrent, true) : null;
+        this.active = new AtomicInteger();
+        this.queued = new AtomicInteger();
+        this.accepted = new LongAdder();
+        this.rejected = new LongAdder();
+        this.held = new ThreadLocal<>();
+    }
+
+    /**
+     * Creates a bulkhead without limit, that only keeps the metrics.
+     *
+     * @param name the name of the bulkhead
+     */
+    public static SiteBulkhead unlimited(String name) {
+        return new SiteBulkhead(name, 0, 0, 0);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    public long getMaxWait() {
+        return maxWait;
+    }
+
+    /**
+     * Returns the number of executions currently running.
+     */
+    public int getActive() {
+        return active.get();
+    }
+
+    /**
+     * Returns the number of executions currently waiting for a permit.
+     */
+    public int getQueued() {
+        return queued.get();
+    }
+
+    /**
+     * Returns the total number of executions that got a permit.
+     */
+    public long getAccepted() {
+        return accepted.sum();
+    }
+
+    /**
+     * Returns the total number of executions rejected because the limit was reached.
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Returns true if all the permits are taken and the max number of executions are waiting.
+     */
+    public boolean isSaturated() {
+        return permits != null && permits.availablePermits() == 0 && queued.get() >= maxQueued;
+    }
+
+    /**
+     * Returns true if the current thread holds a permit of this bulkhead.
+     */
+    public boolean isHeldByCurrentThread() {
+        return held.get() != null;
+    }
+
+    /**
+     * Executes the task once a permit is available.
+     *
+     * @param task the task to execute
+     * @return the result of the task
+     * @throws ConcurrencyLimitExceededException if a permit couldn't be obtained
+     */
+    public <T> T call(Supplier<T> task) {
+        if (isHeldByCurrentThread()) {
+            return task.get();
+        }
+
+        acquire();
+        held.set(Boolean.TRUE);
+        try {
+            return task.get();
+        } finally {
+            held.remove();
+            release();
+        }
+    }
+
+    /**
+     * Executes the task once a permit is available.
+     *
+     * @param task the task to execute
+     * @throws ConcurrencyLimitExceededException if a permit couldn't be obtained
+     */
+    public void run(Runnable task) {
+        call(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Waits for a permit and binds it to the current thread until {@link #exit()} is called, so that all the
+     * executions of the bulkhead in between (like all the scripts of a request) run under the same permit.
+     *
+     * @return true if a permit was obtained, false if the current thread already held one (in which case
+     *         {@link #exit()} shouldn't be called)
+     * @throws ConcurrencyLimitExceededException if a permit couldn't be obtained
+     */
+    public boolean enter() {
+        if (isHeldByCurrentThread()) {
+            return false;
+        }
+
+        acquire();
+        held.set(Boolean.TRUE);
+
+        return true;
+    }
+
+    /**
+     * Unbinds from the current thread and releases a permit obtained with {@link #enter()}.
+     */
+    public void exit() {
+        held.remove();
+        release();
+    }
+
+    /**
+     * Waits for a permit. Unlike {@link #call(Supplier)}, the permit is not bound to the current thread so it can
+     * be released by another one (like the thread that executes an async task), but nested executions are not
+     * detected.
+     *
+     * @throws ConcurrencyLimitExceededException if a permit couldn't be obtained
+     */
+    public void acquire() {
+        if (permits != null && !permits.tryAcquire()) {
+            if (queued.incrementAndGet() > maxQueued) {
+                queued.decrementAndGet();
+                reject();
+            }
+
+            boolean acquired;
+            try {
+                acquired = permits.tryAcquire(maxWait, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                acquired = false;
+            } finally {
+                queued.decrementAndGet();
+            }
+
+            if (!acquired) {
+                reject();
+            }
+        }
+
+        active.incrementAndGet();
+        accepted.increment();
+    }
+
+    /**
+     * Executes a task with a permit previously obtained with {@link #acquire()}, and releases the permit at the end.
+     * Executions nested in the task run under the same permit.
+     *
+     * @param task the task to execute
+     */
+    public void runAcquired(Runnable task) {
+        boolean nested = isHeldByCurrentThread();
+        held.set(Boolean.TRUE);
+        try {
+            task.run();
+        } finally {
+            if (!nested) {
+                held.remove();
+            }
+            release();
+        }
+    }
+
+    /**
+     * Releases a permit obtained with {@link #acquire()}.
+     */
+    public void release() {
+        active.decrementAndGet();
+
+        if (permits != null) {
+            permits.release();
+        }
+    }
+
+    protected void reject() {
+        rejected.increment();
+
+        throw new ConcurrencyLimitExceededException("The max number of concurrent executions (" + maxConcurrent +
+                                                    ") of " + name + " has been reached");
+    }
+
+    @Override
+    public String toString() {
+        return "SiteBulkhead{" +
+               "name='" + name + '\'' +
+               ", maxConcurrent=" + maxConcurrent +
+               ", maxQueued=" + maxQueued +
+               ", maxWait=" + maxWait +
+               ", active=" + active +
+               ", queued=" + queued +
+               ", accepted=" + accepted +
+               ", rejected=" + rejected +
+               '}';
+    }
+
+}
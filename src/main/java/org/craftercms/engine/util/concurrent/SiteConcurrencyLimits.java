@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.util.concurrent;
+
+/**
+ * Holds the {@link SiteBulkhead}s of a site: one for the scripts executed by requests (REST, controller, page,
+ * component and filter scripts), one for the GraphQL async fetches and one for the script jobs.
+ *
+ * @since 4.2.0
+ */
+public class SiteConcurrencyLimits {
+
+    public static final String SCRIPTS = "scripts";
+    public static final String GRAPHQL = "graphQL";
+    public static final String JOBS = "jobs";
+
+    protected final SiteBulkhead scripts;
+    protected final SiteBulkhead graphQL;
+    protected final SiteBulkhead jobs;
+
+    public SiteConcurrencyLimits(SiteBulkhead scripts, SiteBulkhead graphQL, SiteBulkhead jobs) {
+        this.scripts = scripts;
+        this.graphQL = graphQL;
+        this.jobs = jobs;
+    }
+
+    /**
+     * Creates the limits of a site that doesn't have any limit.
+     */
+    public static SiteConcurrencyLimits unlimited() {
+        return new SiteConcurrencyLimits(SiteBulkhead.unlimited(SCRIPTS), SiteBulkhead.unlimited(GRAPHQL),
+                                         SiteBulkhead.unlimited(JOBS));
+    }
+
+    public SiteBulkhead getScripts() {
+        return scripts;
+    }
+
+    public SiteBulkhead getGraphQL() {
+        return graphQL;
+    }
+
+    public SiteBulkhead getJobs() {
+        return jobs;
+    }
+
+    @Override
+    public String toString() {
+        return "SiteConcurrencyLimits{" +
+               "scripts=" + scripts +
+               ", graphQL=" + graphQL +
+               ", jobs=" + jobs +
+               '}';
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.util.concurrent;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.AbstractFactoryBean;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Factory bean that creates the {@link ThreadFactory} used by the Engine executors. When virtual threads are enabled
+ * and supported by the JVM (Java 21+) the threads created are virtual threads, so blocking I/O done by scripts and
+ * jobs (search, profile or remote HTTP calls) doesn't hold a platform thread while waiting. Otherwise regular
+ * platform threads are created.
+ *
+ * <p>The virtual thread builder is looked up through reflection so that Engine can still run in older JVMs.</p>
+ *
+ * @since 4.2.0
+ */
+public class VirtualThreadFactoryBean extends AbstractFactoryBean<ThreadFactory> {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadFactoryBean.class);
+
+    public static final String DEFAULT_THREAD_NAME_PREFIX = "crafter-engine-";
+
+    protected boolean virtualThreadsEnabled;
+    protected String threadNamePrefix;
+
+    public VirtualThreadFactoryBean() {
+        threadNamePrefix = DEFAULT_THREAD_NAME_PREFIX;
+    }
+
+    public void setVirtualThreadsEnabled(boolean virtualThreadsEnabled) {
+        this.virtualThreadsEnabled = virtualThreadsEnabled;
+    }
+
+    public void setThreadNamePrefix(String threadNamePrefix) {
+        this.threadNamePrefix = threadNamePrefix;
+    }
+
+    @Override
+    public Class<?> getObjectType() {
+        return ThreadFactory.class;
+    }
+
+    @Override
+    protected ThreadFactory createInstance() {
+        if (virtualThreadsEnabled) {
+            ThreadFactory factory = createVirtualThreadFactory(threadNamePrefix);
+            if (factory != null) {
+                logger.info("Using virtual threads for threads with prefix '{}'", threadNamePrefix);
+
+                return factory;
+            } else {
+                logger.warn("Virtual threads are not supported by this JVM (Java 21+ is required). Using platform " +
+                            "threads for threads with prefix '{}'", threadNamePrefix);
+            }
+        }
+
+        return new BasicThreadFactory.Builder().namingPattern(threadNamePrefix + "%d").build();
+    }
+
+    /**
+     * Returns true if the JVM supports virtual threads.
+     */
+    public static boolean isVirtualThreadsSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Creates a {@link ThreadFactory} of virtual threads named with the given prefix plus a counter, or returns
+     * null if the JVM doesn't support virtual threads.
+     *
+     * @param namePrefix the prefix of the thread names
+     */
+    public static ThreadFactory createVirtualThreadFactory(String namePrefix) {
+        if (!isVirtualThreadsSupported()) {
+            return null;
+        }
+
+        try {
+            // Equivalent to Thread.ofVirtual().name(namePrefix, 0).factory()
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Method nameMethod = builderClass.getMethod("name", String.class, long.class);
+            Method factoryMethod = builderClass.getMethod("factory");
+
+            builder = nameMethod.invoke(builder, namePrefix, 0L);
+
+            return (ThreadFactory) factoryMethod.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            logger.warn("Unable to create virtual thread factory", e);
+
+            return null;
+        }
+    }
+
+}
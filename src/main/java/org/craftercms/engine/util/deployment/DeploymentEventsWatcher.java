@@ -15,6 +15,7 @@
  */
 package org.craftercms.engine.util.deployment;
 
+import org.apache.commons.lang3.StringUtils;
 import org.craftercms.core.service.CachingOptions;
 import org.craftercms.core.service.Content;
 import org.craftercms.core.service.ContentStoreService;
@@ -31,15 +32,19 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 /**
  * Utility class that runs on a cron job (configurable) and checks every site to see if they have a deployment
  * events file (by default {@code deployment-events.properties}, which should contain timestamps sent by the
- * Deployer indicating requests for clearing the site cache and/or rebuilding the context.
+ * Deployer indicating requests for clearing the site cache and/or rebuilding the context. A clear cache request can
+ * include the list of changed paths, in which case only the affected cache entries are invalidated.
  *
  * @author avasquez
  */
@@ -52,6 +57,7 @@ public class DeploymentEventsWatcher implements ApplicationListener<ApplicationE
     private static final String LATEST_EVENT_KEY_FORMAT = "siteName=%s, eventType=%s";
 
     private static final String CLEAR_CACHE_EVENT_KEY = "events.deployment.clearCache";
+    private static final String CLEAR_CACHE_PATHS_EVENT_KEY = "events.deployment.clearCache.paths";
     private static final String REBUILD_CONTEXT_EVENT_KEY = "events.deployment.rebuildContext";
     private static final String REBUILD_GRAPHQL_EVENT_KEY = "events.deployment.rebuildGraphQL";
 
@@ -131,10 +137,19 @@ public class DeploymentEventsWatcher implements ApplicationListener<ApplicationE
                 long lastCacheClearEvent = getLatestEventTimestamp(siteName, CacheClearedEvent.class);
 
                 if (lastContextBuildEvent < clearCacheEvent && lastCacheClearEvent < clearCacheEvent) {
-                    logger.info("Clear cache deployment event received. Clearing cache for site {}...", siteName);
-
-                    siteContext.startCacheClear(
-                            () -> logger.info("Clear cache for site {} completed", siteName));
+                    List<String> changedPaths = getChangedPaths(currentDeploymentEvents);
+                    if (changedPaths.isEmpty()) {
+                        logger.info("Clear cache deployment event received. Clearing cache for site {}...", siteName);
+
+                        siteContext.startCacheClear(
+                                () -> logger.info("Clear cache for site {} completed", siteName));
+                    } else {
+                        logger.info("Clear cache deployment event received with {} changed paths. Invalidating " +
+                                    "cache for site {}...", changedPaths.size(), siteName);
+
+                        siteContext.startCacheInvalidation(changedPaths,
+                                () -> logger.info("Cache invalidation for site {} completed", siteName));
+                    }
                 }
             }
 
@@ -202,6 +217,15 @@ public class DeploymentEventsWatcher implements ApplicationListener<ApplicationE
         return events;
     }
 
+    private List<String> getChangedPaths(Properties deploymentEvents) {
+        String paths = deploymentEvents.getProperty(CLEAR_CACHE_PATHS_EVENT_KEY);
+
+        return Arrays.stream(StringUtils.split(StringUtils.defaultString(paths), ','))
+                     .map(StringUtils::trim)
+                     .filter(StringUtils::isNotEmpty)
+                     .collect(Collectors.toList());
+    }
+
     private long getEventProperty(Properties deploymentEvents, String name) {
         return Instant.parse(deploymentEvents.getProperty(name)).toEpochMilli();
     }
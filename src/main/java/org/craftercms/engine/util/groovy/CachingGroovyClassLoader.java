@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.util.groovy;
+
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.GroovyResourceLoader;
+import org.apache.commons.io.IOUtils;
+import org.codehaus.groovy.control.CompilationFailedException;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@link GroovyClassLoader} that checks the {@link GroovyBytecodeCache} before compiling a Groovy class, and that
+ * stores the bytecode in the cache after the class has been compiled.
+ *
+ * @since 4.2.0
+ */
+public class CachingGroovyClassLoader extends GroovyClassLoader {
+
+    private static final Logger logger = LoggerFactory.getLogger(CachingGroovyClassLoader.class);
+
+    protected GroovyBytecodeCache bytecodeCache;
+    protected GroovyBytecodeCache.Recorder recorder;
+    protected String compilerFingerprint;
+
+    public CachingGroovyClassLoader(ClassLoader parent, CompilerConfiguration config,
+                                    GroovyBytecodeCache bytecodeCache, String compilerFingerprint) {
+        this(parent, config, bytecodeCache, bytecodeCache.createRecorder(), compilerFingerprint);
+    }
+
+    private CachingGroovyClassLoader(ClassLoader parent, CompilerConfiguration config,
+                                     GroovyBytecodeCache bytecodeCache, GroovyBytecodeCache.Recorder recorder,
+                                     String compilerFingerprint) {
+        super(parent, withRecorder(config, recorder));
+        this.bytecodeCache = bytecodeCache;
+        this.recorder = recorder;
+        this.compilerFingerprint = compilerFingerprint;
+    }
+
+    /**
+     * Returns the fingerprint of the compiler configuration of the site, which should also be used for the scripts
+     * compiled against this class loader.
+     */
+    public String getCompilerFingerprint() {
+        return compilerFingerprint;
+    }
+
+    @Override
+    public GroovyResourceLoader getResourceLoader() {
+        GroovyResourceLoader resourceLoader = super.getResourceLoader();
+
+        // Other classes whose source is found while compiling a class are compiled together with it, so they're
+        // recorded as dependencies
+        return filename -> {
+            URL source = resourceLoader.loadGroovySource(filename);
+            if (source != null) {
+                recorder.recordSource(filename);
+            }
+
+            return source;
+        };
+    }
+
+    @Override
+    protected Class recompile(URL source, String className, Class oldClass)
+            throws CompilationFailedException, IOException {
+        // Only classes that haven't been loaded yet are looked up in the cache, reloading is left as is
+        if (source == null || oldClass != null) {
+            return super.recompile(source, className, oldClass);
+        }
+
+        String key = bytecodeCache.getKey(className, readSource(source), compilerFingerprint);
+        GroovyBytecodeCache.CompiledUnit unit = bytecodeCache.load(key);
+        if (unit != null && dependenciesUnchanged(unit)) {
+            try {
+                Map<String, Class<?>> classes = bytecodeCache.defineClasses(unit, this);
+                // Same as when the classes are compiled, all of them are available through this loader
+                classes.values().forEach(this::setClassCacheEntry);
+
+                return classes.get(unit.getMainClassName());
+            } catch (LinkageError | IllegalStateException e) {
+                logger.warn("Unable to define the cached classes of " + className + ", it will be compiled again", e);
+
+                bytecodeCache.delete(key);
+            }
+        }
+
+        GroovyBytecodeCache.Recording recording = recorder.start();
+        Class<?> clazz;
+        try {
+            clazz = super.recompile(source, className, null);
+        } finally {
+            recorder.stop();
+        }
+
+        if (clazz != null && recording.getClasses().containsKey(clazz.getName())) {
+            storeCompiledUnit(key, className, clazz, recording);
+        }
+
+        return clazz;
+    }
+
+    protected void storeCompiledUnit(String key, String className, Class<?> clazz,
+                                     GroovyBytecodeCache.Recording recording) {
+        Map<String, String> dependencies = new LinkedHashMap<>();
+        try {
+            for (String dependency : recording.getSources()) {
+                URL source = super.getResourceLoader().loadGroovySource(dependency);
+                if (!dependency.equals(className) && source != null) {
+                    dependencies.put(dependency, bytecodeCache.hash(readSource(source)));
+                }
+            }
+        } catch (IOException e) {
+            logger.debug("Unable to read the dependencies of class " + className + ", it won't be cached on disk", e);
+            return;
+        }
+
+        bytecodeCache.store(key, new GroovyBytecodeCache.CompiledUnit(clazz.getName(), recording.getClasses(),
+                                                                      dependencies));
+    }
+
+    protected boolean dependenciesUnchanged(GroovyBytecodeCache.CompiledUnit unit) throws IOException {
+        for (Map.Entry<String, String> dependency : unit.getDependencies().entrySet()) {
+            URL source = super.getResourceLoader().loadGroovySource(dependency.getKey());
+            if (source == null || !dependency.getValue().equals(bytecodeCache.hash(readSource(source)))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    protected byte[] readSource(URL source) throws IOException {
+        try (InputStream in = source.openStream()) {
+            return IOUtils.toByteArray(in);
+        }
+    }
+
+    private static CompilerConfiguration withRecorder(CompilerConfiguration config,
+                                                      GroovyBytecodeCache.Recorder recorder) {
+        config.setBytecodePostprocessor(recorder);
+        return config;
+    }
+
+}
@@ -20,6 +20,7 @@ import java.net.URLConnection;
 
 import groovy.util.ResourceConnector;
 import groovy.util.ResourceException;
+import org.craftercms.core.util.ContentStoreUtils;
 import org.craftercms.engine.service.context.SiteContext;
 import org.craftercms.engine.util.url.ContentStoreUrlStreamHandler;
 
@@ -31,16 +32,23 @@ import org.craftercms.engine.util.url.ContentStoreUrlStreamHandler;
  */
 public class ContentStoreResourceConnector implements ResourceConnector {
 
+    protected SiteContext siteContext;
     protected ContentStoreUrlStreamHandler urlStreamHandler;
 
     public ContentStoreResourceConnector(SiteContext siteContext) {
+        this.siteContext = siteContext;
         urlStreamHandler = new ContentStoreUrlStreamHandler(siteContext);
     }
 
     @Override
     public URLConnection getResourceConnection(String name) throws ResourceException {
         try {
-            return urlStreamHandler.createUrl(name).openConnection();
+            URLConnection connection = urlStreamHandler.createUrl(name).openConnection();
+
+            // Scripts being loaded depend on the resource
+            siteContext.getCacheDependencyGraph().recordRead(ContentStoreUtils.normalizePath(name));
+
+            return connection;
         } catch (Exception e) {
             throw new ResourceException("Unable to open URL connection to '" + name + "'", e);
         }
@@ -15,9 +15,9 @@
  */
 package org.craftercms.engine.util.groovy;
 
-import org.craftercms.core.util.XmlUtils;
 import org.craftercms.engine.properties.SiteProperties;
 import org.craftercms.engine.util.ContentModelUtils;
+import org.craftercms.engine.util.XPathUtils;
 import org.dom4j.Element;
 import org.dom4j.Node;
 
@@ -40,7 +40,7 @@ public class Dom4jExtension {
      * @return the result of the XPath query
      */
     public static Object get(Node node, String xpathExpression) {
-        Object result = XmlUtils.selectObject(node, xpathExpression);
+        Object result = XPathUtils.selectObject(node, xpathExpression);
         if (result != null) {
             if (result instanceof Element && !SiteProperties.isDisableFullModelTypeConversion()) {
                 return ContentModelUtils.convertField((Element)result);
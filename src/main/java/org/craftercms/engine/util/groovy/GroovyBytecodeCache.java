@@ -0,0 +1,709 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.util.groovy;
+
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.GroovySystem;
+import jakarta.servlet.ServletContext;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.craftercms.core.service.Content;
+import org.craftercms.core.service.ContentStoreService;
+import org.craftercms.core.service.Context;
+import org.craftercms.core.service.Item;
+import org.craftercms.engine.scripting.impl.GroovyScriptFactory;
+import org.craftercms.engine.service.context.SiteContext;
+import org.codehaus.groovy.control.BytecodeProcessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.web.context.ServletContextAware;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Local on-disk cache of the bytecode generated by the Groovy compiler, so that scripts and Groovy classes that
+ * haven't changed don't need to be compiled again after an engine restart or a site context rebuild.
+ *
+ * <p>Entries are keyed by a hash of the name and source of the script or class, together with a compiler
+ * fingerprint that includes the Groovy and Java versions, the sandbox configuration and the sources of all the
+ * Groovy classes of the site (since scripts and classes are compiled against them). Each entry also keeps the hash
+ * of the other sources that were read while compiling it, and it's only used if those haven't changed.</p>
+ *
+ * <p>The bytecode is captured through a {@link Recorder}, which needs to be set as the bytecode post-processor of
+ * the compiler configuration used to compile the sources.</p>
+ *
+ * <p>Since cached bytecode is loaded without going through the compiler (and its sandbox transformer), the folder
+ * is created with owner-only permissions (by default under the work dir of the webapp instead of the shared temp
+ * dir) and every entry is signed with a HMAC, using a random secret generated on the first use of the folder.
+ * Entries whose signature doesn't match are discarded. Entries not used in {@code maxAge} days, and the least
+ * recently used ones when the folder is over {@code maxSize} MB, are periodically deleted.</p>
+ *
+ * @since 4.2.0
+ */
+public class GroovyBytecodeCache implements ServletContextAware, InitializingBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(GroovyBytecodeCache.class);
+
+    public static final String ENTRY_FILE_EXTENSION = ".classes";
+    public static final String SECRET_FILE_NAME = "secret.key";
+    public static final String DEFAULT_FOLDER_NAME = "groovy-bytecode";
+
+    private static final int FORMAT_VERSION = 2;
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int MAC_LENGTH = 32;
+    private static final int SECRET_LENGTH = 32;
+    private static final long PRUNE_INTERVAL = TimeUnit.HOURS.toMillis(1);
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final Set<PosixFilePermission> FOLDER_PERMISSIONS = PosixFilePermissions.fromString("rwx------");
+    private static final Set<PosixFilePermission> FILE_PERMISSIONS = PosixFilePermissions.fromString("rw-------");
+
+    protected boolean enabled;
+    protected Path folder;
+    protected int maxAge;
+    protected int maxSize;
+    protected SecretKeySpec secret;
+    protected AtomicLong lastPrune;
+
+    /**
+     * Creates a new cache.
+     *
+     * @param enabled   if the cache is enabled
+     * @param folder    the folder of the cache, if empty a folder under the work dir of the webapp is used
+     */
+    public GroovyBytecodeCache(boolean enabled, String folder) {
+        this.enabled = enabled;
+        this.folder = StringUtils.isNotEmpty(folder)? Paths.get(folder) : null;
+        this.maxAge = 30;
+        this.maxSize = 512;
+        this.lastPrune = new AtomicLong();
+    }
+
+    /**
+     * Sets the max number of days an entry can go unused before it's deleted (0 or less for no limit).
+     */
+    public void setMaxAge(int maxAge) {
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Sets the max total size in MB of the entries, after which the least recently used ones are deleted (0 or less
+     * for no limit).
+     */
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public void setServletContext(ServletContext servletContext) {
+        if (folder == null && servletContext.getAttribute(ServletContext.TEMPDIR) instanceof File) {
+            folder = ((File) servletContext.getAttribute(ServletContext.TEMPDIR)).toPath().resolve(DEFAULT_FOLDER_NAME);
+        }
+    }
+
+    /**
+     * Creates the folder (if it doesn't exist) with owner-only permissions and loads the secret used to sign the
+     * entries. If any of that fails the cache is disabled.
+     */
+    @Override
+    public void afterPropertiesSet() {
+        if (!enabled) {
+            return;
+        }
+        if (folder == null) {
+            logger.warn("No folder configured for the Groovy bytecode cache and no webapp work dir found, " +
+                        "the cache will be disabled");
+            enabled = false;
+            return;
+        }
+
+        try {
+            createPrivateFolder(folder);
+            secret = new SecretKeySpec(loadSecret(), MAC_ALGORITHM);
+        } catch (IOException e) {
+            logger.warn("Unable to initialize the Groovy bytecode cache folder " + folder + ", the cache will be " +
+                        "disabled", e);
+            enabled = false;
+            return;
+        }
+
+        logger.info("Groovy bytecode cache folder: {}", folder);
+
+        prune();
+    }
+
+    public boolean isEnabled() {
+        return enabled && secret != null;
+    }
+
+    /**
+     * Returns a new {@link Recorder}, that should be set as the bytecode post-processor of a compiler configuration.
+     */
+    public Recorder createRecorder() {
+        return new Recorder();
+    }
+
+    /**
+     * Returns the compiler fingerprint for the specified site, which is part of the key of all the entries of the
+     * site.
+     *
+     * @param siteContext       the site context
+     * @param classesFolder     the folder of the Groovy classes of the site
+     * @param sandboxEnabled    if the script sandbox is enabled
+     * @return the fingerprint
+     */
+    public String getCompilerFingerprint(SiteContext siteContext, String classesFolder, boolean sandboxEnabled) {
+        MessageDigest digest = createDigest();
+        update(digest, FORMAT_VERSION);
+        update(digest, GroovySystem.getVersion());
+        update(digest, System.getProperty("java.specification.version"));
+        update(digest, sandboxEnabled);
+
+        Set<String> classes = new TreeSet<>();
+        findClasses(siteContext.getContext(), siteContext.getStoreService(), classesFolder, classes);
+
+        for (String url : classes) {
+            Content content = siteContext.getStoreService().getContent(siteContext.getContext(), url);
+            try (InputStream in = content.getInputStream()) {
+                update(digest, url);
+                update(digest, hash(IOUtils.toByteArray(in)));
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to read Groovy class " + url, e);
+            }
+        }
+
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Returns the key of the entry for the specified source.
+     *
+     * @param name                  the name of the script or class
+     * @param source                the source of the script or class
+     * @param compilerFingerprint   the compiler fingerprint (see
+     *                              {@link #getCompilerFingerprint(SiteContext, String, boolean)})
+     * @return the key
+     */
+    public String getKey(String name, byte[] source, String compilerFingerprint) {
+        MessageDigest digest = createDigest();
+        update(digest, compilerFingerprint);
+        update(digest, name);
+        digest.update(source);
+
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Returns the hash of the specified source, used to check if the dependencies of an entry have changed.
+     */
+    public String hash(byte[] source) {
+        return toHex(createDigest().digest(source));
+    }
+
+    /**
+     * Returns the entry with the specified key, or null if not found or it can't be read.
+     */
+    public CompiledUnit load(String key) {
+        if (!isEnabled()) {
+            return null;
+        }
+
+        Path file = getEntryFile(key);
+        if (Files.notExists(file)) {
+            return null;
+        }
+
+        byte[] data;
+        try {
+            data = Files.readAllBytes(file);
+        } catch (IOException e) {
+            logger.warn("Unable to read Groovy bytecode cache entry " + file, e);
+            return null;
+        }
+
+        // Entries of other formats or signed with another secret are discarded too
+        int length = data.length - MAC_LENGTH;
+        if (length < 0 || !MessageDigest.isEqual(sign(data, length), Arrays.copyOfRange(data, length, data.length))) {
+            logger.warn("Invalid signature of Groovy bytecode cache entry {}, it will be discarded", file);
+
+            deleteQuietly(file);
+
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, 0, length))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                deleteQuietly(file);
+                return null;
+            }
+
+            String mainClassName = in.readUTF();
+
+            int classCount = in.readInt();
+            Map<String, byte[]> classes = new LinkedHashMap<>(classCount);
+            for (int i = 0; i < classCount; i++) {
+                String name = in.readUTF();
+                byte[] bytecode = new byte[in.readInt()];
+                in.readFully(bytecode);
+
+                classes.put(name, bytecode);
+            }
+
+            int dependencyCount = in.readInt();
+            Map<String, String> dependencies = new LinkedHashMap<>(dependencyCount);
+            for (int i = 0; i < dependencyCount; i++) {
+                dependencies.put(in.readUTF(), in.readUTF());
+            }
+
+            // The modified time is used as last access time when pruning
+            touchQuietly(file);
+
+            return new CompiledUnit(mainClassName, classes, dependencies);
+        } catch (IOException e) {
+            logger.warn("Unable to read Groovy bytecode cache entry " + file + ", it will be discarded", e);
+
+            deleteQuietly(file);
+
+            return null;
+        }
+    }
+
+    /**
+     * Stores the entry with the specified key. Errors are logged but not rethrown, since the entry can always be
+     * compiled again.
+     */
+    public void store(String key, CompiledUnit unit) {
+        if (!isEnabled()) {
+            return;
+        }
+
+        Path file = getEntryFile(key);
+        Path tmpFile = null;
+        try {
+            createPrivateFolder(file.getParent());
+
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(data)) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(unit.getMainClassName());
+
+                out.writeInt(unit.getClasses().size());
+                for (Map.Entry<String, byte[]> entry : unit.getClasses().entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(entry.getValue().length);
+                    out.write(entry.getValue());
+                }
+
+                out.writeInt(unit.getDependencies().size());
+                for (Map.Entry<String, String> entry : unit.getDependencies().entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeUTF(entry.getValue());
+                }
+
+                out.write(sign(data.toByteArray(), data.size()));
+            }
+
+            // Write to a temp file first so that other threads or nodes sharing the folder never see partial entries
+            tmpFile = Files.createTempFile(file.getParent(), key, ".tmp", privateFileAttribute(FILE_PERMISSIONS));
+            Files.write(tmpFile, data.toByteArray());
+            Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Unable to write Groovy bytecode cache entry " + file, e);
+
+            if (tmpFile != null) {
+                deleteQuietly(tmpFile);
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        long last = lastPrune.get();
+        if (now - last > PRUNE_INTERVAL && lastPrune.compareAndSet(last, now)) {
+            prune();
+        }
+    }
+
+    /**
+     * Deletes the entry with the specified key, like when its classes can't be defined.
+     */
+    public void delete(String key) {
+        if (isEnabled()) {
+            deleteQuietly(getEntryFile(key));
+        }
+    }
+
+    /**
+     * Deletes the entries that haven't been used in {@code maxAge} days, and then the least recently used ones
+     * until the total size is under {@code maxSize}. Leftover temp files are deleted too.
+     */
+    public void prune() {
+        if (!isEnabled()) {
+            return;
+        }
+
+        lastPrune.set(System.currentTimeMillis());
+
+        List<Path> entries = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(folder, 2)) {
+            files.filter(Files::isRegularFile).forEach(file -> {
+                String name = file.getFileName().toString();
+                if (name.endsWith(ENTRY_FILE_EXTENSION)) {
+                    entries.add(file);
+                } else if (name.endsWith(".tmp") && getLastModified(file) < lastPrune.get() - PRUNE_INTERVAL) {
+                    deleteQuietly(file);
+                }
+            });
+        } catch (IOException e) {
+            logger.warn("Unable to list the entries of the Groovy bytecode cache folder " + folder, e);
+            return;
+        }
+
+        long minLastModified = maxAge > 0? lastPrune.get() - TimeUnit.DAYS.toMillis(maxAge) : Long.MIN_VALUE;
+        long remainingSize = maxSize > 0? maxSize * 1024L * 1024L : Long.MAX_VALUE;
+        int deleted = 0;
+
+        // Most recently used first, so that the ones that don't fit are the least recently used
+        Map<Path, Long> lastModified = new LinkedHashMap<>();
+        entries.forEach(entry -> lastModified.put(entry, getLastModified(entry)));
+        entries.sort(Comparator.comparing(lastModified::get, Comparator.reverseOrder()));
+
+        for (Path entry : entries) {
+            long size = getSize(entry);
+            if (lastModified.get(entry) < minLastModified || size > remainingSize) {
+                deleteQuietly(entry);
+                deleted++;
+            } else {
+                remainingSize -= size;
+            }
+        }
+
+        if (deleted > 0) {
+            logger.info("Deleted {} of {} entries of the Groovy bytecode cache", deleted, entries.size());
+        }
+    }
+
+    /**
+     * Defines all the classes of the specified entry in a new class loader, child of the given one.
+     *
+     * @param unit          the entry
+     * @param classLoader   the class loader that would have compiled the sources
+     * @return the classes of the entry, by name
+     */
+    public Map<String, Class<?>> defineClasses(CompiledUnit unit, GroovyClassLoader classLoader) {
+        // Same kind of loader used by the GroovyClassLoader when it compiles sources
+        GroovyClassLoader.InnerLoader innerLoader = new GroovyClassLoader.InnerLoader(classLoader);
+        Map<String, Class<?>> classes = new LinkedHashMap<>();
+
+        for (Map.Entry<String, byte[]> entry : unit.getClasses().entrySet()) {
+            classes.put(entry.getKey(), innerLoader.defineClass(entry.getKey(), entry.getValue()));
+        }
+
+        if (!classes.containsKey(unit.getMainClassName())) {
+            throw new IllegalStateException("Main class " + unit.getMainClassName() + " not found in entry");
+        }
+
+        return classes;
+    }
+
+    protected Path getEntryFile(String key) {
+        return folder.resolve(key.substring(0, 2)).resolve(key + ENTRY_FILE_EXTENSION);
+    }
+
+    protected byte[] loadSecret() throws IOException {
+        Path file = folder.resolve(SECRET_FILE_NAME);
+        if (Files.notExists(file)) {
+            byte[] newSecret = new byte[SECRET_LENGTH];
+            new SecureRandom().nextBytes(newSecret);
+
+            Path tmpFile = Files.createTempFile(folder, SECRET_FILE_NAME, ".tmp",
+                                                privateFileAttribute(FILE_PERMISSIONS));
+            try {
+                Files.write(tmpFile, newSecret);
+                // Another node sharing the folder might have created it first, in which case that one is used
+                Files.move(tmpFile, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                logger.debug("Secret of the Groovy bytecode cache already created by another process");
+            } finally {
+                deleteQuietly(tmpFile);
+            }
+        }
+
+        byte[] secret = Files.readAllBytes(file);
+        if (secret.length != SECRET_LENGTH) {
+            throw new IOException("Invalid secret file " + file);
+        }
+
+        return secret;
+    }
+
+    protected byte[] sign(byte[] data, int length) {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(secret);
+            mac.update(data, 0, length);
+
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Creates the folder if it doesn't exist, and makes sure only the owner has access to it. Fails if the folder
+     * belongs to another user.
+     */
+    protected void createPrivateFolder(Path folder) throws IOException {
+        Files.createDirectories(folder, privateFileAttribute(FOLDER_PERMISSIONS));
+
+        if (isPosix()) {
+            // The folder might already exist, or the permissions might have been masked by the umask
+            Files.setPosixFilePermissions(folder, FOLDER_PERMISSIONS);
+        }
+    }
+
+    protected void findClasses(Context context, ContentStoreService storeService, String folder,
+                               Set<String> classes) {
+        List<Item> items = storeService.findChildren(context, null, folder, null, null);
+        if (CollectionUtils.isNotEmpty(items)) {
+            for (Item item : items) {
+                if (item.isFolder()) {
+                    findClasses(context, storeService, item.getUrl(), classes);
+                } else if (item.getName().endsWith("." + GroovyScriptFactory.GROOVY_FILE_EXTENSION)) {
+                    classes.add(item.getUrl());
+                }
+            }
+        }
+    }
+
+    private boolean isPosix() {
+        return folder.getFileSystem().supportedFileAttributeViews().contains("posix");
+    }
+
+    private FileAttribute<?>[] privateFileAttribute(Set<PosixFilePermission> permissions) {
+        return isPosix()? new FileAttribute<?>[] { PosixFilePermissions.asFileAttribute(permissions) } :
+                          new FileAttribute<?>[0];
+    }
+
+    private static long getLastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static long getSize(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static void touchQuietly(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            logger.debug("Unable to update the modified time of " + file, e);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.debug("Unable to delete " + file, e);
+        }
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void update(MessageDigest digest, Object value) {
+        digest.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+        // Separator, so that consecutive values can't be confused
+        digest.update((byte) 0);
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xF];
+        }
+
+        return new String(chars);
+    }
+
+    /**
+     * The classes generated by the compilation of a script or class, together with the hash of the other sources
+     * that were read during the compilation.
+     */
+    public static class CompiledUnit {
+
+        private final String mainClassName;
+        private final Map<String, byte[]> classes;
+        private final Map<String, String> dependencies;
+
+        public CompiledUnit(String mainClassName, Map<String, byte[]> classes, Map<String, String> dependencies) {
+            this.mainClassName = mainClassName;
+            this.classes = classes;
+            this.dependencies = dependencies;
+        }
+
+        public String getMainClassName() {
+            return mainClassName;
+        }
+
+        public Map<String, byte[]> getClasses() {
+            return classes;
+        }
+
+        /**
+         * Returns the hash of the other sources read during the compilation, by URL.
+         */
+        public Map<String, String> getDependencies() {
+            return dependencies;
+        }
+
+    }
+
+    /**
+     * Represents an in-progress compilation, collecting the generated classes and the sources that were read.
+     */
+    public static class Recording {
+
+        private final Map<String, byte[]> classes = new LinkedHashMap<>();
+        private final Set<String> sources = new LinkedHashSet<>();
+
+        public Map<String, byte[]> getClasses() {
+            return Collections.unmodifiableMap(classes);
+        }
+
+        public Set<String> getSources() {
+            return Collections.unmodifiableSet(sources);
+        }
+
+    }
+
+    /**
+     * {@link BytecodeProcessor} that records the generated classes (without modifying them) in the current
+     * {@link Recording} of the thread. Compilations can be nested (e.g. a class being compiled while resolving the
+     * dependencies of a script), so the recordings are kept in a stack.
+     */
+    public static class Recorder implements BytecodeProcessor {
+
+        private final ThreadLocal<Deque<Recording>> recordings = new ThreadLocal<>();
+
+        /**
+         * Starts a new recording in the current thread. {@link #stop()} should always be called afterwards.
+         */
+        public Recording start() {
+            Deque<Recording> stack = recordings.get();
+            if (stack == null) {
+                stack = new ArrayDeque<>();
+                recordings.set(stack);
+            }
+
+            Recording recording = new Recording();
+            stack.push(recording);
+
+            return recording;
+        }
+
+        /**
+         * Stops the current recording of the thread.
+         */
+        public void stop() {
+            Deque<Recording> stack = recordings.get();
+            if (stack != null) {
+                stack.poll();
+                if (stack.isEmpty()) {
+                    recordings.remove();
+                }
+            }
+        }
+
+        /**
+         * Records that the specified source has been read by the current compilation (if there's one).
+         */
+        public void recordSource(String url) {
+            Recording recording = getCurrent();
+            if (recording != null) {
+                recording.sources.add(url);
+            }
+        }
+
+        @Override
+        public byte[] processBytecode(String name, byte[] original) {
+            Recording recording = getCurrent();
+            if (recording != null) {
+                recording.classes.put(name, original);
+            }
+
+            return original;
+        }
+
+        private Recording getCurrent() {
+            Deque<Recording> stack = recordings.get();
+            return stack != null? stack.peek() : null;
+        }
+
+    }
+
+}
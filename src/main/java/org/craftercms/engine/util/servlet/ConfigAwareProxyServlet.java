@@ -15,12 +15,18 @@
  */
 package org.craftercms.engine.util.servlet;
 
+import org.apache.commons.lang3.BooleanUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.http.Header;
 import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.entity.InputStreamEntity;
 import org.apache.http.message.BasicHttpEntityEnclosingRequest;
+import org.craftercms.engine.service.context.SiteContext;
+import org.craftercms.engine.websocket.NonBlockingWsUpgradeHandler;
+import org.craftercms.engine.websocket.WebSocketProxyStats;
 import org.craftercms.engine.websocket.WsUpgradeHandler;
 import org.mitre.dsmiley.httpproxy.ProxyServlet;
 import org.slf4j.Logger;
@@ -33,14 +39,27 @@ import jakarta.servlet.http.HttpServletResponse;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.AsynchronousSocketChannel;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
- * Extension of {@link ProxyServlet} that uses the current site configuration
+ * Extension of {@link ProxyServlet} that uses the current site configuration.
+ *
+ * <p>WebSocket connections are proxied by default with {@link NonBlockingWsUpgradeHandler}, which doesn't hold any
+ * thread while the connection is idle. The previous mode, where {@link WsUpgradeHandler} uses two threads per
+ * connection, can still be used by setting the {@code websocketNonBlocking} init parameter to false. The number of
+ * active connections and bytes forwarded are kept in the {@link WebSocketProxyStats} of each site.</p>
  *
  * @author joseross
  * @since 3.1.7
@@ -54,12 +73,75 @@ public class ConfigAwareProxyServlet extends ProxyServlet {
     public static final String ATTR_TARGET_HOST = ProxyServlet.ATTR_TARGET_HOST;
     public static final String WEBSOCKET_IDENTIFIER_HEADER = "Sec-WebSocket-Key";
 
+    /**
+     * Init param: true to proxy WebSocket connections with non-blocking I/O (default), false to use two threads
+     * per connection
+     */
+    public static final String P_WEBSOCKET_NON_BLOCKING = "websocketNonBlocking";
+    /**
+     * Init param: the size of the buffer of each direction of a WebSocket connection, in bytes
+     */
+    public static final String P_WEBSOCKET_BUFFER_SIZE = "websocketBufferSize";
+    /**
+     * Init param: the number of threads that handle the I/O events of the non-blocking WebSocket connections (the
+     * number of CPUs if less than 1)
+     */
+    public static final String P_WEBSOCKET_THREADS = "websocketThreads";
+    /**
+     * Init param: the max number of active WebSocket connections per site (unlimited if less than 1)
+     */
+    public static final String P_WEBSOCKET_MAX_CONNECTIONS = "websocketMaxConnections";
+    /**
+     * Init param: the timeout in milliseconds to connect and complete the handshake with the WebSocket server
+     */
+    public static final String P_WEBSOCKET_HANDSHAKE_TIMEOUT = "websocketHandshakeTimeout";
+
+    public static final int DEFAULT_WEBSOCKET_BUFFER_SIZE = 8 * 1024;
+    public static final int DEFAULT_WEBSOCKET_HANDSHAKE_TIMEOUT = 10000;
+
+    private static final String WEBSOCKET_HEADERS_END = "\r\n\r\n";
+
     protected ExecutorService exec;
+    protected AsynchronousChannelGroup channelGroup;
+    protected boolean websocketNonBlocking;
+    protected int websocketBufferSize;
+    protected int websocketMaxConnections;
+    protected int websocketHandshakeTimeout;
+    protected WebSocketProxyStats defaultWebSocketStats;
 
     @Override
     public void init() throws ServletException {
         super.init();
-        exec = Executors.newCachedThreadPool();
+
+        websocketNonBlocking = BooleanUtils.toBooleanDefaultIfNull(
+                BooleanUtils.toBooleanObject(getConfigParam(P_WEBSOCKET_NON_BLOCKING)), true);
+        websocketBufferSize = getIntConfigParam(P_WEBSOCKET_BUFFER_SIZE, DEFAULT_WEBSOCKET_BUFFER_SIZE);
+        websocketMaxConnections = getIntConfigParam(P_WEBSOCKET_MAX_CONNECTIONS, 0);
+        websocketHandshakeTimeout = getIntConfigParam(P_WEBSOCKET_HANDSHAKE_TIMEOUT,
+                                                      DEFAULT_WEBSOCKET_HANDSHAKE_TIMEOUT);
+        defaultWebSocketStats = new WebSocketProxyStats();
+
+        if (websocketNonBlocking) {
+            int threads = getIntConfigParam(P_WEBSOCKET_THREADS, 0);
+            if (threads < 1) {
+                threads = Runtime.getRuntime().availableProcessors();
+            }
+            try {
+                channelGroup = AsynchronousChannelGroup.withFixedThreadPool(threads, new BasicThreadFactory.Builder()
+                        .namingPattern("websocket-proxy-%d")
+                        .daemon(true)
+                        .build());
+            } catch (IOException e) {
+                throw new ServletException("Unable to create the channel group for websocket connections", e);
+            }
+        } else {
+            exec = Executors.newCachedThreadPool();
+        }
+    }
+
+    protected int getIntConfigParam(String name, int defaultValue) {
+        String value = getConfigParam(name);
+        return StringUtils.isNotBlank(value)? Integer.parseInt(value.trim()) : defaultValue;
     }
 
     @Override
@@ -70,7 +152,12 @@ public class ConfigAwareProxyServlet extends ProxyServlet {
     @Override
     public void destroy() {
         super.destroy();
-        exec.shutdown();
+        if (exec != null) {
+            exec.shutdown();
+        }
+        if (channelGroup != null) {
+            channelGroup.shutdown();
+        }
     }
 
     @Override
@@ -126,7 +213,7 @@ public class ConfigAwareProxyServlet extends ProxyServlet {
      * Handle the initial handshake request for websocket connection and establish the websocket.
      * A WebSocket interaction begins with an HTTP request that uses the HTTP Upgrade header to upgrade to the WebSocket protocol.
      * This method first forward the handshake request to the websocket server and read the response.
-     * If the response is 101, use {@link WsUpgradeHandler} to establish the websocket proxy among client <==> engine <==> websocket server.
+     * If the response is 101, use {@link NonBlockingWsUpgradeHandler} (or {@link WsUpgradeHandler} in blocking mode) to establish the websocket proxy among client <==> engine <==> websocket server.
      * @param servletRequest servlet request from client
      * @param servletResponse servlet response to client
      */
@@ -141,9 +228,38 @@ public class ConfigAwareProxyServlet extends ProxyServlet {
         String proxyRequestUri = rewriteUrlFromRequest(servletRequest);
         URL url = new URL(proxyRequestUri);
 
+        WebSocketProxyStats stats = getWebSocketProxyStats();
+        if (!stats.connectionOpened(websocketMaxConnections)) {
+            logger.debug("< Websocket| Max number of connections reached");
+            servletResponse.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+
+        // From here on the stats are updated by the upgrade handler, unless the handshake fails
+        boolean upgraded = false;
+        try {
+            if (websocketNonBlocking) {
+                upgraded = nonBlockingHandshake(servletRequest, servletResponse, url, stats);
+            } else {
+                upgraded = blockingHandshake(servletRequest, servletResponse, url, stats);
+            }
+        } finally {
+            if (!upgraded) {
+                stats.handshakeFailed();
+                stats.connectionClosed();
+            }
+        }
+    }
+
+    /**
+     * Performs the handshake through a blocking socket and, if successful, upgrades the connection with
+     * {@link WsUpgradeHandler}.
+     */
+    private boolean blockingHandshake(HttpServletRequest servletRequest, HttpServletResponse servletResponse,
+                                      URL url, WebSocketProxyStats stats) throws IOException, ServletException {
         // Create a new socket connection to the websocket server
-        Socket socketProxyClient = new Socket(url.getHost(), url.getPort());
-        boolean closeSocket = false;
+        Socket socketProxyClient = new Socket(url.getHost(), getPort(url));
+        boolean closeSocket = true;
         try {
             var socketIn = socketProxyClient.getInputStream();
             var socketOut = socketProxyClient.getOutputStream();
@@ -155,22 +271,128 @@ public class ConfigAwareProxyServlet extends ProxyServlet {
 
             // Get handshake response from websocket server to engine
             String[] headers = getProxyHandshakeResponseHeaders(socketIn);
-            addProxyResponseHeaders(headers, servletResponse);
-            int respCode = getProxyHandshakeStatusCode(headers);
-            if (respCode != HttpServletResponse.SC_SWITCHING_PROTOCOLS) {   // The websocket handshake failed, close the connection
-                servletResponse.setStatus(respCode);
-                servletResponse.flushBuffer();
-                logger.debug("< Websocket| Flush");
-                closeSocket = true;
-            } else { // The websocket handshake succeeded, establish the websocket connection
+            if (isHandshakeSuccessful(headers, servletResponse)) {
                 var upgradeHandler = servletRequest.upgrade(WsUpgradeHandler.class);
-                upgradeHandler.preInit(exec, socketIn, socketOut, socketProxyClient);
+                upgradeHandler.preInit(exec, socketIn, socketOut, socketProxyClient, stats);
+                closeSocket = false;
             }
         } finally {
             if (closeSocket) {
                 socketProxyClient.close();
             }
         }
+
+        return !closeSocket;
+    }
+
+    /**
+     * Performs the handshake through an asynchronous channel and, if successful, upgrades the connection with
+     * {@link NonBlockingWsUpgradeHandler}. The request thread waits for the handshake (up to the handshake
+     * timeout), but not for the rest of the connection.
+     */
+    protected boolean nonBlockingHandshake(HttpServletRequest servletRequest, HttpServletResponse servletResponse,
+                                           URL url, WebSocketProxyStats stats) throws IOException, ServletException {
+        AsynchronousSocketChannel channel = AsynchronousSocketChannel.open(channelGroup);
+        boolean closeChannel = true;
+        try {
+            awaitHandshakeStep(channel.connect(new InetSocketAddress(url.getHost(), getPort(url))));
+
+            // Send the handshake request from engine to the websocket server
+            String handshakeRequest = getProxyHandshakeRequest(servletRequest, url);
+            ByteBuffer requestBuffer = ByteBuffer.wrap(handshakeRequest.getBytes(StandardCharsets.UTF_8));
+            while (requestBuffer.hasRemaining()) {
+                awaitHandshakeStep(channel.write(requestBuffer));
+            }
+
+            // Get handshake response from websocket server to engine. The server can send data right after the
+            // response, so whatever follows the headers is kept to be forwarded to the client
+            ByteBuffer buffer = ByteBuffer.allocate(websocketBufferSize);
+            int headersEnd;
+            while ((headersEnd = getHeadersEnd(buffer)) < 0) {
+                if (!buffer.hasRemaining()) {
+                    throw new IOException("Websocket handshake response exceeds the buffer size");
+                }
+                if (awaitHandshakeStep(channel.read(buffer)) < 0) {
+                    throw new IOException("Websocket server closed the connection during the handshake");
+                }
+            }
+
+            String response = new String(buffer.array(), 0, headersEnd, StandardCharsets.ISO_8859_1);
+            String[] headers = response.split("\r\n");
+            logger.debug("< Websocket| '{}'", headers[0]);
+
+            if (isHandshakeSuccessful(headers, servletResponse)) {
+                buffer.flip();
+                buffer.position(headersEnd + WEBSOCKET_HEADERS_END.length());
+                buffer.compact();
+                buffer.flip();
+
+                var upgradeHandler = servletRequest.upgrade(NonBlockingWsUpgradeHandler.class);
+                upgradeHandler.preInit(channel, buffer, stats);
+                closeChannel = false;
+            }
+        } finally {
+            if (closeChannel) {
+                channel.close();
+            }
+        }
+
+        return !closeChannel;
+    }
+
+    private <T> T awaitHandshakeStep(Future<T> step) throws IOException {
+        try {
+            return step.get(websocketHandshakeTimeout, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new IOException("Websocket handshake failed", e.getCause());
+        } catch (TimeoutException e) {
+            step.cancel(true);
+            throw new IOException("Websocket handshake timed out after " + websocketHandshakeTimeout + " ms", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the websocket handshake", e);
+        }
+    }
+
+    /**
+     * Returns the index where the headers in the buffer end, or -1 if the end hasn't been read yet.
+     */
+    private int getHeadersEnd(ByteBuffer buffer) {
+        byte[] data = buffer.array();
+        for (int i = 0; i + WEBSOCKET_HEADERS_END.length() <= buffer.position(); i++) {
+            if (data[i] == '\r' && data[i + 1] == '\n' && data[i + 2] == '\r' && data[i + 3] == '\n') {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Copies the handshake response to the client response. If the handshake failed the response is flushed,
+     * since the connection won't be upgraded.
+     */
+    private boolean isHandshakeSuccessful(String[] headers, HttpServletResponse servletResponse) throws IOException {
+        addProxyResponseHeaders(headers, servletResponse);
+        int respCode = getProxyHandshakeStatusCode(headers);
+        if (respCode != HttpServletResponse.SC_SWITCHING_PROTOCOLS) {   // The websocket handshake failed, close the connection
+            servletResponse.setStatus(respCode);
+            servletResponse.flushBuffer();
+            logger.debug("< Websocket| Flush");
+
+            return false;
+        }
+
+        return true;
+    }
+
+    private int getPort(URL url) {
+        return url.getPort() != -1? url.getPort() : url.getDefaultPort();
+    }
+
+    private WebSocketProxyStats getWebSocketProxyStats() {
+        SiteContext siteContext = SiteContext.getCurrent();
+        return siteContext != null? siteContext.getWebSocketProxyStats() : defaultWebSocketStats;
     }
 
     /**
@@ -70,7 +70,7 @@ public class ContentStoreResource extends AbstractResource {
     public long lastModified() throws IOException {
         Content content = getContent();
         if (content != null) {
-            return content.getLength();
+            return content.getLastModified();
         } else {
             throw new FileNotFoundException(getDescription() + " not found");
         }
@@ -18,12 +18,15 @@ package org.craftercms.engine.view;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.craftercms.core.util.ContentStoreUtils;
 import org.craftercms.core.util.ExceptionUtils;
 import org.craftercms.core.util.cache.CachingAwareObject;
+import org.craftercms.engine.cache.PageOutputCache;
 import org.craftercms.engine.exception.HttpStatusCodeAwareException;
 import org.craftercms.engine.exception.RenderingException;
 import org.craftercms.engine.model.SiteItem;
 import org.craftercms.engine.scripting.Script;
+import org.craftercms.engine.service.context.SiteContext;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.http.MediaType;
 import org.springframework.web.servlet.View;
@@ -67,6 +70,7 @@ public class CrafterPageView extends AbstractView implements CachingAwareObject,
     protected List<Script> scripts;
     protected ViewResolver delegatedViewResolver;
     protected boolean disableVariableRestrictions;
+    protected PageOutputCache pageOutputCache;
 
     public CrafterPageView(SiteItem page, Locale locale, String pageViewNameXPathQuery, String mimeTypeXPathQuery,
                            List<Script> scripts, ViewResolver delegatedViewResolver) {
@@ -116,6 +120,10 @@ public class CrafterPageView extends AbstractView implements CachingAwareObject,
         this.disableVariableRestrictions = disableVariableRestrictions;
     }
 
+    public void setPageOutputCache(PageOutputCache pageOutputCache) {
+        this.pageOutputCache = pageOutputCache;
+    }
+
     @Override
     public String toString() {
         return "CrafterPageView[" +
@@ -139,6 +147,20 @@ public class CrafterPageView extends AbstractView implements CachingAwareObject,
                                            HttpServletResponse response) throws Exception {
         request.setAttribute(PAGE_URL_ATTRIBUTE_NAME, page.getStoreUrl());
 
+        if (pageOutputCache != null) {
+            pageOutputCache.render(page, request, response, actualResponse ->
+                    renderPage(model, request, actualResponse));
+        } else {
+            renderPage(model, request, response);
+        }
+    }
+
+    protected void renderPage(Map<String, Object> model, HttpServletRequest request,
+                              HttpServletResponse response) throws Exception {
+        // The page view name is read by FreeMarker, so it's recorded as a dependency of the page output
+        String pageViewName = getPageViewName();
+        recordRead(pageViewName);
+
         Map<String, Object> scriptVariables = createScriptVariables(request, response, model);
 
         if (CollectionUtils.isNotEmpty(scripts)) {
@@ -157,7 +179,14 @@ public class CrafterPageView extends AbstractView implements CachingAwareObject,
         model.put(KEY_MODEL, page);
         model.put(KEY_CONTENT_MODEL, page);
 
-        renderActualView(getPageViewName(), model, request, response);
+        renderActualView(pageViewName, model, request, response);
+    }
+
+    protected void recordRead(String url) {
+        SiteContext siteContext = SiteContext.getCurrent();
+        if (siteContext != null) {
+            siteContext.getCacheDependencyGraph().recordRead(ContentStoreUtils.normalizePath(url));
+        }
     }
 
     protected void executeScript(Script script, Map<String, Object> scriptVariables) throws Exception {
@@ -23,6 +23,7 @@ import org.apache.commons.logging.LogFactory;
 import org.craftercms.commons.http.RequestContext;
 import org.craftercms.core.service.CachingOptions;
 import org.craftercms.core.util.cache.CacheTemplate;
+import org.craftercms.engine.cache.PageOutputCache;
 import org.craftercms.engine.mobile.UserAgentTemplateDetector;
 import org.craftercms.engine.model.SiteItem;
 import org.craftercms.engine.properties.SiteProperties;
@@ -79,6 +80,7 @@ public class CrafterPageViewResolver extends WebApplicationObjectSupport impleme
     protected UserAgentTemplateDetector userAgentTemplateDetector;
     protected CrafterPageAccessManager accessManager;
     protected boolean disableVariableRestrictions;
+    protected PageOutputCache pageOutputCache;
 
     public CrafterPageViewResolver(String renderUrlToStoreUrlTransformerName, String storeUrlToRenderUrlTransformerName,
                                    String toFullHttpsUrlTransformerName, UrlTransformationService urlTransformationService,
@@ -130,6 +132,10 @@ public class CrafterPageViewResolver extends WebApplicationObjectSupport impleme
         this.disableVariableRestrictions = disableVariableRestrictions;
     }
 
+    public void setPageOutputCache(PageOutputCache pageOutputCache) {
+        this.pageOutputCache = pageOutputCache;
+    }
+
     @Override
     public View resolveViewName(String renderUrl, Locale locale)  {
         String storeUrl = urlTransformationService.transform(renderUrlToStoreUrlTransformerName, renderUrl, cacheUrlTransformations);
@@ -154,6 +160,7 @@ public class CrafterPageViewResolver extends WebApplicationObjectSupport impleme
             accessManager.checkAccess(pageView.getPage());
 
             pageView.setDisableVariableRestrictions(disableVariableRestrictions);
+            pageView.setPageOutputCache(pageOutputCache);
         }
 
         return view;
@@ -208,9 +215,14 @@ public class CrafterPageViewResolver extends WebApplicationObjectSupport impleme
 
                         return getCurrentPageHttpsRedirectView();
                     } else {
+                        List<Script> scripts = loadScripts(siteContext.getScriptFactory(), page);
+                        // The view holds the page scripts, so it needs to be invalidated when they change
+                        for (Script script : scripts) {
+                            siteContext.getCacheDependencyGraph().addDependency(script.getUrl(), url);
+                        }
+
                         UserAgentAwareCrafterPageView view = new UserAgentAwareCrafterPageView(
-                                page, locale, pageViewNameXPathQuery, mimeTypeXPathQuery,
-                                loadScripts(siteContext.getScriptFactory(), page),
+                                page, locale, pageViewNameXPathQuery, mimeTypeXPathQuery, scripts,
                                 delegatedViewResolver, userAgentTemplateDetector);
                         view.setServletContext(getServletContext());
                         return applyLifecycleMethods(page.getStoreUrl(), view);
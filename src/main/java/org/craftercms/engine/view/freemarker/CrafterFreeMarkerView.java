@@ -29,6 +29,7 @@ import org.craftercms.engine.plugin.PluginService;
 import org.craftercms.engine.scripting.SiteItemScriptResolver;
 import org.craftercms.engine.service.SiteItemService;
 import org.craftercms.engine.service.context.SiteContext;
+import org.craftercms.engine.targeting.TargetIdManager;
 import org.craftercms.engine.util.freemarker.HttpRequestHashModel;
 import org.craftercms.engine.util.freemarker.SiteContextHashModel;
 import org.craftercms.engine.util.spring.ApplicationContextAccessor;
@@ -100,6 +101,8 @@ public class CrafterFreeMarkerView extends FreeMarkerView {
     protected String componentEmbeddedElementName;
     protected SiteItemScriptResolver componentScriptResolver;
     protected PluginService pluginService;
+    protected boolean componentFragmentCacheEnabled;
+    protected TargetIdManager targetIdManager;
 
     // Needed because the field in the superclass is private
     protected boolean disableVariableRestrictions;
@@ -111,6 +114,7 @@ public class CrafterFreeMarkerView extends FreeMarkerView {
 
     protected ServletContextHashModel servletContextHashModel;
     protected ApplicationContextAccessor applicationContextAccessor;
+    protected ExecuteControllerDirective executeControllerDirective;
 
     @Override
     protected void initServletContext(ServletContext servletContext) throws BeansException {
@@ -118,6 +122,7 @@ public class CrafterFreeMarkerView extends FreeMarkerView {
 
         servletContextHashModel = new ServletContextHashModel(servletContext, getObjectWrapper());
         applicationContextAccessor = new ApplicationContextAccessor(getApplicationContext());
+        executeControllerDirective = new ExecuteControllerDirective(servletContext);
     }
 
     @Override
@@ -169,6 +174,14 @@ public class CrafterFreeMarkerView extends FreeMarkerView {
         this.pluginService = pluginService;
     }
 
+    public void setComponentFragmentCacheEnabled(boolean componentFragmentCacheEnabled) {
+        this.componentFragmentCacheEnabled = componentFragmentCacheEnabled;
+    }
+
+    public void setTargetIdManager(TargetIdManager targetIdManager) {
+        this.targetIdManager = targetIdManager;
+    }
+
     /**
      * Instead of returning the same bean from the application context, a {@link FreeMarkerConfig} is returned for
      * the current {@link SiteContext}.
@@ -256,13 +269,15 @@ public class CrafterFreeMarkerView extends FreeMarkerView {
 
         pluginService.addPluginVariables(getUrl(), templateModel::put);
 
-        ObjectFactory<SimpleHash> componentModelFactory = () -> buildTemplateModel(model, request, response);
+        // The model of each component only holds the component specific variables, the rest are taken from the
+        // page model instead of building it again for every component
+        ObjectFactory<SimpleHash> componentModelFactory = () -> new LayeredHashModel(templateModel, getObjectWrapper());
 
         RenderComponentDirective renderComponentDirective = new RenderComponentDirective(getServletContext(),
                 siteItemService, componentModelFactory, componentTemplateXPathQuery, componentTemplateNamePrefix,
                 componentTemplateNameSuffix, componentIncludeElementName, componentEmbeddedElementName, componentScriptResolver);
-
-        ExecuteControllerDirective executeControllerDirective = new ExecuteControllerDirective(getServletContext());
+        renderComponentDirective.setFragmentCacheEnabled(componentFragmentCacheEnabled);
+        renderComponentDirective.setTargetIdManager(targetIdManager);
 
         templateModel.put(RENDER_COMPONENT_DIRECTIVE_NAME, renderComponentDirective);
         templateModel.put(EXECUTE_CONTROLLER_DIRECTIVE_NAME, executeControllerDirective);
@@ -18,6 +18,7 @@ package org.craftercms.engine.view.freemarker;
 import org.craftercms.engine.plugin.PluginService;
 import org.craftercms.engine.scripting.SiteItemScriptResolver;
 import org.craftercms.engine.service.SiteItemService;
+import org.craftercms.engine.targeting.TargetIdManager;
 import org.springframework.lang.NonNull;
 import org.springframework.web.servlet.view.AbstractUrlBasedView;
 import org.springframework.web.servlet.view.freemarker.FreeMarkerViewResolver;
@@ -35,6 +36,8 @@ public class CrafterFreeMarkerViewResolver extends FreeMarkerViewResolver {
     protected String componentEmbeddedElementName;
     protected SiteItemScriptResolver componentScriptResolver;
     protected PluginService pluginService;
+    protected boolean componentFragmentCacheEnabled;
+    protected TargetIdManager targetIdManager;
 
     /**
      * Indicates if access for static methods should be allowed in Freemarker templates
@@ -69,6 +72,14 @@ public class CrafterFreeMarkerViewResolver extends FreeMarkerViewResolver {
         this.pluginService = pluginService;
     }
 
+    public void setComponentFragmentCacheEnabled(boolean componentFragmentCacheEnabled) {
+        this.componentFragmentCacheEnabled = componentFragmentCacheEnabled;
+    }
+
+    public void setTargetIdManager(TargetIdManager targetIdManager) {
+        this.targetIdManager = targetIdManager;
+    }
+
     @Override
     @NonNull
     protected Class<?> requiredViewClass() {
@@ -88,6 +99,8 @@ public class CrafterFreeMarkerViewResolver extends FreeMarkerViewResolver {
         view.setComponentScriptResolver(componentScriptResolver);
         view.setEnableStatics(enableStatics);
         view.setPluginService(pluginService);
+        view.setComponentFragmentCacheEnabled(componentFragmentCacheEnabled);
+        view.setTargetIdManager(targetIdManager);
 
         return view;
     }
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.view.freemarker;
+
+import freemarker.template.KeyValuePairIterator;
+import freemarker.template.ObjectWrapper;
+import freemarker.template.SimpleHash;
+import freemarker.template.TemplateCollectionModel;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link SimpleHash} that only holds its own entries and looks up the rest of the keys in a base model, so that
+ * several models can share the same base model without copying it. Used as the model of components, which only
+ * need to override a few keys of the page model.
+ *
+ * @since 4.2.0
+ */
+public class LayeredHashModel extends SimpleHash {
+
+    protected SimpleHash baseModel;
+
+    public LayeredHashModel(SimpleHash baseModel, ObjectWrapper wrapper) {
+        super(wrapper);
+
+        this.baseModel = baseModel;
+    }
+
+    public SimpleHash getBaseModel() {
+        return baseModel;
+    }
+
+    @Override
+    public TemplateModel get(String key) throws TemplateModelException {
+        TemplateModel model = super.get(key);
+        // Keys explicitly set to null also hide the key of the base model
+        if (model != null || super.containsKey(key)) {
+            return model;
+        }
+
+        return baseModel.get(key);
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        return super.containsKey(key) || baseModel.containsKey(key);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return super.isEmpty() && baseModel.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return getMergedModel().size();
+    }
+
+    @Override
+    public TemplateCollectionModel keys() {
+        return getMergedModel().keys();
+    }
+
+    @Override
+    public TemplateCollectionModel values() {
+        return getMergedModel().values();
+    }
+
+    @Override
+    public KeyValuePairIterator keyValuePairIterator() {
+        return getMergedModel().keyValuePairIterator();
+    }
+
+    @Override
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public Map toMap() throws TemplateModelException {
+        Map map = new HashMap(baseModel.toMap());
+        map.putAll(super.toMap());
+
+        return map;
+    }
+
+    /**
+     * Returns a copy of the base model with the entries of this model, used only when all the entries need to be
+     * listed (which is uncommon in templates).
+     */
+    protected SimpleHash getMergedModel() {
+        try {
+            return new SimpleHash(toMap(), getObjectWrapper());
+        } catch (TemplateModelException e) {
+            throw new IllegalStateException("Unable to merge the model with its base model", e);
+        }
+    }
+
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.websocket;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpUpgradeHandler;
+import jakarta.servlet.http.WebConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Upgrade websocket handler that forwards the websocket stream without blocking any thread: the client side uses
+ * servlet non-blocking I/O ({@link ReadListener}/{@link WriteListener}) and the server side an
+ * {@link AsynchronousSocketChannel}. Each direction uses a single buffer of fixed size, and no more data is read
+ * from one side until the previous data has been written to the other side.
+ *
+ * @since 4.2.0
+ */
+public class NonBlockingWsUpgradeHandler implements HttpUpgradeHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(NonBlockingWsUpgradeHandler.class);
+
+    private AsynchronousSocketChannel channel;
+    private ByteBuffer serverBuffer;
+    private ByteBuffer clientBuffer;
+    private WebSocketProxyStats stats;
+
+    private WebConnection connection;
+    private ServletInputStream clientIn;
+    private ServletOutputStream clientOut;
+
+    private final Object clientToServerLock = new Object();
+    private final Object serverToClientLock = new Object();
+    private final AtomicBoolean serverReadPending = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private boolean serverWritePending;
+    private boolean clientFlushPending;
+
+    /**
+     * Sets the state of the handler before the connection is upgraded.
+     *
+     * @param channel       the channel to the websocket server, after the handshake
+     * @param serverData    the data already received from the server after the handshake response, ready to be
+     *                      read. Its capacity is used as the buffer size of both directions
+     * @param stats         the stats where the connection is registered
+     */
+    public void preInit(AsynchronousSocketChannel channel, ByteBuffer serverData, WebSocketProxyStats stats) {
+        this.channel = channel;
+        this.serverBuffer = serverData;
+        this.clientBuffer = ByteBuffer.allocate(serverData.capacity());
+        this.stats = stats;
+    }
+
+    @Override
+    public void init(WebConnection wc) {
+        logger.debug("* Websocket| Non-blocking upgrade begin");
+
+        connection = wc;
+        try {
+            clientIn = wc.getInputStream();
+            clientOut = wc.getOutputStream();
+
+            // The container calls onWritePossible right away, which writes any pending server data and then starts
+            // reading from the server
+            clientOut.setWriteListener(new ServerToClientListener());
+            clientIn.setReadListener(new ClientToServerListener());
+        } catch (Exception e) {
+            close("Error while starting to forward websocket stream", e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        close(null, null);
+    }
+
+    /**
+     * Reads from the client while there's data available and no write to the server is pending.
+     */
+    protected void readFromClient() throws IOException {
+        synchronized (clientToServerLock) {
+            // When isReady() returns false the container calls onDataAvailable when there's more data
+            while (!serverWritePending && !closed.get() && clientIn.isReady()) {
+                int count = clientIn.read(clientBuffer.array());
+                if (count < 0) {
+                    // onAllDataRead will be called
+                    return;
+                } else if (count > 0) {
+                    stats.addBytesFromClient(count);
+
+                    clientBuffer.position(0).limit(count);
+                    serverWritePending = true;
+
+                    channel.write(clientBuffer, null, new ServerWriteHandler());
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the data read from the server to the client, flushes it, and then starts the next read from the
+     * server. If the client can't take more data, the container calls onWritePossible once it can.
+     */
+    protected void writeToClient() throws IOException {
+        synchronized (serverToClientLock) {
+            while (!closed.get() && clientOut.isReady()) {
+                if (serverBuffer.hasRemaining()) {
+                    clientOut.write(serverBuffer.array(), serverBuffer.position(), serverBuffer.remaining());
+                    serverBuffer.position(serverBuffer.limit());
+                    clientFlushPending = true;
+                } else if (clientFlushPending) {
+                    clientFlushPending = false;
+                    clientOut.flush();
+                } else {
+                    readFromServer();
+                    return;
+                }
+            }
+        }
+    }
+
+    protected void readFromServer() {
+        if (!closed.get() && serverReadPending.compareAndSet(false, true)) {
+            serverBuffer.clear();
+            channel.read(serverBuffer, null, new ServerReadHandler());
+        }
+    }
+
+    protected void close(String errorMessage, Throwable error) {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+
+        if (error != null) {
+            logger.debug("> Websocket| " + errorMessage, error);
+        }
+
+        stats.connectionClosed();
+
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.debug("Exception while closing channel", e);
+        }
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (Exception e) {
+                logger.debug("Exception while closing web connection", e);
+            }
+        }
+
+        logger.debug("* Websocket| Non-blocking upgrade close");
+    }
+
+    private class ClientToServerListener implements ReadListener {
+
+        @Override
+        public void onDataAvailable() throws IOException {
+            readFromClient();
+        }
+
+        @Override
+        public void onAllDataRead() {
+            logger.debug("> Websocket| Client closed the connection");
+            close(null, null);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            close("Error while reading from client", t);
+        }
+
+    }
+
+    private class ServerToClientListener implements WriteListener {
+
+        @Override
+        public void onWritePossible() throws IOException {
+            writeToClient();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            close("Error while writing to client", t);
+        }
+
+    }
+
+    private class ServerReadHandler implements CompletionHandler<Integer, Void> {
+
+        @Override
+        public void completed(Integer count, Void attachment) {
+            serverReadPending.set(false);
+
+            if (count < 0) {
+                logger.debug("< Websocket| Server closed the connection");
+                close(null, null);
+                return;
+            }
+
+            stats.addBytesToClient(count);
+            serverBuffer.flip();
+
+            try {
+                writeToClient();
+            } catch (Exception e) {
+                close("Error while writing to client", e);
+            }
+        }
+
+        @Override
+        public void failed(Throwable exc, Void attachment) {
+            serverReadPending.set(false);
+            close("Error while reading from server", exc);
+        }
+
+    }
+
+    private class ServerWriteHandler implements CompletionHandler<Integer, Void> {
+
+        @Override
+        public void completed(Integer count, Void attachment) {
+            if (clientBuffer.hasRemaining()) {
+                channel.write(clientBuffer, null, this);
+                return;
+            }
+
+            synchronized (clientToServerLock) {
+                serverWritePending = false;
+            }
+
+            try {
+                readFromClient();
+            } catch (Exception e) {
+                close("Error while reading from client", e);
+            }
+        }
+
+        @Override
+        public void failed(Throwable exc, Void attachment) {
+            close("Error while writing to server", exc);
+        }
+
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.websocket;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of the WebSocket connections proxied for a site. Connections are counted in the stats of the site context
+ * that was current when they were opened, so they're still decremented there after the context is rebuilt.
+ *
+ * @since 4.2.0
+ */
+public class WebSocketProxyStats {
+
+    private final AtomicInteger activeConnections;
+    private final LongAdder totalConnections;
+    private final LongAdder rejectedConnections;
+    private final LongAdder failedHandshakes;
+    private final LongAdder bytesFromClient;
+    private final LongAdder bytesToClient;
+
+    public WebSocketProxyStats() {
+        activeConnections = new AtomicInteger();
+        totalConnections = new LongAdder();
+        rejectedConnections = new LongAdder();
+        failedHandshakes = new LongAdder();
+        bytesFromClient = new LongAdder();
+        bytesToClient = new LongAdder();
+    }
+
+    /**
+     * Returns the number of connections currently open.
+     */
+    public int getActiveConnections() {
+        return activeConnections.get();
+    }
+
+    /**
+     * Returns the number of connections opened (including the ones whose handshake failed).
+     */
+    public long getTotalConnections() {
+        return totalConnections.sum();
+    }
+
+    /**
+     * Returns the number of connections rejected because the max number of connections was reached.
+     */
+    public long getRejectedConnections() {
+        return rejectedConnections.sum();
+    }
+
+    /**
+     * Returns the number of connections whose handshake with the WebSocket server failed.
+     */
+    public long getFailedHandshakes() {
+        return failedHandshakes.sum();
+    }
+
+    /**
+     * Returns the number of bytes forwarded from the clients to the WebSocket server.
+     */
+    public long getBytesFromClient() {
+        return bytesFromClient.sum();
+    }
+
+    /**
+     * Returns the number of bytes forwarded from the WebSocket server to the clients.
+     */
+    public long getBytesToClient() {
+        return bytesToClient.sum();
+    }
+
+    /**
+     * Registers a new connection, unless the max number of connections has been reached.
+     *
+     * @param maxConnections the max number of active connections (unlimited if less than 1)
+     * @return true if the connection can be opened, false if it was rejected
+     */
+    public boolean connectionOpened(int maxConnections) {
+        int active;
+        do {
+            active = activeConnections.get();
+            if (maxConnections > 0 && active >= maxConnections) {
+                rejectedConnections.increment();
+                return false;
+            }
+        } while (!activeConnections.compareAndSet(active, active + 1));
+
+        totalConnections.increment();
+
+        return true;
+    }
+
+    /**
+     * Registers that a connection opened with {@link #connectionOpened(int)} was closed.
+     */
+    public void connectionClosed() {
+        activeConnections.decrementAndGet();
+    }
+
+    public void handshakeFailed() {
+        failedHandshakes.increment();
+    }
+
+    public void addBytesFromClient(long bytes) {
+        bytesFromClient.add(bytes);
+    }
+
+    public void addBytesToClient(long bytes) {
+        bytesToClient.add(bytes);
+    }
+
+    @Override
+    public String toString() {
+        return "WebSocketProxyStats{" +
+               "activeConnections=" + getActiveConnections() +
+               ", totalConnections=" + getTotalConnections() +
+               ", rejectedConnections=" + getRejectedConnections() +
+               ", failedHandshakes=" + getFailedHandshakes() +
+               ", bytesFromClient=" + getBytesFromClient() +
+               ", bytesToClient=" + getBytesToClient() +
+               '}';
+    }
+
+}
@@ -40,12 +40,15 @@ public class WsUpgradeHandler implements HttpUpgradeHandler {
     OutputStream socketOut;
     Socket socket;
     Future<?> future;
+    WebSocketProxyStats stats;
 
-    public void preInit(ExecutorService exec, InputStream socketIn, OutputStream socketOut, Socket socket) {
+    public void preInit(ExecutorService exec, InputStream socketIn, OutputStream socketOut, Socket socket,
+                        WebSocketProxyStats stats) {
         this.exec = exec;
         this.socketIn = socketIn;
         this.socketOut = socketOut;
         this.socket = socket;
+        this.stats = stats;
     }
 
     /**
@@ -93,6 +96,7 @@ public class WsUpgradeHandler implements HttpUpgradeHandler {
         } catch (IOException ex) {
             logger.debug("Exception while closing socket", ex);
         }
+        stats.connectionClosed();
         logger.debug("* Websocket| Upgrade close");
     }
 
@@ -112,6 +116,9 @@ public class WsUpgradeHandler implements HttpUpgradeHandler {
                 outputStream.write(buffer, 0, count);
                 if (flushOutput) {
                     outputStream.flush();
+                    stats.addBytesToClient(count);
+                } else {
+                    stats.addBytesFromClient(count);
                 }
                 i++;
             }
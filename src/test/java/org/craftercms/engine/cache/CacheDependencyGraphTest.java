@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class CacheDependencyGraphTest {
+
+    private CacheDependencyGraph dependencyGraph;
+
+    @Before
+    public void setUp() {
+        dependencyGraph = new CacheDependencyGraph();
+    }
+
+    @Test
+    public void testTransitiveDependents() {
+        dependencyGraph.addDependency("/site/website/en/index.xml", "/site/website/es/index.xml");
+        dependencyGraph.addDependency("/site/website/es/index.xml", "/site/website/es_CR/index.xml");
+        dependencyGraph.addDependency("/scripts/pages/home.groovy", "/site/website/index.xml");
+
+        Set<String> dependents = dependencyGraph.removeDependents(
+                Collections.singletonList("/site/website/en/index.xml"));
+
+        assertEquals(Set.of("/site/website/es/index.xml", "/site/website/es_CR/index.xml"), dependents);
+        assertTrue(dependencyGraph.removeDependents(Collections.singletonList("/site/website/en/index.xml")).isEmpty());
+        assertEquals(1, dependencyGraph.size());
+    }
+
+    @Test
+    public void testTrackDependencies() {
+        String script = dependencyGraph.trackDependencies("/scripts/rest/test.get.groovy", () -> {
+            dependencyGraph.recordRead("/scripts/rest/test.get.groovy");
+
+            return dependencyGraph.trackDependencies("/scripts/classes/Helper.groovy", () -> {
+                dependencyGraph.recordRead("/scripts/classes/Util.groovy");
+                return "script";
+            });
+        });
+
+        // Reads outside of a tracked loader are ignored
+        dependencyGraph.recordRead("/scripts/classes/Other.groovy");
+
+        assertEquals("script", script);
+        assertEquals(Set.of("/scripts/classes/Helper.groovy", "/scripts/rest/test.get.groovy"),
+                     dependencyGraph.removeDependents(Collections.singletonList("/scripts/classes/Util.groovy")));
+        assertTrue(dependencyGraph.removeDependents(Arrays.asList("/scripts/classes/Other.groovy",
+                                                                  "/scripts/rest/test.get.groovy")).isEmpty());
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link CacheWarmUpProgress}.
+ */
+public class CacheWarmUpProgressTest {
+
+    @Test
+    public void testEstimatedRemainingTime() throws Exception {
+        CacheWarmUpProgress progress = new CacheWarmUpProgress();
+        progress.addDiscoveredItems(4);
+
+        // Nothing has been preloaded yet so there's no rate to estimate with
+        assertEquals(-1, progress.getEstimatedRemainingTime());
+
+        Thread.sleep(20);
+        progress.addPreloadedItem();
+
+        long elapsedTime = progress.getElapsedTime();
+        long remainingTime = progress.getEstimatedRemainingTime();
+
+        assertFalse(progress.isCompleted());
+        // 3 items left at the same rate as the first one
+        assertTrue(remainingTime >= 3 * elapsedTime);
+    }
+
+    @Test
+    public void testCompletedProgress() throws Exception {
+        CacheWarmUpProgress progress = new CacheWarmUpProgress();
+        progress.addDiscoveredItems(2);
+        progress.addPreloadedItem();
+        progress.complete();
+
+        long elapsedTime = progress.getElapsedTime();
+        Thread.sleep(20);
+
+        assertTrue(progress.isCompleted());
+        assertEquals(0, progress.getEstimatedRemainingTime());
+        assertEquals(elapsedTime, progress.getElapsedTime());
+        assertEquals(2, progress.getDiscoveredItems());
+        assertEquals(1, progress.getPreloadedItems());
+    }
+
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import org.craftercms.core.service.Context;
+import org.craftercms.core.service.Item;
+import org.craftercms.core.store.ContentStoreAdapter;
+import org.craftercms.engine.service.context.SiteContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link ContentStoreAdapterPreloadedFoldersBasedCacheWarmer}.
+ */
+public class ContentStoreAdapterPreloadedFoldersBasedCacheWarmerTest {
+
+    private static final String SITE_FOLDER = "/site";
+    private static final String STATIC_ASSETS_FOLDER = "/static-assets";
+
+    private static final Set<String> SITE_DESCENDANTS = new TreeSet<>(Arrays.asList(
+            "/site/components",
+            "/site/components/header.xml",
+            "/site/website",
+            "/site/website/about",
+            "/site/website/about/index.xml",
+            "/site/website/index.xml"));
+    private static final Set<String> STATIC_ASSETS_DESCENDANTS = new TreeSet<>(Arrays.asList(
+            "/static-assets/css",
+            "/static-assets/css/main.css",
+            "/static-assets/logo.png"));
+
+    @Mock
+    private PreloadedFoldersAwareContext contextWrapper;
+    @Mock
+    private Context context;
+    @Mock
+    private ContentStoreAdapter storeAdapter;
+    @Mock
+    private SiteContext siteContext;
+    private Map<String, List<Item>> folders;
+    private Map<String, SiteContext> siteContextsByFolder;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+
+        folders = new HashMap<>();
+        siteContextsByFolder = new ConcurrentHashMap<>();
+
+        addFolder("/");
+        addFolder(SITE_FOLDER);
+        addFolder("/site/website");
+        addFile("/site/website/index.xml");
+        addFolder("/site/website/about");
+        addFile("/site/website/about/index.xml");
+        addFolder("/site/components");
+        addFile("/site/components/header.xml");
+        addFolder(STATIC_ASSETS_FOLDER);
+        addFolder("/static-assets/css");
+        addFile("/static-assets/css/main.css");
+        addFile("/static-assets/logo.png");
+
+        when(contextWrapper.getActualContext()).thenReturn(context);
+        when(context.getStoreAdapter()).thenReturn(storeAdapter);
+        when(storeAdapter.findItem(any(), isNull(), anyString(), anyBoolean())).then(invocation -> {
+            String path = invocation.getArgument(2);
+            return folders.containsKey(path)? createItem(path, true) : createItem(path, false);
+        });
+        when(storeAdapter.findItems(any(), isNull(), anyString())).then(invocation -> {
+            String path = invocation.getArgument(2);
+            // Keep track of the site context of the threads walking the folders
+            SiteContext current = SiteContext.getCurrent();
+            if (current != null) {
+                siteContextsByFolder.put(path, current);
+            }
+
+            return folders.get(path);
+        });
+    }
+
+    @After
+    public void tearDown() {
+        SiteContext.clear();
+    }
+
+    @Test
+    public void testSequentialWarmUp() {
+        testWarmUp(1);
+    }
+
+    @Test
+    public void testParallelWarmUp() {
+        testWarmUp(4);
+    }
+
+    @Test
+    public void testParallelWarmUpWithLimitedDepth() {
+        ContentStoreAdapterPreloadedFoldersBasedCacheWarmer warmer = createWarmer(new String[] { SITE_FOLDER + ":1" },
+                                                                                  new String[0], 4);
+        warmer.warmUpCache(contextWrapper);
+
+        List<PreloadedFolder> preloadedFolders = getPreloadedFolders();
+
+        assertEquals(1, preloadedFolders.size());
+        assertEquals(new TreeSet<>(Arrays.asList("/site/components", "/site/website")),
+                     preloadedFolders.get(0).getDescendants());
+    }
+
+    @Test
+    public void testSiteContextIsPropagatedToWorkers() {
+        SiteContext.setCurrent(siteContext);
+
+        ContentStoreAdapterPreloadedFoldersBasedCacheWarmer warmer =
+                createWarmer(new String[] { SITE_FOLDER }, new String[0], 4);
+        warmer.warmUpCache(contextWrapper);
+
+        assertEquals(Arrays.asList("/site", "/site/components", "/site/website", "/site/website/about"),
+                     new ArrayList<>(new TreeSet<>(siteContextsByFolder.keySet())));
+        siteContextsByFolder.values().forEach(current -> assertEquals(siteContext, current));
+    }
+
+    private void testWarmUp(int parallelism) {
+        ContentStoreAdapterPreloadedFoldersBasedCacheWarmer warmer =
+                createWarmer(new String[] { SITE_FOLDER }, new String[] { STATIC_ASSETS_FOLDER }, parallelism);
+        CacheWarmUpProgress progress = new CacheWarmUpProgress();
+
+        warmer.warmUpCache(contextWrapper, progress);
+
+        Map<String, Set<String>> descendantsByFolder = new HashMap<>();
+        for (PreloadedFolder folder : getPreloadedFolders()) {
+            descendantsByFolder.put(folder.getPath(), folder.getDescendants());
+        }
+
+        assertEquals(2, descendantsByFolder.size());
+        assertEquals(SITE_DESCENDANTS, descendantsByFolder.get(SITE_FOLDER + "/"));
+        assertEquals(STATIC_ASSETS_DESCENDANTS, descendantsByFolder.get(STATIC_ASSETS_FOLDER + "/"));
+
+        // Only the files of the content folders are loaded as content
+        verify(storeAdapter).findContent(context, null, "/static-assets/css/main.css");
+        verify(storeAdapter).findContent(context, null, "/static-assets/logo.png");
+        verify(storeAdapter).findItem(context, null, "/site/website/about/index.xml", true);
+
+        long itemCount = SITE_DESCENDANTS.size() + STATIC_ASSETS_DESCENDANTS.size();
+        assertEquals(itemCount, progress.getDiscoveredItems());
+        assertEquals(itemCount, progress.getPreloadedItems());
+        assertEquals(0, progress.getEstimatedRemainingTime());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<PreloadedFolder> getPreloadedFolders() {
+        ArgumentCaptor<List<PreloadedFolder>> captor = ArgumentCaptor.forClass(List.class);
+        verify(contextWrapper).setPreloadedFolders(captor.capture());
+
+        return captor.getValue();
+    }
+
+    private ContentStoreAdapterPreloadedFoldersBasedCacheWarmer createWarmer(String[] descriptorFolders,
+                                                                             String[] contentFolders,
+                                                                             int parallelism) {
+        ContentStoreAdapterPreloadedFoldersBasedCacheWarmer warmer =
+                new ContentStoreAdapterPreloadedFoldersBasedCacheWarmer(true, descriptorFolders, contentFolders);
+        warmer.setParallelism(parallelism);
+
+        return warmer;
+    }
+
+    private void addFolder(String path) {
+        folders.put(path, new ArrayList<>());
+        addToParent(path, true);
+    }
+
+    private void addFile(String path) {
+        addToParent(path, false);
+    }
+
+    private void addToParent(String path, boolean folder) {
+        if (!path.equals("/")) {
+            String parentPath = path.substring(0, path.lastIndexOf('/'));
+            folders.get(parentPath.isEmpty()? "/" : parentPath).add(createItem(path, folder));
+        }
+    }
+
+    private Item createItem(String path, boolean folder) {
+        Item item = new Item();
+        item.setName(path.substring(path.lastIndexOf('/') + 1));
+        item.setUrl(path);
+        item.setFolder(folder);
+
+        return item;
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import org.apache.commons.configuration2.XMLConfiguration;
+import org.apache.commons.configuration2.io.FileHandler;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link PageCacheRule}.
+ */
+public class PageCacheRuleTest {
+
+    private static final String SITE_CONFIG =
+        "<site>" +
+        "  <pageCache>" +
+        "    <rule>" +
+        "      <urlPattern>^/site/website/articles/.*</urlPattern>" +
+        "      <ttl>60</ttl>" +
+        "      <staleWhileRevalidate>10</staleWhileRevalidate>" +
+        "      <varyBy>locale, param:page</varyBy>" +
+        "      <varyBy>cookie:region</varyBy>" +
+        "    </rule>" +
+        "    <rule>" +
+        "      <contentTypePattern>^/page/home$</contentTypePattern>" +
+        "    </rule>" +
+        "  </pageCache>" +
+        "</site>";
+
+    @Test
+    public void testParseRules() throws Exception {
+        List<PageCacheRule> rules = PageCacheRule.parseRules(readConfig(SITE_CONFIG));
+
+        assertEquals(2, rules.size());
+        assertEquals(60000, rules.get(0).getTtl());
+        assertEquals(10000, rules.get(0).getStaleWhileRevalidate());
+        assertEquals(Arrays.asList("locale", "param:page", "cookie:region"), rules.get(0).getVaryBy());
+        assertEquals(PageCacheRule.DEFAULT_TTL * 1000, rules.get(1).getTtl());
+        assertEquals(0, rules.get(1).getStaleWhileRevalidate());
+        assertTrue(rules.get(1).getVaryBy().isEmpty());
+    }
+
+    @Test
+    public void testParseRulesWithoutConfig() throws Exception {
+        assertTrue(PageCacheRule.parseRules(null).isEmpty());
+        assertTrue(PageCacheRule.parseRules(readConfig("<site/>")).isEmpty());
+    }
+
+    @Test
+    public void testMatches() throws Exception {
+        List<PageCacheRule> rules = PageCacheRule.parseRules(readConfig(SITE_CONFIG));
+
+        assertTrue(rules.get(0).matches("/site/website/articles/2024/index.xml", "/page/article"));
+        assertFalse(rules.get(0).matches("/site/website/index.xml", "/page/home"));
+        assertTrue(rules.get(1).matches("/site/website/index.xml", "/page/home"));
+        assertFalse(rules.get(1).matches("/site/website/index.xml", null));
+    }
+
+    private XMLConfiguration readConfig(String xml) throws Exception {
+        XMLConfiguration config = new XMLConfiguration();
+        new FileHandler(config).load(new StringReader(xml));
+
+        return config;
+    }
+
+}
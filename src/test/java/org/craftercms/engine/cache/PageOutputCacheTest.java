@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import jakarta.servlet.http.HttpServletResponse;
+import org.craftercms.core.service.CacheService;
+import org.craftercms.core.service.Context;
+import org.craftercms.core.util.cache.CacheTemplate;
+import org.craftercms.engine.model.SiteItem;
+import org.craftercms.engine.service.context.SiteContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link PageOutputCache}.
+ */
+public class PageOutputCacheTest {
+
+    private static final String PAGE_URL = "/site/website/articles/index.xml";
+    private static final String PAGE_CONTENT = "<html>Article</html>";
+
+    private Map<Object, Object> cache;
+    private SiteItem page;
+    private PageOutputCache pageOutputCache;
+    private AtomicInteger renders;
+
+    @Before
+    public void setUp() {
+        cache = new ConcurrentHashMap<>();
+        renders = new AtomicInteger();
+
+        CacheService cacheService = mock(CacheService.class);
+        when(cacheService.get(any(Context.class), any()))
+                .thenAnswer(invocation -> cache.get(invocation.getArgument(1)));
+        doAnswer(invocation -> cache.put(invocation.getArgument(1), invocation.getArgument(2)))
+                .when(cacheService).put(any(Context.class), any(), any());
+
+        CacheTemplate cacheTemplate = mock(CacheTemplate.class);
+        when(cacheTemplate.getCacheService()).thenReturn(cacheService);
+
+        SiteContext siteContext = new SiteContext();
+        siteContext.setSiteName("test");
+        siteContext.setContext(mock(Context.class));
+        siteContext.setCacheTemplate(cacheTemplate);
+        siteContext.setPageCacheRules(Collections.singletonList(
+                new PageCacheRule("^/site/website/articles/.*", null, 60, 10, Collections.emptyList())));
+        SiteContext.setCurrent(siteContext);
+
+        page = mock(SiteItem.class);
+        when(page.getStoreUrl()).thenReturn(PAGE_URL);
+        when(page.queryValue(anyString())).thenReturn("/page/article");
+
+        pageOutputCache = new PageOutputCache("content-type", null);
+    }
+
+    @After
+    public void tearDown() {
+        SiteContext.clear();
+    }
+
+    @Test
+    public void testHit() throws Exception {
+        MockHttpServletResponse response = render(new MockHttpServletRequest("GET", "/articles"), r -> {});
+        assertEquals("MISS", response.getHeader(PageOutputCache.CACHE_STATUS_HEADER));
+        assertEquals(PAGE_CONTENT, response.getContentAsString());
+
+        response = render(new MockHttpServletRequest("GET", "/articles"), r -> {});
+        assertEquals("HIT", response.getHeader(PageOutputCache.CACHE_STATUS_HEADER));
+        assertEquals(PAGE_CONTENT, response.getContentAsString());
+        assertEquals("text/html", response.getContentType());
+
+        assertEquals(1, renders.get());
+        assertEquals(1, pageOutputCache.getHits());
+        assertEquals(1, pageOutputCache.getMisses());
+    }
+
+    @Test
+    public void testStale() throws Exception {
+        render(new MockHttpServletRequest("GET", "/articles"), r -> {});
+
+        // Expire the output, and simulate a request that's already rendering the page again
+        List<?> key = (List<?>) cache.keySet().iterator().next();
+        long now = System.currentTimeMillis();
+        CachedPageResponse staleResponse = new CachedPageResponse("text/html", Collections.emptyMap(),
+                                                                  "stale".getBytes(StandardCharsets.UTF_8),
+                                                                  now - 1000, now + 10000);
+        staleResponse.startRevalidation();
+        cache.put(key, staleResponse);
+
+        MockHttpServletResponse response = render(new MockHttpServletRequest("GET", "/articles"), r -> {});
+        assertEquals("STALE", response.getHeader(PageOutputCache.CACHE_STATUS_HEADER));
+        assertEquals("stale", response.getContentAsString());
+        assertEquals(1, renders.get());
+
+        // Once the revalidation is done, the first request after the expiration renders the page again
+        staleResponse.cancelRevalidation();
+
+        response = render(new MockHttpServletRequest("GET", "/articles"), r -> {});
+        assertEquals("MISS", response.getHeader(PageOutputCache.CACHE_STATUS_HEADER));
+        assertEquals(PAGE_CONTENT, response.getContentAsString());
+        assertEquals(2, renders.get());
+        assertEquals(1, pageOutputCache.getStaleHits());
+    }
+
+    @Test
+    public void testRequestsWithSessionBypassTheCache() throws Exception {
+        render(new MockHttpServletRequest("GET", "/articles"), r -> {});
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/articles");
+        request.getSession(true).setAttribute("cart", "3 items");
+
+        MockHttpServletResponse response = render(request, r -> {});
+        assertNull(response.getHeader(PageOutputCache.CACHE_STATUS_HEADER));
+        assertEquals(PAGE_CONTENT, response.getContentAsString());
+        assertEquals(2, renders.get());
+        assertEquals(1, pageOutputCache.getBypasses());
+        assertEquals(0, pageOutputCache.getHits());
+    }
+
+    @Test
+    public void testOtherMethodsBypassTheCache() throws Exception {
+        render(new MockHttpServletRequest("POST", "/articles"), r -> {});
+
+        assertTrue(cache.isEmpty());
+        assertEquals(1, pageOutputCache.getBypasses());
+    }
+
+    @Test
+    public void testUncacheableResponsesAreNotStored() throws Exception {
+        assertNotStored(new MockHttpServletRequest("GET", "/articles"),
+                        r -> r.setStatus(HttpServletResponse.SC_NOT_FOUND));
+        assertNotStored(new MockHttpServletRequest("GET", "/articles"),
+                        r -> r.addHeader(HttpHeaders.SET_COOKIE, "region=us"));
+        assertNotStored(new MockHttpServletRequest("GET", "/articles"),
+                        r -> r.setHeader(HttpHeaders.CACHE_CONTROL, "private, max-age=60"));
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/articles");
+        request.setAttribute(PageOutputCache.UNCACHEABLE_ATTRIBUTE, true);
+        assertNotStored(request, r -> {});
+    }
+
+    @Test
+    public void testResponseThatCreatesSessionIsNotStored() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/articles");
+
+        assertNotStored(request, r -> request.getSession(true).setAttribute("flash", "Welcome"));
+    }
+
+    private void assertNotStored(MockHttpServletRequest request, Consumer<HttpServletResponse> renderer)
+            throws Exception {
+        MockHttpServletResponse response = render(request, renderer);
+
+        assertEquals("MISS", response.getHeader(PageOutputCache.CACHE_STATUS_HEADER));
+        assertEquals(PAGE_CONTENT, response.getContentAsString());
+        assertTrue(cache.isEmpty());
+    }
+
+    private MockHttpServletResponse render(MockHttpServletRequest request, Consumer<HttpServletResponse> renderer)
+            throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        pageOutputCache.render(page, request, response, actualResponse -> {
+            renders.incrementAndGet();
+            actualResponse.setContentType("text/html");
+            renderer.accept(actualResponse);
+            actualResponse.getOutputStream().write(PAGE_CONTENT.getBytes(StandardCharsets.UTF_8));
+        });
+
+        return response;
+    }
+
+}
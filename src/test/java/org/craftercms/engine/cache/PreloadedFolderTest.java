@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import org.craftercms.core.service.ContentStoreService;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class PreloadedFolderTest {
+
+    @Test
+    public void testExists() {
+        PreloadedFolder folder = new PreloadedFolder("/site", 2, Set.of(
+                "/site/website", "/site/website/index.xml", "/site/components", "/site/components/header.xml"));
+
+        assertEquals(Boolean.TRUE, folder.exists("/site/website"));
+        assertEquals(Boolean.TRUE, folder.exists("/site/website/index.xml"));
+        assertEquals(Boolean.TRUE, folder.exists("/site/components/header.xml"));
+        assertEquals(Boolean.FALSE, folder.exists("/site/components/footer.xml"));
+        assertEquals(Boolean.FALSE, folder.exists("/site/web"));
+        assertEquals(Boolean.FALSE, folder.exists("/scripts/test.groovy"));
+        assertNull(folder.exists("/site/website/about/index.xml"));
+        assertEquals(4, folder.getDescendantCount());
+        assertEquals(new TreeSet<>(Set.of("/site/website", "/site/website/index.xml", "/site/components",
+                                          "/site/components/header.xml")), folder.getDescendants());
+    }
+
+    @Test
+    public void testExistsWithManyPaths() {
+        Random random = new Random(42);
+        Set<String> paths = new HashSet<>();
+        Set<String> missingPaths = new HashSet<>();
+
+        for (int i = 0; i < 5000; i++) {
+            String path = randomPath(random);
+            if (i % 4 == 0) {
+                missingPaths.add(path);
+            } else {
+                paths.add(path);
+            }
+        }
+
+        missingPaths.removeAll(paths);
+
+        PreloadedFolder folder = new PreloadedFolder("/site", ContentStoreService.UNLIMITED_TREE_DEPTH, paths);
+
+        assertEquals(paths.size(), folder.getDescendantCount());
+        assertEquals(new TreeSet<>(paths), folder.getDescendants());
+        for (String path : paths) {
+            assertEquals(path, Boolean.TRUE, folder.exists(path));
+        }
+        for (String path : missingPaths) {
+            assertEquals(path, Boolean.FALSE, folder.exists(path));
+        }
+    }
+
+    private String randomPath(Random random) {
+        String[] names = { "website", "components", "index.xml", "about", "a", "ab", "año", "item-1", "item-10" };
+        StringBuilder path = new StringBuilder("/site");
+        int levels = 1 + random.nextInt(5);
+
+        for (int i = 0; i < levels; i++) {
+            path.append('/').append(names[random.nextInt(names.length)]);
+        }
+
+        return path.toString();
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import org.craftercms.engine.service.context.SiteContext;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PreloadedFoldersSnapshotStoreTest {
+
+    private static final String SITE_NAME = "test";
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    private Path gitFolder;
+    private SiteContext siteContext;
+    private PreloadedFoldersSnapshotStore snapshotStore;
+
+    @Before
+    public void setUp() throws Exception {
+        File rootFolder = tmpFolder.newFolder("sites", SITE_NAME);
+        Files.createDirectories(rootFolder.toPath().resolve(".git/refs/heads"));
+        gitFolder = rootFolder.toPath().resolve(".git");
+
+        writeFile(gitFolder.resolve("HEAD"), "ref: refs/heads/live\n");
+        writeFile(gitFolder.resolve("refs/heads/live"), "1111111111111111111111111111111111111111\n");
+
+        siteContext = mock(SiteContext.class);
+        when(siteContext.getSiteName()).thenReturn(SITE_NAME);
+        when(siteContext.getRootFolderPath()).thenReturn(rootFolder.toURI().toString());
+
+        snapshotStore = new PreloadedFoldersSnapshotStore(tmpFolder.newFolder("snapshots").getAbsolutePath());
+    }
+
+    @Test
+    public void testSaveAndLoad() {
+        List<PreloadedFolder> folders = List.of(
+                new PreloadedFolder("/site", 2, Set.of("/site/website", "/site/website/index.xml")),
+                new PreloadedFolder("/scripts", -1, Set.of("/scripts/rest", "/scripts/rest/año.get.groovy")));
+
+        snapshotStore.save(siteContext, folders);
+
+        List<PreloadedFolder> loadedFolders = snapshotStore.load(siteContext);
+
+        assertEquals(folders, loadedFolders);
+        assertEquals(folders.get(0).getDescendants(), loadedFolders.get(0).getDescendants());
+        assertEquals(folders.get(1).getDescendants(), loadedFolders.get(1).getDescendants());
+    }
+
+    @Test
+    public void testLoadAfterContentChange() throws Exception {
+        snapshotStore.save(siteContext, List.of(new PreloadedFolder("/site", 2, Set.of("/site/website"))));
+
+        writeFile(gitFolder.resolve("refs/heads/live"), "2222222222222222222222222222222222222222\n");
+
+        assertNull(snapshotStore.load(siteContext));
+    }
+
+    @Test
+    public void testPackedRefs() throws Exception {
+        Files.delete(gitFolder.resolve("refs/heads/live"));
+        writeFile(gitFolder.resolve("packed-refs"), "# pack-refs with: peeled fully-peeled sorted\n" +
+                                                    "3333333333333333333333333333333333333333 refs/heads/live\n");
+
+        snapshotStore.save(siteContext, List.of(new PreloadedFolder("/site", 2, Set.of("/site/website"))));
+
+        assertNotNull(snapshotStore.load(siteContext));
+    }
+
+    @Test
+    public void testNotGitRepository() {
+        when(siteContext.getRootFolderPath()).thenReturn(tmpFolder.getRoot().toURI().toString());
+
+        snapshotStore.save(siteContext, List.of(new PreloadedFolder("/site", 2, Set.of("/site/website"))));
+
+        assertNull(snapshotStore.load(siteContext));
+    }
+
+    private void writeFile(Path file, String content) throws Exception {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
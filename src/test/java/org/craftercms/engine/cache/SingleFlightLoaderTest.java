@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class SingleFlightLoaderTest {
+
+    private static final String KEY = "/site/website/index.xml";
+
+    @Test
+    public void testConcurrentLoadsAreCoalesced() throws Exception {
+        SingleFlightLoader loader = new SingleFlightLoader();
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch finishLoad = new CountDownLatch(1);
+        Object value = new Object();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<Object> first = executor.submit(() -> loader.load(KEY, () -> {
+                executions.incrementAndGet();
+                loadStarted.countDown();
+                await(finishLoad);
+
+                return value;
+            }));
+
+            await(loadStarted);
+
+            Future<Object> second = executor.submit(() -> loader.load(KEY, () -> {
+                executions.incrementAndGet();
+                return new Object();
+            }));
+
+            waitForCoalescedWait(loader);
+            finishLoad.countDown();
+
+            assertSame(value, first.get(5, TimeUnit.SECONDS));
+            assertSame(value, second.get(5, TimeUnit.SECONDS));
+            assertEquals(1, executions.get());
+            assertEquals(1, loader.getLoads());
+            assertEquals(1, loader.getCoalescedWaits());
+            assertEquals(0, loader.getInFlightLoads());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testErrorIsPropagatedToWaitingThreads() throws Exception {
+        SingleFlightLoader loader = new SingleFlightLoader();
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch finishLoad = new CountDownLatch(1);
+        IllegalStateException error = new IllegalStateException("Store not available");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            executor.submit(() -> loader.load(KEY, () -> {
+                loadStarted.countDown();
+                await(finishLoad);
+
+                throw error;
+            }));
+
+            await(loadStarted);
+
+            Future<Object> second = executor.submit(() -> loader.load(KEY, Object::new));
+
+            waitForCoalescedWait(loader);
+            finishLoad.countDown();
+
+            try {
+                second.get(5, TimeUnit.SECONDS);
+                fail("Expected the error of the load");
+            } catch (ExecutionException e) {
+                assertSame(error, e.getCause());
+            }
+
+            // The failed load is not kept, the next request loads it again
+            assertEquals("value", loader.load(KEY, () -> "value"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRecursiveLoad() {
+        SingleFlightLoader loader = new SingleFlightLoader();
+
+        assertEquals("value", loader.load(KEY, () -> loader.load(KEY, () -> "value")));
+        assertEquals(0, loader.getCoalescedWaits());
+    }
+
+    @Test
+    public void testWaitTimeout() throws Exception {
+        SingleFlightLoader loader = new SingleFlightLoader(10);
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch finishLoad = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            executor.submit(() -> loader.load(KEY, () -> {
+                loadStarted.countDown();
+                await(finishLoad);
+
+                return "stale";
+            }));
+
+            await(loadStarted);
+
+            assertEquals("value", loader.load(KEY, () -> "value"));
+            assertEquals(1, loader.getTimedOutWaits());
+        } finally {
+            finishLoad.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private static void waitForCoalescedWait(SingleFlightLoader loader) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + 5000;
+        while (loader.getCoalescedWaits() == 0 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
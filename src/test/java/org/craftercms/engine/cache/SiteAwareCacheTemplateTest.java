@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import org.craftercms.commons.lang.Callback;
+import org.craftercms.core.service.CacheService;
+import org.craftercms.core.service.Context;
+import org.craftercms.core.util.cache.CacheTemplate;
+import org.craftercms.engine.service.context.SiteContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link SiteAwareCacheTemplate}.
+ */
+public class SiteAwareCacheTemplateTest {
+
+    private Map<List<Object>, Object> cache;
+    private Context context;
+    private SiteCacheBudget budget;
+    private SiteAwareCacheTemplate cacheTemplate;
+    private AtomicInteger loads;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        cache = new ConcurrentHashMap<>();
+        loads = new AtomicInteger();
+
+        // Simple cache template that puts the loaded values in the map, unless the load fails
+        CacheTemplate actualCacheTemplate = mock(CacheTemplate.class);
+        when(actualCacheTemplate.getObject(any(Context.class), any(Callback.class), any(Object[].class)))
+                .then(invocation -> {
+                    Callback<?> callback = (Callback<?>) invocation.getRawArguments()[1];
+                    List<Object> key = Arrays.asList((Object[]) invocation.getRawArguments()[2]);
+
+                    Object value = cache.get(key);
+                    if (value == null) {
+                        value = callback.execute();
+                        cache.put(key, value);
+                    }
+
+                    return value;
+                });
+
+        CacheService cacheService = mock(CacheService.class);
+        // The evictions started when the budget is exceeded see the entries, but can't remove them
+        when(cacheService.getKeys(any(Context.class))).then(invocation -> new ArrayList<>(cache.keySet()));
+        when(actualCacheTemplate.getCacheService()).thenReturn(cacheService);
+
+        context = mock(Context.class);
+        when(context.getId()).thenReturn("test");
+
+        budget = new SiteCacheBudget(1000, 2);
+
+        SiteContext siteContext = new SiteContext();
+        siteContext.setSiteName("test");
+        siteContext.setContext(context);
+        siteContext.setCacheTemplate(actualCacheTemplate);
+        siteContext.setCacheBudget(budget);
+        SiteContext.setCurrent(siteContext);
+
+        cacheTemplate = new SiteAwareCacheTemplate(actualCacheTemplate);
+    }
+
+    @After
+    public void tearDown() {
+        SiteContext.clear();
+    }
+
+    @Test
+    public void testCachedEntriesAreHitsEvenIfNotAdmitted() {
+        // Fill the budget
+        getObject("/site/website/index.xml", new byte[2000]);
+        assertTrue(budget.isOverBudget());
+
+        // An entry cached before, whose key isn't frequent enough anymore to be admitted
+        byte[] cachedValue = new byte[100];
+        cache.put(Arrays.asList("/site/website/old/index.xml", "crafter.item"), cachedValue);
+
+        assertSame(cachedValue, getObject("/site/website/old/index.xml", new byte[100]));
+        assertEquals(1, loads.get());
+        assertEquals(1, budget.getHits());
+        assertEquals(1, budget.getMisses());
+        assertEquals(0, budget.getRejections());
+    }
+
+    @Test
+    public void testLoadedEntriesAreOnlyCachedIfAdmitted() {
+        getObject("/site/website/index.xml", new byte[2000]);
+
+        byte[] value = new byte[100];
+        assertSame(value, getObject("/site/website/new/index.xml", value));
+        assertFalse(cache.containsKey(Arrays.asList("/site/website/new/index.xml", "crafter.item")));
+        assertEquals(1, budget.getRejections());
+
+        // The second request makes the key frequent enough to be admitted
+        assertSame(value, getObject("/site/website/new/index.xml", value));
+        assertTrue(cache.containsKey(Arrays.asList("/site/website/new/index.xml", "crafter.item")));
+
+        assertSame(value, getObject("/site/website/new/index.xml", value));
+        assertEquals(3, loads.get());
+        assertEquals(1, budget.getHits());
+        assertEquals(3, budget.getMisses());
+    }
+
+    private Object getObject(String url, byte[] value) {
+        return cacheTemplate.getObject(context, () -> {
+            loads.incrementAndGet();
+            return value;
+        }, url, "crafter.item");
+    }
+
+}
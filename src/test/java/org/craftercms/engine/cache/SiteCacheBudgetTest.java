@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import org.craftercms.core.service.CacheService;
+import org.craftercms.core.service.Context;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SiteCacheBudgetTest {
+
+    @Mock
+    private CacheService cacheService;
+    @Mock
+    private Context context;
+
+    @Test
+    public void testUnlimitedBudget() {
+        SiteCacheBudget budget = new SiteCacheBudget(0, 2);
+        long keyHash = SiteCacheBudget.hashKey("/site/website/index.xml", "crafter.item");
+
+        assertTrue(budget.admit(keyHash));
+        budget.recordLoad(keyHash, true, new byte[1000]);
+        budget.recordHit(keyHash);
+
+        assertFalse(budget.isOverBudget());
+        assertEquals(1, budget.getHits());
+        assertEquals(1, budget.getMisses());
+        assertEquals(1016, budget.getWeight());
+    }
+
+    @Test
+    public void testAdmission() {
+        SiteCacheBudget budget = new SiteCacheBudget(1000, 2);
+        long hotKeyHash = SiteCacheBudget.hashKey("/site/website/index.xml", "crafter.item");
+        long coldKeyHash = SiteCacheBudget.hashKey("/site/website/old/index.xml", "crafter.item");
+        long newKeyHash = SiteCacheBudget.hashKey("/site/website/new/index.xml", "crafter.item");
+
+        // Under budget everything is admitted
+        assertTrue(budget.admit(hotKeyHash));
+        budget.recordLoad(hotKeyHash, true, new byte[2000]);
+
+        assertTrue(budget.isOverBudget());
+
+        // Over budget only frequent or already admitted keys are admitted
+        assertFalse(budget.admit(coldKeyHash));
+        assertTrue(budget.admit(hotKeyHash));
+        assertFalse(budget.admit(newKeyHash));
+        assertTrue(budget.admit(newKeyHash));
+        assertEquals(2, budget.getRejections());
+
+        budget.reset();
+
+        assertEquals(0, budget.getWeight());
+        assertTrue(budget.admit(coldKeyHash));
+    }
+
+    @Test
+    public void testAdmittedKeysAgeWithSketch() {
+        SiteCacheBudget budget = new SiteCacheBudget(1000, 2);
+        long keyHash = SiteCacheBudget.hashKey("/site/website/index.xml", "crafter.item");
+
+        assertTrue(budget.admit(keyHash));
+        budget.recordLoad(keyHash, true, new byte[2000]);
+
+        // The key is still admitted after the frequencies are halved once, even if it's not frequent anymore
+        budget.getSketch().reset();
+        assertTrue(budget.admit(keyHash));
+
+        // But it's forgotten if it's not admitted again before the next halving
+        budget.getSketch().reset();
+        assertFalse(budget.admit(keyHash));
+    }
+
+    @Test
+    public void testEvict() {
+        List<Object> keys = new ArrayList<>();
+        keys.add(PreloadedFoldersAwareContext.PRELOADED_FOLDERS_CACHE_KEY);
+        for (int i = 0; i < 10; i++) {
+            keys.add(Arrays.asList("/site/website/page" + i + "/index.xml", "crafter.item"));
+        }
+
+        when(cacheService.getKeys(context)).thenAnswer(invocation -> keys);
+        when(cacheService.remove(eq(context), any())).thenReturn(true);
+
+        SiteCacheBudget budget = new SiteCacheBudget(5000, 2);
+        for (int i = 0; i < 11; i++) {
+            long keyHash = SiteCacheBudget.hashCacheKey(keys.get(i));
+            budget.admit(keyHash);
+            budget.recordLoad(keyHash, true, new byte[984]);
+        }
+
+        // The first pages listed are the most requested ones
+        for (int i = 1; i <= 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                budget.admit(SiteCacheBudget.hashCacheKey(keys.get(i)));
+            }
+        }
+
+        assertTrue(budget.startEviction());
+        assertFalse(budget.startEviction());
+
+        budget.evict(cacheService, context);
+
+        // 11 entries of 1000 bytes, evicted until the weight is under 90% of the max weight
+        assertEquals(7, budget.getEvictions());
+        assertEquals(4000, budget.getWeight());
+        verify(cacheService, never()).remove(context, PreloadedFoldersAwareContext.PRELOADED_FOLDERS_CACHE_KEY);
+        for (int i = 1; i < keys.size(); i++) {
+            verify(cacheService, i <= 3? never() : times(1)).remove(context, keys.get(i));
+        }
+        assertFalse(budget.startEviction());
+    }
+
+    @Test
+    public void testHashKey() {
+        long keyHash = SiteCacheBudget.hashKey("/site/website/index.xml", "crafter.item");
+
+        assertEquals(keyHash, SiteCacheBudget.hashCacheKey("[/site/website/index.xml, crafter.item]"));
+        assertEquals(keyHash, SiteCacheBudget.hashCacheKey(Arrays.asList("/site/website/index.xml", "crafter.item")));
+        assertEquals(keyHash, SiteCacheBudget.hashCacheKey(new Object[] { "/site/website/index.xml", "crafter.item" }));
+        assertNotEquals(keyHash, SiteCacheBudget.hashKey("/site/website/index.xml", "crafter.tree"));
+    }
+
+    @Test
+    public void testFrequencySketch() {
+        FrequencySketch sketch = new FrequencySketch(1000);
+        long keyHash = SiteCacheBudget.hashKey("/site/website/index.xml");
+
+        assertEquals(0, sketch.frequency(keyHash));
+        for (int i = 0; i < 20; i++) {
+            sketch.increment(keyHash);
+        }
+
+        assertEquals(FrequencySketch.MAX_FREQUENCY, sketch.frequency(keyHash));
+
+        sketch.reset();
+
+        assertEquals(FrequencySketch.MAX_FREQUENCY / 2, sketch.frequency(keyHash));
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import org.craftercms.core.service.CacheService;
+import org.craftercms.core.service.Context;
+import org.craftercms.engine.service.context.SiteContext;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SiteCacheInvalidatorImplTest {
+
+    private static final String PAGE_KEY = "[/site/website/about/index.xml, crafter.item]";
+    private static final String FOLDER_KEY = "[/site/website/about, crafter.items]";
+    private static final String S3_CHILDREN_KEY = "[S3Prefix{bucketName='bucket', key='sites/test/site/website/about/'}, " +
+                                                  "fileBasedContentStoreAdapter.children]";
+    private static final String TREE_KEY = "[/site, 3, crafter.tree]";
+    private static final String TEMPLATE_KEY = "[templates/web/about.ftl, en, null, UTF-8, true]";
+    private static final String OTHER_PAGE_KEY = "[/site/website/about-us/index.xml, crafter.item]";
+    private static final String OTHER_FOLDER_KEY = "[/site/website/contact, crafter.items]";
+    private static final String CONSTANT_KEY = "crafter.urlRestrictions";
+    private static final String TARGETED_PAGE_KEY = "[/site/website/es_CR/about/index.xml, crafter.item]";
+    private static final String FILTER_MAPPINGS_KEY = "filterMappings";
+
+    @Mock
+    private CacheService cacheService;
+    @Mock
+    private SiteContext siteContext;
+    @Mock
+    private Context context;
+
+    private CacheDependencyGraph dependencyGraph;
+
+    private SiteCacheInvalidatorImpl cacheInvalidator;
+
+    @Before
+    public void setUp() {
+        List<Object> keys = Arrays.asList(PAGE_KEY, FOLDER_KEY, S3_CHILDREN_KEY, TREE_KEY, TEMPLATE_KEY, OTHER_PAGE_KEY,
+                                          OTHER_FOLDER_KEY, CONSTANT_KEY, TARGETED_PAGE_KEY, FILTER_MAPPINGS_KEY);
+
+        dependencyGraph = new CacheDependencyGraph();
+        dependencyGraph.addDependency("/site/website/es/about/index.xml", "/site/website/es_CR/about/index.xml");
+        dependencyGraph.addDependency("/scripts/filters/test.groovy", FILTER_MAPPINGS_KEY);
+
+        lenient().when(siteContext.getContext()).thenReturn(context);
+        lenient().when(siteContext.getCacheDependencyGraph()).thenReturn(dependencyGraph);
+        lenient().when(cacheService.getKeys(context)).thenAnswer(invocation -> keys);
+
+        cacheInvalidator = new SiteCacheInvalidatorImpl(cacheService);
+        cacheInvalidator.setFullClearPatterns(new String[] { "/config/.*" });
+    }
+
+    @Test
+    public void testInvalidateChangedPathsAndAncestors() {
+        assertTrue(cacheInvalidator.invalidateCache(siteContext, Arrays.asList("/site/website/about/index.xml",
+                                                                               "/templates/web/about.ftl")));
+
+        verify(cacheService).remove(context, PAGE_KEY);
+        verify(cacheService).remove(context, FOLDER_KEY);
+        verify(cacheService).remove(context, S3_CHILDREN_KEY);
+        verify(cacheService).remove(context, TREE_KEY);
+        verify(cacheService).remove(context, TEMPLATE_KEY);
+        verify(cacheService, never()).remove(context, OTHER_PAGE_KEY);
+        verify(cacheService, never()).remove(context, OTHER_FOLDER_KEY);
+        verify(cacheService, never()).remove(context, CONSTANT_KEY);
+        verify(cacheService, never()).remove(context, TARGETED_PAGE_KEY);
+        verify(cacheService, never()).remove(context, FILTER_MAPPINGS_KEY);
+    }
+
+    @Test
+    public void testInvalidateDependents() {
+        assertTrue(cacheInvalidator.invalidateCache(siteContext, Arrays.asList("/site/website/es/about/index.xml",
+                                                                               "/scripts/filters/test.groovy")));
+
+        verify(cacheService).remove(context, TARGETED_PAGE_KEY);
+        verify(cacheService).remove(context, FILTER_MAPPINGS_KEY);
+        verify(cacheService, never()).remove(context, PAGE_KEY);
+        verify(cacheService, never()).remove(context, OTHER_PAGE_KEY);
+        verify(cacheService, never()).remove(context, CONSTANT_KEY);
+        assertEquals(0, dependencyGraph.size());
+    }
+
+    @Test
+    public void testFullClearRequired() {
+        assertFalse(cacheInvalidator.invalidateCache(siteContext, Arrays.asList("/site/website/about/index.xml",
+                                                                                "/config/engine/site-config.xml")));
+
+        cacheInvalidator.setMaxPaths(1);
+
+        assertFalse(cacheInvalidator.invalidateCache(siteContext, Arrays.asList("/site/website/about/index.xml",
+                                                                                "/templates/web/about.ftl")));
+
+        verify(cacheService, never()).remove(any(), any());
+    }
+
+    @Test
+    public void testNoChangedPaths() {
+        assertTrue(cacheInvalidator.invalidateCache(siteContext, Collections.emptyList()));
+
+        verify(cacheService, never()).remove(any(), any());
+    }
+
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.freemarker;
+
+import freemarker.cache.StringTemplateLoader;
+import freemarker.template.Configuration;
+import freemarker.template.SimpleHash;
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+import freemarker.template.TemplateExceptionHandler;
+import org.craftercms.commons.http.RequestContext;
+import org.craftercms.commons.lang.Callback;
+import org.craftercms.core.service.CacheService;
+import org.craftercms.core.service.CachingOptions;
+import org.craftercms.core.service.Context;
+import org.craftercms.core.util.cache.CacheTemplate;
+import org.craftercms.engine.model.SiteItem;
+import org.craftercms.engine.scripting.SiteItemScriptResolver;
+import org.craftercms.engine.service.SiteItemService;
+import org.craftercms.engine.service.context.SiteContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the fragment cache of {@link RenderComponentDirective}.
+ */
+public class RenderComponentDirectiveTest {
+
+    private static final String COMPONENT_URL = "/site/components/header.xml";
+    private static final String TEMPLATE_XPATH_QUERY = "displayTemplate";
+    private static final String COMPONENT_TEMPLATE_NAME = "templates/header.ftl";
+
+    private static final String CACHED_COMPONENT_TEMPLATE =
+        "<@renderComponent componentPath='" + COMPONENT_URL + "' cache=true additionalModel={'title': title} " +
+        "cacheVaryBy=['param:color']/>";
+
+    @Mock
+    private SiteItemService siteItemService;
+    @Mock
+    private SiteItemScriptResolver scriptResolver;
+    @Mock
+    private SiteItem component;
+    @Mock
+    private Context context;
+    private StringTemplateLoader templateLoader;
+    private Configuration configuration;
+    private MapCacheTemplate cacheTemplate;
+    private MockHttpServletRequest request;
+    private RenderComponentDirective directive;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+
+        when(component.getStoreUrl()).thenReturn(COMPONENT_URL);
+        when(component.queryValue(TEMPLATE_XPATH_QUERY)).thenReturn("header");
+        when(siteItemService.getSiteItem(COMPONENT_URL)).thenReturn(component);
+
+        templateLoader = new StringTemplateLoader();
+        templateLoader.putTemplate(COMPONENT_TEMPLATE_NAME, "<h1>${title!'Default'}</h1>");
+
+        configuration = new Configuration(Configuration.VERSION_2_3_30);
+        configuration.setTemplateLoader(templateLoader);
+
+        cacheTemplate = new MapCacheTemplate();
+
+        SiteContext siteContext = new SiteContext();
+        siteContext.setSiteName("test");
+        siteContext.setContext(context);
+        siteContext.setCacheTemplate(cacheTemplate);
+        SiteContext.setCurrent(siteContext);
+
+        request = new MockHttpServletRequest();
+        RequestContext.setCurrent(new RequestContext(request, new MockHttpServletResponse(), null));
+
+        directive = new RenderComponentDirective(null, siteItemService,
+                                                 () -> new SimpleHash(configuration.getObjectWrapper()),
+                                                 TEMPLATE_XPATH_QUERY, "/templates/", ".ftl", "include",
+                                                 "component", scriptResolver);
+        directive.setFragmentCacheEnabled(true);
+    }
+
+    @After
+    public void tearDown() {
+        SiteContext.clear();
+        RequestContext.clear();
+    }
+
+    @Test
+    public void testCacheHitSkipsRendering() throws Exception {
+        request.setParameter("color", "red");
+
+        assertEquals("<h1>Hello</h1>", render(CACHED_COMPONENT_TEMPLATE, "Hello"));
+        assertEquals("<h1>Hello</h1>", render(CACHED_COMPONENT_TEMPLATE, "Hello"));
+
+        // The scripts of the component are resolved every time the component is rendered
+        verify(scriptResolver, times(1)).getScriptUrls(component);
+        assertEquals(1, cacheTemplate.cache.size());
+    }
+
+    @Test
+    public void testFragmentKey() throws Exception {
+        request.setParameter("color", "red");
+        render(CACHED_COMPONENT_TEMPLATE, "Hello");
+
+        Map<String, Object> additionalModel = new TreeMap<>();
+        additionalModel.put("title", "Hello");
+
+        List<Object> key = cacheTemplate.cache.keySet().iterator().next();
+        assertEquals(Arrays.asList(RenderComponentDirective.CACHE_CONST_KEY_ELEM_FRAGMENT, COMPONENT_URL, null,
+                                   "/templates/header.ftl", configuration.getLocale(), additionalModel,
+                                   "param:color=red"), key);
+
+        // A different additional model or request param is a different fragment
+        assertEquals("<h1>Bye</h1>", render(CACHED_COMPONENT_TEMPLATE, "Bye"));
+        request.setParameter("color", "blue");
+        assertEquals("<h1>Hello</h1>", render(CACHED_COMPONENT_TEMPLATE, "Hello"));
+
+        verify(scriptResolver, times(3)).getScriptUrls(component);
+        assertEquals(3, cacheTemplate.cache.size());
+
+        // While the same ones hit the cache
+        request.setParameter("color", "red");
+        assertEquals("<h1>Bye</h1>", render(CACHED_COMPONENT_TEMPLATE, "Bye"));
+
+        verify(scriptResolver, times(3)).getScriptUrls(component);
+    }
+
+    @Test
+    public void testFragmentWithNonScalarModelIsNotCached() throws Exception {
+        String template = "<@renderComponent componentPath='" + COMPONENT_URL + "' cache=true " +
+                          "additionalModel={'title': title, 'items': ['a', 'b']}/>";
+
+        assertEquals("<h1>Hello</h1>", render(template, "Hello"));
+        assertEquals("<h1>Hello</h1>", render(template, "Hello"));
+
+        verify(scriptResolver, times(2)).getScriptUrls(component);
+        assertTrue(cacheTemplate.cache.isEmpty());
+    }
+
+    @Test
+    public void testFragmentWithHandledErrorIsNotCached() throws Exception {
+        configuration.setTemplateExceptionHandler(new CrafterTemplateExceptionHandler(false));
+        templateLoader.putTemplate(COMPONENT_TEMPLATE_NAME, "<h1>${title}${missing}</h1>");
+        request.setParameter("color", "red");
+
+        // The failed fragment is still served, but it's rendered every time
+        assertEquals("<h1>Hello</h1>", render(CACHED_COMPONENT_TEMPLATE, "Hello"));
+        assertEquals("<h1>Hello</h1>", render(CACHED_COMPONENT_TEMPLATE, "Hello"));
+
+        verify(scriptResolver, times(2)).getScriptUrls(component);
+        assertTrue(cacheTemplate.cache.isEmpty());
+        assertEquals(2, CrafterTemplateExceptionHandler.getHandledErrorCount());
+    }
+
+    @Test
+    public void testTemplateExceptionIsRethrownAndNotCached() throws Exception {
+        configuration.setTemplateExceptionHandler(TemplateExceptionHandler.RETHROW_HANDLER);
+        templateLoader.putTemplate(COMPONENT_TEMPLATE_NAME, "<h1>${missing}</h1>");
+        request.setParameter("color", "red");
+
+        try {
+            render(CACHED_COMPONENT_TEMPLATE, "Hello");
+            fail("Expected " + TemplateException.class.getSimpleName());
+        } catch (TemplateException e) {
+            assertTrue(e.getMessage().contains("missing"));
+        }
+
+        assertTrue(cacheTemplate.cache.isEmpty());
+    }
+
+    private String render(String templateSource, String title) throws Exception {
+        Map<String, Object> model = new HashMap<>();
+        model.put("renderComponent", directive);
+        model.put("title", title);
+
+        StringWriter out = new StringWriter();
+        new Template("page", templateSource, configuration).process(model, out);
+
+        return out.toString();
+    }
+
+    /**
+     * {@link CacheTemplate} that keeps the objects in a map, keyed by their key elements. Like the actual cache,
+     * nothing is stored if the loader fails.
+     */
+    private static class MapCacheTemplate implements CacheTemplate {
+
+        private final Map<List<Object>, Object> cache = new LinkedHashMap<>();
+
+        @Override
+        public CacheService getCacheService() {
+            return null;
+        }
+
+        @Override
+        public <T> T getObject(Context context, Callback<T> callback, Object... keyElements) {
+            return getObject(context, null, callback, keyElements);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T getObject(Context context, CachingOptions cachingOptions, Callback<T> callback,
+                               Object... keyElements) {
+            List<Object> key = Arrays.asList(keyElements);
+            if (cache.containsKey(key)) {
+                return (T) cache.get(key);
+            }
+
+            T value = callback.execute();
+            cache.put(key, value);
+
+            return value;
+        }
+
+    }
+
+}
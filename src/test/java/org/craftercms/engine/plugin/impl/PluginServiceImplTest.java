@@ -15,10 +15,14 @@
  */
 package org.craftercms.engine.plugin.impl;
 
+import org.apache.commons.configuration2.HierarchicalConfiguration;
+import org.apache.commons.configuration2.XMLConfiguration;
 import org.craftercms.commons.config.EncryptionAwareConfigurationReader;
 import org.craftercms.core.service.Content;
 import org.craftercms.core.service.ContentStoreService;
+import org.craftercms.core.service.Context;
 import org.craftercms.engine.service.context.SiteContext;
+import org.craftercms.engine.test.utils.CacheTemplateMockUtils;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -27,13 +31,20 @@ import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.when;
 
 /**
@@ -62,11 +73,17 @@ public class PluginServiceImplTest {
     @Mock
     private Content content;
 
+    @Mock
+    private Context context;
+
     @InjectMocks
     private PluginServiceImpl pluginService;
 
     @Before
     public void setUp() throws IOException {
+        lenient().doReturn(context).when(siteContext).getContext();
+        siteContext.setCacheTemplate(CacheTemplateMockUtils.createCacheTemplate());
+
         SiteContext.setCurrent(siteContext);
 
         pluginService.configurationPathPattern = "/config/plugins/${pluginId}/config.xml";
@@ -81,6 +98,10 @@ public class PluginServiceImplTest {
         pluginService.addPluginVariables(PLUGIN_SCRIPT_URL, variables::put);
 
         assertEquals(2, variables.size());
+        assertEquals("org.craftercms.test.plugin", variables.get(PluginServiceImpl.PLUGIN_ID_KEY));
+        // The config files checked are recorded so that the resolved plugin is invalidated when they change
+        assertEquals(Set.of(PLUGIN_SCRIPT_URL),
+                     siteContext.getCacheDependencyGraph().removeDependents(List.of(PLUGIN_CONFIG_PATH)));
     }
 
     @Test
@@ -91,4 +112,20 @@ public class PluginServiceImplTest {
         assertEquals(0, variables.size());
     }
 
+    @Test
+    public void pluginConfigIsNotSharedTest() throws Exception {
+        XMLConfiguration loadedConfig = new XMLConfiguration();
+        loadedConfig.addProperty("greeting", "hello");
+
+        when(content.getInputStream()).thenReturn(new ByteArrayInputStream(new byte[0]));
+        when(configurationReader.readXmlConfiguration(any(InputStream.class), anyMap())).thenReturn(loadedConfig);
+
+        HierarchicalConfiguration<?> config = pluginService.getPluginConfig("org.craftercms.test.plugin");
+        config.setProperty("greeting", "bye");
+
+        assertNotSame(loadedConfig, config);
+        assertEquals("hello", loadedConfig.getString("greeting"));
+        assertEquals("hello", pluginService.getPluginConfig("org.craftercms.test.plugin").getString("greeting"));
+    }
+
 }
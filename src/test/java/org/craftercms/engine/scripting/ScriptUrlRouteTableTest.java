@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.scripting;
+
+import org.junit.Test;
+import org.springframework.web.util.UriTemplate;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit tests for {@link ScriptUrlRouteTable}.
+ */
+public class ScriptUrlRouteTableTest {
+
+    private final ScriptUrlRouteTable routeTable = new ScriptUrlRouteTable(Arrays.asList(
+        new UriTemplate("/scripts/rest/{type}/{id}.get.groovy"),
+        new UriTemplate("/scripts/rest/user/{username}.get.groovy"),
+        new UriTemplate("/scripts/rest/user/id-{id:\\d+}.get.groovy"),
+        new UriTemplate("/scripts/rest/user/{username}/posts/{post}.get.groovy")
+    ), 2);
+
+    @Test
+    public void testLiteralSegmentsHavePrecedence() {
+        assertMatch("/scripts/rest/user/bob.get.groovy", "/scripts/rest/user/{username}.get.groovy",
+                    Map.of("username", "bob"));
+        assertMatch("/scripts/rest/article/5.get.groovy", "/scripts/rest/{type}/{id}.get.groovy",
+                    Map.of("type", "article", "id", "5"));
+    }
+
+    @Test
+    public void testMoreSpecificTemplateHasPrecedence() {
+        assertMatch("/scripts/rest/user/id-12.get.groovy", "/scripts/rest/user/id-{id:\\d+}.get.groovy",
+                    Map.of("id", "12"));
+        assertMatch("/scripts/rest/user/id-x.get.groovy", "/scripts/rest/user/{username}.get.groovy",
+                    Map.of("username", "id-x"));
+        assertMatch("/scripts/rest/user/bob/posts/3.get.groovy",
+                    "/scripts/rest/user/{username}/posts/{post}.get.groovy", Map.of("username", "bob", "post", "3"));
+    }
+
+    @Test
+    public void testNegativeLookups() {
+        assertNull(routeTable.match("/scripts/rest/hello.get.groovy"));
+        assertNull(routeTable.match("/scripts/rest/a/b/c.get.groovy"));
+        assertEquals(2, routeTable.getNegativeLookupCount());
+
+        // The negative lookups are cleared when the max is reached
+        assertNull(routeTable.match("/scripts/rest/hello.post.groovy"));
+        assertEquals(1, routeTable.getNegativeLookupCount());
+    }
+
+    private void assertMatch(String url, String expectedScriptUrl, Map<String, String> expectedVariables) {
+        ScriptUrlRouteTable.RouteMatch match = routeTable.match(url);
+
+        assertNotNull(match);
+        assertEquals(expectedScriptUrl, match.getScriptUrl());
+        assertEquals(expectedVariables, match.getPathVariables());
+    }
+
+}
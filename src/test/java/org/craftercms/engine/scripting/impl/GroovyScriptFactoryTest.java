@@ -32,15 +32,24 @@ import org.craftercms.engine.test.utils.CacheTemplateMockUtils;
 import org.craftercms.engine.test.utils.ContentStoreServiceMockUtils;
 import org.craftercms.engine.util.groovy.ContentStoreGroovyResourceLoader;
 import org.craftercms.engine.util.groovy.ContentStoreResourceConnector;
+import org.craftercms.engine.util.groovy.GroovyBytecodeCache;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.springframework.beans.factory.xml.XmlBeanDefinitionReader;
 import org.springframework.context.support.GenericApplicationContext;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.mock.web.MockHttpServletRequest;
 
+import static java.util.Collections.singletonMap;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 
 /**
@@ -48,6 +57,12 @@ import static org.mockito.Mockito.*;
  */
 public class GroovyScriptFactoryTest {
 
+    private static final String TEST_SCRIPT_URL = "/scripts/testImport.get.groovy";
+    private static final String OTHER_SCRIPT_URL = "/scripts/test.get.groovy";
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
     private ContentStoreService storeService;
     private ScriptFactory scriptFactory;
     private GroovyClassLoader classLoader;
@@ -84,6 +99,86 @@ public class GroovyScriptFactoryTest {
         assertEquals("Hello Alfonso!", result);
     }
 
+    @Test
+    public void testScriptClassIsLoadedFromBytecodeCache() throws Exception {
+        CountingBytecodeCache bytecodeCache = createBytecodeCache();
+
+        Class<?> compiledClass = createCachingScriptFactory(bytecodeCache).loadScriptClass(TEST_SCRIPT_URL);
+        assertEquals(1, bytecodeCache.stored);
+
+        Class<?> cachedClass = createCachingScriptFactory(bytecodeCache).loadScriptClass(TEST_SCRIPT_URL);
+        assertEquals(1, bytecodeCache.stored);
+        assertEquals(compiledClass.getName(), cachedClass.getName());
+        assertNotSame(compiledClass, cachedClass);
+
+        Map<String, Object> vars = Collections.<String, Object>singletonMap("name", "Alfonso");
+        assertEquals("Hello Alfonso!", new GroovyScript(TEST_SCRIPT_URL, cachedClass, globalVars).execute(vars));
+    }
+
+    @Test
+    public void testStoreCompiledUnit() throws Exception {
+        CountingBytecodeCache bytecodeCache = createBytecodeCache();
+        GroovyScriptFactory cachingScriptFactory = createCachingScriptFactory(bytecodeCache);
+
+        GroovyBytecodeCache.Recording recording = cachingScriptFactory.recorder.start();
+        try {
+            cachingScriptFactory.recorder.processBytecode("Test", new byte[] { 1, 2, 3 });
+            cachingScriptFactory.recorder.recordSource(TEST_SCRIPT_URL);
+            cachingScriptFactory.recorder.recordSource(OTHER_SCRIPT_URL);
+        } finally {
+            cachingScriptFactory.recorder.stop();
+        }
+
+        cachingScriptFactory.storeCompiledUnit("0123", TEST_SCRIPT_URL, String.class, recording);
+
+        // The script itself is not a dependency, since it's already part of the key
+        GroovyBytecodeCache.CompiledUnit unit = bytecodeCache.load("0123");
+        assertNotNull(unit);
+        assertEquals(String.class.getName(), unit.getMainClassName());
+        assertArrayEquals(new byte[] { 1, 2, 3 }, unit.getClasses().get("Test"));
+        assertEquals(singletonMap(OTHER_SCRIPT_URL,
+                                  bytecodeCache.hash(cachingScriptFactory.readSource(OTHER_SCRIPT_URL))),
+                     unit.getDependencies());
+    }
+
+    @Test
+    public void testDependenciesUnchanged() throws Exception {
+        CountingBytecodeCache bytecodeCache = createBytecodeCache();
+        GroovyScriptFactory cachingScriptFactory = createCachingScriptFactory(bytecodeCache);
+        String hash = bytecodeCache.hash(cachingScriptFactory.readSource(OTHER_SCRIPT_URL));
+
+        assertTrue(cachingScriptFactory.dependenciesUnchanged(createUnit(OTHER_SCRIPT_URL, hash)));
+        assertFalse(cachingScriptFactory.dependenciesUnchanged(createUnit(OTHER_SCRIPT_URL, "abc")));
+        assertFalse(cachingScriptFactory.dependenciesUnchanged(createUnit("/scripts/missing.groovy", hash)));
+    }
+
+    @Test
+    public void testInvalidCachedClassIsCompiledAgain() throws Exception {
+        CountingBytecodeCache bytecodeCache = createBytecodeCache();
+        GroovyScriptFactory cachingScriptFactory = createCachingScriptFactory(bytecodeCache);
+        String key = bytecodeCache.getKey(TEST_SCRIPT_URL, cachingScriptFactory.readSource(TEST_SCRIPT_URL), "test");
+
+        bytecodeCache.store(key, new GroovyBytecodeCache.CompiledUnit("Test", singletonMap("Test", new byte[] { 1 }),
+                                                                      Collections.emptyMap()));
+
+        Class<?> scriptClass = cachingScriptFactory.loadScriptClass(TEST_SCRIPT_URL);
+
+        assertEquals(2, bytecodeCache.stored);
+        assertEquals(scriptClass.getName(), bytecodeCache.load(key).getMainClassName());
+    }
+
+    private CountingBytecodeCache createBytecodeCache() throws Exception {
+        CountingBytecodeCache bytecodeCache = new CountingBytecodeCache(tmpFolder.getRoot().getAbsolutePath());
+        bytecodeCache.afterPropertiesSet();
+
+        return bytecodeCache;
+    }
+
+    private GroovyBytecodeCache.CompiledUnit createUnit(String dependency, String hash) {
+        return new GroovyBytecodeCache.CompiledUnit("Test", singletonMap("Test", new byte[] { 1 }),
+                                                    singletonMap(dependency, hash));
+    }
+
     private SiteContext createSiteContext(ContentStoreService storeService) {
         CacheTemplate cacheTemplate = CacheTemplateMockUtils.createCacheTemplate();
 
@@ -135,6 +230,13 @@ public class GroovyScriptFactoryTest {
                 globalVars, true);
     }
 
+    private GroovyScriptFactory createCachingScriptFactory(GroovyBytecodeCache bytecodeCache) {
+        ContentStoreResourceConnector resourceConnector = new ContentStoreResourceConnector(SiteContext.getCurrent());
+
+        return new GroovyScriptFactory(SiteContext.getCurrent(), resourceConnector, classLoader, globalVars, true,
+                                       bytecodeCache, "test");
+    }
+
     private void setCurrentSiteContext(SiteContext siteContext) {
         SiteContext.setCurrent(siteContext);
     }
@@ -159,4 +261,20 @@ public class GroovyScriptFactoryTest {
         ((GenericApplicationContext)globalVars.get("applicationContext")).close();
     }
 
+    private static class CountingBytecodeCache extends GroovyBytecodeCache {
+
+        private int stored;
+
+        public CountingBytecodeCache(String folder) {
+            super(true, folder);
+        }
+
+        @Override
+        public void store(String key, CompiledUnit unit) {
+            stored++;
+            super.store(key, unit);
+        }
+
+    }
+
 }
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.scripting.impl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.craftercms.core.service.ContentStoreService;
+import org.craftercms.core.service.Context;
+import org.craftercms.core.service.Item;
+import org.craftercms.engine.exception.ScriptException;
+import org.craftercms.engine.scripting.ScriptFactory;
+import org.craftercms.engine.service.context.SiteContext;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link ScriptPrecompiler}.
+ */
+public class ScriptPrecompilerTest {
+
+    @Mock
+    private ContentStoreService storeService;
+    @Mock
+    private ScriptFactory scriptFactory;
+    @Mock
+    private SiteContext siteContext;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+
+        setUpStoreService();
+        setUpSiteContext();
+
+        when(scriptFactory.getScriptFileExtension()).thenReturn("groovy");
+        when(scriptFactory.getScript("/scripts/rest/broken.get.groovy")).thenThrow(new ScriptException("Broken"));
+    }
+
+    @Test
+    public void testPrecompile() throws Exception {
+        ScriptPrecompiler precompiler = new ScriptPrecompiler(true, "/scripts", "/scripts/classes");
+        precompiler.setParallelism(2);
+
+        Map<String, Throwable> errors = precompiler.precompile(siteContext);
+
+        verify(scriptFactory).getScript("/scripts/rest/test.get.groovy");
+        verify(scriptFactory).getScript("/scripts/rest/broken.get.groovy");
+        verify(scriptFactory, never()).getScript("/scripts/rest/readme.txt");
+        verify(scriptFactory, never()).getScript("/scripts/classes/org/craftercms/Test.groovy");
+
+        assertEquals(1, errors.size());
+        assertTrue(errors.get("/scripts/rest/broken.get.groovy") instanceof ScriptException);
+    }
+
+    @Test
+    public void testPrecompileDisabled() throws Exception {
+        ScriptPrecompiler precompiler = new ScriptPrecompiler(false, "/scripts", "/scripts/classes");
+
+        assertTrue(precompiler.precompile(siteContext).isEmpty());
+
+        verify(scriptFactory, never()).getScript(any());
+    }
+
+    private void setUpStoreService() {
+        when(storeService.findChildren(any(Context.class), isNull(), eq("/scripts"), isNull(), isNull()))
+            .thenReturn(Arrays.asList(createItem("/scripts/rest", true), createItem("/scripts/classes", true)));
+        when(storeService.findChildren(any(Context.class), isNull(), eq("/scripts/rest"), isNull(), isNull()))
+            .thenReturn(Arrays.asList(createItem("/scripts/rest/test.get.groovy", false),
+                                      createItem("/scripts/rest/broken.get.groovy", false),
+                                      createItem("/scripts/rest/readme.txt", false)));
+        when(storeService.findChildren(any(Context.class), isNull(), eq("/scripts/classes"), isNull(), isNull()))
+            .thenReturn(Collections.singletonList(createItem("/scripts/classes/org", true)));
+        when(storeService.findChildren(any(Context.class), isNull(), eq("/scripts/classes/org"), isNull(),
+                                       isNull()))
+            .thenReturn(Collections.emptyList());
+    }
+
+    private void setUpSiteContext() {
+        when(siteContext.getSiteName()).thenReturn("default");
+        when(siteContext.getContext()).thenReturn(mock(Context.class));
+        when(siteContext.getStoreService()).thenReturn(storeService);
+        when(siteContext.getScriptFactory()).thenReturn(scriptFactory);
+    }
+
+    private Item createItem(String url, boolean folder) {
+        Item item = new Item();
+        item.setUrl(url);
+        item.setName(url.substring(url.lastIndexOf('/') + 1));
+        item.setFolder(folder);
+
+        return item;
+    }
+
+}
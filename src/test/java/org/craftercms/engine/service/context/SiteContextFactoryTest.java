@@ -15,6 +15,7 @@
  */
 package org.craftercms.engine.service.context;
 
+import org.apache.commons.configuration2.HierarchicalConfiguration;
 import org.craftercms.commons.config.EncryptionAwareConfigurationReader;
 import org.craftercms.core.service.ContentStoreService;
 import org.craftercms.core.url.UrlTransformationEngine;
@@ -29,13 +30,22 @@ import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
 import org.springframework.web.servlet.view.freemarker.FreeMarkerConfig;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
+import static org.junit.Assert.assertSame;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -44,6 +54,7 @@ public class SiteContextFactoryTest {
 
     private static final String SITE_NAME_VARIABLE = "siteName";
     private static final String SITE_NAME = "my-test-site";
+    private static final String CONFIG_PATH = "/config/engine/site-config.xml";
 
     @Mock
     MacroResolver macroResolver;
@@ -73,7 +84,7 @@ public class SiteContextFactoryTest {
                 macroResolver, new ArrayList<>(), jobThreadPoolExecutor, graphQLFactory, false,
                 cacheWarmer, configurationReader, new String[0]);
         siteContextFactory.setTranslationConfigPaths(new String[]{});
-        when(macroResolver.resolveMacros(any(), any())).thenReturn("");
+        lenient().when(macroResolver.resolveMacros(any(), any())).thenReturn("");
     }
 
     @Test
@@ -83,4 +94,44 @@ public class SiteContextFactoryTest {
                 SITE_NAME.equals(variables.get(SITE_NAME_VARIABLE))
         ));
     }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testConfigSnapshotIsKeptUntilConfigChanges() throws Exception {
+        SiteContext siteContext = mock(SiteContext.class);
+        when(siteContext.getSiteName()).thenReturn(SITE_NAME);
+        Resource resource = mock(Resource.class);
+        when(resource.exists()).thenReturn(true);
+        when(resource.lastModified()).thenReturn(1L, 1L, 2L);
+        ResourceLoader resourceLoader = mock(ResourceLoader.class);
+        when(resourceLoader.getResource(CONFIG_PATH)).thenReturn(resource);
+        HierarchicalConfiguration<?> config = mock(HierarchicalConfiguration.class);
+        HierarchicalConfiguration<?> changedConfig = mock(HierarchicalConfiguration.class);
+        Supplier<HierarchicalConfiguration> loader = mock(Supplier.class);
+        when(loader.get()).thenReturn(config, changedConfig);
+        List<String> configPaths = Collections.singletonList(CONFIG_PATH);
+
+        siteContextFactory.setConfigSnapshotsEnabled(true);
+
+        assertSame(config, getConfigFromSnapshot(siteContext, configPaths, resourceLoader, loader));
+        assertSame(config, getConfigFromSnapshot(siteContext, configPaths, resourceLoader, loader));
+        verify(loader, times(1)).get();
+
+        // The config file has been modified
+        assertSame(changedConfig, getConfigFromSnapshot(siteContext, configPaths, resourceLoader, loader));
+        verify(loader, times(2)).get();
+
+        // A discarded snapshot is always reloaded
+        siteContextFactory.discardConfigSnapshots(SITE_NAME);
+        getConfigFromSnapshot(siteContext, configPaths, resourceLoader, loader);
+        verify(loader, times(3)).get();
+    }
+
+    @SuppressWarnings("rawtypes")
+    private HierarchicalConfiguration getConfigFromSnapshot(SiteContext siteContext, List<String> configPaths,
+                                                            ResourceLoader resourceLoader,
+                                                            Supplier<HierarchicalConfiguration> loader) {
+        return siteContextFactory.getConfigFromSnapshot(siteContext, SiteContextFactory.SITE_CONFIG_SNAPSHOT_NAME,
+                                                        configPaths, resourceLoader, loader);
+    }
 }
@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.service.context;
+
+import org.craftercms.commons.entitlements.validator.EntitlementValidator;
+import org.craftercms.engine.exception.SiteContextInitializationException;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.quartz.Scheduler;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link SiteContextManager}.
+ */
+public class SiteContextManagerTest {
+
+    private static final String SITE_NAME = "test";
+
+    @Mock
+    private SiteContextFactory contextFactory;
+    @Mock
+    private SiteContextFactory fallbackContextFactory;
+    @Mock
+    private SiteListResolver siteListResolver;
+    @Mock
+    private EntitlementValidator entitlementValidator;
+    private SiteContextManager contextManager;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+
+        contextManager = createContextManager(Runnable::run);
+        contextManager.setShadowRebuildEnabled(true);
+    }
+
+    @Test
+    public void testConcurrentBootstrapIsBounded() throws Exception {
+        List<String> siteNames = Arrays.asList("site1", "site2", "site3", "site4", "site5", "site6");
+        when(siteListResolver.getSiteList()).thenReturn(siteNames);
+
+        // A context creation slot is held from the creation until the end of the initialization
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        when(contextFactory.createContext(anyString())).then(invocation -> {
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+
+            SiteContext context = mock(SiteContext.class);
+            when(context.isValid()).then(isValidInvocation -> {
+                Thread.sleep(50);
+                active.decrementAndGet();
+                return true;
+            });
+
+            return context;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(siteNames.size());
+        try {
+            SiteContextManager contextManager = createContextManager(executor);
+            contextManager.setBootstrapConcurrency(2);
+            contextManager.createContexts(true);
+
+            assertEquals(siteNames.size(), contextManager.contextRegistry.size());
+            assertTrue("Max active contexts was " + maxActive.get(), maxActive.get() <= 2);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testLazyActivationCreatesContextsOnFirstRequest() {
+        contextManager.setLazyActivationEnabled(true);
+        contextManager.createContexts(false);
+
+        verify(siteListResolver, never()).getSiteList();
+        assertTrue(contextManager.contextRegistry.isEmpty());
+
+        SiteContext context = createContext(SiteContext.State.READY);
+
+        assertSame(context, contextManager.getContext(SITE_NAME, false));
+        assertSame(context, contextManager.contextRegistry.get(SITE_NAME));
+    }
+
+    @Test
+    public void testIdleContextsAreEvicted() {
+        long now = System.currentTimeMillis();
+        SiteContext idleContext = registerActiveContext("idle", now - 60000);
+        SiteContext activeContext = registerActiveContext("active", now);
+
+        contextManager.setContextIdleTimeout(30000);
+        contextManager.evictContexts();
+
+        assertFalse(contextManager.contextRegistry.containsKey("idle"));
+        assertSame(activeContext, contextManager.contextRegistry.get("active"));
+        verify(idleContext).destroy();
+        verify(activeContext, never()).destroy();
+        verify(contextFactory, never()).discardConfigSnapshots(anyString());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedContextsAreEvictedWhenOverLimit() {
+        long now = System.currentTimeMillis();
+        SiteContext newestContext = registerActiveContext("newest", now);
+        SiteContext oldestContext = registerActiveContext("oldest", now - 2000);
+        SiteContext olderContext = registerActiveContext("older", now - 1000);
+
+        contextManager.setMaxActiveContexts(2);
+        contextManager.evictContexts();
+
+        assertEquals(2, contextManager.contextRegistry.size());
+        assertFalse(contextManager.contextRegistry.containsKey("oldest"));
+        verify(oldestContext).destroy();
+        verify(olderContext, never()).destroy();
+        verify(newestContext, never()).destroy();
+    }
+
+    @Test
+    public void testNonEvictableContextsAreKept() {
+        SiteContext fallbackContext = registerActiveContext("fallback", 0);
+        when(fallbackContext.isFallback()).thenReturn(true);
+        SiteContext initializingContext = registerActiveContext("initializing", 0);
+        when(initializingContext.getState()).thenReturn(SiteContext.State.INITIALIZING);
+        SiteContext contextWithJobs = registerActiveContext("jobs", 0);
+        when(contextWithJobs.getScheduler()).thenReturn(mock(Scheduler.class));
+
+        contextManager.setContextIdleTimeout(1);
+        contextManager.setMaxActiveContexts(1);
+        contextManager.evictContexts();
+
+        assertEquals(3, contextManager.contextRegistry.size());
+        verify(fallbackContext, never()).destroy();
+        verify(initializingContext, never()).destroy();
+        verify(contextWithJobs, never()).destroy();
+    }
+
+    @Test
+    public void testContextAccessedDuringEvictionIsKept() {
+        SiteContext context = registerActiveContext(SITE_NAME, 0);
+        // The context is accessed between the eviction check and the removal
+        when(context.getLastAccessTime()).thenReturn(0L, System.currentTimeMillis());
+
+        assertFalse(contextManager.evictContext(context));
+
+        assertSame(context, contextManager.contextRegistry.get(SITE_NAME));
+        verify(context, never()).destroy();
+    }
+
+    @Test
+    public void testShadowRebuildSwapsContexts() {
+        SiteContext oldContext = registerContext();
+        SiteContext newContext = createContext(SiteContext.State.READY);
+
+        assertSame(newContext, contextManager.rebuildContext(SITE_NAME, false));
+        assertSame(newContext, contextManager.contextRegistry.get(SITE_NAME));
+
+        // The jobs of the old context stop firing before the ones of the new context start
+        InOrder inOrder = inOrder(oldContext, newContext);
+        inOrder.verify(newContext).init(true);
+        inOrder.verify(oldContext).standbyScheduler();
+        inOrder.verify(newContext).startScheduler();
+        inOrder.verify(oldContext).destroy();
+    }
+
+    @Test
+    public void testShadowRebuildKeepsCurrentContextWhenNewOneIsNotReady() {
+        SiteContext oldContext = registerContext();
+        SiteContext newContext = createContext(SiteContext.State.DESTROYED);
+
+        assertRebuildFails();
+
+        assertSame(oldContext, contextManager.contextRegistry.get(SITE_NAME));
+        verify(newContext).destroy();
+        verify(newContext, never()).startScheduler();
+        verify(oldContext, never()).standbyScheduler();
+        verify(oldContext, never()).destroy();
+    }
+
+    @Test
+    public void testShadowRebuildKeepsCurrentContextWhenInitFails() {
+        SiteContext oldContext = registerContext();
+        SiteContext newContext = createContext(SiteContext.State.INITIALIZING);
+        doThrow(new SiteContextInitializationException("Init failed")).when(newContext).init(anyBoolean());
+
+        assertRebuildFails();
+
+        assertSame(oldContext, contextManager.contextRegistry.get(SITE_NAME));
+        verify(newContext).destroy();
+        verify(newContext, never()).startScheduler();
+        verify(oldContext, never()).destroy();
+    }
+
+    @Test
+    public void testShadowRebuildDiscardsNewContextWhenSiteIsRemoved() {
+        SiteContext oldContext = registerContext();
+        SiteContext newContext = createContext(SiteContext.State.READY);
+        // The site is destroyed while the new context is being initialized
+        doAnswer(invocation -> contextManager.contextRegistry.remove(SITE_NAME)).when(newContext).init(anyBoolean());
+
+        assertRebuildFails();
+
+        assertFalse(contextManager.contextRegistry.containsKey(SITE_NAME));
+        verify(newContext).destroy();
+        verify(newContext, never()).startScheduler();
+        verify(oldContext, never()).standbyScheduler();
+    }
+
+    @Test
+    public void testShadowRebuildDiscardsNewContextWhenSiteIsReplaced() {
+        registerContext();
+        SiteContext otherContext = mock(SiteContext.class);
+        SiteContext newContext = createContext(SiteContext.State.READY);
+        doAnswer(invocation -> contextManager.contextRegistry.put(SITE_NAME, otherContext))
+            .when(newContext).init(anyBoolean());
+
+        assertRebuildFails();
+
+        assertSame(otherContext, contextManager.contextRegistry.get(SITE_NAME));
+        verify(newContext).destroy();
+    }
+
+    private SiteContextManager createContextManager(Executor executor) {
+        SiteContextManager contextManager = new SiteContextManager(contextFactory, fallbackContextFactory,
+                                                                   siteListResolver, true, executor, SITE_NAME, 1,
+                                                                   0, 0, false, new String[0], new String[0], 0, 0);
+        contextManager.setEntitlementValidator(entitlementValidator);
+
+        return contextManager;
+    }
+
+    private SiteContext registerContext() {
+        SiteContext context = mock(SiteContext.class);
+        contextManager.contextRegistry.put(SITE_NAME, context);
+
+        return context;
+    }
+
+    private SiteContext registerActiveContext(String siteName, long lastAccessTime) {
+        SiteContext context = mock(SiteContext.class);
+        when(context.getSiteName()).thenReturn(siteName);
+        when(context.getState()).thenReturn(SiteContext.State.READY);
+        when(context.getLastAccessTime()).thenReturn(lastAccessTime);
+        contextManager.contextRegistry.put(siteName, context);
+
+        return context;
+    }
+
+    private SiteContext createContext(SiteContext.State state) {
+        SiteContext context = mock(SiteContext.class);
+        when(context.getState()).thenReturn(state);
+        when(contextFactory.createContext(SITE_NAME)).thenReturn(context);
+
+        return context;
+    }
+
+    private void assertRebuildFails() {
+        try {
+            contextManager.rebuildContext(SITE_NAME, false);
+            fail("Expected " + SiteContextInitializationException.class.getSimpleName());
+        } catch (SiteContextInitializationException e) {
+            // Expected
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.service.context;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for {@link SiteContextStartupTimings}.
+ */
+public class SiteContextStartupTimingsTest {
+
+    @Test
+    public void testPhasesAreRecordedInOrder() {
+        SiteContextStartupTimings timings = new SiteContextStartupTimings();
+
+        assertEquals("result", timings.time(SiteContextStartupTimings.PHASE_CONFIG, () -> "result"));
+        timings.time(SiteContextStartupTimings.PHASE_CLASS_LOADER, () -> { });
+        timings.record(SiteContextStartupTimings.PHASE_CREATE, 42);
+
+        Map<String, Long> phases = timings.getPhases();
+        assertEquals(Arrays.asList(SiteContextStartupTimings.PHASE_CONFIG,
+                                   SiteContextStartupTimings.PHASE_CLASS_LOADER,
+                                   SiteContextStartupTimings.PHASE_CREATE), new ArrayList<>(phases.keySet()));
+        assertEquals(42L, (long) phases.get(SiteContextStartupTimings.PHASE_CREATE));
+    }
+
+    @Test
+    public void testFailedPhaseIsRecorded() {
+        SiteContextStartupTimings timings = new SiteContextStartupTimings();
+
+        try {
+            timings.time(SiteContextStartupTimings.PHASE_APPLICATION_CONTEXT, () -> {
+                throw new IllegalStateException("Phase failed");
+            });
+            fail("Expected " + IllegalStateException.class.getSimpleName());
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+
+        assertTrue(timings.getPhases().containsKey(SiteContextStartupTimings.PHASE_APPLICATION_CONTEXT));
+    }
+
+}
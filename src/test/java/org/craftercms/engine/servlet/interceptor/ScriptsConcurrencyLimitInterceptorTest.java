@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.servlet.interceptor;
+
+import jakarta.servlet.DispatcherType;
+
+import org.craftercms.engine.controller.PageRenderController;
+import org.craftercms.engine.controller.StaticAssetsRequestHandler;
+import org.craftercms.engine.controller.rest.RestScriptsController;
+import org.craftercms.engine.exception.ConcurrencyLimitExceededException;
+import org.craftercms.engine.service.context.SiteContext;
+import org.craftercms.engine.util.concurrent.SiteBulkhead;
+import org.craftercms.engine.util.concurrent.SiteConcurrencyLimits;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Unit tests for {@link ScriptsConcurrencyLimitInterceptor}.
+ */
+public class ScriptsConcurrencyLimitInterceptorTest {
+
+    private SiteBulkhead bulkhead;
+    private ScriptsConcurrencyLimitInterceptor interceptor;
+
+    @Before
+    public void setUp() {
+        bulkhead = new SiteBulkhead(SiteConcurrencyLimits.SCRIPTS, 1, 0, 0);
+
+        SiteContext siteContext = new SiteContext();
+        siteContext.setSiteName("test");
+        siteContext.setConcurrencyLimits(new SiteConcurrencyLimits(
+                bulkhead, SiteBulkhead.unlimited(SiteConcurrencyLimits.GRAPHQL),
+                SiteBulkhead.unlimited(SiteConcurrencyLimits.JOBS)));
+        SiteContext.setCurrent(siteContext);
+
+        interceptor = new ScriptsConcurrencyLimitInterceptor(Arrays.asList(PageRenderController.class,
+                                                                           RestScriptsController.class));
+    }
+
+    @After
+    public void tearDown() {
+        SiteContext.clear();
+    }
+
+    @Test
+    public void testPermitIsHeldUntilCompletion() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        Object handler = mock(PageRenderController.class);
+
+        assertTrue(interceptor.preHandle(request, response, handler));
+        assertTrue(bulkhead.isHeldByCurrentThread());
+        assertSame(bulkhead, request.getAttribute(ScriptsConcurrencyLimitInterceptor.BULKHEAD_ATTRIBUTE));
+
+        // The scripts of the request run under the permit of the request
+        assertEquals("script", bulkhead.call(() -> "script"));
+
+        interceptor.afterCompletion(request, response, handler, null);
+
+        assertFalse(bulkhead.isHeldByCurrentThread());
+        assertNull(request.getAttribute(ScriptsConcurrencyLimitInterceptor.BULKHEAD_ATTRIBUTE));
+        assertEquals(0, bulkhead.getActive());
+        assertEquals(1, bulkhead.getAccepted());
+    }
+
+    @Test
+    public void testRequestIsRejectedBeforeHandler() throws Exception {
+        Object handler = new HandlerMethod(mock(RestScriptsController.class), Object.class.getMethod("toString"));
+
+        bulkhead.acquire();
+        try {
+            interceptor.preHandle(new MockHttpServletRequest(), new MockHttpServletResponse(), handler);
+            fail("Expected " + ConcurrencyLimitExceededException.class.getSimpleName());
+        } catch (ConcurrencyLimitExceededException e) {
+            assertEquals(503, e.getStatusCode());
+        } finally {
+            bulkhead.release();
+        }
+
+        assertFalse(bulkhead.isHeldByCurrentThread());
+        assertEquals(1, bulkhead.getRejected());
+    }
+
+    @Test
+    public void testOtherHandlersAndErrorDispatchesAreNotLimited() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertTrue(interceptor.preHandle(request, response, mock(StaticAssetsRequestHandler.class)));
+        assertFalse(bulkhead.isHeldByCurrentThread());
+
+        request.setDispatcherType(DispatcherType.ERROR);
+
+        assertTrue(interceptor.preHandle(request, response, mock(PageRenderController.class)));
+        assertFalse(bulkhead.isHeldByCurrentThread());
+
+        interceptor.afterCompletion(request, response, mock(PageRenderController.class), null);
+
+        assertEquals(0, bulkhead.getAccepted());
+        assertEquals(0, bulkhead.getActive());
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.util;
+
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link ChildElementIndex}.
+ */
+public class ChildElementIndexTest {
+
+    private static final String XML =
+        "<page xmlns:c=\"http://craftercms.org/test\">" +
+        "<title_s>Home</title_s>" +
+        "<item>One</item>" +
+        "<header-o><item>Nested</item></header-o>" +
+        "<item>Two</item>" +
+        "<c:title_s>Namespaced</c:title_s>" +
+        "</page>";
+
+    private static final String[] NAMES = { "title_s", "item", "header-o", "description_t" };
+
+    private Element root;
+
+    @Before
+    public void setUp() throws Exception {
+        root = DocumentHelper.parseText(XML).getRootElement();
+    }
+
+    @Test
+    public void testIsElementName() {
+        assertTrue(ChildElementIndex.isElementName("title_s"));
+        assertTrue(ChildElementIndex.isElementName("header-o"));
+        assertTrue(ChildElementIndex.isElementName("_item1"));
+        assertFalse(ChildElementIndex.isElementName(""));
+        assertFalse(ChildElementIndex.isElementName("items/item"));
+        assertFalse(ChildElementIndex.isElementName("item[1]"));
+        assertFalse(ChildElementIndex.isElementName("@id"));
+        assertFalse(ChildElementIndex.isElementName("c:title_s"));
+        assertFalse(ChildElementIndex.isElementName("1item"));
+        assertFalse(ChildElementIndex.isElementName("count(item)"));
+    }
+
+    @Test
+    public void testResultsMatchXPath() {
+        ChildElementIndex index = new ChildElementIndex(root);
+
+        for (String name : NAMES) {
+            Object expected = DocumentHelper.createXPath(name).evaluate(root);
+            if (expected instanceof Collection && ((Collection<?>) expected).isEmpty()) {
+                expected = null;
+            }
+
+            assertEquals(name, expected, index.select(name));
+            assertEquals(name, expected, ChildElementIndex.selectChildren(root, name));
+        }
+    }
+
+    @Test
+    public void testSelect() {
+        ChildElementIndex index = new ChildElementIndex(root);
+
+        assertEquals("Home", ((Element) index.select("title_s")).getText());
+        assertEquals(Arrays.asList(root.elements("item").toArray()), index.select("item"));
+        assertNull(index.select("description_t"));
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.util;
+
+import org.craftercms.commons.converters.Converter;
+import org.craftercms.engine.service.context.SiteContext;
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.ApplicationContext;
+
+import static org.craftercms.engine.util.ContentModelUtils.FIELD_CONVERTER_BEAN_NAME;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link ContentModelUtils}.
+ */
+public class ContentModelUtilsTest {
+
+    private ApplicationContext appContext;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        Converter<Element, Object> converter = mock(Converter.class);
+        when(converter.convert(any(Element.class))).thenAnswer(invocation ->
+                ((Element) invocation.getArgument(0)).getText());
+
+        appContext = mock(ApplicationContext.class);
+        when(appContext.getBean(FIELD_CONVERTER_BEAN_NAME, Converter.class)).thenReturn(converter);
+
+        SiteContext siteContext = new SiteContext();
+        siteContext.setSiteName("test");
+        siteContext.setGlobalApplicationContext(appContext);
+
+        SiteContext.setCurrent(siteContext);
+    }
+
+    @After
+    public void tearDown() {
+        SiteContext.clear();
+    }
+
+    @Test
+    public void testConverterIsResolvedOnce() {
+        Element field = DocumentHelper.createElement("title_s");
+        field.setText("Home");
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals("Home", ContentModelUtils.convertField(field));
+        }
+
+        verify(appContext, times(1)).getBean(FIELD_CONVERTER_BEAN_NAME, Converter.class);
+    }
+
+    @Test
+    public void testFieldIsReturnedWithoutSiteContext() {
+        SiteContext.clear();
+
+        Element field = DocumentHelper.createElement("title_s");
+
+        assertSame(field, ContentModelUtils.convertField(field));
+    }
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.util;
+
+import org.junit.Test;
+import org.springframework.util.AntPathMatcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link PathPatternTrie}.
+ */
+public class PathPatternTrieTest {
+
+    private static final List<String> PATTERNS = Arrays.asList(
+        "/**",
+        "/static-assets/**",
+        "/static-assets/css/*.css",
+        "/static-assets/js/**/*.js",
+        "/articles/{year}/*",
+        "/articles/2024/index",
+        "/about/",
+        "/about",
+        "/*/index",
+        "/api/1/services/**",
+        "/**/*.js",
+        "/static-assets/**/*.min.css",
+        "/static-assets/{file}.css",
+        "/**/*.css",
+        "/**/main.css",
+        "/static-assets/*/app.*"
+    );
+
+    private static final List<String> PATHS = Arrays.asList(
+        "/",
+        "",
+        "/static-assets/css/main.css",
+        "/static-assets/css/main.js",
+        "/static-assets/js/vendor/lib/app.js",
+        "/articles/2024/index",
+        "/articles/2024/index/",
+        "/articles/2024",
+        "/about",
+        "/about/",
+        "//about",
+        "/foo/index",
+        "/api/1/services/hello.json",
+        "/api/1/services",
+        "/static-assets/main.css",
+        "/static-assets/css/main.min.css",
+        "/static-assets/css/main.min.css/",
+        "/index.js",
+        "/js/app.js.map",
+        "/articles/2024/main.css",
+        "/static-assets/js/app.css.map"
+    );
+
+    @Test
+    public void testMatchesSameAsAntPathMatcher() {
+        AntPathMatcher pathMatcher = new AntPathMatcher();
+        PathPatternTrie<String> trie = new PathPatternTrie<>();
+
+        for (String pattern : PATTERNS) {
+            trie.add(pattern, pattern);
+        }
+
+        assertEquals(PATTERNS.size(), trie.size());
+
+        for (String path : PATHS) {
+            List<String> expected = new ArrayList<>();
+            for (String pattern : PATTERNS) {
+                if (pathMatcher.match(pattern, path)) {
+                    expected.add(pattern);
+                }
+            }
+
+            assertEquals("Matches of " + path, expected, trie.match(path));
+        }
+    }
+
+    @Test
+    public void testPatternsAreIndexedByExtension() {
+        List<String> evaluatedPatterns = new ArrayList<>();
+        PathPatternTrie<String> trie = new PathPatternTrie<>(new AntPathMatcher() {
+
+            @Override
+            public boolean match(String pattern, String path) {
+                evaluatedPatterns.add(pattern);
+                return super.match(pattern, path);
+            }
+
+        });
+
+        trie.add("/**/*.css", "css");
+        trie.add("/static-assets/**/*.js", "js");
+        trie.add("/static-assets/**/main.css", "main");
+        trie.add("/static-assets/**/*.min.js", "minJs");
+        trie.add("/static-assets/**", "static");
+
+        assertEquals(Arrays.asList("js", "static"), trie.match("/static-assets/js/vendor/app.js"));
+        // Patterns with wildcards before the extension are only evaluated for paths with that extension
+        assertEquals(Arrays.asList("/static-assets/**", "/static-assets/**/*.js", "/static-assets/**/*.min.js"),
+                     evaluatedPatterns);
+
+        evaluatedPatterns.clear();
+
+        assertEquals(Arrays.asList("css", "main", "static"), trie.match("/static-assets/css/main.css"));
+        assertEquals(Arrays.asList("/**/*.css", "/static-assets/**", "/static-assets/**/main.css"),
+                     evaluatedPatterns);
+    }
+
+    @Test
+    public void testNoMatches() {
+        PathPatternTrie<String> trie = new PathPatternTrie<>();
+        trie.add("/static-assets/**", "static");
+
+        assertTrue(trie.match("/articles/2024/index").isEmpty());
+    }
+
+}
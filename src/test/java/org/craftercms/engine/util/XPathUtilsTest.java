@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.util;
+
+import org.dom4j.Document;
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link XPathUtils}.
+ */
+public class XPathUtilsTest {
+
+    private static final String XML =
+        "<page xmlns:c=\"http://craftercms.org/test\">" +
+        "<title_s>Home</title_s>" +
+        "<items><item>One</item><item>Two</item></items>" +
+        "<c:header>Header</c:header>" +
+        "</page>";
+
+    private Element root;
+
+    @Before
+    public void setUp() throws Exception {
+        Document document = DocumentHelper.parseText(XML);
+        root = document.getRootElement();
+    }
+
+    @Test
+    public void testSelectObject() {
+        Object title = XPathUtils.selectObject(root, "title_s");
+
+        assertTrue(title instanceof Element);
+        assertEquals("Home", ((Element) title).getText());
+        assertTrue(XPathUtils.selectObject(root, "items/item") instanceof List);
+        assertNull(XPathUtils.selectObject(root, "description_t"));
+    }
+
+    @Test
+    public void testSelectValues() {
+        assertEquals("Home", XPathUtils.selectSingleNodeValue(root, "title_s"));
+        assertEquals(Arrays.asList("One", "Two"), XPathUtils.selectNodeValues(root, "items/item"));
+        assertNull(XPathUtils.selectSingleNodeValue(root, "description_t"));
+        assertEquals(Collections.emptyList(), XPathUtils.selectNodeValues(root, "description_t"));
+    }
+
+    @Test
+    public void testSelectWithNamespaces() {
+        Map<String, String> namespaceUris = Collections.singletonMap("t", "http://craftercms.org/test");
+
+        assertEquals("Header", XPathUtils.selectSingleNodeValue(root, "t:header", namespaceUris));
+        assertEquals("Header", XPathUtils.selectSingleNodeValue(root, "c:header"));
+    }
+
+    @Test
+    public void testXPathsAreCached() {
+        Map<String, String> namespaceUris = Collections.singletonMap("t", "http://craftercms.org/test");
+
+        assertSame(XPathUtils.getXPath("items/item", null), XPathUtils.getXPath("items/item", null));
+        assertSame(XPathUtils.getXPath("t:header", namespaceUris),
+                   XPathUtils.getXPath("t:header", Collections.singletonMap("t", "http://craftercms.org/test")));
+        assertNotSame(XPathUtils.getXPath("c:header", null), XPathUtils.getXPath("c:header", null));
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.util.concurrent;
+
+import org.craftercms.commons.http.RequestContext;
+import org.craftercms.engine.service.context.SiteContext;
+import org.junit.After;
+import org.junit.Test;
+import org.slf4j.MDC;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Unit tests for {@link SiteAwareRunnable}.
+ */
+public class SiteAwareRunnableTest {
+
+    private static final String MDC_KEY = "requestId";
+
+    @After
+    public void tearDown() {
+        RequestContext.clear();
+        MDC.clear();
+    }
+
+    @Test
+    public void testContextsArePropagated() throws Exception {
+        SiteContext siteContext = new SiteContext();
+        siteContext.setSiteName("test");
+
+        RequestContext requestContext = new RequestContext(new MockHttpServletRequest(),
+                                                           new MockHttpServletResponse(), null);
+        RequestContext.setCurrent(requestContext);
+        MDC.put(MDC_KEY, "1234");
+
+        AtomicReference<SiteContext> runSiteContext = new AtomicReference<>();
+        AtomicReference<RequestContext> runRequestContext = new AtomicReference<>();
+        AtomicReference<String> runMdcValue = new AtomicReference<>();
+
+        Runnable runnable = new SiteAwareRunnable(siteContext, () -> {
+            runSiteContext.set(SiteContext.getCurrent());
+            runRequestContext.set(RequestContext.getCurrent());
+            runMdcValue.set(MDC.get(MDC_KEY));
+        });
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(runnable).get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertSame(siteContext, runSiteContext.get());
+        assertSame(requestContext, runRequestContext.get());
+        assertEquals("1234", runMdcValue.get());
+    }
+
+    @Test
+    public void testPreviousContextsAreRestored() {
+        SiteContext siteContext = new SiteContext();
+        siteContext.setSiteName("test");
+
+        Runnable runnable = new SiteAwareRunnable(siteContext, () -> {});
+
+        MDC.put(MDC_KEY, "5678");
+        runnable.run();
+
+        assertNull(SiteContext.getCurrent());
+        assertNull(RequestContext.getCurrent());
+        assertEquals("5678", MDC.get(MDC_KEY));
+    }
+
+}
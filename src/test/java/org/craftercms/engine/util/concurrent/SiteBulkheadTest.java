@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.util.concurrent;
+
+import org.craftercms.engine.exception.ConcurrencyLimitExceededException;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for {@link SiteBulkhead}.
+ */
+public class SiteBulkheadTest {
+
+    @Test
+    public void testExecutionsOverLimitAreRejected() throws Exception {
+        SiteBulkhead bulkhead = new SiteBulkhead("scripts", 1, 0, 0);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> future = executor.submit(() -> bulkhead.run(() -> {
+                started.countDown();
+                try {
+                    finish.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            assertTrue(bulkhead.isSaturated());
+
+            try {
+                bulkhead.call(() -> "rejected");
+                fail("Expected " + ConcurrencyLimitExceededException.class.getSimpleName());
+            } catch (ConcurrencyLimitExceededException e) {
+                assertEquals(503, e.getStatusCode());
+            }
+
+            finish.countDown();
+            future.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals("accepted", bulkhead.call(() -> "accepted"));
+        assertEquals(0, bulkhead.getActive());
+        assertEquals(2, bulkhead.getAccepted());
+        assertEquals(1, bulkhead.getRejected());
+    }
+
+    @Test
+    public void testQueuedExecutionsWaitForPermit() throws Exception {
+        SiteBulkhead bulkhead = new SiteBulkhead("jobs", 1, 1, 10000);
+        CountDownLatch started = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> future = executor.submit(() -> bulkhead.run(() -> {
+                started.countDown();
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            assertEquals("queued", bulkhead.call(() -> "queued"));
+
+            future.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(2, bulkhead.getAccepted());
+        assertEquals(0, bulkhead.getRejected());
+        assertEquals(0, bulkhead.getQueued());
+    }
+
+    @Test
+    public void testNestedExecutionsUseSamePermit() {
+        SiteBulkhead bulkhead = new SiteBulkhead("scripts", 1, 0, 0);
+
+        String result = bulkhead.call(() -> bulkhead.call(() -> "nested"));
+
+        assertEquals("nested", result);
+        assertEquals(1, bulkhead.getAccepted());
+        assertEquals(0, bulkhead.getRejected());
+    }
+
+    @Test
+    public void testNestedExecutionsOfOtherBulkheadTakeTheirOwnPermit() {
+        SiteBulkhead scripts = new SiteBulkhead("scripts", 1, 0, 0);
+        SiteBulkhead otherScripts = new SiteBulkhead("scripts", 1, 0, 0);
+
+        assertEquals("nested", scripts.call(() -> otherScripts.call(() -> "nested")));
+        assertEquals(1, otherScripts.getAccepted());
+
+        // Not bound to the thread, like the permit of a request of the other site
+        otherScripts.acquire();
+        try {
+            scripts.call(() -> otherScripts.call(() -> "rejected"));
+            fail("Expected " + ConcurrencyLimitExceededException.class.getSimpleName());
+        } catch (ConcurrencyLimitExceededException e) {
+            assertEquals(2, scripts.getAccepted());
+            assertEquals(1, otherScripts.getRejected());
+        } finally {
+            otherScripts.release();
+        }
+
+        assertEquals(0, scripts.getActive());
+        assertEquals(0, otherScripts.getActive());
+    }
+
+    @Test
+    public void testEnteredPermitIsUsedUntilExit() throws Exception {
+        SiteBulkhead bulkhead = new SiteBulkhead("scripts", 1, 0, 0);
+
+        assertTrue(bulkhead.enter());
+        assertTrue(bulkhead.isHeldByCurrentThread());
+        try {
+            assertFalse(bulkhead.enter());
+            assertEquals("nested", bulkhead.call(() -> bulkhead.call(() -> "nested")));
+            assertTrue(bulkhead.isHeldByCurrentThread());
+
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                executor.submit(() -> bulkhead.call(() -> "rejected")).get(10, TimeUnit.SECONDS);
+                fail("Expected " + ConcurrencyLimitExceededException.class.getSimpleName());
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof ConcurrencyLimitExceededException);
+            } finally {
+                executor.shutdownNow();
+            }
+        } finally {
+            bulkhead.exit();
+        }
+
+        assertFalse(bulkhead.isHeldByCurrentThread());
+        assertEquals(0, bulkhead.getActive());
+        assertEquals(1, bulkhead.getAccepted());
+        assertEquals(1, bulkhead.getRejected());
+    }
+
+}
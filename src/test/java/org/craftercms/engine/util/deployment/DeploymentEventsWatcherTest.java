@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.util.deployment;
+
+import org.craftercms.core.service.CachingOptions;
+import org.craftercms.core.service.Content;
+import org.craftercms.core.service.ContentStoreService;
+import org.craftercms.core.service.Context;
+import org.craftercms.engine.event.CacheClearedEvent;
+import org.craftercms.engine.service.context.SiteContext;
+import org.craftercms.engine.service.context.SiteContextManager;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DeploymentEventsWatcherTest {
+
+    @Mock
+    private SiteContextManager siteContextManager;
+    @Mock
+    private SiteContext siteContext;
+    @Mock
+    private ContentStoreService storeService;
+    @Mock
+    private Context context;
+    @Mock
+    private Content content;
+
+    private String deploymentEvents;
+
+    private DeploymentEventsWatcher watcher;
+
+    @Before
+    public void setUp() throws Exception {
+        when(siteContext.getSiteName()).thenReturn("test");
+        when(siteContext.getContext()).thenReturn(context);
+        when(siteContext.getStoreService()).thenReturn(storeService);
+        when(storeService.findContent(context, CachingOptions.CACHE_OFF_CACHING_OPTIONS,
+                                      DeploymentEventsWatcher.DEFAULT_DEPLOYMENT_EVENTS_FILE_URL)).thenReturn(content);
+        when(content.getInputStream()).thenAnswer(
+            invocation -> new ByteArrayInputStream(deploymentEvents.getBytes(StandardCharsets.UTF_8)));
+
+        watcher = new DeploymentEventsWatcher(siteContextManager);
+    }
+
+    @Test
+    public void testClearCacheWithPathsInvalidatesCache() {
+        deploymentEvents = "events.deployment.clearCache=" + Instant.now().plusSeconds(60) + "\n" +
+                           "events.deployment.clearCache.paths=/site/website/index.xml, /templates/web/page.ftl,\n";
+
+        watcher.checkForSiteEvents(siteContext);
+
+        verify(siteContext).startCacheInvalidation(eq(Arrays.asList("/site/website/index.xml",
+                                                                    "/templates/web/page.ftl")), any());
+        verify(siteContext, never()).startCacheClear(any());
+
+        // The same events are not processed again
+        watcher.checkForSiteEvents(siteContext);
+
+        verify(siteContext, times(1)).startCacheInvalidation(anyCollection(), any());
+    }
+
+    @Test
+    public void testClearCacheWithoutPathsClearsCache() {
+        deploymentEvents = "events.deployment.clearCache=" + Instant.now().plusSeconds(60) + "\n" +
+                           "events.deployment.clearCache.paths= \n";
+
+        watcher.checkForSiteEvents(siteContext);
+
+        verify(siteContext).startCacheClear(any());
+        verify(siteContext, never()).startCacheInvalidation(anyCollection(), any());
+    }
+
+    @Test
+    public void testClearCacheBeforeLastCacheClearIsIgnored() {
+        deploymentEvents = "events.deployment.clearCache=" + Instant.now().minusSeconds(60) + "\n" +
+                           "events.deployment.clearCache.paths=/site/website/index.xml\n";
+
+        watcher.onApplicationEvent(new CacheClearedEvent(siteContext));
+        watcher.checkForSiteEvents(siteContext);
+
+        verify(siteContext, never()).startCacheClear(any());
+        verify(siteContext, never()).startCacheInvalidation(anyCollection(), any());
+    }
+
+}
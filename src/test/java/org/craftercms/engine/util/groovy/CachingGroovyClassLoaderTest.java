@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.util.groovy;
+
+import jakarta.servlet.ServletContext;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.mock.web.MockServletContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Collections.singletonMap;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link CachingGroovyClassLoader} and {@link GroovyBytecodeCache}.
+ */
+public class CachingGroovyClassLoaderTest {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    private Path sourcesFolder;
+    private Path cacheFolder;
+    private CountingBytecodeCache bytecodeCache;
+
+    @Before
+    public void setUp() throws Exception {
+        sourcesFolder = tmpFolder.newFolder("classes").toPath();
+        cacheFolder = tmpFolder.getRoot().toPath().resolve("cache");
+        bytecodeCache = new CountingBytecodeCache(cacheFolder.toString());
+        bytecodeCache.afterPropertiesSet();
+
+        writeSource("Greeter", "class Greeter { String greet(String name) { " +
+                               "[name].collect { new GreetingFormatter().format(it) }.first() } }");
+        writeSource("GreetingFormatter", "class GreetingFormatter { String format(String name) { 'Hello ' + name } }");
+    }
+
+    @Test
+    public void testUnchangedClassesAreNotCompiledAgain() throws Exception {
+        assertEquals("Hello Joe", greet(createClassLoader()));
+        assertEquals(1, bytecodeCache.stored);
+
+        assertEquals("Hello Joe", greet(createClassLoader()));
+        assertEquals(1, bytecodeCache.stored);
+    }
+
+    @Test
+    public void testChangedClassIsCompiledAgain() throws Exception {
+        assertEquals("Hello Joe", greet(createClassLoader()));
+        assertEquals(1, bytecodeCache.stored);
+
+        // The class is compiled together with the class that depends on it, so both need to be compiled again
+        writeSource("GreetingFormatter", "class GreetingFormatter { String format(String name) { 'Hi ' + name } }");
+
+        assertEquals("Hi Joe", greet(createClassLoader()));
+        assertEquals(2, bytecodeCache.stored);
+    }
+
+    @Test
+    public void testStoreAndLoad() {
+        Map<String, byte[]> classes = singletonMap("Test", new byte[] { 1, 2, 3 });
+        Map<String, String> dependencies = singletonMap("/scripts/test.groovy", "abc");
+
+        bytecodeCache.store("0123", new GroovyBytecodeCache.CompiledUnit("Test", classes, dependencies));
+
+        GroovyBytecodeCache.CompiledUnit unit = bytecodeCache.load("0123");
+        assertEquals("Test", unit.getMainClassName());
+        assertArrayEquals(new byte[] { 1, 2, 3 }, unit.getClasses().get("Test"));
+        assertEquals(dependencies, unit.getDependencies());
+
+        assertNull(bytecodeCache.load("4567"));
+    }
+
+    @Test
+    public void testInvalidCachedClassIsCompiledAgain() throws Exception {
+        String key = bytecodeCache.getKey("Greeter", Files.readAllBytes(sourcesFolder.resolve("Greeter.groovy")),
+                                          "test");
+        String formatterHash = bytecodeCache.hash(Files.readAllBytes(
+                sourcesFolder.resolve("GreetingFormatter.groovy")));
+        // Invalid bytecode, but with dependencies that match so that it's used
+        bytecodeCache.store(key, new GroovyBytecodeCache.CompiledUnit(
+                "Greeter", singletonMap("Greeter", new byte[] { 1, 2, 3 }),
+                singletonMap("GreetingFormatter", formatterHash)));
+
+        assertEquals("Hello Joe", greet(createClassLoader()));
+        assertEquals(2, bytecodeCache.stored);
+        assertEquals("Hello Joe", greet(createClassLoader()));
+        assertEquals(2, bytecodeCache.stored);
+    }
+
+    @Test
+    public void testTamperedEntryIsDiscarded() throws Exception {
+        bytecodeCache.store("0123", createUnit());
+
+        Path entry = cacheFolder.resolve("01").resolve("0123" + GroovyBytecodeCache.ENTRY_FILE_EXTENSION);
+        byte[] data = Files.readAllBytes(entry);
+        data[data.length / 2] ^= 1;
+        Files.write(entry, data);
+
+        assertNull(bytecodeCache.load("0123"));
+        assertFalse(Files.exists(entry));
+
+        // Entries signed with another secret are discarded too
+        bytecodeCache.store("0123", createUnit());
+        Files.delete(cacheFolder.resolve(GroovyBytecodeCache.SECRET_FILE_NAME));
+
+        GroovyBytecodeCache otherCache = new GroovyBytecodeCache(true, cacheFolder.toString());
+        otherCache.afterPropertiesSet();
+
+        assertNull(otherCache.load("0123"));
+        assertFalse(Files.exists(entry));
+    }
+
+    @Test
+    public void testFolderIsOwnerOnly() throws Exception {
+        Assume.assumeTrue(cacheFolder.getFileSystem().supportedFileAttributeViews().contains("posix"));
+
+        bytecodeCache.store("0123", createUnit());
+
+        assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(cacheFolder)));
+        assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(
+                cacheFolder.resolve("01"))));
+        assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(
+                cacheFolder.resolve(GroovyBytecodeCache.SECRET_FILE_NAME))));
+        assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(
+                cacheFolder.resolve("01").resolve("0123" + GroovyBytecodeCache.ENTRY_FILE_EXTENSION))));
+    }
+
+    @Test
+    public void testDefaultFolderIsUnderWorkDir() throws Exception {
+        File workDir = tmpFolder.newFolder("work");
+        MockServletContext servletContext = new MockServletContext();
+        servletContext.setAttribute(ServletContext.TEMPDIR, workDir);
+
+        GroovyBytecodeCache defaultCache = new GroovyBytecodeCache(true, "");
+        defaultCache.setServletContext(servletContext);
+        defaultCache.afterPropertiesSet();
+
+        assertTrue(defaultCache.isEnabled());
+        assertTrue(Files.exists(workDir.toPath().resolve(GroovyBytecodeCache.DEFAULT_FOLDER_NAME)
+                                       .resolve(GroovyBytecodeCache.SECRET_FILE_NAME)));
+
+        // Without a work dir nor a folder the cache is disabled
+        GroovyBytecodeCache noFolderCache = new GroovyBytecodeCache(true, "");
+        noFolderCache.afterPropertiesSet();
+
+        assertFalse(noFolderCache.isEnabled());
+    }
+
+    @Test
+    public void testPrune() throws Exception {
+        for (String key : new String[] { "0001", "0002", "0003" }) {
+            bytecodeCache.store(key, new GroovyBytecodeCache.CompiledUnit(
+                    "Test", singletonMap("Test", new byte[600 * 1024]), singletonMap("Other", "abc")));
+        }
+
+        long now = System.currentTimeMillis();
+        setLastModified("0001", now - TimeUnit.DAYS.toMillis(31));
+        setLastModified("0002", now - TimeUnit.DAYS.toMillis(2));
+        setLastModified("0003", now - TimeUnit.DAYS.toMillis(1));
+
+        // Loading an entry updates its last access time
+        assertNotNull(bytecodeCache.load("0002"));
+
+        bytecodeCache.setMaxSize(1);
+        bytecodeCache.prune();
+
+        assertNull(bytecodeCache.load("0001"));
+        assertNotNull(bytecodeCache.load("0002"));
+        assertNull(bytecodeCache.load("0003"));
+    }
+
+    private CachingGroovyClassLoader createClassLoader() {
+        CachingGroovyClassLoader classLoader = new CachingGroovyClassLoader(getClass().getClassLoader(),
+                                                                            new CompilerConfiguration(),
+                                                                            bytecodeCache, "test");
+        classLoader.setResourceLoader(filename -> {
+            Path source = sourcesFolder.resolve(filename.replace('.', '/') + ".groovy");
+            return Files.exists(source)? source.toUri().toURL() : null;
+        });
+
+        return classLoader;
+    }
+
+    private String greet(ClassLoader classLoader) throws Exception {
+        Class<?> greeterClass = classLoader.loadClass("Greeter");
+        Object greeter = greeterClass.getDeclaredConstructor().newInstance();
+
+        return (String) greeterClass.getMethod("greet", String.class).invoke(greeter, "Joe");
+    }
+
+    private GroovyBytecodeCache.CompiledUnit createUnit() {
+        return new GroovyBytecodeCache.CompiledUnit("Test", singletonMap("Test", new byte[] { 1 }),
+                                                    singletonMap("Other", "abc"));
+    }
+
+    private void setLastModified(String key, long time) throws IOException {
+        Files.setLastModifiedTime(cacheFolder.resolve(key.substring(0, 2)).resolve(key +
+                                  GroovyBytecodeCache.ENTRY_FILE_EXTENSION), FileTime.fromMillis(time));
+    }
+
+    private void writeSource(String className, String source) throws IOException {
+        Files.write(sourcesFolder.resolve(className + ".groovy"), source.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static class CountingBytecodeCache extends GroovyBytecodeCache {
+
+        private int stored;
+
+        public CountingBytecodeCache(String folder) {
+            super(true, folder);
+        }
+
+        @Override
+        public void store(String key, CompiledUnit unit) {
+            stored++;
+            super.store(key, unit);
+        }
+
+    }
+
+}
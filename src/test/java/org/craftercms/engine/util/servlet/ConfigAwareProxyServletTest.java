@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.util.servlet;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.craftercms.engine.websocket.NonBlockingWsUpgradeHandler;
+import org.craftercms.engine.websocket.WebSocketProxyStats;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousServerSocketChannel;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the non-blocking websocket handshake of {@link ConfigAwareProxyServlet}, against a local server.
+ */
+public class ConfigAwareProxyServletTest {
+
+    private static final long TIMEOUT = 5000;
+
+    private static final String HANDSHAKE_RESPONSE = "HTTP/1.1 101 Switching Protocols\r\n" +
+                                                     "Upgrade: websocket\r\n" +
+                                                     "Connection: Upgrade\r\n\r\n";
+
+    private ExecutorService executor;
+    private AsynchronousServerSocketChannel serverSocket;
+    private AsynchronousSocketChannel serverChannel;
+    private URL url;
+    private HttpServletRequest request;
+    private MockHttpServletResponse response;
+    private WebSocketProxyStats stats;
+    private ConfigAwareProxyServlet servlet;
+
+    @Before
+    public void setUp() throws Exception {
+        executor = Executors.newSingleThreadExecutor();
+        serverSocket = AsynchronousServerSocketChannel.open()
+                                                      .bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        InetSocketAddress address = (InetSocketAddress) serverSocket.getLocalAddress();
+        url = new URL("http://" + address.getHostString() + ":" + address.getPort() + "/ws");
+
+        request = mock(HttpServletRequest.class);
+        when(request.getHeaderNames()).thenReturn(Collections.enumeration(List.of("Upgrade", "Connection")));
+        when(request.getHeader("Upgrade")).thenReturn("websocket");
+        when(request.getHeader("Connection")).thenReturn("Upgrade");
+
+        response = new MockHttpServletResponse();
+        stats = new WebSocketProxyStats();
+
+        servlet = new ConfigAwareProxyServlet();
+        servlet.websocketBufferSize = 1024;
+        servlet.websocketHandshakeTimeout = (int) TIMEOUT;
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        if (serverChannel != null) {
+            serverChannel.close();
+        }
+        serverSocket.close();
+    }
+
+    @Test
+    public void testDataSentAfterHandshakeIsForwarded() throws Exception {
+        NonBlockingWsUpgradeHandler upgradeHandler = mock(NonBlockingWsUpgradeHandler.class);
+        when(request.upgrade(NonBlockingWsUpgradeHandler.class)).thenReturn(upgradeHandler);
+
+        Future<AsynchronousSocketChannel> server = startServer(HANDSHAKE_RESPONSE + "hello");
+
+        assertTrue(servlet.nonBlockingHandshake(request, response, url, stats));
+        assertEquals("websocket", response.getHeader("Upgrade"));
+
+        serverChannel = server.get(TIMEOUT, MILLISECONDS);
+
+        ArgumentCaptor<AsynchronousSocketChannel> channel = ArgumentCaptor.forClass(AsynchronousSocketChannel.class);
+        ArgumentCaptor<ByteBuffer> serverData = ArgumentCaptor.forClass(ByteBuffer.class);
+        verify(upgradeHandler).preInit(channel.capture(), serverData.capture(), eq(stats));
+
+        assertTrue(channel.getValue().isOpen());
+        assertEquals(1024, serverData.getValue().capacity());
+
+        // The data that was received with the handshake response is ready to be forwarded by the handler, and the
+        // rest is still in the channel
+        String data = toString(serverData.getValue());
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        while (data.length() + buffer.position() < 5) {
+            channel.getValue().read(buffer).get(TIMEOUT, MILLISECONDS);
+        }
+        buffer.flip();
+
+        assertEquals("hello", data + toString(buffer));
+
+        channel.getValue().close();
+    }
+
+    @Test
+    public void testFailedHandshakeIsNotUpgraded() throws Exception {
+        Future<AsynchronousSocketChannel> server = startServer("HTTP/1.1 403 Forbidden\r\nContent-Length: 0\r\n\r\n");
+
+        assertFalse(servlet.nonBlockingHandshake(request, response, url, stats));
+        assertEquals(403, response.getStatus());
+
+        serverChannel = server.get(TIMEOUT, MILLISECONDS);
+
+        verify(request, never()).upgrade(any());
+        assertServerChannelClosed();
+    }
+
+    @Test
+    public void testHandshakeResponseLargerThanBufferIsRejected() throws Exception {
+        servlet.websocketBufferSize = 64;
+
+        Future<AsynchronousSocketChannel> server = startServer("HTTP/1.1 101 Switching Protocols\r\n" +
+                                                               "Sec-WebSocket-Accept: " + "x".repeat(100) + "\r\n" +
+                                                               "Upgrade: websocket\r\n\r\n");
+
+        IOException e = assertThrows(IOException.class, () ->
+            servlet.nonBlockingHandshake(request, response, url, stats));
+        assertTrue(e.getMessage().contains("exceeds the buffer size"));
+
+        serverChannel = server.get(TIMEOUT, MILLISECONDS);
+
+        verify(request, never()).upgrade(any());
+        assertServerChannelClosed();
+    }
+
+    @Test
+    public void testHandshakeTimeout() throws Exception {
+        servlet.websocketHandshakeTimeout = 200;
+
+        // The server never responds
+        Future<AsynchronousSocketChannel> server = startServer(null);
+
+        IOException e = assertThrows(IOException.class, () ->
+            servlet.nonBlockingHandshake(request, response, url, stats));
+        assertTrue(e.getMessage().contains("timed out"));
+
+        serverChannel = server.get(TIMEOUT, MILLISECONDS);
+
+        verify(request, never()).upgrade(any());
+        assertServerChannelClosed();
+    }
+
+    /**
+     * Starts a server that accepts a connection, reads the handshake request and sends the response (if any).
+     */
+    private Future<AsynchronousSocketChannel> startServer(String handshakeResponse) {
+        return executor.submit(() -> {
+            AsynchronousSocketChannel channel = serverSocket.accept().get(TIMEOUT, MILLISECONDS);
+
+            ByteBuffer request = ByteBuffer.allocate(1024);
+            while (!new String(request.array(), 0, request.position(), StandardCharsets.UTF_8).endsWith("\r\n\r\n")) {
+                channel.read(request).get(TIMEOUT, MILLISECONDS);
+            }
+
+            if (handshakeResponse != null) {
+                ByteBuffer response = ByteBuffer.wrap(handshakeResponse.getBytes(StandardCharsets.UTF_8));
+                while (response.hasRemaining()) {
+                    channel.write(response).get(TIMEOUT, MILLISECONDS);
+                }
+            }
+
+            return channel;
+        });
+    }
+
+    private void assertServerChannelClosed() throws Exception {
+        // The proxy closed its side of the connection, so the server reaches the end of the stream (or the
+        // connection is reset, if the proxy didn't read all the data sent by the server)
+        try {
+            assertEquals(-1, (int) serverChannel.read(ByteBuffer.allocate(16)).get(TIMEOUT, MILLISECONDS));
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    private String toString(ByteBuffer buffer) {
+        return new String(buffer.array(), buffer.position(), buffer.remaining(), StandardCharsets.UTF_8);
+    }
+
+}
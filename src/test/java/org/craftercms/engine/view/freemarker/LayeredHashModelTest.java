@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.view.freemarker;
+
+import freemarker.template.Configuration;
+import freemarker.template.DefaultObjectWrapperBuilder;
+import freemarker.template.ObjectWrapper;
+import freemarker.template.SimpleHash;
+import freemarker.template.Template;
+import freemarker.template.utility.DeepUnwrap;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LayeredHashModelTest {
+
+    private ObjectWrapper wrapper;
+    private SimpleHash baseModel;
+
+    @Before
+    public void setUp() {
+        wrapper = new DefaultObjectWrapperBuilder(Configuration.VERSION_2_3_30).build();
+        baseModel = new SimpleHash(wrapper);
+        baseModel.put("contentModel", "page");
+        baseModel.put("siteName", "mysite");
+    }
+
+    @Test
+    public void testLookup() throws Exception {
+        LayeredHashModel model = new LayeredHashModel(baseModel, wrapper);
+        model.put("contentModel", "component");
+        model.put("title", "Hello");
+
+        assertEquals("component", DeepUnwrap.unwrap(model.get("contentModel")));
+        assertEquals("mysite", DeepUnwrap.unwrap(model.get("siteName")));
+        assertEquals("Hello", DeepUnwrap.unwrap(model.get("title")));
+        assertNull(model.get("missing"));
+        assertTrue(model.containsKey("siteName"));
+        assertEquals(3, model.size());
+
+        // The base model is not modified
+        assertEquals("page", DeepUnwrap.unwrap(baseModel.get("contentModel")));
+        assertFalse(baseModel.containsKey("title"));
+    }
+
+    @Test
+    public void testNullHidesBaseValue() throws Exception {
+        LayeredHashModel model = new LayeredHashModel(baseModel, wrapper);
+        model.put("siteName", null);
+
+        assertNull(model.get("siteName"));
+    }
+
+    @Test
+    public void testProcessTemplate() throws Exception {
+        LayeredHashModel model = new LayeredHashModel(baseModel, wrapper);
+        model.put("contentModel", "component");
+
+        Template template = new Template("test", "${contentModel}@${siteName}",
+                                         new Configuration(Configuration.VERSION_2_3_30));
+        StringWriter out = new StringWriter();
+        template.process(model, out);
+
+        assertEquals("component@mysite", out.toString());
+    }
+
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.websocket;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.WebConnection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousServerSocketChannel;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link NonBlockingWsUpgradeHandler}, forwarding between mocked client streams and a local server.
+ */
+public class NonBlockingWsUpgradeHandlerTest {
+
+    private static final long TIMEOUT = 5000;
+
+    private AsynchronousServerSocketChannel serverSocket;
+    private AsynchronousSocketChannel serverChannel;
+    private AsynchronousSocketChannel channel;
+    private TestInputStream clientIn;
+    private TestOutputStream clientOut;
+    private WebConnection connection;
+    private WebSocketProxyStats stats;
+    private NonBlockingWsUpgradeHandler handler;
+
+    @Before
+    public void setUp() throws Exception {
+        serverSocket = AsynchronousServerSocketChannel.open()
+                                                      .bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        Future<AsynchronousSocketChannel> accepted = serverSocket.accept();
+
+        channel = AsynchronousSocketChannel.open();
+        channel.connect(serverSocket.getLocalAddress()).get(TIMEOUT, MILLISECONDS);
+        serverChannel = accepted.get(TIMEOUT, MILLISECONDS);
+
+        clientIn = new TestInputStream();
+        clientOut = new TestOutputStream();
+        connection = mock(WebConnection.class);
+        when(connection.getInputStream()).thenReturn(clientIn);
+        when(connection.getOutputStream()).thenReturn(clientOut);
+
+        stats = new WebSocketProxyStats();
+        stats.connectionOpened(0);
+
+        handler = new NonBlockingWsUpgradeHandler();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        channel.close();
+        serverChannel.close();
+        serverSocket.close();
+    }
+
+    @Test
+    public void testDataSentAfterHandshakeIsForwardedToClient() throws Exception {
+        startForwarding("hello");
+
+        assertEquals("hello", clientOut.awaitData(5));
+
+        write(serverChannel, "world");
+
+        assertEquals("helloworld", clientOut.awaitData(10));
+        assertEquals(5, stats.getBytesToClient());
+    }
+
+    @Test
+    public void testClientDataIsForwardedToServer() throws Exception {
+        startForwarding("");
+
+        clientIn.add("ping");
+        clientIn.listener.onDataAvailable();
+
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        while (buffer.position() < 4) {
+            serverChannel.read(buffer).get(TIMEOUT, MILLISECONDS);
+        }
+
+        assertEquals("ping", new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8));
+        assertEquals(4, stats.getBytesFromClient());
+    }
+
+    @Test
+    public void testClientCloseClosesConnectionOnce() throws Exception {
+        startForwarding("");
+
+        clientIn.listener.onAllDataRead();
+        // The container destroys the handler after the connection is closed
+        handler.destroy();
+
+        // The pending read from the server fails once the channel is closed, which shouldn't close it again
+        verify(connection, after(200).times(1)).close();
+        assertFalse(channel.isOpen());
+        assertEquals(0, stats.getActiveConnections());
+    }
+
+    @Test
+    public void testServerCloseClosesConnectionOnce() throws Exception {
+        startForwarding("");
+
+        serverChannel.close();
+
+        verify(connection, timeout(TIMEOUT)).close();
+
+        clientIn.listener.onAllDataRead();
+        handler.destroy();
+
+        verify(connection, after(200).times(1)).close();
+        assertFalse(channel.isOpen());
+        assertEquals(0, stats.getActiveConnections());
+    }
+
+    private void startForwarding(String pendingServerData) throws IOException {
+        ByteBuffer serverData = ByteBuffer.allocate(1024);
+        serverData.put(pendingServerData.getBytes(StandardCharsets.UTF_8)).flip();
+
+        handler.preInit(channel, serverData, stats);
+        handler.init(connection);
+
+        // Like the container, which calls onWritePossible as soon as the write listener is set
+        clientOut.listener.onWritePossible();
+    }
+
+    private void write(AsynchronousSocketChannel channel, String data) throws Exception {
+        ByteBuffer buffer = ByteBuffer.wrap(data.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer).get(TIMEOUT, MILLISECONDS);
+        }
+    }
+
+    private static class TestInputStream extends ServletInputStream {
+
+        private final Queue<byte[]> chunks = new ConcurrentLinkedQueue<>();
+        private volatile ReadListener listener;
+
+        public void add(String data) {
+            chunks.add(data.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public boolean isFinished() {
+            return false;
+        }
+
+        @Override
+        public boolean isReady() {
+            return !chunks.isEmpty();
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            listener = readListener;
+        }
+
+        @Override
+        public int read() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            byte[] chunk = chunks.poll();
+            if (chunk == null) {
+                return 0;
+            }
+
+            System.arraycopy(chunk, 0, b, off, chunk.length);
+
+            return chunk.length;
+        }
+
+    }
+
+    private static class TestOutputStream extends ServletOutputStream {
+
+        private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        private volatile WriteListener listener;
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            listener = writeListener;
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            data.write(b);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            data.write(b, off, len);
+        }
+
+        public synchronized String getData() {
+            return data.toString(StandardCharsets.UTF_8);
+        }
+
+        public String awaitData(int length) throws InterruptedException {
+            long end = System.currentTimeMillis() + TIMEOUT;
+            String result;
+            while ((result = getData()).length() < length && System.currentTimeMillis() < end) {
+                Thread.sleep(10);
+            }
+
+            return result;
+        }
+
+    }
+
+}
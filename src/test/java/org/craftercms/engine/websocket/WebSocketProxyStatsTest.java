@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.websocket;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link WebSocketProxyStats}.
+ */
+public class WebSocketProxyStatsTest {
+
+    @Test
+    public void testMaxConnections() {
+        WebSocketProxyStats stats = new WebSocketProxyStats();
+
+        assertTrue(stats.connectionOpened(2));
+        assertTrue(stats.connectionOpened(2));
+        assertFalse(stats.connectionOpened(2));
+
+        stats.connectionClosed();
+
+        assertTrue(stats.connectionOpened(2));
+        assertEquals(2, stats.getActiveConnections());
+        assertEquals(3, stats.getTotalConnections());
+        assertEquals(1, stats.getRejectedConnections());
+    }
+
+    @Test
+    public void testUnlimitedConnections() {
+        WebSocketProxyStats stats = new WebSocketProxyStats();
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(stats.connectionOpened(0));
+        }
+
+        assertEquals(100, stats.getActiveConnections());
+        assertEquals(0, stats.getRejectedConnections());
+    }
+
+}